@@ -0,0 +1,84 @@
+package com.awais.machine.benchmarks;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.awais.machine.Factory;
+import com.awais.machine.interfaces.VendingMachine;
+import com.awais.machine.models.Change;
+import com.awais.machine.models.Coin;
+import com.awais.machine.models.Product;
+import com.awais.machine.utils.Coins;
+import com.awais.machine.utils.Pair;
+
+/**
+ * Allocation of a whole purchase, inserting the coins and selecting the
+ * product, comparing the reusable {@link Change} holder with the collection
+ * result. The machine is filled once per iteration with enough products and
+ * coins for the whole batch, so the setup is not reported by the GC profiler.
+ * The gc.alloc.rate.norm is reported per batch, {@link #selectProductIntoChange()}
+ * is expected to stay at the few KB of the harness whatever the batch size.
+ * 
+ * @author Awais Iqbal
+ *
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, batchSize = AllocationBenchmark.BATCH_SIZE)
+@Measurement(iterations = 5, batchSize = AllocationBenchmark.BATCH_SIZE)
+@Fork(1)
+@State(Scope.Thread)
+public class AllocationBenchmark {
+
+	/**
+	 * Purchases done in every iteration
+	 */
+	static final int BATCH_SIZE = 100_000;
+
+	@Param({ "EXACT", "SMALL_CHANGE", "LARGE_CHANGE" })
+	public Purchase purchase;
+
+	private final VendingMachine machine = Factory.createVendingMachine();
+
+	private final Change change = new Change();
+
+	@Setup(Level.Iteration)
+	public void fillMachine() {
+		machine.reset();
+		machine.refill(new Pair<>(Collections.nCopies(BATCH_SIZE, purchase.product()), Collections.emptyList()));
+		for (Coin coin : Coins.ALL) {
+			machine.refill(new Pair<>(Collections.emptyList(), Collections.nCopies(BATCH_SIZE, coin)));
+		}
+	}
+
+	@Benchmark
+	public Product selectProductIntoChange() throws Exception {
+		for (Coin coin : purchase.coins()) {
+			machine.addCoin(coin);
+		}
+		return machine.selectProduct(purchase.product(), change);
+	}
+
+	@Benchmark
+	public Pair<Product, Collection<Coin>> selectProduct() throws Exception {
+		for (Coin coin : purchase.coins()) {
+			machine.addCoin(coin);
+		}
+		return machine.selectProduct(purchase.product());
+	}
+
+}
@@ -0,0 +1,88 @@
+package com.awais.machine.benchmarks;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.awais.machine.Factory;
+import com.awais.machine.interfaces.CashManager;
+import com.awais.machine.interfaces.VendingMachine;
+import com.awais.machine.interfaces.impl.VendingMachineImpl;
+import com.awais.machine.models.Change;
+import com.awais.machine.models.Coin;
+import com.awais.machine.models.Product;
+import com.awais.machine.utils.Pair;
+import com.awais.machine.utils.Products;
+
+/**
+ * Cost of showing which products can be bought after a coin is inserted,
+ * checking every product with the change index or planning the change of
+ * every product.
+ * 
+ * @author Awais Iqbal
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AvailabilityBenchmark {
+
+	@Param({ "SPARSE", "TYPICAL", "RICH" })
+	public CoinStock stock;
+
+	private final CashManager cashManager = Factory.createCashManager(Factory.createOptimalStrategy());
+
+	private final VendingMachine machine = new VendingMachineImpl(cashManager);
+
+	private final Change plan = new Change();
+
+	@Setup
+	public void prepareMachine() {
+		for (Product product : Products.ALL) {
+			machine.refill(new Pair<>(Collections.singletonList(product), stock.coins()));
+		}
+		machine.addCoin(Coin.TWO_EURO);
+	}
+
+	@Benchmark
+	public void checkProducts(Blackhole blackhole) {
+		for (Product product : Products.ALL) {
+			blackhole.consume(machine.checkProduct(product));
+		}
+	}
+
+	@Benchmark
+	public void planChangeOfProducts(Blackhole blackhole) {
+		for (Product product : Products.ALL) {
+			blackhole.consume(cashManager.planChange(machine.getCurrentMoney() - product.getPrice(), plan));
+		}
+	}
+
+	/**
+	 * A coin is added and taken again, so the index is updated by both movements
+	 * on every invocation
+	 */
+	@Benchmark
+	public void checkProductsAfterCoinTaken(Blackhole blackhole) {
+		cashManager.add(Coin.FIVE_CENTS);
+		checkProducts(blackhole);
+		cashManager.redraw(Coin.FIVE_CENTS);
+		checkProducts(blackhole);
+	}
+
+}
@@ -0,0 +1,132 @@
+package com.awais.machine.benchmarks;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.awais.machine.Factory;
+import com.awais.machine.batch.BatchEngine;
+import com.awais.machine.batch.BatchEvents;
+import com.awais.machine.batch.BatchResult;
+import com.awais.machine.interfaces.VendingMachine;
+import com.awais.machine.models.Coin;
+import com.awais.machine.models.Product;
+import com.awais.machine.utils.Coins;
+import com.awais.machine.utils.Pair;
+import com.awais.machine.utils.Products;
+
+/**
+ * Replay of a sales log, applied by the {@link BatchEngine} or one call at a
+ * time through {@link VendingMachine}. The log starts resetting and refilling
+ * the machine, so every replay starts from the same state. The score is the
+ * time of one event.
+ * 
+ * @author Awais Iqbal
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BatchBenchmark {
+
+	/**
+	 * Purchases of the sales log
+	 */
+	private static final int PURCHASES = 100_000;
+
+	/**
+	 * Events of the sales log: a reset, a refill of every product and every coin,
+	 * and two coins and a selection for every purchase
+	 */
+	private static final int EVENTS = 1 + 3 + 6 + PURCHASES * 3;
+
+	private final int[] events = new int[EVENTS];
+
+	private final BatchEngine engine = Factory.createBatchEngine();
+
+	private final BatchResult result = new BatchResult(EVENTS);
+
+	private final VendingMachine machine = Factory.createVendingMachine();
+
+	@Setup
+	public void prepareLog() {
+		int event = 0;
+		events[event++] = BatchEvents.reset();
+		for (Product product : Products.ALL) {
+			events[event++] = BatchEvents.refillProduct(product, PURCHASES);
+		}
+		for (Coin coin : Coins.ALL) {
+			events[event++] = BatchEvents.refillCoin(coin, PURCHASES);
+		}
+		Purchase[] purchases = { Purchase.SMALL_CHANGE, Purchase.LARGE_CHANGE };
+		for (int i = 0; i < PURCHASES; i++) {
+			// Two coins and a selection, paying with the exact price or with change
+			if (i % 3 == 0) {
+				events[event++] = BatchEvents.addCoin(Coin.ONE_EURO);
+				events[event++] = BatchEvents.addCoin(Coin.FIFTY_CENTS);
+				events[event++] = BatchEvents.selectProduct(Product.COKE);
+			} else {
+				Purchase purchase = purchases[i % 2];
+				events[event++] = BatchEvents.addCoin(Coin.TWO_EURO);
+				events[event++] = BatchEvents.addCoin(purchase.coins()[0]);
+				events[event++] = BatchEvents.selectProduct(purchase.product());
+			}
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(EVENTS)
+	public BatchResult batch() {
+		result.clear();
+		engine.apply(events, 0, EVENTS, result);
+		return result;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(EVENTS)
+	public void oneCallAtATime(Blackhole blackhole) {
+		for (int event : events) {
+			try {
+				switch (BatchEvents.typeOf(event)) {
+				case BatchEvents.ADD_COIN:
+					machine.addCoin(Coins.ALL[BatchEvents.itemOf(event)]);
+					break;
+				case BatchEvents.SELECT_PRODUCT:
+					blackhole.consume(machine.selectProduct(Products.ALL[BatchEvents.itemOf(event)]));
+					break;
+				case BatchEvents.RESET:
+					machine.reset();
+					break;
+				case BatchEvents.REFILL_PRODUCT:
+					machine.refill(new Pair<Collection<Product>, Collection<Coin>>(
+							Collections.nCopies(BatchEvents.countOf(event), Products.ALL[BatchEvents.itemOf(event)]),
+							Collections.<Coin>emptyList()));
+					break;
+				case BatchEvents.REFILL_COIN:
+					machine.refill(new Pair<Collection<Product>, Collection<Coin>>(Collections.<Product>emptyList(),
+							Collections.nCopies(BatchEvents.countOf(event), Coins.ALL[BatchEvents.itemOf(event)])));
+					break;
+				}
+			} catch (Exception e) {
+				blackhole.consume(e);
+			}
+		}
+	}
+
+}
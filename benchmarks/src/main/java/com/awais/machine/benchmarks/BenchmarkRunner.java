@@ -0,0 +1,32 @@
+package com.awais.machine.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of the benchmarks jar. It accepts the same arguments as the JMH
+ * command line but always attaches the {@link GCProfiler}, so every run reports
+ * the allocated bytes per operation (gc.alloc.rate.norm).
+ * 
+ * @author Awais Iqbal
+ *
+ */
+public class BenchmarkRunner {
+
+	/**
+	 * Private constructor
+	 */
+	private BenchmarkRunner() {
+
+	}
+
+	public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+		CommandLineOptions commandLine = new CommandLineOptions(args);
+		new Runner(new OptionsBuilder().parent(commandLine).addProfiler(GCProfiler.class).build()).run();
+	}
+
+}
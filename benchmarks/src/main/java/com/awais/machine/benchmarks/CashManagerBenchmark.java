@@ -0,0 +1,154 @@
+package com.awais.machine.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.awais.machine.Factory;
+import com.awais.machine.interfaces.CashManager;
+import com.awais.machine.models.Change;
+import com.awais.machine.models.Coin;
+
+/**
+ * Change calculation and balance query of {@link CashManager}.
+ * 
+ * @author Awais Iqbal
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CashManagerBenchmark {
+
+	/**
+	 * Cash managers used by every invocation of the change benchmarks
+	 */
+	private static final int POOL = 4096;
+
+	/**
+	 * Calculating the change removes coins from the stock, so every invocation
+	 * takes the change once from each cash manager of a pool of {@link #POOL},
+	 * refilled before the next invocation. An invocation lasts long enough for
+	 * the setup and the timer not to distort the time of the calls. Subtract the
+	 * allocation of
+	 * {@link CashManagerBenchmark#changeBaseline(ChangeState, Blackhole)} to get
+	 * the bytes of the operation itself.
+	 */
+	@State(Scope.Thread)
+	public static class ChangeState {
+
+		@Param({ "SPARSE", "TYPICAL", "RICH" })
+		public CoinStock coinStock;
+
+		@Param({ "5", "50", "185", "310" })
+		public long amount;
+
+		@Param({ "MAP", "ATOMIC" })
+		public String implementation;
+
+		private final CashManager[] cashManagers = new CashManager[POOL];
+
+		@Setup(Level.Invocation)
+		public void prepareStocks() {
+			for (int i = 0; i < POOL; i++) {
+				cashManagers[i] = create(implementation);
+				cashManagers[i].refill(coinStock.coins());
+			}
+		}
+	}
+
+	/**
+	 * The balance query does not mutate the stock, one cash manager per trial is
+	 * enough.
+	 */
+	@State(Scope.Thread)
+	public static class BalanceState {
+
+		@Param({ "EMPTY", "TYPICAL", "RICH" })
+		public CoinStock coinStock;
+
+		@Param({ "MAP", "ATOMIC" })
+		public String implementation;
+
+		private CashManager cashManager;
+
+		@Setup(Level.Trial)
+		public void prepareStock() {
+			cashManager = create(implementation);
+			cashManager.refill(coinStock.coins());
+		}
+	}
+
+	/**
+	 * Lock free cash manager shared by all the threads of the benchmark, every
+	 * thread inserts a coin and takes change. Only {@code ATOMIC} is thread safe.
+	 */
+	@State(Scope.Benchmark)
+	public static class SharedState {
+
+		private final CashManager cashManager = Factory.createAtomicCashManager();
+	}
+
+	/**
+	 * Holder of the change of every thread
+	 */
+	@State(Scope.Thread)
+	public static class ThreadChange {
+
+		private final Change change = new Change();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(POOL)
+	public void changeBaseline(ChangeState state, Blackhole blackhole) {
+		for (CashManager cashManager : state.cashManagers) {
+			blackhole.consume(cashManager);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(POOL)
+	public void calculateChange(ChangeState state, Blackhole blackhole) throws Exception {
+		for (CashManager cashManager : state.cashManagers) {
+			blackhole.consume(cashManager.calculateChange(state.amount));
+		}
+	}
+
+	@Benchmark
+	public long getCurrentMoney(BalanceState state) {
+		return state.cashManager.getCurrentMoney();
+	}
+
+	@Benchmark
+	public boolean isBalanced(BalanceState state) {
+		return state.cashManager.isBalanced();
+	}
+
+	@Benchmark
+	@Threads(4)
+	public boolean sharedAddAndChange(SharedState shared, ThreadChange thread) {
+		shared.cashManager.add(Coin.ONE_EURO);
+		return shared.cashManager.tryCalculateChange(Coin.ONE_EURO.getValue(), thread.change);
+	}
+
+	private static CashManager create(String implementation) {
+		return "ATOMIC".equals(implementation) ? Factory.createAtomicCashManager() : Factory.createCashManager();
+	}
+
+}
@@ -0,0 +1,92 @@
+package com.awais.machine.benchmarks;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.awais.machine.interfaces.ChangeStrategy;
+import com.awais.machine.interfaces.impl.AdaptiveStrategy;
+import com.awais.machine.interfaces.impl.CachingStrategy;
+import com.awais.machine.interfaces.impl.ClassicStrategy;
+import com.awais.machine.interfaces.impl.OptimalStrategy;
+import com.awais.machine.models.Coin;
+import com.awais.machine.utils.EnumStock;
+import com.awais.machine.utils.Stock;
+
+/**
+ * Change strategies measured directly against a coin stock, without the cash
+ * manager around them. A strategy only reads the stock, so it is built once per
+ * trial and nothing runs between the calls, {@link #baseline()} gives the cost
+ * of the harness.
+ * 
+ * @author Awais Iqbal
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ChangeStrategyBenchmark {
+
+	@Param({ "CLASSIC", "OPTIMAL", "ADAPTIVE", "CACHED_CLASSIC", "CACHED_OPTIMAL" })
+	public String strategyName;
+
+	@Param({ "SPARSE", "TYPICAL", "RICH" })
+	public CoinStock coinStock;
+
+	@Param({ "5", "50", "185", "310" })
+	public long amount;
+
+	private ChangeStrategy strategy;
+
+	private Stock<Coin> coins;
+
+	@Setup(Level.Trial)
+	public void prepare() {
+		strategy = createStrategy(strategyName);
+		coins = new EnumStock<>(Coin.class);
+		coins.refill(coinStock.coins());
+	}
+
+	@Benchmark
+	public Stock<Coin> baseline() {
+		return coins;
+	}
+
+	@Benchmark
+	public Collection<Coin> calculateChange() throws Exception {
+		return strategy.calculateChange(amount, coins);
+	}
+
+	private static ChangeStrategy createStrategy(String name) {
+		switch (name) {
+		case "CLASSIC":
+			return new ClassicStrategy();
+		case "OPTIMAL":
+			return new OptimalStrategy();
+		case "ADAPTIVE":
+			return new AdaptiveStrategy();
+		case "CACHED_CLASSIC":
+			return new CachingStrategy(new ClassicStrategy(), 256);
+		case "CACHED_OPTIMAL":
+			return new CachingStrategy(new OptimalStrategy(), 256);
+		default:
+			throw new IllegalArgumentException("Unknown strategy " + name);
+		}
+	}
+
+}
@@ -0,0 +1,46 @@
+package com.awais.machine.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.awais.machine.models.Coin;
+import com.awais.machine.utils.Coins;
+
+/**
+ * Coins available for change in the machine before the measured operation,
+ * shared by all the benchmarks so they run against the same machine states.
+ * 
+ * @author Awais Iqbal
+ *
+ */
+public enum CoinStock {
+	/** Nothing but the coins inserted by the customer */
+	EMPTY(0),
+	/** One coin of every denomination, a machine about to run dry */
+	SPARSE(1),
+	/** A machine refilled by a technician in the morning */
+	TYPICAL(10),
+	/** Large float, the greedy walk never runs out of a denomination */
+	RICH(100);
+
+	private final int coinsPerDenomination;
+
+	private CoinStock(int coinsPerDenomination) {
+		this.coinsPerDenomination = coinsPerDenomination;
+	}
+
+	/**
+	 * Build the list of coins of this stock
+	 * 
+	 * @return Coins to be refilled
+	 */
+	public List<Coin> coins() {
+		List<Coin> coins = new ArrayList<>();
+		for (Coin coin : Coins.ALL) {
+			coins.addAll(Collections.nCopies(coinsPerDenomination, coin));
+		}
+		return coins;
+	}
+
+}
@@ -0,0 +1,75 @@
+package com.awais.machine.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.awais.machine.Factory;
+import com.awais.machine.events.EventProcessor;
+import com.awais.machine.events.EventRing;
+import com.awais.machine.events.StockLevels;
+import com.awais.machine.interfaces.VendingMachine;
+import com.awais.machine.models.Change;
+import com.awais.machine.models.Coin;
+
+/**
+ * Cost of publishing the events of the machine. Coins are inserted and given
+ * back, so the stock never runs out and every invocation publishes three coins,
+ * the change dispensed and the cancellation. With events they are delivered to
+ * a {@link StockLevels} consumer on the same thread, so the time includes both
+ * sides of the ring.
+ * 
+ * @author Awais Iqbal
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EventBenchmark {
+
+	@Param({ "false", "true" })
+	public boolean events;
+
+	private VendingMachine machine;
+
+	private EventProcessor processor;
+
+	private final Change change = new Change();
+
+	@Setup
+	public void createMachine() {
+		if (events) {
+			EventRing ring = new EventRing(1024);
+			machine = Factory.createVendingMachine(ring);
+			processor = ring.subscribe(new StockLevels());
+		} else {
+			machine = Factory.createVendingMachine();
+		}
+	}
+
+	@Benchmark
+	public boolean insertAndCancel() {
+		machine.addCoin(Coin.ONE_EURO);
+		machine.addCoin(Coin.FIFTY_CENTS);
+		machine.addCoin(Coin.TWENTY_CENTS);
+		boolean cancelled = machine.tryCancelRequest(change);
+		if (processor != null) {
+			processor.drain();
+		}
+		return cancelled;
+	}
+
+}
@@ -0,0 +1,76 @@
+package com.awais.machine.benchmarks;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.awais.machine.Factory;
+import com.awais.machine.actor.MachineExecutor;
+import com.awais.machine.models.Coin;
+
+/**
+ * Cost of a command run through the {@link MachineExecutor}, per command. A
+ * burst of coins is inserted across the machines and the last command of every
+ * machine is waited for, the money is returned at the end of every burst.
+ * 
+ * @author Awais Iqbal
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExecutorBenchmark {
+
+	/**
+	 * Commands of a burst
+	 */
+	static final int BURST = 1024;
+
+	static final int MACHINES = 64;
+
+	@Param({ "1", "2" })
+	public int workers;
+
+	private MachineExecutor executor;
+
+	private final CompletableFuture<?>[] last = new CompletableFuture<?>[MACHINES];
+
+	@Setup
+	public void createExecutor() {
+		executor = Factory.createMachineExecutor(MACHINES, workers);
+	}
+
+	@TearDown
+	public void closeExecutor() {
+		executor.close();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BURST)
+	public Object insertBurst() {
+		for (int i = 0; i < BURST; i++) {
+			last[i % MACHINES] = executor.addCoin(i % MACHINES, Coin.TWO_EURO);
+		}
+		for (int machine = 0; machine < MACHINES; machine++) {
+			last[machine] = executor.cancelRequest(machine);
+		}
+		return CompletableFuture.allOf(last).join();
+	}
+
+}
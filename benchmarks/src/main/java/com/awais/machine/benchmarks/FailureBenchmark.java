@@ -0,0 +1,76 @@
+package com.awais.machine.benchmarks;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.awais.machine.Factory;
+import com.awais.machine.interfaces.VendingMachine;
+import com.awais.machine.models.Change;
+import com.awais.machine.models.Coin;
+import com.awais.machine.models.Product;
+import com.awais.machine.models.SelectionResult;
+import com.awais.machine.utils.Pair;
+
+/**
+ * Cost of a failed selection, reported with an exception or with
+ * {@link VendingMachine#trySelectProduct(Product, Change)}. A failed selection
+ * doesn't change the machine, so it is prepared once.
+ * 
+ * @author Awais Iqbal
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FailureBenchmark {
+
+	@Param({ "SOLD_OUT", "NOT_ENOUGH_MONEY" })
+	public SelectionResult failure;
+
+	private final VendingMachine machine = Factory.createVendingMachine();
+
+	private final Change change = new Change();
+
+	@Setup
+	public void prepareMachine() {
+		if (failure == SelectionResult.NOT_ENOUGH_MONEY) {
+			machine.refill(new Pair<Collection<Product>, Collection<Coin>>(Collections.singletonList(Product.WATER),
+					Collections.<Coin>emptyList()));
+			machine.addCoin(Coin.FIFTY_CENTS);
+		}
+	}
+
+	@Benchmark
+	public Exception selectProduct() {
+		try {
+			machine.selectProduct(Product.WATER, change);
+			throw new IllegalStateException("The selection should fail");
+		} catch (IllegalStateException e) {
+			throw e;
+		} catch (Exception e) {
+			return e;
+		}
+	}
+
+	@Benchmark
+	public SelectionResult trySelectProduct() {
+		return machine.trySelectProduct(Product.WATER, change);
+	}
+
+}
@@ -0,0 +1,108 @@
+package com.awais.machine.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.awais.machine.Factory;
+import com.awais.machine.interfaces.VendingMachine;
+import com.awais.machine.interfaces.impl.VendingMachineImpl;
+import com.awais.machine.journal.Journal;
+import com.awais.machine.journal.JournaledVendingMachine;
+import com.awais.machine.models.Coin;
+import com.awais.machine.models.Product;
+import com.awais.machine.utils.Pair;
+
+/**
+ * Transactions per second with and without the write-ahead journal. Every
+ * transaction refills one water, inserts its exact price and buys it, which is
+ * five journal records, so the machine state stays the same between
+ * transactions.
+ * 
+ * @author Awais Iqbal
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class JournalBenchmark {
+
+	/**
+	 * OFF: plain machine, SYNC_EACH: every record forced to disk, GROUP_COMMIT:
+	 * records forced every 64 records or 10 milliseconds
+	 */
+	@Param({ "OFF", "SYNC_EACH", "GROUP_COMMIT" })
+	public String journalMode;
+
+	private final Pair<Collection<Product>, Collection<Coin>> refilling = new Pair<Collection<Product>, Collection<Coin>>(
+			Collections.singletonList(Product.WATER), Collections.<Coin>emptyList());
+
+	private Path directory;
+
+	private VendingMachine machine;
+
+	@Setup(Level.Trial)
+	public void openMachine() throws IOException {
+		directory = Files.createTempDirectory("journal-benchmark");
+		switch (journalMode) {
+		case "OFF":
+			machine = Factory.createVendingMachine();
+			break;
+		case "SYNC_EACH":
+			machine = open(1, 0);
+			break;
+		case "GROUP_COMMIT":
+			machine = open(64, 10);
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown journal mode " + journalMode);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void closeMachine() throws IOException {
+		if (machine instanceof JournaledVendingMachine) {
+			((JournaledVendingMachine) machine).close();
+		}
+		try (Stream<Path> files = Files.walk(directory)) {
+			files.sorted(Collections.reverseOrder()).forEach(file -> file.toFile().delete());
+		}
+	}
+
+	@Benchmark
+	public Pair<Product, Collection<Coin>> transaction() throws Exception {
+		machine.refill(refilling);
+		machine.addCoin(Coin.FIFTY_CENTS);
+		machine.addCoin(Coin.TWENTY_CENTS);
+		machine.addCoin(Coin.TWENTY_CENTS);
+		return machine.selectProduct(Product.WATER);
+	}
+
+	private JournaledVendingMachine open(int groupCommitRecords, long groupCommitMillis) throws IOException {
+		Journal journal = new Journal(directory.resolve("journal.log"), groupCommitRecords, groupCommitMillis);
+		return new JournaledVendingMachine(new VendingMachineImpl(Factory.createCashManager()), journal,
+				directory.resolve("snapshot.bin"), 100_000);
+	}
+
+}
@@ -0,0 +1,92 @@
+package com.awais.machine.benchmarks;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.awais.machine.Factory;
+import com.awais.machine.interfaces.VendingMachine;
+import com.awais.machine.metrics.InMemoryMetrics;
+import com.awais.machine.metrics.NoOpMetrics;
+import com.awais.machine.models.Change;
+import com.awais.machine.models.Coin;
+import com.awais.machine.models.SelectionResult;
+import com.awais.machine.utils.Coins;
+import com.awais.machine.utils.Pair;
+
+/**
+ * Overhead of the metrics on a whole purchase: without metrics, with the no-op
+ * registry and with the in memory registry. The machine is filled once per
+ * iteration with enough products and coins for the whole batch, the score is
+ * the time of the batch.
+ * 
+ * @author Awais Iqbal
+ *
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 10, batchSize = MetricsBenchmark.BATCH_SIZE)
+@Measurement(iterations = 10, batchSize = MetricsBenchmark.BATCH_SIZE)
+@Fork(1)
+@State(Scope.Thread)
+public class MetricsBenchmark {
+
+	/**
+	 * Purchases done in every iteration
+	 */
+	static final int BATCH_SIZE = 100_000;
+
+	@Param({ "NONE", "NO_OP", "IN_MEMORY" })
+	public String metrics;
+
+	@Param({ "EXACT", "SMALL_CHANGE" })
+	public Purchase purchase;
+
+	private VendingMachine machine;
+
+	private final Change change = new Change();
+
+	@Setup(Level.Trial)
+	public void createMachine() {
+		switch (metrics) {
+		case "NO_OP":
+			machine = Factory.createMeteredVendingMachine(NoOpMetrics.INSTANCE);
+			break;
+		case "IN_MEMORY":
+			machine = Factory.createMeteredVendingMachine(new InMemoryMetrics());
+			break;
+		default:
+			machine = Factory.createVendingMachine();
+		}
+	}
+
+	@Setup(Level.Iteration)
+	public void fillMachine() {
+		machine.reset();
+		machine.refill(new Pair<>(Collections.nCopies(BATCH_SIZE, purchase.product()), Collections.emptyList()));
+		for (Coin coin : Coins.ALL) {
+			machine.refill(new Pair<>(Collections.emptyList(), Collections.nCopies(BATCH_SIZE, coin)));
+		}
+	}
+
+	@Benchmark
+	public SelectionResult purchase() {
+		for (Coin coin : purchase.coins()) {
+			machine.addCoin(coin);
+		}
+		return machine.trySelectProduct(purchase.product(), change);
+	}
+
+}
@@ -0,0 +1,106 @@
+package com.awais.machine.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.awais.machine.Factory;
+import com.awais.machine.interfaces.VendingMachine;
+import com.awais.machine.models.Change;
+import com.awais.machine.models.Coin;
+import com.awais.machine.models.MachineSnapshot;
+import com.awais.machine.models.Product;
+import com.awais.machine.models.SelectionResult;
+import com.awais.machine.utils.Coins;
+import com.awais.machine.utils.Products;
+
+/**
+ * Cost of a sale while a dashboard copies the state of the same machine in a
+ * loop, compared with the sale alone. The machine is refilled every given
+ * number of sales.
+ *
+ * @author Awais Iqbal
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MonitoringBenchmark {
+
+	/**
+	 * Sales between two refills
+	 */
+	private static final int REFILL_EVERY = 1000;
+
+	@State(Scope.Group)
+	public static class Machine {
+
+		private final VendingMachine machine = Factory.createVendingMachine();
+
+		private final int[] productCounts = new int[Products.COUNT];
+
+		private final int[] coinCounts = new int[Coins.COUNT];
+
+		private final Change change = new Change();
+
+		private int salesLeft;
+
+		@Setup
+		public void refill() {
+			productCounts[Product.WATER.ordinal()] = REFILL_EVERY;
+			coinCounts[Coin.TEN_CENTS.ordinal()] = REFILL_EVERY;
+		}
+
+		private SelectionResult sell() {
+			if (salesLeft == 0) {
+				machine.reset();
+				machine.refill(productCounts, coinCounts);
+				salesLeft = REFILL_EVERY;
+			}
+			salesLeft--;
+			machine.addCoin(Coin.ONE_EURO);
+			return machine.trySelectProduct(Product.WATER, change);
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Dashboard {
+
+		private final MachineSnapshot snapshot = new MachineSnapshot();
+	}
+
+	@Benchmark
+	@Group("alone")
+	public SelectionResult sellAlone(Machine machine) {
+		return machine.sell();
+	}
+
+	@Benchmark
+	@Group("monitored")
+	@GroupThreads(1)
+	public SelectionResult sell(Machine machine) {
+		return machine.sell();
+	}
+
+	@Benchmark
+	@Group("monitored")
+	@GroupThreads(1)
+	public MachineSnapshot snapshot(Machine machine, Dashboard dashboard) {
+		machine.machine.snapshot(dashboard.snapshot);
+		return dashboard.snapshot;
+	}
+
+}
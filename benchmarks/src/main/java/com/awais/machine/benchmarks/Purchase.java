@@ -0,0 +1,53 @@
+package com.awais.machine.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import com.awais.machine.models.Coin;
+import com.awais.machine.models.Product;
+import com.awais.machine.utils.Products;
+
+/**
+ * Typical purchases, from the exact price to a large amount of change.
+ * 
+ * @author Awais Iqbal
+ *
+ */
+public enum Purchase {
+	/** Water paid with the exact price, no change */
+	EXACT(Product.WATER, Coin.FIFTY_CENTS, Coin.TWENTY_CENTS, Coin.TWENTY_CENTS),
+	/** Coke paid with a 2 euro coin, 50 cents of change */
+	SMALL_CHANGE(Product.COKE, Coin.TWO_EURO),
+	/** Water paid with two 2 euro coins, 3.10 euro of change */
+	LARGE_CHANGE(Product.WATER, Coin.TWO_EURO, Coin.TWO_EURO);
+
+	private final Product product;
+	private final Coin[] coins;
+
+	private Purchase(Product product, Coin... coins) {
+		this.product = product;
+		this.coins = coins;
+	}
+
+	public Product product() {
+		return product;
+	}
+
+	public Coin[] coins() {
+		return coins;
+	}
+
+	/**
+	 * One unit of every product, enough for a single purchase of any kind.
+	 * 
+	 * @return Products to be refilled
+	 */
+	public static Collection<Product> oneOfEachProduct() {
+		List<Product> products = new ArrayList<>();
+		Collections.addAll(products, Products.ALL);
+		return products;
+	}
+
+}
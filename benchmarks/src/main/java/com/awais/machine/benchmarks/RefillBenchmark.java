@@ -0,0 +1,91 @@
+package com.awais.machine.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.awais.machine.Factory;
+import com.awais.machine.interfaces.VendingMachine;
+import com.awais.machine.models.Coin;
+import com.awais.machine.models.Product;
+import com.awais.machine.utils.Coins;
+import com.awais.machine.utils.Pair;
+import com.awais.machine.utils.Products;
+
+/**
+ * Cost of a technician refill, the same units given one by one in collections
+ * or as a count per item. The machine is reset before every refill so the
+ * stocks don't grow.
+ *
+ * @author Awais Iqbal
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RefillBenchmark {
+
+	/**
+	 * Units refilled of every product and every coin
+	 */
+	@Param({ "10", "50" })
+	public int unitsPerItem;
+
+	private final VendingMachine machine = Factory.createVendingMachine();
+
+	private Pair<Collection<Product>, Collection<Coin>> collections;
+
+	private int[] productCounts;
+
+	private int[] coinCounts;
+
+	@Setup
+	public void createRefill() {
+		List<Product> products = new ArrayList<>();
+		for (Product product : Products.ALL) {
+			products.addAll(Collections.nCopies(unitsPerItem, product));
+		}
+		List<Coin> coins = new ArrayList<>();
+		for (Coin coin : Coins.ALL) {
+			coins.addAll(Collections.nCopies(unitsPerItem, coin));
+		}
+		collections = new Pair<>(products, coins);
+		productCounts = new int[Products.COUNT];
+		Arrays.fill(productCounts, unitsPerItem);
+		coinCounts = new int[Coins.COUNT];
+		Arrays.fill(coinCounts, unitsPerItem);
+	}
+
+	@Benchmark
+	public VendingMachine refillCollections() {
+		machine.reset();
+		machine.refill(collections);
+		return machine;
+	}
+
+	@Benchmark
+	public VendingMachine refillCounts() {
+		machine.reset();
+		machine.refill(productCounts, coinCounts);
+		return machine;
+	}
+
+}
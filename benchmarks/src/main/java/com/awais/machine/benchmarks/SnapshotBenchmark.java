@@ -0,0 +1,87 @@
+package com.awais.machine.benchmarks;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.awais.machine.Factory;
+import com.awais.machine.interfaces.impl.VendingMachineImpl;
+import com.awais.machine.snapshot.SnapshotCodec;
+import com.awais.machine.utils.Pair;
+
+/**
+ * Cost of saving and restoring the state of a fleet with the snapshot codec,
+ * per machine. The buffer is allocated once, so only the encoding is measured.
+ * 
+ * @author Awais Iqbal
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SnapshotBenchmark {
+
+	/**
+	 * Machines of the fleet
+	 */
+	static final int MACHINES = 1000;
+
+	@Param({ "false", "true" })
+	public boolean direct;
+
+	@Param({ "SPARSE", "TYPICAL", "RICH" })
+	public CoinStock coinStock;
+
+	private final SnapshotCodec codec = new SnapshotCodec();
+
+	private final List<VendingMachineImpl> machines = new ArrayList<>();
+
+	private ByteBuffer buffer;
+
+	@Setup
+	public void createFleet() {
+		for (int i = 0; i < MACHINES; i++) {
+			VendingMachineImpl machine = new VendingMachineImpl(Factory.createCashManager());
+			machine.refill(new Pair<>(new ArrayList<>(), coinStock.coins()));
+			machines.add(machine);
+		}
+		int size = (int) SnapshotCodec.sizeOf(MACHINES);
+		buffer = direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+		codec.writeAll(machines, buffer);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(MACHINES)
+	public ByteBuffer writeAll() {
+		buffer.clear();
+		codec.writeAll(machines, buffer);
+		return buffer;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(MACHINES)
+	public List<VendingMachineImpl> readAll() throws IOException {
+		buffer.flip();
+		codec.readAll(buffer, machines);
+		return machines;
+	}
+
+}
@@ -0,0 +1,97 @@
+package com.awais.machine.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.awais.machine.Factory;
+import com.awais.machine.interfaces.VendingMachine;
+import com.awais.machine.models.Coin;
+import com.awais.machine.models.Product;
+import com.awais.machine.utils.Pair;
+
+/**
+ * Transaction path of {@link VendingMachine}. A sale consumes products and
+ * coins, so every invocation runs the operation on a pool of {@link #POOL}
+ * fresh machines, one call per machine, and the pool is prepared again before
+ * the next invocation. An invocation lasts milliseconds, so the setup and the
+ * timer don't distort the time of the calls. The score is the time of one call.
+ * The preparation is not part of the measured time but its allocations are
+ * reported by the GC profiler, subtract the {@link #baseline(Blackhole)}
+ * allocation to get the bytes of the operation itself.
+ * 
+ * @author Awais Iqbal
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class VendingMachineBenchmark {
+
+	@Param({ "SPARSE", "TYPICAL", "RICH" })
+	public CoinStock coinStock;
+
+	@Param({ "EXACT", "SMALL_CHANGE", "LARGE_CHANGE" })
+	public Purchase purchase;
+
+	/**
+	 * Machines used by every invocation
+	 */
+	private static final int POOL = 4096;
+
+	private final VendingMachine[] machines = new VendingMachine[POOL];
+
+	@Setup(Level.Invocation)
+	public void prepareMachines() {
+		for (int i = 0; i < POOL; i++) {
+			VendingMachine machine = Factory.createVendingMachine();
+			machine.refill(new Pair<>(Purchase.oneOfEachProduct(), coinStock.coins()));
+			for (Coin coin : purchase.coins()) {
+				machine.addCoin(coin);
+			}
+			machines[i] = machine;
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(POOL)
+	public void baseline(Blackhole blackhole) {
+		for (VendingMachine machine : machines) {
+			blackhole.consume(machine);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(POOL)
+	public void selectProduct(Blackhole blackhole) throws Exception {
+		Product product = purchase.product();
+		for (VendingMachine machine : machines) {
+			blackhole.consume(machine.selectProduct(product));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(POOL)
+	public void cancelRequest(Blackhole blackhole) throws Exception {
+		for (VendingMachine machine : machines) {
+			blackhole.consume(machine.cancelRequest());
+		}
+	}
+
+}
@@ -1,10 +1,34 @@
 package com.awais.machine;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.awais.machine.actor.MachineExecutor;
+import com.awais.machine.batch.BatchEngine;
+import com.awais.machine.catalog.Catalog;
+import com.awais.machine.catalog.CatalogMachine;
+import com.awais.machine.events.EventRing;
 import com.awais.machine.interfaces.CashManager;
+import com.awais.machine.interfaces.ChangeStrategy;
+import com.awais.machine.interfaces.SessionVendingMachine;
 import com.awais.machine.interfaces.VendingMachine;
+import com.awais.machine.interfaces.impl.AdaptiveStrategy;
+import com.awais.machine.interfaces.impl.AtomicCashManager;
+import com.awais.machine.interfaces.impl.CachingStrategy;
 import com.awais.machine.interfaces.impl.CashManagerImpl;
 import com.awais.machine.interfaces.impl.ClassicStrategy;
+import com.awais.machine.interfaces.impl.ConcurrentVendingMachineImpl;
+import com.awais.machine.interfaces.impl.OptimalStrategy;
 import com.awais.machine.interfaces.impl.VendingMachineImpl;
+import com.awais.machine.journal.Journal;
+import com.awais.machine.journal.JournaledVendingMachine;
+import com.awais.machine.metrics.InMemoryMetrics;
+import com.awais.machine.metrics.MeteredCashManager;
+import com.awais.machine.metrics.MeteredVendingMachine;
+import com.awais.machine.metrics.MetricsRegistry;
 
 /**
  * Factory to create different instances of the machine.
@@ -31,6 +55,129 @@ public class Factory {
 		return new VendingMachineImpl(cashManager);
 	}
 
+	/**
+	 * This method creates a new instance of the vending machine giving the change
+	 * with the given strategy.
+	 * 
+	 * @param strategy Strategy used to calculate the change, e.g.
+	 *                 {@link ClassicStrategy} or {@link OptimalStrategy}
+	 * @return A new instance of a vending machine
+	 */
+	public static final VendingMachine createVendingMachine(ChangeStrategy strategy) {
+		CashManager cashManager = Factory.createCashManager(strategy);
+		return new VendingMachineImpl(cashManager);
+	}
+
+	/**
+	 * This method creates a new instance of the vending machine which can be used
+	 * from several threads at the same time, with a session for every purchase in
+	 * flight.
+	 * 
+	 * @return A new instance of a thread safe vending machine
+	 */
+	public static final SessionVendingMachine createConcurrentVendingMachine() {
+		return new ConcurrentVendingMachineImpl(Factory.createAtomicCashManager(), true);
+	}
+
+	/**
+	 * This method creates a new instance of the vending machine which can be used
+	 * from several threads at the same time, with a session for every purchase in
+	 * flight, giving the change with the given strategy. The strategy is not
+	 * thread safe, so the change is calculated under a lock.
+	 * 
+	 * @param strategy Strategy used to calculate the change
+	 * @return A new instance of a thread safe vending machine
+	 */
+	public static final SessionVendingMachine createConcurrentVendingMachine(ChangeStrategy strategy) {
+		return new ConcurrentVendingMachineImpl(Factory.createCashManager(strategy));
+	}
+
+	/**
+	 * This method creates a new instance of the vending machine publishing the
+	 * latency and the outcome of its operations, its stocks and the change given
+	 * in the given registry.
+	 * 
+	 * @param registry Registry of the metrics, e.g. {@link InMemoryMetrics}
+	 * @return A new instance of a metered vending machine
+	 */
+	public static final VendingMachine createMeteredVendingMachine(MetricsRegistry registry) {
+		CashManager cashManager = new MeteredCashManager(Factory.createCashManager(), registry);
+		return new MeteredVendingMachine(new VendingMachineImpl(cashManager), registry);
+	}
+
+	/**
+	 * This method creates a vending machine which records every operation in the
+	 * given directory, restoring the state saved there by a previous instance.
+	 * 
+	 * @param directory Directory of the journal and the snapshots
+	 * @return A vending machine to be closed once it is not used anymore
+	 * @throws IOException When the saved state can't be read
+	 */
+	public static final JournaledVendingMachine createJournaledVendingMachine(Path directory) throws IOException {
+		Files.createDirectories(directory);
+		Journal journal = new Journal(directory.resolve("journal.log"), 64, 10);
+		try {
+			return new JournaledVendingMachine(new VendingMachineImpl(Factory.createCashManager()), journal,
+					directory.resolve("snapshot.bin"), 100_000);
+		} catch (IOException | RuntimeException e) {
+			journal.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * This method creates an engine applying batches of events to a new instance
+	 * of the vending machine.
+	 * 
+	 * @return A new batch engine
+	 */
+	public static final BatchEngine createBatchEngine() {
+		return new BatchEngine(new VendingMachineImpl(Factory.createCashManager()));
+	}
+
+	/**
+	 * This method creates a new instance of the vending machine publishing its
+	 * state transitions, including the change dispensed, in the given ring.
+	 * 
+	 * @param events Ring of the events, written by the thread using the machine
+	 * @return A new instance of a vending machine
+	 */
+	public static final VendingMachine createVendingMachine(EventRing events) {
+		CashManagerImpl cashManager = new CashManagerImpl(new ClassicStrategy());
+		cashManager.setEvents(events);
+		VendingMachineImpl machine = new VendingMachineImpl(cashManager);
+		machine.setEvents(events);
+		return machine;
+	}
+
+	/**
+	 * This method creates a new machine selling the products of the catalog in
+	 * the given file.
+	 * 
+	 * @param catalogFile File of the catalog, see {@link Catalog}
+	 * @return A new catalog machine
+	 * @throws IOException When the catalog can't be read
+	 */
+	public static final CatalogMachine createCatalogMachine(Path catalogFile) throws IOException {
+		return new CatalogMachine(Catalog.load(catalogFile));
+	}
+
+	/**
+	 * This method creates a fleet of machines, each one owned by one of the given
+	 * number of worker threads.
+	 * 
+	 * @param machines Number of machines
+	 * @param workers  Number of worker threads
+	 * @return A new executor of the machines
+	 */
+	public static final MachineExecutor createMachineExecutor(int machines, int workers) {
+		List<VendingMachine> fleet = new ArrayList<>();
+		for (int i = 0; i < machines; i++) {
+			fleet.add(createVendingMachine());
+		}
+		return new MachineExecutor(fleet, workers);
+	}
+
 	/**
 	 * This method creates a new instance of the Cash Manager.
 	 * 
@@ -40,4 +187,59 @@ public class Factory {
 		return new CashManagerImpl(new ClassicStrategy());
 	}
 
+	/**
+	 * This method creates a new instance of the Cash Manager using the given
+	 * strategy to calculate the change.
+	 * 
+	 * @param strategy Strategy used to calculate the change
+	 * @return A new instance of a cash manager
+	 */
+	public static final CashManager createCashManager(ChangeStrategy strategy) {
+		return new CashManagerImpl(strategy);
+	}
+
+	/**
+	 * This method creates a new instance of a Cash Manager which can be used from
+	 * several threads at the same time without locks.
+	 * 
+	 * @return A new instance of a thread safe cash manager
+	 */
+	public static final CashManager createAtomicCashManager() {
+		return new AtomicCashManager(ClassicStrategy::new);
+	}
+
+	/**
+	 * This method creates the strategy which gives the change with the fewest
+	 * coins available.
+	 * 
+	 * @return A new instance of the optimal change strategy
+	 */
+	public static final ChangeStrategy createOptimalStrategy() {
+		return new OptimalStrategy();
+	}
+
+	/**
+	 * This method creates the strategy which gives the change with the fewest
+	 * coins available, taking the greedy walk when it is proved optimal.
+	 * 
+	 * @return A new instance of the adaptive change strategy
+	 */
+	public static final AdaptiveStrategy createAdaptiveStrategy() {
+		return new AdaptiveStrategy();
+	}
+
+	/**
+	 * This method wraps the given strategy with a cache of the last change plans.
+	 * Unlike the stateless strategies, the cache must not be shared between
+	 * threads: create one for every machine, or a supplier creating one for every
+	 * thread of an {@link AtomicCashManager}.
+	 * 
+	 * @param strategy Strategy used when the plan is not cached, not shared with
+	 *                 other threads either
+	 * @return A new instance of the caching strategy
+	 */
+	public static final CachingStrategy createCachingStrategy(ChangeStrategy strategy) {
+		return new CachingStrategy(strategy, 256);
+	}
+
 }
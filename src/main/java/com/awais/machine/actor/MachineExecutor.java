@@ -0,0 +1,286 @@
+package com.awais.machine.actor;
+
+import java.io.Closeable;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.LockSupport;
+
+import com.awais.machine.interfaces.VendingMachine;
+import com.awais.machine.models.Coin;
+import com.awais.machine.models.Product;
+import com.awais.machine.utils.Pair;
+
+/**
+ * Runs the operations of a fleet of machines on a fixed set of workers, each
+ * machine being owned by a single worker.
+ *
+ * The machine with index i belongs to the worker i modulo the workers, which
+ * is the only thread ever using it, so the machines don't need locks nor to be
+ * thread safe. Any thread submits a command through the lock-free queue of the
+ * owning worker and gets a {@link CompletableFuture} of its outcome. The
+ * worker takes all the commands queued at once, one after the other in the
+ * order they were queued, and parks when its queue is empty. The failures of
+ * the machine, like a sold out product, complete the future exceptionally.
+ *
+ * The futures are completed by the workers, so the actions chained to them
+ * without an executor run on the worker and delay the next commands. A command
+ * submitted while or after closing either runs or has its future completed
+ * with a {@link RejectedExecutionException}, it is never left pending.
+ *
+ * @author Awais Iqbal
+ *
+ */
+public class MachineExecutor implements Closeable {
+
+	/**
+	 * Machines run, a machine is referred to by its index
+	 */
+	private final List<? extends VendingMachine> machines;
+
+	private final Worker[] workers;
+
+	private volatile boolean running = true;
+
+	/**
+	 * True once the workers have exited, the commands queued from then on are
+	 * rejected by the thread queuing them
+	 */
+	private volatile boolean terminated;
+
+	/**
+	 * Start the workers of the given machines
+	 *
+	 * @param machines    Machines run, not used by any other thread from now on
+	 * @param workerCount Number of worker threads
+	 */
+	public MachineExecutor(List<? extends VendingMachine> machines, int workerCount) {
+		if (workerCount < 1) {
+			throw new IllegalArgumentException("At least one worker is needed");
+		}
+		this.machines = machines;
+		this.workers = new Worker[workerCount];
+		for (int i = 0; i < workerCount; i++) {
+			workers[i] = new Worker("vending-worker-" + i);
+		}
+		for (Worker worker : workers) {
+			worker.thread.start();
+		}
+	}
+
+	/**
+	 * Number of machines run
+	 *
+	 * @return Machines of the executor
+	 */
+	public int size() {
+		return machines.size();
+	}
+
+	/**
+	 * Run a command on the owner of a machine
+	 *
+	 * @param machine Index of the machine
+	 * @param command Command to be run with the machine
+	 * @return Future of the outcome of the command
+	 */
+	public <T> CompletableFuture<T> submit(int machine, MachineCommand<T> command) {
+		if (machine < 0 || machine >= machines.size()) {
+			throw new IndexOutOfBoundsException("No machine " + machine);
+		}
+		CompletableFuture<T> future = new CompletableFuture<>();
+		if (!running) {
+			future.completeExceptionally(new RejectedExecutionException("The executor is closed"));
+			return future;
+		}
+		Worker worker = workers[machine % workers.length];
+		worker.submit(new Task<>(machine, command, future));
+		// Closed meanwhile, the worker may have exited before seeing the command.
+		// Either this check sees the flag or the rejection in close sees the command.
+		if (terminated) {
+			worker.reject();
+		}
+		return future;
+	}
+
+	public CompletableFuture<Void> addCoin(int machine, Coin coin) {
+		return submit(machine, m -> {
+			m.addCoin(coin);
+			return null;
+		});
+	}
+
+	public CompletableFuture<Pair<Product, Collection<Coin>>> selectProduct(int machine, Product product) {
+		return submit(machine, m -> m.selectProduct(product));
+	}
+
+	public CompletableFuture<Collection<Coin>> cancelRequest(int machine) {
+		return submit(machine, VendingMachine::cancelRequest);
+	}
+
+	/**
+	 * Refill a machine, the counts must not be changed until the future is
+	 * completed
+	 *
+	 * @param machine       Index of the machine
+	 * @param productCounts Units of every product, indexed by the ordinal of the
+	 *                      product
+	 * @param coinCounts    Coins of every type, indexed by the ordinal of the coin
+	 * @return Future completed once refilled
+	 */
+	public CompletableFuture<Void> refill(int machine, int[] productCounts, int[] coinCounts) {
+		return submit(machine, m -> {
+			m.refill(productCounts, coinCounts);
+			return null;
+		});
+	}
+
+	/**
+	 * Stop the workers once they have run the commands already queued, the
+	 * commands which race with the close and are queued too late are rejected
+	 */
+	@Override
+	public void close() {
+		running = false;
+		for (Worker worker : workers) {
+			LockSupport.unpark(worker.thread);
+		}
+		boolean interrupted = false;
+		for (Worker worker : workers) {
+			while (worker.thread.isAlive()) {
+				try {
+					worker.thread.join();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		}
+		terminated = true;
+		for (Worker worker : workers) {
+			worker.reject();
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Operation run with a machine on its owning worker
+	 *
+	 * @param <T> Type of the outcome
+	 */
+	@FunctionalInterface
+	public interface MachineCommand<T> {
+
+		/**
+		 * Run the operation
+		 *
+		 * @param machine Machine of the command
+		 * @return Outcome of the operation
+		 * @throws Exception When the operation fails, completing the future
+		 *                   exceptionally
+		 */
+		T apply(VendingMachine machine) throws Exception;
+	}
+
+	/**
+	 * Command queued with the future of its outcome
+	 */
+	private static final class Task<T> {
+
+		private final int machine;
+
+		private final MachineCommand<T> command;
+
+		private final CompletableFuture<T> future;
+
+		private Task(int machine, MachineCommand<T> command, CompletableFuture<T> future) {
+			this.machine = machine;
+			this.command = command;
+			this.future = future;
+		}
+
+		private void run(VendingMachine vendingMachine) {
+			try {
+				future.complete(command.apply(vendingMachine));
+			} catch (Throwable e) {
+				future.completeExceptionally(e);
+			}
+		}
+	}
+
+	/**
+	 * Thread owning some machines and its queue of commands
+	 */
+	private final class Worker implements Runnable {
+
+		private final MpscQueue<Task<?>> queue = new MpscQueue<>();
+
+		private final Thread thread;
+
+		/**
+		 * True while the worker is about to park or parked, so the producers know
+		 * they must wake it up
+		 */
+		private volatile boolean parked;
+
+		private Worker(String name) {
+			this.thread = new Thread(this, name);
+			thread.setDaemon(true);
+		}
+
+		private void submit(Task<?> task) {
+			queue.offer(task);
+			if (parked) {
+				LockSupport.unpark(thread);
+			}
+		}
+
+		@Override
+		public void run() {
+			while (running) {
+				if (!drain()) {
+					parked = true;
+					// Check again, a command queued before the flag was seen would
+					// not wake the worker
+					if (queue.isEmpty() && running) {
+						LockSupport.park(this);
+					}
+					parked = false;
+				}
+			}
+			drain();
+		}
+
+		/**
+		 * Run all the commands queued
+		 *
+		 * @return False when the queue was empty
+		 */
+		private boolean drain() {
+			Task<?> task = queue.poll();
+			if (task == null) {
+				return false;
+			}
+			do {
+				task.run(machines.get(task.machine));
+				task = queue.poll();
+			} while (task != null);
+			return true;
+		}
+
+		/**
+		 * Complete exceptionally the commands left in the queue once the thread has
+		 * exited. The threads rejecting take turns as the only consumer of the
+		 * queue.
+		 */
+		private synchronized void reject() {
+			Task<?> task;
+			while ((task = queue.poll()) != null) {
+				task.future.completeExceptionally(new RejectedExecutionException("The executor is closed"));
+			}
+		}
+	}
+
+}
@@ -0,0 +1,83 @@
+package com.awais.machine.actor;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Unbounded lock-free queue with many producers and a single consumer.
+ * 
+ * The elements are kept in a linked list of nodes. A producer swaps the tail
+ * with its node in a single atomic step and then links the previous tail to
+ * it, so producers never wait for each other. The consumer follows the links
+ * from a stub node and is the only one moving the head, so it needs no atomic
+ * operation. Between the swap and the link the new element can't be seen yet,
+ * the consumer then finds the queue empty.
+ * 
+ * @author Awais Iqbal
+ *
+ * @param <E> Type of the elements
+ */
+final class MpscQueue<E> {
+
+	/**
+	 * Last node added, swapped by the producers
+	 */
+	private final AtomicReference<Node<E>> tail;
+
+	/**
+	 * Node before the first element, only used by the consumer
+	 */
+	private Node<E> head;
+
+	MpscQueue() {
+		Node<E> stub = new Node<>(null);
+		this.head = stub;
+		this.tail = new AtomicReference<>(stub);
+	}
+
+	/**
+	 * Add an element, from any thread
+	 * 
+	 * @param element Element to be added, not null
+	 */
+	void offer(E element) {
+		Node<E> node = new Node<>(element);
+		tail.getAndSet(node).next = node;
+	}
+
+	/**
+	 * Take the first element, only from the consumer thread
+	 * 
+	 * @return The first element, or null when the queue looks empty
+	 */
+	E poll() {
+		Node<E> next = head.next;
+		if (next == null) {
+			return null;
+		}
+		E element = next.element;
+		next.element = null;
+		head = next;
+		return element;
+	}
+
+	/**
+	 * Check if an element can be taken, only from the consumer thread
+	 * 
+	 * @return True when no element is linked yet
+	 */
+	boolean isEmpty() {
+		return head.next == null;
+	}
+
+	private static final class Node<E> {
+
+		private E element;
+
+		private volatile Node<E> next;
+
+		private Node(E element) {
+			this.element = element;
+		}
+	}
+
+}
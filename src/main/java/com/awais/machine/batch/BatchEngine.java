@@ -0,0 +1,129 @@
+package com.awais.machine.batch;
+
+import java.nio.IntBuffer;
+
+import com.awais.machine.interfaces.impl.VendingMachineImpl;
+import com.awais.machine.models.Change;
+import com.awais.machine.models.SelectionResult;
+import com.awais.machine.utils.Coins;
+import com.awais.machine.utils.Products;
+
+/**
+ * Applies a batch of events encoded by {@link BatchEvents} to one machine in a
+ * single loop, writing the outcome of every event in a {@link BatchResult}.
+ * 
+ * The events go through the exception free methods of
+ * {@link VendingMachineImpl}, so the state of the machine and the outcomes are
+ * the same as calling the machine one event at a time. A successful selection
+ * or cancel doesn't allocate. A malformed event, with an unknown type or an
+ * ordinal out of range, is rejected on its own and the rest of the batch is
+ * still applied. An instance must not be shared between threads.
+ * 
+ * @author Awais Iqbal
+ *
+ */
+public class BatchEngine {
+
+	private final VendingMachineImpl machine;
+
+	/**
+	 * Holder of the change, reused for every event
+	 */
+	private final Change change = new Change();
+
+	/**
+	 * Counts of a refill, reused for every event and cleared after use
+	 */
+	private final int[] productCounts = new int[Products.COUNT];
+
+	private final int[] coinCounts = new int[Coins.COUNT];
+
+	public BatchEngine(VendingMachineImpl machine) {
+		this.machine = machine;
+	}
+
+	/**
+	 * Apply the given range of events, appending their outcomes to the result
+	 * 
+	 * @param events Encoded events
+	 * @param from   Index of the first event, inclusive
+	 * @param to     Index of the last event, exclusive
+	 * @param result Output of the batch
+	 */
+	public void apply(final int[] events, final int from, final int to, final BatchResult result) {
+		result.ensureRemaining(to - from);
+		for (int i = from; i < to; i++) {
+			apply(events[i], result);
+		}
+	}
+
+	/**
+	 * Apply the remaining events of the given buffer, appending their outcomes to
+	 * the result
+	 * 
+	 * @param events Encoded events, read up to the limit
+	 * @param result Output of the batch
+	 */
+	public void apply(final IntBuffer events, final BatchResult result) {
+		result.ensureRemaining(events.remaining());
+		while (events.hasRemaining()) {
+			apply(events.get(), result);
+		}
+	}
+
+	/**
+	 * The machine the events are applied to
+	 * 
+	 * @return The machine of this engine
+	 */
+	public VendingMachineImpl getMachine() {
+		return machine;
+	}
+
+	private void apply(final int event, final BatchResult result) {
+		int type = BatchEvents.typeOf(event);
+		int item = BatchEvents.itemOf(event);
+		if (!BatchEvents.isValid(type, item)) {
+			result.add(SelectionResult.REJECTED);
+			return;
+		}
+		switch (type) {
+		case BatchEvents.ADD_COIN:
+			machine.addCoin(Coins.ALL[item]);
+			result.add(SelectionResult.APPLIED);
+			break;
+		case BatchEvents.SELECT_PRODUCT:
+			SelectionResult sold = machine.trySelectProduct(Products.ALL[item], change);
+			if (sold == SelectionResult.SOLD) {
+				result.add(sold, change);
+			} else {
+				result.add(sold);
+			}
+			break;
+		case BatchEvents.CANCEL_REQUEST:
+			if (machine.tryCancelRequest(change)) {
+				result.add(SelectionResult.APPLIED, change);
+			} else {
+				result.add(SelectionResult.NOT_ENOUGH_CHANGE);
+			}
+			break;
+		case BatchEvents.REFILL_PRODUCT:
+			productCounts[item] = BatchEvents.countOf(event);
+			machine.refill(productCounts, coinCounts);
+			productCounts[item] = 0;
+			result.add(SelectionResult.APPLIED);
+			break;
+		case BatchEvents.REFILL_COIN:
+			coinCounts[item] = BatchEvents.countOf(event);
+			machine.refill(productCounts, coinCounts);
+			coinCounts[item] = 0;
+			result.add(SelectionResult.APPLIED);
+			break;
+		case BatchEvents.RESET:
+			machine.reset();
+			result.add(SelectionResult.APPLIED);
+			break;
+		}
+	}
+
+}
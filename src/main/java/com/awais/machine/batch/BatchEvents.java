@@ -0,0 +1,148 @@
+package com.awais.machine.batch;
+
+import com.awais.machine.models.Coin;
+import com.awais.machine.models.Product;
+import com.awais.machine.utils.Coins;
+import com.awais.machine.utils.Products;
+
+/**
+ * Encoding of the events processed by the {@link BatchEngine}. Every event is a
+ * single int: the type in the highest 4 bits, the ordinal of the coin or the
+ * product in the next 4 bits and a count in the lowest 24 bits.
+ * 
+ * @author Awais Iqbal
+ *
+ */
+public final class BatchEvents {
+
+	/** A coin inserted */
+	public static final int ADD_COIN = 1;
+
+	/** A product selected */
+	public static final int SELECT_PRODUCT = 2;
+
+	/** The request cancelled */
+	public static final int CANCEL_REQUEST = 3;
+
+	/** Units of a product refilled */
+	public static final int REFILL_PRODUCT = 4;
+
+	/** Coins of a type refilled */
+	public static final int REFILL_COIN = 5;
+
+	/** The machine reset */
+	public static final int RESET = 6;
+
+	private static final int TYPE_SHIFT = 28;
+
+	private static final int ITEM_SHIFT = 24;
+
+	private static final int ITEM_MASK = 0xF;
+
+	/**
+	 * Biggest count of a refill event
+	 */
+	public static final int MAX_COUNT = (1 << ITEM_SHIFT) - 1;
+
+	/**
+	 * Private constructor
+	 */
+	private BatchEvents() {
+
+	}
+
+	public static int addCoin(Coin coin) {
+		return encode(ADD_COIN, coin.ordinal(), 0);
+	}
+
+	public static int selectProduct(Product product) {
+		return encode(SELECT_PRODUCT, product.ordinal(), 0);
+	}
+
+	public static int cancelRequest() {
+		return encode(CANCEL_REQUEST, 0, 0);
+	}
+
+	public static int refillProduct(Product product, int count) {
+		return encode(REFILL_PRODUCT, product.ordinal(), count);
+	}
+
+	public static int refillCoin(Coin coin, int count) {
+		return encode(REFILL_COIN, coin.ordinal(), count);
+	}
+
+	public static int reset() {
+		return encode(RESET, 0, 0);
+	}
+
+	/**
+	 * Type of the given event
+	 * 
+	 * @param event Encoded event
+	 * @return One of the type constants of this class
+	 */
+	public static int typeOf(int event) {
+		return event >>> TYPE_SHIFT;
+	}
+
+	/**
+	 * Ordinal of the coin or the product of the given event
+	 * 
+	 * @param event Encoded event
+	 * @return Ordinal of the item
+	 */
+	public static int itemOf(int event) {
+		return (event >>> ITEM_SHIFT) & ITEM_MASK;
+	}
+
+	/**
+	 * Count of the given refill event
+	 * 
+	 * @param event Encoded event
+	 * @return Units refilled
+	 */
+	public static int countOf(int event) {
+		return event & MAX_COUNT;
+	}
+
+	/**
+	 * Check that the type of an event is known and that its item is a coin or a
+	 * product, as the type needs
+	 * 
+	 * @param type Type of the event
+	 * @param item Ordinal of the item
+	 * @return False when the type is unknown or the ordinal is out of range
+	 */
+	public static boolean isValid(int type, int item) {
+		switch (type) {
+		case ADD_COIN:
+		case REFILL_COIN:
+			return item < Coins.COUNT;
+		case SELECT_PRODUCT:
+		case REFILL_PRODUCT:
+			return item < Products.COUNT;
+		case CANCEL_REQUEST:
+		case RESET:
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * Encode an event of any type, also used by the protocols extending these
+	 * events with their own types
+	 * 
+	 * @param type  Type of the event, from 0 to 15
+	 * @param item  Ordinal of the coin or the product, from 0 to 15
+	 * @param count Count of the event
+	 * @return Encoded event
+	 */
+	public static int encode(int type, int item, int count) {
+		if (count < 0 || count > MAX_COUNT) {
+			throw new IllegalArgumentException("The count must be between 0 and " + MAX_COUNT);
+		}
+		return type << TYPE_SHIFT | item << ITEM_SHIFT | count;
+	}
+
+}
@@ -0,0 +1,168 @@
+package com.awais.machine.batch;
+
+import java.util.Arrays;
+
+import com.awais.machine.models.Change;
+import com.awais.machine.models.Coin;
+import com.awais.machine.models.SelectionResult;
+import com.awais.machine.utils.Coins;
+
+/**
+ * Output of the {@link BatchEngine}, stored by columns: the outcome of every
+ * event and, for every coin, the number of those coins returned by every event.
+ * It is meant to be reused between batches.
+ * 
+ * The outcome of a selection is its {@link SelectionResult}. A cancel is
+ * {@link SelectionResult#APPLIED} when the money was returned and
+ * {@link SelectionResult#NOT_ENOUGH_CHANGE} otherwise, the other events are
+ * {@link SelectionResult#APPLIED}. A malformed event is
+ * {@link SelectionResult#REJECTED} and doesn't change the machine.
+ * 
+ * @author Awais Iqbal
+ *
+ */
+public class BatchResult {
+
+	/**
+	 * Outcomes by ordinal
+	 */
+	private static final SelectionResult[] RESULTS = SelectionResult.values();
+
+	/**
+	 * Ordinal of the outcome of every event
+	 */
+	private byte[] results;
+
+	/**
+	 * Coins returned by every event, indexed by the ordinal of the coin and the
+	 * event
+	 */
+	private final int[][] changeCounts = new int[Coins.COUNT][];
+
+	/**
+	 * Number of events stored
+	 */
+	private int size;
+
+	public BatchResult(int capacity) {
+		results = new byte[capacity];
+		for (int i = 0; i < Coins.COUNT; i++) {
+			changeCounts[i] = new int[capacity];
+		}
+	}
+
+	/**
+	 * Number of events stored
+	 * 
+	 * @return Events processed since the last {@link #clear()}
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Outcome of the given event
+	 * 
+	 * @param event Index of the event in the batch
+	 * @return Outcome of the event
+	 */
+	public SelectionResult getResult(int event) {
+		checkIndex(event);
+		return RESULTS[results[event]];
+	}
+
+	/**
+	 * Coins of the given type returned by the given event
+	 * 
+	 * @param event Index of the event in the batch
+	 * @param coin  Coin to check
+	 * @return Number of coins returned
+	 */
+	public int getChangeCount(int event, Coin coin) {
+		checkIndex(event);
+		return changeCounts[coin.ordinal()][event];
+	}
+
+	/**
+	 * Value of the coins returned by the given event
+	 * 
+	 * @param event Index of the event in the batch
+	 * @return Value in cents
+	 */
+	public long getChangeValue(int event) {
+		checkIndex(event);
+		long value = 0;
+		for (int i = 0; i < Coins.COUNT; i++) {
+			value += changeCounts[i][event] * Coins.ALL[i].getValue();
+		}
+		return value;
+	}
+
+	/**
+	 * Column of the coins of the given type returned by every event, valid up to
+	 * {@link #size()}
+	 * 
+	 * @param coin Coin to check
+	 * @return The column itself, not a copy
+	 */
+	public int[] getChangeColumn(Coin coin) {
+		return changeCounts[coin.ordinal()];
+	}
+
+	/**
+	 * Discard all the events stored
+	 */
+	public void clear() {
+		size = 0;
+	}
+
+	/**
+	 * Make room for the given number of events more
+	 * 
+	 * @param events Events to be added
+	 */
+	void ensureRemaining(int events) {
+		int needed = size + events;
+		if (needed > results.length) {
+			int capacity = Math.max(needed, results.length * 2);
+			results = Arrays.copyOf(results, capacity);
+			for (int i = 0; i < Coins.COUNT; i++) {
+				changeCounts[i] = Arrays.copyOf(changeCounts[i], capacity);
+			}
+		}
+	}
+
+	/**
+	 * Store an event which didn't return any coin
+	 * 
+	 * @param result Outcome of the event
+	 */
+	void add(SelectionResult result) {
+		int event = size++;
+		results[event] = (byte) result.ordinal();
+		for (int i = 0; i < Coins.COUNT; i++) {
+			changeCounts[i][event] = 0;
+		}
+	}
+
+	/**
+	 * Store an event which returned the given coins
+	 * 
+	 * @param result Outcome of the event
+	 * @param change Coins returned
+	 */
+	void add(SelectionResult result, Change change) {
+		int event = size++;
+		results[event] = (byte) result.ordinal();
+		for (int i = 0; i < Coins.COUNT; i++) {
+			changeCounts[i][event] = change.getCount(Coins.ALL[i]);
+		}
+	}
+
+	private void checkIndex(int event) {
+		if (event < 0 || event >= size) {
+			throw new IndexOutOfBoundsException("Event " + event + " of " + size);
+		}
+	}
+
+}
@@ -0,0 +1,312 @@
+package com.awais.machine.catalog;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.awais.machine.models.Coin;
+import com.awais.machine.models.Product;
+import com.awais.machine.utils.Coins;
+import com.awais.machine.utils.Products;
+
+/**
+ * Products and coins accepted by a machine, loaded at runtime instead of being
+ * fixed by the {@link Product} and {@link Coin} enums.
+ *
+ * Products and denominations get dense ids from 0, so the stocks of a machine
+ * are arrays indexed by id. The denominations are sorted from the biggest to the
+ * smallest value, the order the change strategies walk them. Products are also
+ * found by the slot of the machine they are in, with a table indexed by slot.
+ *
+ * The file has one entry per line, blank lines and lines starting with # are
+ * ignored:
+ *
+ * <pre>
+ * currency EUR
+ * coins 200 100 50 20 10 5
+ * product &lt;slot&gt; &lt;price&gt; &lt;name&gt;
+ * </pre>
+ *
+ * The coin values and the prices are in the smallest unit of the currency.
+ *
+ * @author Awais Iqbal
+ *
+ */
+public final class Catalog {
+
+	/**
+	 * Biggest slot number accepted, keeping the slot table small
+	 */
+	public static final int MAX_SLOT = 4095;
+
+	/**
+	 * Marks a slot without product
+	 */
+	public static final int NO_PRODUCT = -1;
+
+	private final String currency;
+
+	/**
+	 * Value of every denomination, from the biggest to the smallest
+	 */
+	private final long[] denominations;
+
+	private final String[] productNames;
+
+	private final long[] productPrices;
+
+	/**
+	 * Slot of every product, indexed by product id
+	 */
+	private final int[] slots;
+
+	/**
+	 * Product id in every slot, {@link #NO_PRODUCT} for the empty ones
+	 */
+	private final int[] productBySlot;
+
+	/**
+	 * Create a catalog, the arrays are indexed by id and copied
+	 *
+	 * @param currency      Code of the currency
+	 * @param denominations Value of every coin accepted, in any order
+	 * @param productNames  Name of every product
+	 * @param productPrices Price of every product
+	 * @param slots         Slot of every product
+	 */
+	public Catalog(String currency, long[] denominations, String[] productNames, long[] productPrices,
+			int[] slots) {
+		if (productNames.length != productPrices.length || productNames.length != slots.length) {
+			throw new IllegalArgumentException("Every product needs a name, a price and a slot");
+		}
+		this.currency = currency;
+		this.denominations = sortedDenominations(denominations);
+		this.productNames = productNames.clone();
+		this.productPrices = productPrices.clone();
+		this.slots = slots.clone();
+
+		int maxSlot = -1;
+		for (int product = 0; product < slots.length; product++) {
+			if (slots[product] < 0 || slots[product] > MAX_SLOT) {
+				throw new IllegalArgumentException("Slot " + slots[product] + " is out of range");
+			}
+			if (productPrices[product] <= 0) {
+				throw new IllegalArgumentException("Price of " + productNames[product] + " must be positive");
+			}
+			maxSlot = Math.max(maxSlot, slots[product]);
+		}
+		this.productBySlot = new int[maxSlot + 1];
+		Arrays.fill(productBySlot, NO_PRODUCT);
+		for (int product = 0; product < slots.length; product++) {
+			if (productBySlot[slots[product]] != NO_PRODUCT) {
+				throw new IllegalArgumentException("Slot " + slots[product] + " has two products");
+			}
+			productBySlot[slots[product]] = product;
+		}
+	}
+
+	/**
+	 * Catalog of the {@link Product} and {@link Coin} enums, the ids are the
+	 * ordinals and the slot of a product is its ordinal too
+	 *
+	 * @return The catalog of the enums
+	 */
+	public static Catalog defaults() {
+		Product[] products = Products.ALL;
+		String[] names = new String[products.length];
+		long[] prices = new long[products.length];
+		int[] slots = new int[products.length];
+		for (Product product : products) {
+			names[product.ordinal()] = product.getName();
+			prices[product.ordinal()] = product.getPrice();
+			slots[product.ordinal()] = product.ordinal();
+		}
+		Coin[] coins = Coins.ALL;
+		long[] denominations = new long[coins.length];
+		for (Coin coin : coins) {
+			denominations[coin.ordinal()] = coin.getValue();
+		}
+		return new Catalog("EUR", denominations, names, prices, slots);
+	}
+
+	/**
+	 * Load a catalog from the given file
+	 *
+	 * @param file File in UTF-8
+	 * @return The catalog
+	 * @throws IOException When the file can't be read or is malformed
+	 */
+	public static Catalog load(Path file) throws IOException {
+		try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			return read(reader);
+		}
+	}
+
+	/**
+	 * Read a catalog, the reader is not closed
+	 *
+	 * @param reader Text of the catalog
+	 * @return The catalog
+	 * @throws IOException When the text can't be read or is malformed
+	 */
+	public static Catalog read(Reader reader) throws IOException {
+		BufferedReader lines = reader instanceof BufferedReader ? (BufferedReader) reader
+				: new BufferedReader(reader);
+		String currency = null;
+		long[] denominations = null;
+		List<String> names = new ArrayList<>();
+		List<Long> prices = new ArrayList<>();
+		List<Integer> slots = new ArrayList<>();
+
+		int number = 0;
+		String line;
+		while ((line = lines.readLine()) != null) {
+			number++;
+			line = line.trim();
+			if (line.isEmpty() || line.startsWith("#")) {
+				continue;
+			}
+			String[] fields = line.split("\\s+", 4);
+			try {
+				switch (fields[0]) {
+				case "currency":
+					currency = field(fields, 1);
+					break;
+				case "coins":
+					String[] values = line.split("\\s+");
+					denominations = new long[values.length - 1];
+					for (int i = 1; i < values.length; i++) {
+						denominations[i - 1] = Long.parseLong(values[i]);
+					}
+					break;
+				case "product":
+					slots.add(Integer.valueOf(field(fields, 1)));
+					prices.add(Long.valueOf(field(fields, 2)));
+					names.add(field(fields, 3));
+					break;
+				default:
+					throw new IllegalArgumentException("Unknown entry " + fields[0]);
+				}
+			} catch (IllegalArgumentException e) {
+				throw new IOException("Line " + number + ": " + e.getMessage(), e);
+			}
+		}
+		if (currency == null || denominations == null) {
+			throw new IOException("The catalog needs a currency and its coins");
+		}
+
+		long[] productPrices = new long[prices.size()];
+		int[] productSlots = new int[slots.size()];
+		for (int i = 0; i < productPrices.length; i++) {
+			productPrices[i] = prices.get(i);
+			productSlots[i] = slots.get(i);
+		}
+		try {
+			return new Catalog(currency, denominations, names.toArray(new String[0]), productPrices, productSlots);
+		} catch (IllegalArgumentException e) {
+			throw new IOException(e.getMessage(), e);
+		}
+	}
+
+	public String getCurrency() {
+		return currency;
+	}
+
+	/**
+	 * Number of denominations, ids go from 0 to this value excluded
+	 *
+	 * @return Number of denominations
+	 */
+	public int getDenominationCount() {
+		return denominations.length;
+	}
+
+	/**
+	 * Value of a denomination, the ids are sorted from the biggest to the smallest
+	 * value
+	 *
+	 * @param denomination Id of the denomination
+	 * @return Value of the coin
+	 */
+	public long getDenomination(int denomination) {
+		return denominations[denomination];
+	}
+
+	/**
+	 * Number of products, ids go from 0 to this value excluded
+	 *
+	 * @return Number of products
+	 */
+	public int getProductCount() {
+		return productNames.length;
+	}
+
+	public String getProductName(int product) {
+		return productNames[product];
+	}
+
+	public long getProductPrice(int product) {
+		return productPrices[product];
+	}
+
+	public int getSlot(int product) {
+		return slots[product];
+	}
+
+	/**
+	 * Find the product of the given slot
+	 *
+	 * @param slot Slot of the machine
+	 * @return Id of the product, or {@link #NO_PRODUCT} when the slot is empty or
+	 *         out of range
+	 */
+	public int getProductAtSlot(int slot) {
+		return slot < 0 || slot >= productBySlot.length ? NO_PRODUCT : productBySlot[slot];
+	}
+
+	/**
+	 * Copy and sort the denominations from the biggest to the smallest
+	 *
+	 * @param denominations Value of every coin
+	 * @return The sorted values
+	 */
+	private static long[] sortedDenominations(long[] denominations) {
+		if (denominations.length == 0) {
+			throw new IllegalArgumentException("The catalog needs at least one coin");
+		}
+		long[] sorted = denominations.clone();
+		Arrays.sort(sorted);
+		for (int i = 0, j = sorted.length - 1; i < j; i++, j--) {
+			long value = sorted[i];
+			sorted[i] = sorted[j];
+			sorted[j] = value;
+		}
+		for (int i = 0; i < sorted.length; i++) {
+			if (sorted[i] <= 0 || (i > 0 && sorted[i] == sorted[i - 1])) {
+				throw new IllegalArgumentException("Coin values must be positive and different");
+			}
+		}
+		return sorted;
+	}
+
+	/**
+	 * Get a field of an entry
+	 *
+	 * @param fields Fields of the line
+	 * @param index  Index of the field
+	 * @return The field
+	 */
+	private static String field(String[] fields, int index) {
+		if (index >= fields.length) {
+			throw new IllegalArgumentException("Missing fields in " + fields[0]);
+		}
+		return fields[index];
+	}
+
+}
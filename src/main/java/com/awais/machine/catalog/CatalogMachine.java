@@ -0,0 +1,213 @@
+package com.awais.machine.catalog;
+
+import java.util.Arrays;
+
+import com.awais.machine.models.SelectionResult;
+import com.awais.machine.utils.ChangeSolver;
+import com.awais.machine.utils.CoinSystems;
+
+/**
+ * Vending machine selling the products of a {@link Catalog}. Products,
+ * denominations and slots are referred to by their ids, and both stocks are
+ * arrays indexed by id, so any number of slots and any currency are handled
+ * without maps nor recompiling.
+ *
+ * The change is given as the number of coins of every denomination, in an
+ * array indexed by denomination id. Below the greedy limit of the
+ * denominations (see {@link CoinSystems#greedyLimit(long...)}) it is planned
+ * from the biggest to the smallest denomination. Bigger amounts, and amounts
+ * the walk can't pay with the coins in stock, are planned by a
+ * {@link ChangeSolver}, so non canonical sets like 4, 3 and 1 still give 6 as
+ * two 3. The coins are taken only when the whole amount was planned.
+ *
+ * @author Awais Iqbal
+ *
+ */
+public class CatalogMachine {
+
+	private final Catalog catalog;
+
+	/**
+	 * Units of every product, indexed by product id
+	 */
+	private final int[] productsInStock;
+
+	/**
+	 * Coins of every denomination, indexed by denomination id
+	 */
+	private final int[] coinsInStock;
+
+	/**
+	 * Value of the currently provided coins
+	 */
+	private long insertedCoinsValue;
+
+	/**
+	 * Values of the denominations, indexed by denomination id
+	 */
+	private final long[] denominations;
+
+	/**
+	 * Smallest amount for which the walk over the denominations may not be optimal
+	 */
+	private final long greedyLimit;
+
+	/**
+	 * Solver of the amounts the walk can't plan, created at the first one
+	 */
+	private ChangeSolver solver;
+
+	public CatalogMachine(Catalog catalog) {
+		this.catalog = catalog;
+		this.productsInStock = new int[catalog.getProductCount()];
+		this.coinsInStock = new int[catalog.getDenominationCount()];
+		this.denominations = new long[catalog.getDenominationCount()];
+		for (int i = 0; i < denominations.length; i++) {
+			denominations[i] = catalog.getDenomination(i);
+		}
+		this.greedyLimit = CoinSystems.greedyLimit(denominations);
+	}
+
+	public Catalog getCatalog() {
+		return catalog;
+	}
+
+	/**
+	 * Add a coin in the machine
+	 *
+	 * @param denomination Id of the coin inserted
+	 */
+	public void addCoin(int denomination) {
+		coinsInStock[denomination]++;
+		insertedCoinsValue += catalog.getDenomination(denomination);
+	}
+
+	/**
+	 * Add units of a product
+	 *
+	 * @param product Id of the product
+	 * @param count   Units added
+	 */
+	public void refillProduct(int product, int count) {
+		productsInStock[product] += count;
+	}
+
+	/**
+	 * Add coins for change
+	 *
+	 * @param denomination Id of the coin
+	 * @param count        Coins added
+	 */
+	public void refillCoins(int denomination, int count) {
+		coinsInStock[denomination] += count;
+	}
+
+	/**
+	 * Select the product of a slot
+	 *
+	 * @param slot   Slot selected by the user
+	 * @param change Holder of the coins returned to the user, indexed by
+	 *               denomination id and cleared before use
+	 * @return Outcome of the selection
+	 */
+	public SelectionResult trySelectSlot(int slot, int[] change) {
+		Arrays.fill(change, 0);
+		int product = catalog.getProductAtSlot(slot);
+		if (product == Catalog.NO_PRODUCT) {
+			return SelectionResult.INVALID_PRODUCT;
+		}
+		if (productsInStock[product] < 1) {
+			return SelectionResult.SOLD_OUT;
+		}
+		long price = catalog.getProductPrice(product);
+		if (price > insertedCoinsValue) {
+			return SelectionResult.NOT_ENOUGH_MONEY;
+		}
+		if (!giveChange(insertedCoinsValue - price, change)) {
+			return SelectionResult.NOT_ENOUGH_CHANGE;
+		}
+		productsInStock[product]--;
+		insertedCoinsValue = 0;
+		return SelectionResult.SOLD;
+	}
+
+	/**
+	 * Return the inserted money
+	 *
+	 * @param change Holder of the coins returned to the user, indexed by
+	 *               denomination id and cleared before use
+	 * @return False when the machine don't have enough change to return the money
+	 */
+	public boolean tryCancel(int[] change) {
+		Arrays.fill(change, 0);
+		if (!giveChange(insertedCoinsValue, change)) {
+			return false;
+		}
+		insertedCoinsValue = 0;
+		return true;
+	}
+
+	public long getCurrentMoney() {
+		return insertedCoinsValue;
+	}
+
+	public int getProductCount(int product) {
+		return productsInStock[product];
+	}
+
+	public int getCoinCount(int denomination) {
+		return coinsInStock[denomination];
+	}
+
+	/**
+	 * Reset the stocks and the inserted money
+	 */
+	public void reset() {
+		Arrays.fill(productsInStock, 0);
+		Arrays.fill(coinsInStock, 0);
+		insertedCoinsValue = 0;
+	}
+
+	/**
+	 * Plan the change and take those coins from the stock when the whole amount is
+	 * planned
+	 *
+	 * @param moneyLeftToConvert Money to be converted in coins
+	 * @param change             Holder of the coins, already cleared
+	 * @return False when the stock don't have enough money to convert all the
+	 *         value, nothing is taken
+	 */
+	private boolean giveChange(long moneyLeftToConvert, int[] change) {
+		if (moneyLeftToConvert >= greedyLimit || !planGreedy(moneyLeftToConvert, change)) {
+			if (solver == null) {
+				solver = new ChangeSolver(denominations, moneyLeftToConvert);
+			}
+			if (!solver.solve(moneyLeftToConvert, coinsInStock, change)) {
+				Arrays.fill(change, 0);
+				return false;
+			}
+		}
+		for (int i = 0; i < coinsInStock.length; i++) {
+			coinsInStock[i] -= change[i];
+		}
+		return true;
+	}
+
+	/**
+	 * Plan the change from the biggest to the smallest denomination
+	 *
+	 * @param moneyLeftToConvert Money to be converted in coins
+	 * @param change             Holder of the coins, already cleared
+	 * @return False when the walk couldn't convert all the value
+	 */
+	private boolean planGreedy(long moneyLeftToConvert, int[] change) {
+		for (int i = 0; i < coinsInStock.length && moneyLeftToConvert > 0; i++) {
+			long value = denominations[i];
+			int taken = (int) Math.min(moneyLeftToConvert / value, coinsInStock[i]);
+			change[i] = taken;
+			moneyLeftToConvert -= taken * value;
+		}
+		return moneyLeftToConvert == 0;
+	}
+
+}
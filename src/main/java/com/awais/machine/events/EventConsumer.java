@@ -0,0 +1,19 @@
+package com.awais.machine.events;
+
+/**
+ * Receives the events of an {@link EventRing}, in the order they were
+ * published, on the thread running its {@link EventProcessor}.
+ * 
+ * @author Awais Iqbal
+ *
+ */
+public interface EventConsumer {
+
+	/**
+	 * Handle an event. The event is reused once this method returns.
+	 * 
+	 * @param event Event published by the machine
+	 */
+	public void onEvent(MachineEvent event);
+
+}
@@ -0,0 +1,96 @@
+package com.awais.machine.events;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Delivers the events of an {@link EventRing} to one consumer. It can run on
+ * its own thread, parking briefly while there are no new events, or be drained
+ * by the caller.
+ * 
+ * @author Awais Iqbal
+ *
+ */
+public class EventProcessor implements Runnable {
+
+	/**
+	 * Time parked by {@link #run()} when there are no new events
+	 */
+	private static final long IDLE_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+	private final EventRing ring;
+
+	private final EventConsumer consumer;
+
+	/**
+	 * Last sequence delivered to the consumer, read by the writer of the ring
+	 */
+	private final AtomicLong sequence;
+
+	private volatile boolean halted;
+
+	EventProcessor(EventRing ring, EventConsumer consumer, long sequence) {
+		this.ring = ring;
+		this.consumer = consumer;
+		this.sequence = new AtomicLong(sequence);
+	}
+
+	/**
+	 * Skip the events up to the given sequence, before the processor is run
+	 * 
+	 * @param sequence Last sequence not to be delivered
+	 */
+	void startAfter(long sequence) {
+		this.sequence.set(sequence);
+	}
+
+	/**
+	 * Deliver every event published and not delivered yet
+	 * 
+	 * @return Number of events delivered
+	 */
+	public int drain() {
+		long available = ring.lastPublished();
+		long next = sequence.get() + 1;
+		int delivered = 0;
+		for (; next <= available; next++) {
+			consumer.onEvent(ring.get(next));
+			// The slot can be reused once the sequence is visible
+			sequence.lazySet(next);
+			delivered++;
+		}
+		return delivered;
+	}
+
+	/**
+	 * Deliver the events until {@link #halt()} is called, then deliver the events
+	 * left
+	 */
+	@Override
+	public void run() {
+		while (!halted) {
+			if (drain() == 0) {
+				LockSupport.parkNanos(IDLE_NANOS);
+			}
+		}
+		drain();
+	}
+
+	/**
+	 * Stop {@link #run()}
+	 */
+	public void halt() {
+		halted = true;
+	}
+
+	/**
+	 * Last sequence delivered to the consumer
+	 * 
+	 * @return The sequence, -1 before the first event
+	 */
+	public long getSequence() {
+		return sequence.get();
+	}
+
+}
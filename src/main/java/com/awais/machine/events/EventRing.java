@@ -0,0 +1,301 @@
+package com.awais.machine.events;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.awais.machine.models.Change;
+import com.awais.machine.models.Coin;
+import com.awais.machine.models.Product;
+import com.awais.machine.utils.Coins;
+import com.awais.machine.utils.Products;
+
+/**
+ * Bounded ring of the events of one machine, written by a single thread and
+ * read by any number of {@link EventProcessor}.
+ * 
+ * The slots are allocated once and reused, so publishing an event doesn't
+ * allocate. The writer never waits: when the slowest processor is a whole ring
+ * behind, the new event is dropped and counted in {@link #getDropped()}, and
+ * the next event published tells how many were dropped before it, see
+ * {@link MachineEvent#getDroppedBefore()}. The publish methods must be called from one thread at a time, the thread using
+ * the machine.
+ * 
+ * @author Awais Iqbal
+ *
+ */
+public class EventRing {
+
+	private static final EventProcessor[] NO_PROCESSORS = new EventProcessor[0];
+
+	private final MachineEvent[] slots;
+
+	/**
+	 * Capacity minus one, the slot of a sequence is the sequence and this mask
+	 */
+	private final int mask;
+
+	/**
+	 * Sequence of the next event, only used by the writer
+	 */
+	private long nextSequence;
+
+	/**
+	 * Last sequence published, -1 before the first event
+	 */
+	private final AtomicLong published = new AtomicLong(-1);
+
+	/**
+	 * Lowest sequence consumed by every processor, cached by the writer so the
+	 * processors are only checked when the ring looks full or they change
+	 */
+	private long cachedConsumed = -1;
+
+	/**
+	 * Processors the cached sequence was computed from, only used by the writer
+	 */
+	private EventProcessor[] cachedProcessors = NO_PROCESSORS;
+
+	private final AtomicLong dropped = new AtomicLong();
+
+	/**
+	 * Events dropped since the last event published, only used by the writer
+	 */
+	private long droppedSincePublished;
+
+	/**
+	 * Processors reading the ring, replaced on every subscription
+	 */
+	private volatile EventProcessor[] processors = NO_PROCESSORS;
+
+	/**
+	 * Create an empty ring
+	 * 
+	 * @param capacity Number of events kept, a power of two
+	 */
+	public EventRing(int capacity) {
+		if (capacity < 1 || Integer.bitCount(capacity) != 1) {
+			throw new IllegalArgumentException("The capacity must be a power of two");
+		}
+		this.slots = new MachineEvent[capacity];
+		for (int i = 0; i < capacity; i++) {
+			slots[i] = new MachineEvent();
+		}
+		this.mask = capacity - 1;
+	}
+
+	/**
+	 * Add a consumer receiving the events published from now on. The returned
+	 * processor must be run, on its own thread or by calling
+	 * {@link EventProcessor#drain()}.
+	 * 
+	 * The processor holds the writer at the sequence published before it was
+	 * added, so the writer can't reuse a slot it will read whichever list of
+	 * processors it checked last. Once added, it moves to the last sequence
+	 * published, as the writer re-reads the processors on its next event.
+	 * 
+	 * @param consumer Consumer of the events
+	 * @return The processor delivering the events to the consumer
+	 */
+	public synchronized EventProcessor subscribe(EventConsumer consumer) {
+		EventProcessor processor = new EventProcessor(this, consumer, published.get());
+		EventProcessor[] current = processors;
+		EventProcessor[] updated = Arrays.copyOf(current, current.length + 1);
+		updated[current.length] = processor;
+		processors = updated;
+		processor.startAfter(published.get());
+		return processor;
+	}
+
+	/**
+	 * Remove a processor, the writer doesn't wait for it anymore
+	 * 
+	 * @param processor Processor to be removed
+	 */
+	public synchronized void unsubscribe(EventProcessor processor) {
+		EventProcessor[] current = processors;
+		for (int i = 0; i < current.length; i++) {
+			if (current[i] == processor) {
+				EventProcessor[] updated = new EventProcessor[current.length - 1];
+				System.arraycopy(current, 0, updated, 0, i);
+				System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+				processors = updated;
+				return;
+			}
+		}
+	}
+
+	public void coinInserted(Coin coin) {
+		MachineEvent event = claim(MachineEventType.COIN_INSERTED);
+		if (event != null) {
+			event.setCoin(coin);
+			event.setAmount(coin.getValue());
+			publish(event);
+		}
+	}
+
+	public void productVended(Product product) {
+		MachineEvent event = claim(MachineEventType.PRODUCT_VENDED);
+		if (event != null) {
+			event.setProduct(product);
+			event.setAmount(product.getPrice());
+			publish(event);
+		}
+	}
+
+	public void changeDispensed(Change change) {
+		MachineEvent event = claim(MachineEventType.CHANGE_DISPENSED);
+		if (event != null) {
+			for (Coin coin : Coins.ALL) {
+				event.addCoins(coin, change.getCount(coin));
+			}
+			event.setAmount(change.getValue());
+			publish(event);
+		}
+	}
+
+	public void refilled(Collection<Product> products, Collection<Coin> coins) {
+		MachineEvent event = claim(MachineEventType.REFILLED);
+		if (event != null) {
+			long amount = 0;
+			for (Product product : products) {
+				event.addProducts(product, 1);
+			}
+			for (Coin coin : coins) {
+				event.addCoins(coin, 1);
+				amount += coin.getValue();
+			}
+			event.setAmount(amount);
+			publish(event);
+		}
+	}
+
+	/**
+	 * Publish a refill given as counts
+	 * 
+	 * @param productCounts Units of every product, indexed by the ordinal of the
+	 *                      product
+	 * @param coinCounts    Coins of every type, indexed by the ordinal of the coin
+	 */
+	public void refilled(int[] productCounts, int[] coinCounts) {
+		MachineEvent event = claim(MachineEventType.REFILLED);
+		if (event != null) {
+			long amount = 0;
+			for (Product product : Products.ALL) {
+				event.addProducts(product, productCounts[product.ordinal()]);
+			}
+			for (Coin coin : Coins.ALL) {
+				event.addCoins(coin, coinCounts[coin.ordinal()]);
+				amount += coinCounts[coin.ordinal()] * coin.getValue();
+			}
+			event.setAmount(amount);
+			publish(event);
+		}
+	}
+
+	public void reset() {
+		MachineEvent event = claim(MachineEventType.RESET);
+		if (event != null) {
+			publish(event);
+		}
+	}
+
+	public void cancelled(long amount) {
+		MachineEvent event = claim(MachineEventType.CANCELLED);
+		if (event != null) {
+			event.setAmount(amount);
+			publish(event);
+		}
+	}
+
+	/**
+	 * Number of events dropped because the ring was full
+	 * 
+	 * @return Events dropped
+	 */
+	public long getDropped() {
+		return dropped.get();
+	}
+
+	/**
+	 * Number of events published, not counting the dropped ones
+	 * 
+	 * @return Events published
+	 */
+	public long getPublished() {
+		return published.get() + 1;
+	}
+
+	public int getCapacity() {
+		return slots.length;
+	}
+
+	/**
+	 * Last sequence published, read by the processors
+	 * 
+	 * @return Sequence of the last event, -1 before the first one
+	 */
+	long lastPublished() {
+		return published.get();
+	}
+
+	/**
+	 * Slot of the given sequence
+	 * 
+	 * @param sequence Sequence already published
+	 * @return The event
+	 */
+	MachineEvent get(long sequence) {
+		return slots[(int) sequence & mask];
+	}
+
+	/**
+	 * Take the next slot if every processor already read its previous event
+	 * 
+	 * @param type Type of the new event
+	 * @return The slot, or null when the ring is full and the event is dropped
+	 */
+	private MachineEvent claim(MachineEventType type) {
+		long sequence = nextSequence;
+		long wrapPoint = sequence - slots.length;
+		EventProcessor[] current = processors;
+		if (cachedConsumed < wrapPoint || current != cachedProcessors) {
+			cachedProcessors = current;
+			cachedConsumed = lowestConsumed(current);
+			if (cachedConsumed < wrapPoint) {
+				dropped.lazySet(dropped.get() + 1);
+				droppedSincePublished++;
+				return null;
+			}
+		}
+		MachineEvent event = slots[(int) sequence & mask];
+		event.reset(sequence, type, droppedSincePublished);
+		droppedSincePublished = 0;
+		return event;
+	}
+
+	/**
+	 * Make the claimed event visible to the processors
+	 * 
+	 * @param event Event claimed and filled
+	 */
+	private void publish(MachineEvent event) {
+		nextSequence = event.getSequence() + 1;
+		published.lazySet(event.getSequence());
+	}
+
+	/**
+	 * Lowest sequence consumed by the processors
+	 * 
+	 * @param current Processors reading the ring
+	 * @return Lowest sequence, the last published when there isn't any processor
+	 */
+	private long lowestConsumed(EventProcessor[] current) {
+		long lowest = published.get();
+		for (EventProcessor processor : current) {
+			lowest = Math.min(lowest, processor.getSequence());
+		}
+		return lowest;
+	}
+
+}
@@ -0,0 +1,155 @@
+package com.awais.machine.events;
+
+import java.util.Arrays;
+
+import com.awais.machine.models.Coin;
+import com.awais.machine.models.Product;
+import com.awais.machine.utils.Coins;
+import com.awais.machine.utils.Products;
+
+/**
+ * Slot of an {@link EventRing} holding one event. The slots are reused, so a
+ * consumer must copy what it needs before returning from
+ * {@link EventConsumer#onEvent(MachineEvent)}.
+ * 
+ * @author Awais Iqbal
+ *
+ */
+public final class MachineEvent {
+
+	private long sequence;
+
+	private MachineEventType type;
+
+	private Product product;
+
+	private Coin coin;
+
+	private long amount;
+
+	/**
+	 * Events dropped by the ring between the previous event and this one
+	 */
+	private long droppedBefore;
+
+	/**
+	 * Coins of the event, indexed by the ordinal of the coin
+	 */
+	private final int[] coinCounts = new int[Coins.COUNT];
+
+	/**
+	 * Products of the event, indexed by the ordinal of the product
+	 */
+	private final int[] productCounts = new int[Products.COUNT];
+
+	/**
+	 * Position of the event in the ring, starting from 0
+	 * 
+	 * @return Sequence of the event
+	 */
+	public long getSequence() {
+		return sequence;
+	}
+
+	public MachineEventType getType() {
+		return type;
+	}
+
+	/**
+	 * Product sold by a {@link MachineEventType#PRODUCT_VENDED} event
+	 * 
+	 * @return The product, null for the other events
+	 */
+	public Product getProduct() {
+		return product;
+	}
+
+	/**
+	 * Coin of a {@link MachineEventType#COIN_INSERTED} event
+	 * 
+	 * @return The coin, null for the other events
+	 */
+	public Coin getCoin() {
+		return coin;
+	}
+
+	/**
+	 * Money of the event in cents: the price of the product vended, the value of
+	 * the change dispensed or of the money cancelled
+	 * 
+	 * @return Amount of the event
+	 */
+	public long getAmount() {
+		return amount;
+	}
+
+	/**
+	 * Events dropped because the ring was full, after the previous event
+	 * published and before this one. A consumer keeping a state from the events
+	 * knows it missed some when this is not zero.
+	 * 
+	 * @return Events missing before this one
+	 */
+	public long getDroppedBefore() {
+		return droppedBefore;
+	}
+
+	/**
+	 * Coins dispensed or refilled
+	 * 
+	 * @param coin Coin to check
+	 * @return Number of coins of that type in the event
+	 */
+	public int getCoinCount(Coin coin) {
+		return coinCounts[coin.ordinal()];
+	}
+
+	/**
+	 * Products refilled
+	 * 
+	 * @param product Product to check
+	 * @return Number of units of that product in the event
+	 */
+	public int getProductCount(Product product) {
+		return productCounts[product.ordinal()];
+	}
+
+	/**
+	 * Clear the slot for a new event
+	 * 
+	 * @param sequence      Sequence of the new event
+	 * @param type          Type of the new event
+	 * @param droppedBefore Events dropped since the previous event
+	 */
+	void reset(long sequence, MachineEventType type, long droppedBefore) {
+		this.sequence = sequence;
+		this.droppedBefore = droppedBefore;
+		this.type = type;
+		this.product = null;
+		this.coin = null;
+		this.amount = 0;
+		Arrays.fill(coinCounts, 0);
+		Arrays.fill(productCounts, 0);
+	}
+
+	void setProduct(Product product) {
+		this.product = product;
+	}
+
+	void setCoin(Coin coin) {
+		this.coin = coin;
+	}
+
+	void setAmount(long amount) {
+		this.amount = amount;
+	}
+
+	void addCoins(Coin coin, int count) {
+		coinCounts[coin.ordinal()] += count;
+	}
+
+	void addProducts(Product product, int count) {
+		productCounts[product.ordinal()] += count;
+	}
+
+}
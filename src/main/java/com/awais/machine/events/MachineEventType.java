@@ -0,0 +1,22 @@
+package com.awais.machine.events;
+
+/**
+ * State transitions of a vending machine published in an {@link EventRing}.
+ * 
+ * @author Awais Iqbal
+ *
+ */
+public enum MachineEventType {
+	/** A coin inserted by the user, see {@link MachineEvent#getCoin()} */
+	COIN_INSERTED,
+	/** A product sold, see {@link MachineEvent#getProduct()} */
+	PRODUCT_VENDED,
+	/** Coins taken from the stock to be returned, see {@link MachineEvent#getCoinCount} */
+	CHANGE_DISPENSED,
+	/** Products and coins added, see the counts of the event */
+	REFILLED,
+	/** Every stock emptied */
+	RESET,
+	/** The inserted money returned, see {@link MachineEvent#getAmount()} */
+	CANCELLED
+}
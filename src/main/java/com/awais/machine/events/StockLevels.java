@@ -0,0 +1,162 @@
+package com.awais.machine.events;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.awais.machine.models.Coin;
+import com.awais.machine.models.MachineSnapshot;
+import com.awais.machine.models.Product;
+import com.awais.machine.utils.Coins;
+import com.awais.machine.utils.Products;
+
+/**
+ * Consumer keeping the stock levels and the sales of a machine from its events,
+ * so they can be read from any thread without asking the machine. Only the
+ * thread of the processor writes the levels, so they are updated without
+ * atomic increments.
+ * 
+ * The levels only match the machine when no event was dropped. An event
+ * telling that the ring dropped some before it marks the levels as stale and
+ * adds to {@link #getMissed()}, until they are reloaded from a snapshot of the
+ * machine with {@link #resync(MachineSnapshot)}.
+ * 
+ * @author Awais Iqbal
+ *
+ */
+public class StockLevels implements EventConsumer {
+
+	/**
+	 * Units of every product, indexed by the ordinal of the product
+	 */
+	private final AtomicIntegerArray products = new AtomicIntegerArray(Products.COUNT);
+
+	/**
+	 * Coins of every type, indexed by the ordinal of the coin
+	 */
+	private final AtomicIntegerArray coins = new AtomicIntegerArray(Coins.COUNT);
+
+	/**
+	 * Value of the products sold
+	 */
+	private final AtomicLong sales = new AtomicLong();
+
+	/**
+	 * Events dropped by the ring before reaching this consumer
+	 */
+	private final AtomicLong missed = new AtomicLong();
+
+	/**
+	 * True from a missed event until the next resync
+	 */
+	private volatile boolean stale;
+
+	@Override
+	public void onEvent(MachineEvent event) {
+		long dropped = event.getDroppedBefore();
+		if (dropped != 0) {
+			missed.lazySet(missed.get() + dropped);
+			stale = true;
+		}
+		switch (event.getType()) {
+		case COIN_INSERTED:
+			add(coins, event.getCoin().ordinal(), 1);
+			break;
+		case PRODUCT_VENDED:
+			add(products, event.getProduct().ordinal(), -1);
+			sales.lazySet(sales.get() + event.getAmount());
+			break;
+		case CHANGE_DISPENSED:
+			for (Coin coin : Coins.ALL) {
+				add(coins, coin.ordinal(), -event.getCoinCount(coin));
+			}
+			break;
+		case REFILLED:
+			for (Product product : Products.ALL) {
+				add(products, product.ordinal(), event.getProductCount(product));
+			}
+			for (Coin coin : Coins.ALL) {
+				add(coins, coin.ordinal(), event.getCoinCount(coin));
+			}
+			break;
+		case RESET:
+			for (int i = 0; i < products.length(); i++) {
+				products.lazySet(i, 0);
+			}
+			for (int i = 0; i < coins.length(); i++) {
+				coins.lazySet(i, 0);
+			}
+			break;
+		case CANCELLED:
+			break;
+		}
+	}
+
+	public int getProductCount(Product product) {
+		return products.get(product.ordinal());
+	}
+
+	public int getCoinCount(Coin coin) {
+		return coins.get(coin.ordinal());
+	}
+
+	/**
+	 * Value of the products sold since the consumer was subscribed
+	 * 
+	 * @return Sales in cents
+	 */
+	public long getSales() {
+		return sales.get();
+	}
+
+	/**
+	 * Number of events dropped by the ring that this consumer never saw
+	 * 
+	 * @return Events missed since the consumer was subscribed
+	 */
+	public long getMissed() {
+		return missed.get();
+	}
+
+	/**
+	 * Check if some events were missed since the last resync, the levels may
+	 * differ from the machine then
+	 * 
+	 * @return True when the levels can't be trusted
+	 */
+	public boolean isStale() {
+		return stale;
+	}
+
+	/**
+	 * Reload the levels from a snapshot of the machine. It must be called by the
+	 * thread of the processor, with every event published before the snapshot
+	 * already delivered and none after it, e.g. by the thread using the machine
+	 * right after draining the processor. The sales only count the events
+	 * delivered.
+	 * 
+	 * @param snapshot State of the machine
+	 */
+	public void resync(MachineSnapshot snapshot) {
+		for (Product product : Products.ALL) {
+			products.lazySet(product.ordinal(), snapshot.getProductCount(product));
+		}
+		for (Coin coin : Coins.ALL) {
+			coins.lazySet(coin.ordinal(), snapshot.getCoinCount(coin));
+		}
+		stale = false;
+	}
+
+	/**
+	 * Add to a level, only called by the thread of the processor
+	 * 
+	 * @param levels Levels to be updated
+	 * @param index  Index of the level
+	 * @param delta  Amount to be added
+	 */
+	private static void add(AtomicIntegerArray levels, int index, int delta) {
+		if (delta != 0) {
+			levels.lazySet(index, levels.get(index) + delta);
+		}
+	}
+
+}
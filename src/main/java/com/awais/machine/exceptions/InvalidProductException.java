@@ -1,11 +1,18 @@
 package com.awais.machine.exceptions;
 
+/**
+ * Thrown on a routine outcome of the machine, so it doesn't capture the stack
+ * trace.
+ * 
+ * @author Awais Iqbal
+ *
+ */
 public class InvalidProductException extends Exception {
 
 	private static final long serialVersionUID = 7732225651104162440L;
 
 	public InvalidProductException(String string) {
-		super(string);
+		super(string, null, false, false);
 	}
 
 }
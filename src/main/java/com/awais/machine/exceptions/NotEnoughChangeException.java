@@ -1,11 +1,18 @@
 package com.awais.machine.exceptions;
 
+/**
+ * Thrown on a routine outcome of the machine, so it doesn't capture the stack
+ * trace.
+ * 
+ * @author Awais Iqbal
+ *
+ */
 public class NotEnoughChangeException extends Exception {
 
 	private static final long serialVersionUID = 739287744743227470L;
 
 	public NotEnoughChangeException(String message) {
-		super(message);
+		super(message, null, false, false);
 	}
 
 }
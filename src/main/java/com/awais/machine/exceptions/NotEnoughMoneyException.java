@@ -1,11 +1,46 @@
 package com.awais.machine.exceptions;
 
+import com.awais.machine.models.Product;
+
+/**
+ * Thrown on a routine outcome of the machine, so it doesn't capture the stack
+ * trace. The message is only built when it is requested.
+ * 
+ * @author Awais Iqbal
+ *
+ */
 public class NotEnoughMoneyException extends Exception {
 
 	private static final long serialVersionUID = 739287744743227470L;
 
+	/**
+	 * Product which couldn't be paid, null when the message was given
+	 */
+	private final Product product;
+
+	/**
+	 * Value of the inserted coins when the product was selected
+	 */
+	private final long insertedCoinsValue;
+
 	public NotEnoughMoneyException(String message) {
-		super(message);
+		super(message, null, false, false);
+		this.product = null;
+		this.insertedCoinsValue = 0;
+	}
+
+	public NotEnoughMoneyException(Product product, long insertedCoinsValue) {
+		super(null, null, false, false);
+		this.product = product;
+		this.insertedCoinsValue = insertedCoinsValue;
+	}
+
+	@Override
+	public String getMessage() {
+		if (product == null) {
+			return super.getMessage();
+		}
+		return product.getName() + " price is " + product.getPrice() + " And inserted coins are " + insertedCoinsValue;
 	}
 
 }
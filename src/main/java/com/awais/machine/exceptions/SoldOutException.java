@@ -1,11 +1,18 @@
 package com.awais.machine.exceptions;
 
+/**
+ * Thrown on a routine outcome of the machine, so it doesn't capture the stack
+ * trace.
+ * 
+ * @author Awais Iqbal
+ *
+ */
 public class SoldOutException extends Exception {
 
 	private static final long serialVersionUID = 739287744743227470L;
 
 	public SoldOutException(String message) {
-		super(message);
+		super(message, null, false, false);
 	}
 
 }
@@ -0,0 +1,110 @@
+package com.awais.machine.fleet;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Map;
+
+import com.awais.machine.utils.Stock;
+
+/**
+ * Inventory of enum keys whose counts live in a buffer, one int per key indexed
+ * by the ordinal of the key. Nothing is kept on the heap, so every change is
+ * written straight into the buffer.
+ * 
+ * @author Awais Iqbal
+ *
+ * @param <T> Enum used as key of the stock
+ */
+class BufferStock<T extends Enum<T>> extends Stock<T> {
+
+	/**
+	 * Type of the keys, used to build the map views
+	 */
+	private final Class<T> keyType;
+
+	private final ByteBuffer buffer;
+
+	/**
+	 * Offset of the count of the first key
+	 */
+	private final int offset;
+
+	BufferStock(Class<T> keyType, ByteBuffer buffer, int offset) {
+		this.keyType = keyType;
+		this.buffer = buffer;
+		this.offset = offset;
+	}
+
+	@Override
+	public void add(T item) {
+		int index = indexOf(item);
+		buffer.putInt(index, buffer.getInt(index) + 1);
+	}
+
+	@Override
+	public void addAll(T item, int count) {
+		int index = indexOf(item);
+		buffer.putInt(index, buffer.getInt(index) + count);
+	}
+
+	@Override
+	public void removeItem(T item) {
+		int index = indexOf(item);
+		int count = buffer.getInt(index);
+		if (count != 0) {
+			buffer.putInt(index, count - 1);
+		}
+	}
+
+	@Override
+	public void removeItems(Collection<T> items) {
+		for (T item : items) {
+			removeItem(item);
+		}
+	}
+
+	@Override
+	public int getCount(T key) {
+		return key == null ? 0 : buffer.getInt(indexOf(key));
+	}
+
+	@Override
+	public void initializeKey(T item) {
+		buffer.putInt(indexOf(item), 0);
+	}
+
+	@Override
+	public void refill(Collection<T> collection) {
+		for (T item : collection) {
+			add(item);
+		}
+	}
+
+	@Override
+	public void reset() {
+		for (T key : keyType.getEnumConstants()) {
+			buffer.putInt(indexOf(key), 0);
+		}
+	}
+
+	/**
+	 * Get all the items in the stock. The returned map is a copy and changes on it
+	 * are not reflected in the stock.
+	 * 
+	 * @return All the items in stock
+	 */
+	@Override
+	public Map<T, Integer> getCurrentStockItems() {
+		Map<T, Integer> items = new EnumMap<>(keyType);
+		for (T key : keyType.getEnumConstants()) {
+			items.put(key, buffer.getInt(indexOf(key)));
+		}
+		return items;
+	}
+
+	private int indexOf(T key) {
+		return offset + key.ordinal() * Integer.BYTES;
+	}
+
+}
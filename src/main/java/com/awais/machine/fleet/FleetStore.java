@@ -0,0 +1,242 @@
+package com.awais.machine.fleet;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+
+import com.awais.machine.interfaces.ChangeStrategy;
+import com.awais.machine.interfaces.VendingMachine;
+import com.awais.machine.utils.CashLedger.Entry;
+import com.awais.machine.utils.Coins;
+import com.awais.machine.utils.Products;
+
+/**
+ * State of a whole fleet of vending machines kept in a memory mapped file.
+ * 
+ * Every machine is a fixed width record holding its inserted money, the count
+ * of every coin and product and the account of its coins, so the state lives
+ * off the heap, survives a restart and a machine is found by its id without any
+ * lookup. The file starts with a header of {@value #HEADER_SIZE} bytes: magic,
+ * version, number of machines and size of a record.
+ * 
+ * The views of the machines don't hold any state, every call to
+ * {@link #machine(int)} creates a small one over the record, so the heap used
+ * doesn't grow with the fleet. The views are not thread safe, a machine must
+ * only be used by one thread at a time. The change is planned with a strategy
+ * of the calling thread, as the strategies are not thread safe either, and
+ * the records are versioned by a fixed set of locks shared by the machines.
+ * 
+ * @author Awais Iqbal
+ *
+ */
+public class FleetStore implements Closeable {
+
+	/**
+	 * First bytes of a fleet file
+	 */
+	private static final int MAGIC = 0x564D464C;
+
+	/**
+	 * Version of the layout of the file
+	 */
+	private static final int VERSION = 2;
+
+	/**
+	 * Bytes before the first record
+	 */
+	static final int HEADER_SIZE = 64;
+
+	/**
+	 * Offset of the inserted money in a record
+	 */
+	static final int CREDIT_OFFSET = 0;
+
+	/**
+	 * Offset of the value of the coins expected by the account in a record
+	 */
+	static final int BALANCE_OFFSET = CREDIT_OFFSET + Long.BYTES;
+
+	/**
+	 * Offset of the account in a record, the coins booked in every entry indexed
+	 * by the ordinal of the entry times the number of coins plus the ordinal of
+	 * the coin
+	 */
+	static final int LEDGER_OFFSET = BALANCE_OFFSET + Long.BYTES;
+
+	/**
+	 * Offset of the first coin count in a record
+	 */
+	static final int COINS_OFFSET = LEDGER_OFFSET + Entry.values().length * Coins.COUNT * Long.BYTES;
+
+	/**
+	 * Offset of the first product count in a record
+	 */
+	static final int PRODUCTS_OFFSET = COINS_OFFSET + Coins.COUNT * Integer.BYTES;
+
+	/**
+	 * Bytes of a record, rounded up to a multiple of 8
+	 */
+	static final int RECORD_SIZE = (PRODUCTS_OFFSET + Products.COUNT * Integer.BYTES + 7) & ~7;
+
+	private final FileChannel channel;
+
+	private final MappedByteBuffer buffer;
+
+	private final int machineCount;
+
+	/**
+	 * Number of locks versioning the records, a power of two
+	 */
+	private static final int LOCKS = 64;
+
+	/**
+	 * Strategy of every thread using the machines
+	 */
+	private final ThreadLocal<MappedCashManager.Planner> planners;
+
+	/**
+	 * Locks versioning the records, the record of a machine is changed holding the
+	 * lock of its id modulo {@link #LOCKS}
+	 */
+	private final StampedLock[] versions = new StampedLock[LOCKS];
+
+	private FleetStore(FileChannel channel, MappedByteBuffer buffer, int machineCount,
+			Supplier<ChangeStrategy> strategies) {
+		this.channel = channel;
+		this.buffer = buffer;
+		this.machineCount = machineCount;
+		this.planners = ThreadLocal.withInitial(() -> new MappedCashManager.Planner(strategies.get()));
+		for (int i = 0; i < LOCKS; i++) {
+			versions[i] = new StampedLock();
+		}
+	}
+
+	/**
+	 * Create a new fleet file with the given number of empty machines, replacing
+	 * any existing file.
+	 * 
+	 * @param file         File of the fleet
+	 * @param machineCount Number of machines
+	 * @param strategies   Creates the strategy used by every thread to calculate
+	 *                     the change
+	 * @return The store
+	 * @throws IOException When the file can't be created
+	 */
+	public static FleetStore create(Path file, int machineCount, Supplier<ChangeStrategy> strategies)
+			throws IOException {
+		long size = HEADER_SIZE + (long) machineCount * RECORD_SIZE;
+		if (machineCount < 0 || size > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Invalid number of machines " + machineCount);
+		}
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			MappedByteBuffer buffer = channel.map(MapMode.READ_WRITE, 0, size);
+			buffer.putInt(0, MAGIC);
+			buffer.putInt(Integer.BYTES, VERSION);
+			buffer.putInt(2 * Integer.BYTES, machineCount);
+			buffer.putInt(3 * Integer.BYTES, RECORD_SIZE);
+			return new FleetStore(channel, buffer, machineCount, strategies);
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Open an existing fleet file.
+	 * 
+	 * @param file       File of the fleet
+	 * @param strategies Creates the strategy used by every thread to calculate
+	 *                   the change
+	 * @return The store
+	 * @throws IOException When the file can't be opened or is not a fleet file
+	 */
+	public static FleetStore open(Path file, Supplier<ChangeStrategy> strategies) throws IOException {
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE) {
+				throw new IOException("Invalid fleet file " + file);
+			}
+			MappedByteBuffer buffer = channel.map(MapMode.READ_WRITE, 0, channel.size());
+			int machineCount = buffer.getInt(2 * Integer.BYTES);
+			if (buffer.getInt(0) != MAGIC || buffer.getInt(Integer.BYTES) != VERSION
+					|| buffer.getInt(3 * Integer.BYTES) != RECORD_SIZE || machineCount < 0
+					|| HEADER_SIZE + (long) machineCount * RECORD_SIZE != channel.size()) {
+				throw new IOException("Invalid fleet file " + file);
+			}
+			return new FleetStore(channel, buffer, machineCount, strategies);
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Get a vending machine reading and writing the record of the given machine.
+	 * Every call returns a new view, all the views of a machine share its record
+	 * and its lock, so the snapshots see the changes made through any of them.
+	 * 
+	 * @param machineId Identifier of the machine, from 0 to the number of machines
+	 *                  - 1
+	 * @return View of the machine
+	 */
+	public VendingMachine machine(int machineId) {
+		if (machineId < 0 || machineId >= machineCount) {
+			throw new IndexOutOfBoundsException("Invalid machine " + machineId);
+		}
+		return new MappedVendingMachine(buffer, HEADER_SIZE + machineId * RECORD_SIZE,
+				versions[machineId & (LOCKS - 1)], planners);
+	}
+
+	/**
+	 * Get the cash of the given machine, with the account of its coins kept in the
+	 * record. It must not be used while the machine is used by another thread.
+	 * 
+	 * @param machineId Identifier of the machine, from 0 to the number of machines
+	 *                  - 1
+	 * @return Cash manager over the record of the machine
+	 */
+	public MappedCashManager cashManager(int machineId) {
+		if (machineId < 0 || machineId >= machineCount) {
+			throw new IndexOutOfBoundsException("Invalid machine " + machineId);
+		}
+		return new MappedCashManager(buffer, HEADER_SIZE + machineId * RECORD_SIZE, planners);
+	}
+
+	/**
+	 * Number of machines in the fleet
+	 * 
+	 * @return Number of machines
+	 */
+	public int getMachineCount() {
+		return machineCount;
+	}
+
+	/**
+	 * Write all the changes to the file
+	 */
+	public void force() {
+		buffer.force();
+	}
+
+	/**
+	 * Write all the changes and close the file. The views must not be used after
+	 * closing the store.
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			buffer.force();
+		} finally {
+			channel.close();
+		}
+	}
+
+}
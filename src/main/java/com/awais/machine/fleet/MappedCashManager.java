@@ -0,0 +1,282 @@
+package com.awais.machine.fleet;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+
+import com.awais.machine.exceptions.NotEnoughChangeException;
+import com.awais.machine.interfaces.CashManager;
+import com.awais.machine.interfaces.ChangeStrategy;
+import com.awais.machine.models.Change;
+import com.awais.machine.models.Coin;
+import com.awais.machine.utils.CashLedger.Entry;
+import com.awais.machine.utils.Coins;
+import com.awais.machine.utils.RefillCounts;
+import com.awais.machine.utils.Stock;
+
+/**
+ * Cash manager over the record of a machine in a {@link FleetStore}. The count
+ * of every coin, the entries of its account and the balance they add up to are
+ * all kept in the record, like a {@link com.awais.machine.utils.CashLedger}
+ * laid out in the buffer, so the account survives a restart and nothing is
+ * kept on the heap for the machine.
+ *
+ * The change is planned with the strategy of the calling thread, given by the
+ * store, so the managers of different machines can be used from different
+ * threads. {@link #canMakeChange(long)} plans the change as well, there isn't
+ * any index of the amounts to keep per machine.
+ *
+ * @author Awais Iqbal
+ *
+ */
+public class MappedCashManager implements CashManager {
+
+	private static final Entry[] ENTRIES = Entry.values();
+
+	private final ByteBuffer buffer;
+
+	/**
+	 * Offset of the record of the machine
+	 */
+	private final int offset;
+
+	/**
+	 * Coins of the record
+	 */
+	private final Stock<Coin> coinsInStock;
+
+	/**
+	 * Strategy and holder of every thread
+	 */
+	private final ThreadLocal<Planner> planners;
+
+	MappedCashManager(ByteBuffer buffer, int offset, ThreadLocal<Planner> planners) {
+		this.buffer = buffer;
+		this.offset = offset;
+		this.coinsInStock = new BufferStock<>(Coin.class, buffer, offset + FleetStore.COINS_OFFSET);
+		this.planners = planners;
+	}
+
+	@Override
+	public void add(Coin c) {
+		if (c != null) {
+			coinsInStock.add(c);
+			book(Entry.RECEIVED, c, 1);
+		}
+	}
+
+	@Override
+	public void add(Coin coin, int count) {
+		RefillCounts.check(count);
+		coinsInStock.addAll(coin, count);
+		book(Entry.REFILLED, coin, count);
+	}
+
+	@Override
+	public void refill(Collection<Coin> coinsToBeRefilled) {
+		for (Coin coin : coinsToBeRefilled) {
+			add(coin, 1);
+		}
+	}
+
+	@Override
+	public void redraw(Coin c) {
+		if (coinsInStock.containsMoreThenOne(c)) {
+			coinsInStock.removeItem(c);
+			book(Entry.REDRAWN, c, 1);
+		}
+	}
+
+	@Override
+	public void redraw(Collection<Coin> coins) {
+		for (Coin coin : coins) {
+			redraw(coin);
+		}
+	}
+
+	@Override
+	public boolean containsMoreThenOne(Coin c) {
+		return coinsInStock.containsMoreThenOne(c);
+	}
+
+	@Override
+	public int getCoinCount(Coin c) {
+		return coinsInStock.getCount(c);
+	}
+
+	@Override
+	public void copyCoinCounts(int[] counts) {
+		coinsInStock.copyCounts(Coins.ALL, counts);
+	}
+
+	@Override
+	public void reset() {
+		coinsInStock.reset();
+		open();
+	}
+
+	@Override
+	public void restore(int[] coinCounts) {
+		RefillCounts.checkCoins(coinCounts);
+		coinsInStock.reset();
+		for (Coin coin : Coins.ALL) {
+			coinsInStock.addAll(coin, coinCounts[coin.ordinal()]);
+		}
+		open();
+	}
+
+	/**
+	 * Value expected in the stock, the balance of the account kept in the record
+	 */
+	@Override
+	public long getCurrentMoney() {
+		return buffer.getLong(offset + FleetStore.BALANCE_OFFSET);
+	}
+
+	@Override
+	public boolean isBalanced() {
+		long value = 0;
+		for (Coin coin : Coins.ALL) {
+			long balance = 0;
+			for (Entry entry : ENTRIES) {
+				balance += entry.isOutgoing() ? -getCount(entry, coin) : getCount(entry, coin);
+			}
+			if (coinsInStock.getCount(coin) != balance) {
+				return false;
+			}
+			value += balance * coin.getValue();
+		}
+		return value == getCurrentMoney();
+	}
+
+	/**
+	 * Coins of one type booked in an entry since the machine was created or last
+	 * reset
+	 *
+	 * @param entry Entry to be read
+	 * @param coin  Coin to be counted
+	 * @return Coins of the entry
+	 */
+	public long getCount(Entry entry, Coin coin) {
+		return buffer.getLong(indexOf(entry, coin));
+	}
+
+	/**
+	 * Value booked in an entry since the machine was created or last reset
+	 *
+	 * @param entry Entry to be read
+	 * @return Value of all the coins of the entry, positive for outgoing entries
+	 *         as well
+	 */
+	public long getValue(Entry entry) {
+		long value = 0;
+		for (Coin coin : Coins.ALL) {
+			value += getCount(entry, coin) * coin.getValue();
+		}
+		return value;
+	}
+
+	@Override
+	public Collection<Coin> calculateChange(long moneyLeftToConvert) throws NotEnoughChangeException {
+		Change change = new Change();
+		calculateChange(moneyLeftToConvert, change);
+		return change.toCollection();
+	}
+
+	@Override
+	public void calculateChange(long moneyLeftToConvert, Change change) throws NotEnoughChangeException {
+		if (!tryCalculateChange(moneyLeftToConvert, change)) {
+			throw new NotEnoughChangeException("Not enough change.");
+		}
+	}
+
+	@Override
+	public boolean tryCalculateChange(long moneyLeftToConvert, Change change) {
+		return planChange(moneyLeftToConvert, change) && commitChange(change);
+	}
+
+	@Override
+	public boolean planChange(long moneyLeftToConvert, Change plan) {
+		return planners.get().strategy.tryCalculateChange(moneyLeftToConvert, coinsInStock, plan);
+	}
+
+	@Override
+	public boolean commitChange(Change plan) {
+		for (Coin coin : Coins.ALL) {
+			if (coinsInStock.getCount(coin) < plan.getCount(coin)) {
+				return false;
+			}
+		}
+		for (Coin coin : Coins.ALL) {
+			int count = plan.getCount(coin);
+			if (count > 0) {
+				coinsInStock.addAll(coin, -count);
+				book(Entry.DISPENSED, coin, count);
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public boolean canMakeChange(long amount) {
+		Planner planner = planners.get();
+		return planner.strategy.tryCalculateChange(amount, coinsInStock, planner.scratch);
+	}
+
+	/**
+	 * Clear the account and book the coins in the stock as its opening
+	 */
+	private void open() {
+		for (Entry entry : ENTRIES) {
+			for (Coin coin : Coins.ALL) {
+				buffer.putLong(indexOf(entry, coin), 0);
+			}
+		}
+		buffer.putLong(offset + FleetStore.BALANCE_OFFSET, 0);
+		for (Coin coin : Coins.ALL) {
+			book(Entry.OPENING, coin, coinsInStock.getCount(coin));
+		}
+	}
+
+	/**
+	 * Book some coins of one type in an entry and in the balance
+	 *
+	 * @param entry Entry of the movement
+	 * @param coin  Coin moved
+	 * @param count Coins moved
+	 */
+	private void book(Entry entry, Coin coin, int count) {
+		if (count == 0) {
+			return;
+		}
+		int index = indexOf(entry, coin);
+		buffer.putLong(index, buffer.getLong(index) + count);
+		long value = count * coin.getValue();
+		buffer.putLong(offset + FleetStore.BALANCE_OFFSET,
+				getCurrentMoney() + (entry.isOutgoing() ? -value : value));
+	}
+
+	/**
+	 * Offset of the count of a coin in an entry
+	 */
+	private int indexOf(Entry entry, Coin coin) {
+		return offset + FleetStore.LEDGER_OFFSET + (entry.ordinal() * Coins.COUNT + coin.ordinal()) * Long.BYTES;
+	}
+
+	/**
+	 * Strategy of one thread and the holder it checks the amounts with
+	 */
+	static final class Planner {
+
+		private final ChangeStrategy strategy;
+
+		/**
+		 * Holder used by {@link MappedCashManager#canMakeChange(long)}
+		 */
+		private final Change scratch = new Change();
+
+		Planner(ChangeStrategy strategy) {
+			this.strategy = strategy;
+		}
+	}
+
+}
@@ -0,0 +1,269 @@
+package com.awais.machine.fleet;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.concurrent.locks.StampedLock;
+
+import com.awais.machine.exceptions.InvalidProductException;
+import com.awais.machine.exceptions.NotEnoughChangeException;
+import com.awais.machine.exceptions.NotEnoughMoneyException;
+import com.awais.machine.exceptions.SoldOutException;
+import com.awais.machine.interfaces.CashManager;
+import com.awais.machine.interfaces.VendingMachine;
+import com.awais.machine.models.Change;
+import com.awais.machine.models.Coin;
+import com.awais.machine.models.MachineSnapshot;
+import com.awais.machine.models.Product;
+import com.awais.machine.models.SelectionResult;
+import com.awais.machine.utils.Coins;
+import com.awais.machine.utils.Pair;
+import com.awais.machine.utils.Products;
+import com.awais.machine.utils.RefillCounts;
+import com.awais.machine.utils.Stock;
+
+/**
+ * Vending machine whose whole state, the account of its coins included, is a
+ * record of a {@link FleetStore}. Every operation reads and writes the record
+ * in place and the view doesn't hold any state of its own.
+ * 
+ * Like {@link com.awais.machine.interfaces.impl.VendingMachineImpl}, every
+ * change of the record is made holding the write lock of a {@link StampedLock},
+ * shared with the machines of the same lock of the store and held only for the
+ * change, so a snapshot is an optimistic read retried until no change was made
+ * to those records during the copy.
+ * 
+ * @author Awais Iqbal
+ *
+ */
+class MappedVendingMachine implements VendingMachine {
+
+	private final ByteBuffer buffer;
+
+	/**
+	 * Offset of the record of this machine
+	 */
+	private final int offset;
+
+	/**
+	 * Module used to manage the money, over the coins of the record
+	 */
+	private final CashManager cashModule;
+
+	/**
+	 * Stock of all the products available, over the products of the record
+	 */
+	private final Stock<Product> productsInStock;
+
+	/**
+	 * Version of the record, write locked by every change of the record
+	 */
+	private final StampedLock version;
+
+	MappedVendingMachine(ByteBuffer buffer, int offset, StampedLock version,
+			ThreadLocal<MappedCashManager.Planner> planners) {
+		this.buffer = buffer;
+		this.offset = offset;
+		this.version = version;
+		this.cashModule = new MappedCashManager(buffer, offset, planners);
+		this.productsInStock = new BufferStock<>(Product.class, buffer, offset + FleetStore.PRODUCTS_OFFSET);
+	}
+
+	@Override
+	public long getProductPrice(final Product product) throws InvalidProductException {
+		if (product == null) {
+			throw new InvalidProductException("The selected product is invalid");
+		}
+		return product.getPrice();
+	}
+
+	@Override
+	public void addCoin(final Coin coin) {
+		if (coin != null) {
+			long stamp = version.writeLock();
+			try {
+				setInsertedCoinsValue(getCurrentMoney() + coin.getValue());
+				cashModule.add(coin);
+			} finally {
+				version.unlockWrite(stamp);
+			}
+		}
+	}
+
+	@Override
+	public Pair<Product, Collection<Coin>> selectProduct(final Product selectedProduct)
+			throws NotEnoughMoneyException, SoldOutException, NotEnoughChangeException, InvalidProductException {
+		Change coinsToReturn = new Change();
+		selectProduct(selectedProduct, coinsToReturn);
+		return new Pair<>(selectedProduct, coinsToReturn.toCollection());
+	}
+
+	@Override
+	public Product selectProduct(final Product selectedProduct, final Change coinsToReturn)
+			throws NotEnoughMoneyException, SoldOutException, NotEnoughChangeException, InvalidProductException {
+		switch (trySelectProduct(selectedProduct, coinsToReturn)) {
+		case INVALID_PRODUCT:
+			throw new InvalidProductException("The selected product is invalid");
+		case SOLD_OUT:
+			throw new SoldOutException("Sorry, product already sold out");
+		case NOT_ENOUGH_MONEY:
+			throw new NotEnoughMoneyException(selectedProduct, getCurrentMoney());
+		case NOT_ENOUGH_CHANGE:
+			throw new NotEnoughChangeException("Not enough change.");
+		default:
+			return selectedProduct;
+		}
+	}
+
+	@Override
+	public SelectionResult trySelectProduct(final Product selectedProduct, final Change coinsToReturn) {
+		if (selectedProduct == null) {
+			return SelectionResult.INVALID_PRODUCT;
+		}
+		if (!productsInStock.containsMoreThenOne(selectedProduct)) {
+			return SelectionResult.SOLD_OUT;
+		}
+		long insertedCoinsValue = getCurrentMoney();
+		if (selectedProduct.getPrice() > insertedCoinsValue) {
+			return SelectionResult.NOT_ENOUGH_MONEY;
+		}
+		long stamp = version.writeLock();
+		try {
+			if (!cashModule.tryCalculateChange(insertedCoinsValue - selectedProduct.getPrice(), coinsToReturn)) {
+				return SelectionResult.NOT_ENOUGH_CHANGE;
+			}
+			productsInStock.removeItem(selectedProduct);
+			setInsertedCoinsValue(0);
+			return SelectionResult.SOLD;
+		} finally {
+			version.unlockWrite(stamp);
+		}
+	}
+
+	@Override
+	public SelectionResult checkProduct(final Product product) {
+		if (product == null) {
+			return SelectionResult.INVALID_PRODUCT;
+		}
+		if (!productsInStock.containsMoreThenOne(product)) {
+			return SelectionResult.SOLD_OUT;
+		}
+		long insertedCoinsValue = getCurrentMoney();
+		if (product.getPrice() > insertedCoinsValue) {
+			return SelectionResult.NOT_ENOUGH_MONEY;
+		}
+		if (!cashModule.canMakeChange(insertedCoinsValue - product.getPrice())) {
+			return SelectionResult.NOT_ENOUGH_CHANGE;
+		}
+		return SelectionResult.SOLD;
+	}
+
+	@Override
+	public Collection<Coin> cancelRequest() throws NotEnoughChangeException {
+		Change coinsToReturn = new Change();
+		cancelRequest(coinsToReturn);
+		return coinsToReturn.toCollection();
+	}
+
+	@Override
+	public void cancelRequest(final Change coinsToReturn) throws NotEnoughChangeException {
+		if (!tryCancelRequest(coinsToReturn)) {
+			throw new NotEnoughChangeException("Not enough change.");
+		}
+	}
+
+	@Override
+	public boolean tryCancelRequest(final Change coinsToReturn) {
+		long stamp = version.writeLock();
+		try {
+			if (!cashModule.tryCalculateChange(getCurrentMoney(), coinsToReturn)) {
+				return false;
+			}
+			setInsertedCoinsValue(0);
+			return true;
+		} finally {
+			version.unlockWrite(stamp);
+		}
+	}
+
+	@Override
+	public void refill(final Pair<Collection<Product>, Collection<Coin>> refilling) {
+		long stamp = version.writeLock();
+		try {
+			productsInStock.refill(refilling.getFirstItem());
+			cashModule.refill(refilling.getSecondItem());
+		} finally {
+			version.unlockWrite(stamp);
+		}
+	}
+
+	@Override
+	public void refill(final int[] productCounts, final int[] coinCounts) {
+		RefillCounts.check(productCounts, coinCounts);
+		long stamp = version.writeLock();
+		try {
+			for (Product product : Products.ALL) {
+				productsInStock.addAll(product, productCounts[product.ordinal()]);
+			}
+			for (Coin coin : Coins.ALL) {
+				cashModule.add(coin, coinCounts[coin.ordinal()]);
+			}
+		} finally {
+			version.unlockWrite(stamp);
+		}
+	}
+
+	@Override
+	public long getCurrentMoney() {
+		return buffer.getLong(offset + FleetStore.CREDIT_OFFSET);
+	}
+
+	@Override
+	public int getProductCount(final Product product) {
+		return productsInStock.getCount(product);
+	}
+
+	@Override
+	public int getCoinCount(final Coin coin) {
+		return cashModule.getCoinCount(coin);
+	}
+
+	/**
+	 * Copy the state without locking, any thread can call it at the same time as
+	 * the thread using the machine. The copy is retried until no change was made
+	 * during it, so it is consistent.
+	 */
+	@Override
+	public void snapshot(final MachineSnapshot snapshot) {
+		while (true) {
+			long stamp = version.tryOptimisticRead();
+			if (stamp != 0) {
+				productsInStock.copyCounts(Products.ALL, snapshot.getProductCounts());
+				cashModule.copyCoinCounts(snapshot.getCoinCounts());
+				snapshot.setCurrentMoney(getCurrentMoney());
+				if (version.validate(stamp)) {
+					snapshot.setConsistent(true);
+					return;
+				}
+			}
+			// A change is running, let the thread using the view finish it
+			Thread.yield();
+		}
+	}
+
+	@Override
+	public void reset() {
+		long stamp = version.writeLock();
+		try {
+			cashModule.reset();
+			productsInStock.reset();
+			setInsertedCoinsValue(0);
+		} finally {
+			version.unlockWrite(stamp);
+		}
+	}
+
+	private void setInsertedCoinsValue(long value) {
+		buffer.putLong(offset + FleetStore.CREDIT_OFFSET, value);
+	}
+
+}
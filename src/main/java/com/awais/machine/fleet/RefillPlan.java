@@ -0,0 +1,192 @@
+package com.awais.machine.fleet;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.awais.machine.interfaces.VendingMachine;
+import com.awais.machine.models.Coin;
+import com.awais.machine.models.Product;
+import com.awais.machine.utils.Coins;
+import com.awais.machine.utils.Products;
+import com.awais.machine.utils.RefillCounts;
+
+/**
+ * Refills planned for many machines of a fleet, applied at once.
+ *
+ * The units planned for every machine are aggregated in one array of product
+ * counts and one of coin counts, so applying the plan is a single
+ * {@link VendingMachine#refill(int[], int[])} per machine. The machines are
+ * independent, so they are refilled in parallel in a fork-join pool, each one
+ * by a single task. A machine is told apart by its identity, two wrappers of
+ * the same machine must not be planned together.
+ *
+ * The machines are refilled from the threads of the pool, so every machine must
+ * either be thread safe, like
+ * {@link com.awais.machine.interfaces.impl.ConcurrentVendingMachineImpl}, or
+ * not be used by any other thread until {@link #apply(ForkJoinPool)} returns.
+ * The machines owned by a {@link com.awais.machine.actor.MachineExecutor} must
+ * be refilled through it instead.
+ *
+ * The plan is not thread safe, but it can be applied many times.
+ *
+ * @author Awais Iqbal
+ *
+ */
+public class RefillPlan {
+
+	/**
+	 * Machines refilled by a fork-join task without splitting it
+	 */
+	private static final int MACHINES_PER_TASK = 4;
+
+	private final List<VendingMachine> machines = new ArrayList<>();
+
+	/**
+	 * Units of every product planned, at the index of the machine
+	 */
+	private final List<int[]> productCounts = new ArrayList<>();
+
+	/**
+	 * Coins of every type planned, at the index of the machine
+	 */
+	private final List<int[]> coinCounts = new ArrayList<>();
+
+	/**
+	 * Index of every machine planned
+	 */
+	private final Map<VendingMachine, Integer> indexes = new IdentityHashMap<>();
+
+	/**
+	 * Plan the refill of a machine, added to what was already planned for it
+	 *
+	 * @param machine       Machine to be refilled
+	 * @param productCounts Units of every product, indexed by the ordinal of the
+	 *                      product
+	 * @param coinCounts    Coins of every type, indexed by the ordinal of the coin
+	 * @return This plan
+	 */
+	public RefillPlan add(VendingMachine machine, int[] productCounts, int[] coinCounts) {
+		if (productCounts.length != Products.COUNT || coinCounts.length != Coins.COUNT) {
+			throw new IllegalArgumentException("A count is needed for every product and every coin");
+		}
+		int index = indexOf(machine);
+		int[] products = this.productCounts.get(index);
+		for (int i = 0; i < products.length; i++) {
+			products[i] = Math.addExact(products[i], RefillCounts.check(productCounts[i]));
+		}
+		int[] coins = this.coinCounts.get(index);
+		for (int i = 0; i < coins.length; i++) {
+			coins[i] = Math.addExact(coins[i], RefillCounts.check(coinCounts[i]));
+		}
+		return this;
+	}
+
+	/**
+	 * Plan the refill of units of a product
+	 *
+	 * @param machine Machine to be refilled
+	 * @param product Product to be added
+	 * @param count   Units to be added
+	 * @return This plan
+	 */
+	public RefillPlan addProducts(VendingMachine machine, Product product, int count) {
+		int[] products = productCounts.get(indexOf(machine));
+		products[product.ordinal()] = Math.addExact(products[product.ordinal()], RefillCounts.check(count));
+		return this;
+	}
+
+	/**
+	 * Plan the refill of coins of a type
+	 *
+	 * @param machine Machine to be refilled
+	 * @param coin    Coin to be added
+	 * @param count   Coins to be added
+	 * @return This plan
+	 */
+	public RefillPlan addCoins(VendingMachine machine, Coin coin, int count) {
+		int[] coins = coinCounts.get(indexOf(machine));
+		coins[coin.ordinal()] = Math.addExact(coins[coin.ordinal()], RefillCounts.check(count));
+		return this;
+	}
+
+	/**
+	 * Number of machines planned
+	 *
+	 * @return Machines refilled by {@link #apply()}
+	 */
+	public int size() {
+		return machines.size();
+	}
+
+	/**
+	 * Refill every machine planned in the common pool, see the class for the
+	 * machines which can be refilled this way
+	 */
+	public void apply() {
+		apply(ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Refill every machine planned in the given pool, waiting for all of them
+	 *
+	 * @param pool Pool refilling the machines
+	 */
+	public void apply(ForkJoinPool pool) {
+		if (!machines.isEmpty()) {
+			pool.invoke(new RefillTask(0, machines.size()));
+		}
+	}
+
+	/**
+	 * Find the index of a machine, adding it with empty counts if it was not
+	 * planned yet
+	 *
+	 * @param machine Machine to be refilled
+	 * @return Index of the machine
+	 */
+	private int indexOf(VendingMachine machine) {
+		Integer index = indexes.get(machine);
+		if (index == null) {
+			index = machines.size();
+			indexes.put(machine, index);
+			machines.add(machine);
+			productCounts.add(new int[Products.COUNT]);
+			coinCounts.add(new int[Coins.COUNT]);
+		}
+		return index;
+	}
+
+	/**
+	 * Refills a range of machines, splitting it among the workers of the pool
+	 */
+	private final class RefillTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 4398240318752905166L;
+
+		private final int from;
+
+		private final int to;
+
+		private RefillTask(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= MACHINES_PER_TASK) {
+				for (int i = from; i < to; i++) {
+					machines.get(i).refill(productCounts.get(i), coinCounts.get(i));
+				}
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			invokeAll(new RefillTask(from, middle), new RefillTask(middle, to));
+		}
+	}
+
+}
@@ -3,6 +3,7 @@ package com.awais.machine.interfaces;
 import java.util.Collection;
 
 import com.awais.machine.exceptions.NotEnoughChangeException;
+import com.awais.machine.models.Change;
 import com.awais.machine.models.Coin;
 
 public interface CashManager {
@@ -14,6 +15,15 @@ public interface CashManager {
 	 */
 	public void add(Coin c);
 
+	/**
+	 * Add the given number of coins of one type to the stock at once
+	 * 
+	 * @param coin  Coin to be added
+	 * @param count Coins to be added
+	 * @throws IllegalArgumentException When the count is negative
+	 */
+	public void add(Coin coin, int count);
+
 	/**
 	 * Given a collection of coins add them to the stock (refilling)
 	 * 
@@ -43,11 +53,37 @@ public interface CashManager {
 	 */
 	public boolean containsMoreThenOne(Coin coin);
 
+	/**
+	 * Count the existences of the given coin
+	 * 
+	 * @param coin Coin to be checked
+	 * @return Number of coins of that type in the inventory
+	 */
+	public int getCoinCount(Coin coin);
+
+	/**
+	 * Copy the count of every coin
+	 * 
+	 * @param counts Holder of the counts, indexed by the ordinal of the coin
+	 */
+	public void copyCoinCounts(int[] counts);
+
 	/**
 	 * Reset all the existences in the inventory
 	 */
 	public void reset();
 
+	/**
+	 * Replace the coins in the stock with the given counts, used to restore a
+	 * saved state. The given coins are booked as the opening of the account, not
+	 * as refilled.
+	 * 
+	 * @param coinCounts Coins of every type, indexed by the ordinal of the coin
+	 * @throws IllegalArgumentException When a count is missing or negative,
+	 *                                  nothing is restored then
+	 */
+	public void restore(int[] coinCounts);
+
 	/**
 	 * Get total value of the coins inserted
 	 * 
@@ -56,12 +92,75 @@ public interface CashManager {
 	public long getCurrentMoney();
 
 	/**
-	 * Calculate change
+	 * Check that the coins in the stock match the account of the coins received,
+	 * refilled, dispensed and redrawn, cheap enough to be checked on every
+	 * operation
+	 * 
+	 * @return False when some coin moved without being accounted
+	 */
+	public boolean isBalanced();
+
+	/**
+	 * Calculate change and take those coins from the stock
 	 * 
-	 * @param moneyLeftToConvert
-	 * @return
-	 * @throws NotEnoughChangeException
+	 * @param moneyLeftToConvert Money to be converted in coins
+	 * @return The coins taken from the stock
+	 * @throws NotEnoughChangeException When the stock don't have enough money to
+	 *                                  convert all the value, nothing is taken
 	 */
 	public Collection<Coin> calculateChange(long moneyLeftToConvert) throws NotEnoughChangeException;
 
+	/**
+	 * Calculate change into the given holder and take those coins from the stock,
+	 * without allocating
+	 * 
+	 * @param moneyLeftToConvert Money to be converted in coins
+	 * @param change             Holder of the coins, cleared before use
+	 * @throws NotEnoughChangeException When the stock don't have enough money to
+	 *                                  convert all the value
+	 */
+	public void calculateChange(long moneyLeftToConvert, Change change) throws NotEnoughChangeException;
+
+	/**
+	 * Calculate change into the given holder and take those coins from the stock,
+	 * without allocating nor throwing. Equivalent to
+	 * {@link #planChange(long, Change)} followed by {@link #commitChange(Change)}.
+	 * 
+	 * @param moneyLeftToConvert Money to be converted in coins
+	 * @param change             Holder of the coins, cleared before use
+	 * @return False when the stock don't have enough money to convert all the
+	 *         value
+	 */
+	public boolean tryCalculateChange(long moneyLeftToConvert, Change change);
+
+	/**
+	 * Plan the change with the coins currently in the stock, without taking them
+	 * 
+	 * @param moneyLeftToConvert Money to be converted in coins
+	 * @param plan               Holder of the planned coins, cleared before use
+	 * @return False when the stock don't have enough money to convert all the
+	 *         value
+	 */
+	public boolean planChange(long moneyLeftToConvert, Change plan);
+
+	/**
+	 * Take all the coins of the given plan from the stock, or none of them
+	 * 
+	 * @param plan Coins to be taken
+	 * @return False when some coin is not in the stock anymore, nothing is taken
+	 */
+	public boolean commitChange(Change plan);
+
+	/**
+	 * Check if the change of the given amount would be given now, without taking
+	 * any coin. With an exact strategy (see {@link ChangeStrategy#isExact()}) the
+	 * amounts are kept in an index updated with the stock, so the check doesn't
+	 * search the combinations of coins. Any other strategy plans the change, as it
+	 * may fail on amounts some combination of the coins pays.
+	 * 
+	 * @param amount Money to be converted in coins
+	 * @return True when the strategy gives the change of the amount
+	 */
+	public boolean canMakeChange(long amount);
+
 }
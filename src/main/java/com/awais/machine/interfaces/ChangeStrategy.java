@@ -3,11 +3,81 @@ package com.awais.machine.interfaces;
 import java.util.Collection;
 
 import com.awais.machine.exceptions.NotEnoughChangeException;
+import com.awais.machine.models.Change;
 import com.awais.machine.models.Coin;
 import com.awais.machine.utils.Stock;
 
+/**
+ * Plans the coins to be given as change. A strategy only reads the stock it is
+ * given and never changes it, so a failed plan costs nothing and the plan can
+ * be computed on a snapshot, out of any lock. Taking the planned coins is done
+ * by the {@link CashManager} in a single step.
+ * 
+ * @author Awais Iqbal
+ *
+ */
 public interface ChangeStrategy {
 
+	/**
+	 * Plan the change
+	 * 
+	 * @param moneyLeftToConvert Money to be converted in coins
+	 * @param coinsAvailable     Coins which can be used, not modified
+	 * @return The coins to be returned, from the biggest to the smallest
+	 * @throws NotEnoughChangeException When the coins available can't convert
+	 *                                  all the value
+	 */
 	public Collection<Coin> calculateChange(long moneyLeftToConvert, Stock<Coin> coinsAvailable) throws NotEnoughChangeException;
 
+	/**
+	 * Calculate the change into the given holder instead of a new collection. The
+	 * default implementation counts the coins of
+	 * {@link #calculateChange(long, Stock)}, strategies override it to give the
+	 * change without allocating.
+	 * 
+	 * @param moneyLeftToConvert Money to be converted in coins
+	 * @param coinsAvailable     Coins which can be used, not modified
+	 * @param change             Holder of the coins, cleared before use
+	 * @throws NotEnoughChangeException When the coins available can't convert
+	 *                                  all the value
+	 */
+	public default void calculateChange(long moneyLeftToConvert, Stock<Coin> coinsAvailable, Change change)
+			throws NotEnoughChangeException {
+		change.clear();
+		for (Coin coin : calculateChange(moneyLeftToConvert, coinsAvailable)) {
+			change.add(coin, 1);
+		}
+	}
+
+	/**
+	 * Calculate the change into the given holder, reporting a failure with the
+	 * returned value instead of an exception. The default implementation catches
+	 * the exception of {@link #calculateChange(long, Stock, Change)}, strategies
+	 * override it to fail without throwing.
+	 * 
+	 * @param moneyLeftToConvert Money to be converted in coins
+	 * @param coinsAvailable     Coins which can be used, not modified
+	 * @param change             Holder of the coins, cleared before use
+	 * @return False when the coins available can't convert all the value
+	 */
+	public default boolean tryCalculateChange(long moneyLeftToConvert, Stock<Coin> coinsAvailable, Change change) {
+		try {
+			calculateChange(moneyLeftToConvert, coinsAvailable, change);
+			return true;
+		} catch (NotEnoughChangeException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Tell if the strategy gives the change whenever some combination of the
+	 * coins available pays the amount. A strategy which doesn't search every
+	 * combination, like a greedy one, may fail on such an amount.
+	 * 
+	 * @return True when the strategy never fails if the change can be given
+	 */
+	public default boolean isExact() {
+		return false;
+	}
+
 }
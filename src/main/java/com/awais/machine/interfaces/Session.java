@@ -0,0 +1,27 @@
+package com.awais.machine.interfaces;
+
+/**
+ * A purchase in progress on a {@link SessionVendingMachine}. Every session has
+ * its own inserted money, so several customers can buy at the same time from
+ * the same machine.
+ * 
+ * @author Awais Iqbal
+ *
+ */
+public interface Session {
+
+	/**
+	 * Identifier of the session, unique in the machine which opened it
+	 * 
+	 * @return Identifier of the session
+	 */
+	public long getId();
+
+	/**
+	 * Check the coins inserted in this session
+	 * 
+	 * @return Value of the inserted coins in cents
+	 */
+	public long getCurrentMoney();
+
+}
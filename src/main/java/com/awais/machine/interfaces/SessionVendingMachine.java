@@ -0,0 +1,66 @@
+package com.awais.machine.interfaces;
+
+import java.util.Collection;
+
+import com.awais.machine.exceptions.InvalidProductException;
+import com.awais.machine.exceptions.NotEnoughChangeException;
+import com.awais.machine.exceptions.NotEnoughMoneyException;
+import com.awais.machine.exceptions.SoldOutException;
+import com.awais.machine.models.Coin;
+import com.awais.machine.models.Product;
+import com.awais.machine.utils.Pair;
+
+/**
+ * Vending machine where several purchases can be in flight at the same time.
+ * Each purchase runs in its own {@link Session} with its own inserted money,
+ * only the products and the coins for change are shared. The methods inherited
+ * from {@link VendingMachine} work on a default session of the machine.
+ * 
+ * @author Awais Iqbal
+ *
+ */
+public interface SessionVendingMachine extends VendingMachine {
+
+	/**
+	 * Start a new purchase without any money inserted.
+	 * 
+	 * @return The new session
+	 */
+	public Session openSession();
+
+	/**
+	 * Add a coin in the vending machine on behalf of the given session.
+	 * 
+	 * @param session Session inserting the coin
+	 * @param coin    Coin to be inserted in the machine
+	 */
+	public void addCoin(Session session, Coin coin);
+
+	/**
+	 * Select a product paying with the money inserted in the given session.
+	 * 
+	 * @param session         Session buying the product
+	 * @param productSelected Product selected by the user
+	 * @return The request Product and List of all the coins returned to the user
+	 * @throws NotEnoughMoneyException  Thrown when the money inserted in the
+	 *                                  session is less than the price of the
+	 *                                  product
+	 * @throws SoldOutException         Thrown when the selected product is sold out
+	 * @throws NotEnoughChangeException Thrown when the machine don't have enough
+	 *                                  change for the given operation
+	 * @throws InvalidProductException  Thrown when the selected product is invalid
+	 */
+	public Pair<Product, Collection<Coin>> selectProduct(Session session, Product productSelected)
+			throws NotEnoughMoneyException, SoldOutException, NotEnoughChangeException, InvalidProductException;
+
+	/**
+	 * Return the money inserted in the given session.
+	 * 
+	 * @param session Session to be cancelled
+	 * @return List of all the coins returned
+	 * @throws NotEnoughChangeException Thrown when the machine don't have enough
+	 *                                  change to return the money
+	 */
+	public Collection<Coin> cancel(Session session) throws NotEnoughChangeException;
+
+}
@@ -6,8 +6,11 @@ import com.awais.machine.exceptions.InvalidProductException;
 import com.awais.machine.exceptions.NotEnoughChangeException;
 import com.awais.machine.exceptions.NotEnoughMoneyException;
 import com.awais.machine.exceptions.SoldOutException;
+import com.awais.machine.models.Change;
 import com.awais.machine.models.Coin;
+import com.awais.machine.models.MachineSnapshot;
 import com.awais.machine.models.Product;
+import com.awais.machine.models.SelectionResult;
 import com.awais.machine.utils.Pair;
 
 /**
@@ -49,6 +52,50 @@ public interface VendingMachine {
 	public Pair<Product, Collection<Coin>> selectProduct(Product productSelected)
 			throws NotEnoughMoneyException, SoldOutException, NotEnoughChangeException, InvalidProductException;
 
+	/**
+	 * This method represents a selection of a product, giving the change in the
+	 * given holder instead of a new collection so a successful selection doesn't
+	 * allocate.
+	 * 
+	 * @param productSelected Product selected by the user
+	 * @param change          Holder of the coins returned to the user, cleared
+	 *                        before use
+	 * @return The request Product
+	 * @throws NotEnoughMoneyException  Thrown when the inserted money is less than
+	 *                                  the price of the product
+	 * @throws SoldOutException         Thrown when the selected product is sold out
+	 * @throws NotEnoughChangeException Thrown when the machine don't have enough
+	 *                                  change for the given operation
+	 * @throws InvalidProductException  Thrown when the selected product is invalid
+	 */
+	public Product selectProduct(Product productSelected, Change change)
+			throws NotEnoughMoneyException, SoldOutException, NotEnoughChangeException, InvalidProductException;
+
+	/**
+	 * This method represents a selection of a product reporting the failures with
+	 * the returned value instead of an exception, so a failed selection costs the
+	 * same as a successful one. The state of the machine is left as the exception
+	 * throwing selection leaves it.
+	 * 
+	 * @param productSelected Product selected by the user
+	 * @param change          Holder of the coins returned to the user, cleared
+	 *                        before use
+	 * @return Outcome of the selection
+	 */
+	public SelectionResult trySelectProduct(Product productSelected, Change change);
+
+	/**
+	 * Check the outcome a selection of the given product would have now, without
+	 * selling it, so the products which can't be bought can be shown as
+	 * unavailable. The change is checked with
+	 * {@link CashManager#canMakeChange(long)}, without taking any coin.
+	 * 
+	 * @param product Product to check
+	 * @return {@link SelectionResult#SOLD} when the product can be bought with the
+	 *         inserted money, otherwise the reason of the failure
+	 */
+	public SelectionResult checkProduct(Product product);
+
 	/**
 	 * THis method reset the inserted coins value, and returns the inserted coins
 	 * 
@@ -56,6 +103,26 @@ public interface VendingMachine {
 	 */
 	public Collection<Coin> cancelRequest() throws NotEnoughChangeException;
 
+	/**
+	 * This method reset the inserted coins value, and returns the inserted coins in
+	 * the given holder
+	 * 
+	 * @param change Holder of the coins returned to the user, cleared before use
+	 * @throws NotEnoughChangeException Thrown when the machine don't have enough
+	 *                                  change to return the money
+	 */
+	public void cancelRequest(Change change) throws NotEnoughChangeException;
+
+	/**
+	 * This method reset the inserted coins value, and returns the inserted coins in
+	 * the given holder, reporting the failure with the returned value instead of
+	 * an exception
+	 * 
+	 * @param change Holder of the coins returned to the user, cleared before use
+	 * @return False when the machine don't have enough change to return the money
+	 */
+	public boolean tryCancelRequest(Change change);
+
 	/**
 	 * Operation used to refill all the beverages & coins for change
 	 * 
@@ -63,6 +130,18 @@ public interface VendingMachine {
 	 */
 	public void refill(Pair<Collection<Product>, Collection<Coin>> refilling);
 
+	/**
+	 * Refill the given number of units of every product and coins of every type,
+	 * adding each count at once instead of one unit at a time
+	 * 
+	 * @param productCounts Units of every product, indexed by the ordinal of the
+	 *                      product
+	 * @param coinCounts    Coins of every type, indexed by the ordinal of the coin
+	 * @throws IllegalArgumentException When a count is missing or negative,
+	 *                                  nothing is refilled
+	 */
+	public void refill(int[] productCounts, int[] coinCounts);
+
 	/**
 	 * Check the current inserted coins
 	 * 
@@ -70,6 +149,34 @@ public interface VendingMachine {
 	 */
 	public long getCurrentMoney();
 
+	/**
+	 * Count the existences of the given product
+	 * 
+	 * @param product Product to check
+	 * @return Number of units of the product in the machine
+	 */
+	public int getProductCount(Product product);
+
+	/**
+	 * Count the existences of the given coin available for change
+	 * 
+	 * @param coin Coin to check
+	 * @return Number of coins of that type in the machine
+	 */
+	public int getCoinCount(Coin coin);
+
+	/**
+	 * Copy the count of every product and coin and the inserted money, from any
+	 * thread and without making the users of the machine wait. The copy is
+	 * retried until no change of the state ran during it, so no operation is half
+	 * in it. A machine too busy to validate the copy may give up and mark it with
+	 * {@link MachineSnapshot#isConsistent()}. The implementations tell which
+	 * changes they see.
+	 * 
+	 * @param snapshot Holder of the state, overwritten
+	 */
+	public void snapshot(MachineSnapshot snapshot);
+
 	/**
 	 * Reset the vending machine
 	 */
@@ -0,0 +1,176 @@
+package com.awais.machine.interfaces.impl;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import com.awais.machine.exceptions.NotEnoughChangeException;
+import com.awais.machine.interfaces.ChangeStrategy;
+import com.awais.machine.models.Change;
+import com.awais.machine.models.Coin;
+import com.awais.machine.utils.CoinSystems;
+import com.awais.machine.utils.Coins;
+import com.awais.machine.utils.Stock;
+
+/**
+ * Change strategy giving the same change as {@link OptimalStrategy}, taking the
+ * greedy walk of {@link ClassicStrategy} whenever it is proved to find the
+ * fewest coins.
+ *
+ * The coin values are analysed once with
+ * {@link CoinSystems#greedyLimit(long...)}, below that limit the greedy walk
+ * with unlimited coins is optimal. The euro coins are canonical, so they have
+ * no limit. The walk then only needs the stock to hold the coins it takes, so
+ * it is used while no coin type runs short. When a coin type runs
+ * short, or the amount is above the limit, the change is solved by the exact
+ * strategy. The number of calls taking every path is counted.
+ *
+ * An instance must not be shared between threads, like the exact strategy.
+ *
+ * @author Awais Iqbal
+ *
+ */
+public class AdaptiveStrategy implements ChangeStrategy {
+
+	/**
+	 * All the possible coins from the biggest to the smallest value
+	 */
+	private static final Coin[] BY_VALUE = byValue();
+
+	/**
+	 * Smallest amount for which the greedy walk may not be optimal
+	 */
+	private static final long GREEDY_LIMIT = greedyLimit();
+
+	/**
+	 * Strategy used when the greedy walk is not proved optimal
+	 */
+	private final ChangeStrategy exact;
+
+	/**
+	 * Number of calls answered by the greedy walk
+	 */
+	private long greedyCalls;
+
+	/**
+	 * Number of calls delegated to the exact strategy
+	 */
+	private long exactCalls;
+
+	public AdaptiveStrategy() {
+		this(new OptimalStrategy());
+	}
+
+	/**
+	 * Create the strategy with the given exact strategy
+	 *
+	 * @param exact Strategy finding the change whenever it can be given
+	 */
+	public AdaptiveStrategy(ChangeStrategy exact) {
+		this.exact = exact;
+	}
+
+	@Override
+	public Collection<Coin> calculateChange(long moneyLeftToConvert, Stock<Coin> coinsAvailable)
+			throws NotEnoughChangeException {
+		Change coinsToReturn = new Change();
+		calculateChange(moneyLeftToConvert, coinsAvailable, coinsToReturn);
+		return coinsToReturn.toCollection();
+	}
+
+	@Override
+	public void calculateChange(long moneyLeftToConvert, Stock<Coin> coinsAvailable, Change coinsToReturn)
+			throws NotEnoughChangeException {
+		if (!tryCalculateChange(moneyLeftToConvert, coinsAvailable, coinsToReturn)) {
+			throw new NotEnoughChangeException("Not enough change.");
+		}
+	}
+
+	@Override
+	public boolean tryCalculateChange(long moneyLeftToConvert, Stock<Coin> coinsAvailable, Change coinsToReturn) {
+		coinsToReturn.clear();
+		if (moneyLeftToConvert <= 0) {
+			return true;
+		}
+		if (moneyLeftToConvert < GREEDY_LIMIT) {
+			long left = moneyLeftToConvert;
+			int i = 0;
+			for (; i < BY_VALUE.length && left > 0; i++) {
+				Coin coin = BY_VALUE[i];
+				long wanted = left / coin.getValue();
+				if (wanted == 0) {
+					continue;
+				}
+				if (coinsAvailable.getCount(coin) < wanted) {
+					// The stock is short of this coin, the greedy walk is not proved
+					break;
+				}
+				coinsToReturn.add(coin, (int) wanted);
+				left -= wanted * coin.getValue();
+			}
+			if (i == BY_VALUE.length || left == 0) {
+				greedyCalls++;
+				if (left == 0) {
+					return true;
+				}
+				// The amount can't be paid even with unlimited coins
+				coinsToReturn.clear();
+				return false;
+			}
+		}
+		exactCalls++;
+		return exact.tryCalculateChange(moneyLeftToConvert, coinsAvailable, coinsToReturn);
+	}
+
+	@Override
+	public boolean isExact() {
+		return exact.isExact();
+	}
+
+	/**
+	 * Number of calls answered by the greedy walk
+	 *
+	 * @return Greedy calls since the creation or the last
+	 *         {@link #resetCounters()}
+	 */
+	public long getGreedyCalls() {
+		return greedyCalls;
+	}
+
+	/**
+	 * Number of calls delegated to the exact strategy
+	 *
+	 * @return Exact calls since the creation or the last {@link #resetCounters()}
+	 */
+	public long getExactCalls() {
+		return exactCalls;
+	}
+
+	/**
+	 * Reset the counters of both paths
+	 */
+	public void resetCounters() {
+		greedyCalls = 0;
+		exactCalls = 0;
+	}
+
+	/**
+	 * Sort the coins from the biggest to the smallest value
+	 *
+	 * @return Coins sorted by value
+	 */
+	private static Coin[] byValue() {
+		// Sorted in place, the shared array must not be reordered
+		Coin[] coins = Coins.ALL.clone();
+		Arrays.sort(coins, (a, b) -> Long.compare(b.getValue(), a.getValue()));
+		return coins;
+	}
+
+	private static long greedyLimit() {
+		long[] values = new long[BY_VALUE.length];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = BY_VALUE[i].getValue();
+		}
+		return CoinSystems.greedyLimit(values);
+	}
+
+}
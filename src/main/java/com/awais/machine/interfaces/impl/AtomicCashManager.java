@@ -0,0 +1,365 @@
+package com.awais.machine.interfaces.impl;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+import com.awais.machine.exceptions.NotEnoughChangeException;
+import com.awais.machine.interfaces.CashManager;
+import com.awais.machine.interfaces.ChangeStrategy;
+import com.awais.machine.models.Change;
+import com.awais.machine.models.Coin;
+import com.awais.machine.utils.CashLedger.Entry;
+import com.awais.machine.utils.ChangeIndex;
+import com.awais.machine.utils.Coins;
+import com.awais.machine.utils.EnumStock;
+import com.awais.machine.utils.RefillCounts;
+
+/**
+ * Thread safe cash manager without locks. The counts are kept in atomic
+ * counters indexed by the ordinal of the coin, next to a running total of
+ * their value, so {@link #getCurrentMoney()} doesn't iterate the coins.
+ * 
+ * The change is planned by the strategy on a snapshot of the counts and then
+ * reserved coin by coin with compare-and-set. If another thread took some of
+ * the planned coins in between, the coins already reserved are given back and
+ * the change is planned again on a new snapshot, so a withdrawal either takes
+ * all its coins or leaves the stock as it was. The strategies are not thread
+ * safe, every thread gets its own one from the given supplier. Every thread
+ * keeps its own {@link ChangeIndex} as well, updated from the counts when it
+ * asks for an amount.
+ * 
+ * Every movement of the stock is booked per coin in the entries of a
+ * {@link com.awais.machine.utils.CashLedger}, in atomic counters as well, each
+ * coin on its own cache line. The coins coming in are booked before they are
+ * counted and the coins going out are counted before they are booked, so no
+ * movement waits for another one and the balance of a coin is never below its
+ * count. {@link #isBalanced()} is a best effort check: it compares the counts
+ * with the entries a few times and only fails when every attempt found a
+ * difference. The account is never cleared, a {@link #reset()} books the coins
+ * taken out as redrawn, so a movement running meanwhile is never lost.
+ * 
+ * @author Awais Iqbal
+ *
+ */
+public class AtomicCashManager implements CashManager {
+
+	/**
+	 * Distance between the entries of two coins in {@link #booked}, so every coin
+	 * has its own cache line
+	 */
+	private static final int COIN_STRIDE = 8;
+
+	/**
+	 * Comparisons made by {@link #isBalanced()} before reporting a difference
+	 */
+	private static final int BALANCE_ATTEMPTS = 8;
+
+	/**
+	 * Coins of every type, indexed by the ordinal of the coin
+	 */
+	private final AtomicIntegerArray counts = new AtomicIntegerArray(Coins.COUNT);
+
+	/**
+	 * Value of all the coins in the stock
+	 */
+	private final AtomicLong total = new AtomicLong();
+
+	/**
+	 * Coins booked in every entry, indexed by the ordinal of the coin times
+	 * {@link #COIN_STRIDE} plus the ordinal of the entry
+	 */
+	private final AtomicLongArray booked = new AtomicLongArray(Coins.COUNT * COIN_STRIDE);
+
+	/**
+	 * Strategy and snapshot used by every thread to plan the change
+	 */
+	private final ThreadLocal<Planner> planners;
+
+	/**
+	 * Create an empty cash manager
+	 * 
+	 * @param strategies Creates the strategy used by every thread
+	 */
+	public AtomicCashManager(Supplier<ChangeStrategy> strategies) {
+		this.planners = ThreadLocal.withInitial(() -> new Planner(strategies.get()));
+	}
+
+	@Override
+	public void add(Coin c) {
+		if (c != null) {
+			book(Entry.RECEIVED, c, 1);
+			counts.incrementAndGet(c.ordinal());
+			total.addAndGet(c.getValue());
+		}
+	}
+
+	@Override
+	public void add(Coin coin, int count) {
+		if (RefillCounts.check(count) != 0) {
+			book(Entry.REFILLED, coin, count);
+			counts.addAndGet(coin.ordinal(), count);
+			total.addAndGet(count * coin.getValue());
+		}
+	}
+
+	@Override
+	public void refill(Collection<Coin> coinsToBeRefilled) {
+		for (Coin coin : coinsToBeRefilled) {
+			add(coin, 1);
+		}
+	}
+
+	@Override
+	public void redraw(Coin coin) {
+		if (take(coin.ordinal(), 1)) {
+			book(Entry.REDRAWN, coin, 1);
+			total.addAndGet(-coin.getValue());
+		}
+	}
+
+	@Override
+	public void redraw(Collection<Coin> coins) {
+		for (Coin coin : coins) {
+			redraw(coin);
+		}
+	}
+
+	@Override
+	public boolean containsMoreThenOne(Coin coin) {
+		return counts.get(coin.ordinal()) > 0;
+	}
+
+	@Override
+	public int getCoinCount(Coin coin) {
+		return counts.get(coin.ordinal());
+	}
+
+	/**
+	 * Copy the count of every coin, each count read on its own. A copy taken while
+	 * coins are taken may hold some of them and not others.
+	 */
+	@Override
+	public void copyCoinCounts(int[] counts) {
+		for (int i = 0; i < Coins.COUNT; i++) {
+			counts[i] = this.counts.get(i);
+		}
+	}
+
+	/**
+	 * Take every coin out of the stock, booked as redrawn. Movements running at
+	 * the same time are kept and booked, so the account stays balanced.
+	 */
+	@Override
+	public void reset() {
+		restore(new int[Coins.COUNT]);
+	}
+
+	/**
+	 * Replace the coins in the stock, one coin type at a time. The coins taken out
+	 * are booked as redrawn and the given ones as the opening, the account is not
+	 * cleared so the movements running meanwhile are never lost.
+	 */
+	@Override
+	public void restore(int[] coinCounts) {
+		RefillCounts.checkCoins(coinCounts);
+		for (Coin coin : Coins.ALL) {
+			int count = coinCounts[coin.ordinal()];
+			book(Entry.OPENING, coin, count);
+			int taken = counts.getAndSet(coin.ordinal(), count);
+			book(Entry.REDRAWN, coin, taken);
+			total.addAndGet((count - taken) * coin.getValue());
+		}
+	}
+
+	@Override
+	public long getCurrentMoney() {
+		return total.get();
+	}
+
+	/**
+	 * Check that the count of every coin and the running total match the balance
+	 * of the entries. A movement half made shows as a difference, so the check is
+	 * made up to {@link #BALANCE_ATTEMPTS} times and passes as soon as one
+	 * attempt matches. It never makes the movements wait, but under heavy traffic
+	 * it may report a difference that the next call doesn't find.
+	 */
+	@Override
+	public boolean isBalanced() {
+		for (int attempt = 1; attempt < BALANCE_ATTEMPTS; attempt++) {
+			if (matchesTheEntries()) {
+				return true;
+			}
+			// Some movement may be half made, let it finish
+			Thread.yield();
+		}
+		return matchesTheEntries();
+	}
+
+	/**
+	 * Value booked in an entry since the creation
+	 * 
+	 * @param entry Entry to be read
+	 * @return Value of all the coins of the entry, positive for outgoing entries
+	 *         as well
+	 */
+	public long getValue(Entry entry) {
+		long value = 0;
+		for (Coin coin : Coins.ALL) {
+			value += getCount(entry, coin) * coin.getValue();
+		}
+		return value;
+	}
+
+	/**
+	 * Coins of one type booked in an entry since the creation
+	 * 
+	 * @param entry Entry to be read
+	 * @param coin  Coin to be counted
+	 * @return Coins of the entry
+	 */
+	public long getCount(Entry entry, Coin coin) {
+		return booked.get(coin.ordinal() * COIN_STRIDE + entry.ordinal());
+	}
+
+	@Override
+	public Collection<Coin> calculateChange(long moneyLeftToConvert) throws NotEnoughChangeException {
+		Change change = new Change();
+		calculateChange(moneyLeftToConvert, change);
+		return change.toCollection();
+	}
+
+	@Override
+	public void calculateChange(long moneyLeftToConvert, Change change) throws NotEnoughChangeException {
+		if (!tryCalculateChange(moneyLeftToConvert, change)) {
+			throw new NotEnoughChangeException("Not enough change.");
+		}
+	}
+
+	@Override
+	public boolean tryCalculateChange(long moneyLeftToConvert, Change change) {
+		while (planChange(moneyLeftToConvert, change)) {
+			if (commitChange(change)) {
+				return true;
+			}
+			// Some planned coin was taken by another thread, plan on the new stock
+		}
+		return false;
+	}
+
+	@Override
+	public boolean planChange(long moneyLeftToConvert, Change plan) {
+		Planner planner = planners.get();
+		for (Coin coin : Coins.ALL) {
+			planner.snapshot.setCount(coin, counts.get(coin.ordinal()));
+		}
+		return planner.strategy.tryCalculateChange(moneyLeftToConvert, planner.snapshot, plan);
+	}
+
+	@Override
+	public boolean commitChange(Change plan) {
+		for (int i = 0; i < Coins.COUNT; i++) {
+			int count = plan.getCount(Coins.ALL[i]);
+			if (count > 0 && !take(i, count)) {
+				for (int j = 0; j < i; j++) {
+					int reserved = plan.getCount(Coins.ALL[j]);
+					if (reserved > 0) {
+						counts.addAndGet(j, reserved);
+					}
+				}
+				return false;
+			}
+		}
+		for (Coin coin : Coins.ALL) {
+			book(Entry.DISPENSED, coin, plan.getCount(coin));
+		}
+		total.addAndGet(-plan.getValue());
+		return true;
+	}
+
+	@Override
+	public boolean canMakeChange(long amount) {
+		Planner planner = planners.get();
+		if (!planner.strategy.isExact() || amount > planner.index.getMaxAmount()) {
+			return planChange(amount, planner.scratch);
+		}
+		for (Coin coin : Coins.ALL) {
+			planner.index.update(coin, counts.get(coin.ordinal()));
+		}
+		return planner.index.contains(amount);
+	}
+
+	/**
+	 * Book some coins of one type in an entry
+	 * 
+	 * @param entry Entry of the movement
+	 * @param coin  Coin moved
+	 * @param count Coins moved
+	 */
+	private void book(Entry entry, Coin coin, int count) {
+		if (count != 0) {
+			booked.addAndGet(coin.ordinal() * COIN_STRIDE + entry.ordinal(), count);
+		}
+	}
+
+	/**
+	 * Compare the counts and the total with the balance of the entries
+	 * 
+	 * @return False when some coin moved without being booked
+	 */
+	private boolean matchesTheEntries() {
+		long value = 0;
+		for (Coin coin : Coins.ALL) {
+			long balance = getCount(Entry.OPENING, coin) + getCount(Entry.RECEIVED, coin)
+					+ getCount(Entry.REFILLED, coin) - getCount(Entry.DISPENSED, coin)
+					- getCount(Entry.REDRAWN, coin);
+			if (counts.get(coin.ordinal()) != balance) {
+				return false;
+			}
+			value += balance * coin.getValue();
+		}
+		return value == total.get();
+	}
+
+	/**
+	 * Take the given number of coins of one type
+	 * 
+	 * @param ordinal Ordinal of the coin
+	 * @param count   Coins to be taken
+	 * @return False when there are not enough coins, the count is unchanged
+	 */
+	private boolean take(int ordinal, int count) {
+		int current;
+		do {
+			current = counts.get(ordinal);
+			if (current < count) {
+				return false;
+			}
+		} while (!counts.compareAndSet(ordinal, current, current - count));
+		return true;
+	}
+
+	/**
+	 * Strategy of one thread with the stock it plans on and its index of amounts
+	 */
+	private static final class Planner {
+
+		private final ChangeStrategy strategy;
+
+		private final EnumStock<Coin> snapshot = new EnumStock<>(Coin.class);
+
+		private final ChangeIndex index = new ChangeIndex();
+
+		/**
+		 * Holder used to check the amounts above the maximum of the index
+		 */
+		private final Change scratch = new Change();
+
+		private Planner(ChangeStrategy strategy) {
+			this.strategy = strategy;
+		}
+	}
+
+}
@@ -0,0 +1,256 @@
+package com.awais.machine.interfaces.impl;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.awais.machine.exceptions.NotEnoughChangeException;
+import com.awais.machine.interfaces.ChangeStrategy;
+import com.awais.machine.models.Change;
+import com.awais.machine.models.Coin;
+import com.awais.machine.utils.Coins;
+import com.awais.machine.utils.Stock;
+
+/**
+ * Change strategy decorator which remembers the change given by another
+ * strategy. The plans are keyed by the amount and a signature of the coin stock,
+ * made of the count of every coin capped to the number of coins of that type
+ * that fit in the amount. Coins beyond that count can't be part of the change,
+ * so two stocks with the same signature get the same change from any strategy
+ * that only looks at the stock, like {@link ClassicStrategy} and
+ * {@link OptimalStrategy}.
+ * 
+ * As the signature is taken from the stock on every call, adding, refilling,
+ * redrawing or resetting the coins changes the key and a plan calculated for a
+ * different stock is never returned. As every strategy, it never modifies the
+ * stock. The least recently used plans are evicted once the cache is full.
+ * 
+ * The plans are kept in an access ordered {@link LinkedHashMap}, which every
+ * call reorders, so an instance must not be shared between threads, not even
+ * by machines that are each used by a single thread. The wrapped strategy is
+ * only used by the thread calling this one.
+ * 
+ * @author Awais Iqbal
+ *
+ */
+public class CachingStrategy implements ChangeStrategy {
+
+	/**
+	 * Bits used by every coin count in the signature
+	 */
+	private static final int BITS_PER_COIN = Long.SIZE / Coins.COUNT;
+
+	/**
+	 * Biggest coin count that can be stored in the signature
+	 */
+	private static final long MAX_COUNT = (1L << BITS_PER_COIN) - 1;
+
+	/**
+	 * Plan stored for the amounts that can't be converted with the stock
+	 */
+	private static final int[] NO_CHANGE = new int[0];
+
+	/**
+	 * Strategy used when the plan is not in the cache
+	 */
+	private final ChangeStrategy strategy;
+
+	/**
+	 * Plans calculated so far, in access order. A plan is the count of every coin,
+	 * indexed by the ordinal of the coin
+	 */
+	private final Map<PlanKey, int[]> plans;
+
+	/**
+	 * Key reused to look up the plans without allocating
+	 */
+	private final PlanKey lookupKey = new PlanKey(0, 0);
+
+	/**
+	 * Number of calls answered from the cache
+	 */
+	private long hits;
+
+	/**
+	 * Number of calls delegated to the strategy
+	 */
+	private long misses;
+
+	/**
+	 * Create a cache of plans for the given strategy
+	 * 
+	 * @param strategy Strategy which calculates the plans
+	 * @param capacity Maximum number of plans to keep
+	 */
+	public CachingStrategy(ChangeStrategy strategy, final int capacity) {
+		this.strategy = strategy;
+		this.plans = new LinkedHashMap<PlanKey, int[]>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 5361730424573453071L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<PlanKey, int[]> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	@Override
+	public Collection<Coin> calculateChange(long moneyLeftToConvert, Stock<Coin> coinsAvailable)
+			throws NotEnoughChangeException {
+		Change coinsToReturn = new Change();
+		calculateChange(moneyLeftToConvert, coinsAvailable, coinsToReturn);
+		return coinsToReturn.toCollection();
+	}
+
+	@Override
+	public void calculateChange(long moneyLeftToConvert, Stock<Coin> coinsAvailable, Change coinsToReturn)
+			throws NotEnoughChangeException {
+		if (!tryCalculateChange(moneyLeftToConvert, coinsAvailable, coinsToReturn)) {
+			throw new NotEnoughChangeException("Not enough change.");
+		}
+	}
+
+	@Override
+	public boolean tryCalculateChange(long moneyLeftToConvert, Stock<Coin> coinsAvailable, Change coinsToReturn) {
+		if (moneyLeftToConvert <= 0) {
+			return strategy.tryCalculateChange(moneyLeftToConvert, coinsAvailable, coinsToReturn);
+		}
+		long signature = signatureOf(moneyLeftToConvert, coinsAvailable);
+		if (signature < 0) {
+			// Too many coins to fit in the signature, don't cache it
+			misses++;
+			return strategy.tryCalculateChange(moneyLeftToConvert, coinsAvailable, coinsToReturn);
+		}
+
+		lookupKey.amount = moneyLeftToConvert;
+		lookupKey.signature = signature;
+		int[] plan = plans.get(lookupKey);
+		if (plan != null) {
+			hits++;
+			return applyPlan(plan, coinsToReturn);
+		}
+
+		misses++;
+		if (!strategy.tryCalculateChange(moneyLeftToConvert, coinsAvailable, coinsToReturn)) {
+			plans.put(new PlanKey(moneyLeftToConvert, signature), NO_CHANGE);
+			return false;
+		}
+		plan = new int[Coins.COUNT];
+		for (Coin coin : Coins.ALL) {
+			plan[coin.ordinal()] = coinsToReturn.getCount(coin);
+		}
+		plans.put(new PlanKey(moneyLeftToConvert, signature), plan);
+		return true;
+	}
+
+	@Override
+	public boolean isExact() {
+		return strategy.isExact();
+	}
+
+	/**
+	 * Number of calls answered from the cache
+	 * 
+	 * @return Hits since the creation or the last {@link #clear()}
+	 */
+	public long getHits() {
+		return hits;
+	}
+
+	/**
+	 * Number of calls delegated to the decorated strategy
+	 * 
+	 * @return Misses since the creation or the last {@link #clear()}
+	 */
+	public long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Number of plans currently cached
+	 * 
+	 * @return Size of the cache
+	 */
+	public int size() {
+		return plans.size();
+	}
+
+	/**
+	 * Discard all the cached plans and reset the counters
+	 */
+	public void clear() {
+		plans.clear();
+		hits = 0;
+		misses = 0;
+	}
+
+	/**
+	 * Copy a cached plan into the holder of the change
+	 * 
+	 * @param plan          Count of every coin to be returned
+	 * @param coinsToReturn Holder of the coins to be returned
+	 * @return False when the plan is a cached failure
+	 */
+	private static boolean applyPlan(int[] plan, Change coinsToReturn) {
+		coinsToReturn.clear();
+		if (plan == NO_CHANGE) {
+			return false;
+		}
+		for (Coin coin : Coins.ALL) {
+			coinsToReturn.add(coin, plan[coin.ordinal()]);
+		}
+		return true;
+	}
+
+	/**
+	 * Pack the count of every coin which can be part of the change for the given
+	 * amount
+	 * 
+	 * @param amount         Money to be converted
+	 * @param coinsAvailable Stock of coins
+	 * @return Signature of the stock, or -1 when a count doesn't fit in it
+	 */
+	private static long signatureOf(long amount, Stock<Coin> coinsAvailable) {
+		long signature = 0;
+		for (int i = 0; i < Coins.COUNT; i++) {
+			long count = Math.min(coinsAvailable.getCount(Coins.ALL[i]), amount / Coins.ALL[i].getValue());
+			if (count > MAX_COUNT) {
+				return -1;
+			}
+			signature |= count << (i * BITS_PER_COIN);
+		}
+		return signature;
+	}
+
+	/**
+	 * Key of a plan: amount of change and signature of the stock
+	 */
+	private static final class PlanKey {
+
+		private long amount;
+
+		private long signature;
+
+		private PlanKey(long amount, long signature) {
+			this.amount = amount;
+			this.signature = signature;
+		}
+
+		@Override
+		public int hashCode() {
+			long h = amount * 31 + signature;
+			return (int) (h ^ (h >>> 32));
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof PlanKey)) {
+				return false;
+			}
+			PlanKey other = (PlanKey) obj;
+			return amount == other.amount && signature == other.signature;
+		}
+	}
+
+}
@@ -1,15 +1,30 @@
 package com.awais.machine.interfaces.impl;
 
-import java.util.Arrays;
 import java.util.Collection;
-import java.util.Map;
 
+import com.awais.machine.events.EventRing;
 import com.awais.machine.exceptions.NotEnoughChangeException;
 import com.awais.machine.interfaces.CashManager;
 import com.awais.machine.interfaces.ChangeStrategy;
+import com.awais.machine.models.Change;
 import com.awais.machine.models.Coin;
+import com.awais.machine.utils.CashLedger;
+import com.awais.machine.utils.ChangeIndex;
+import com.awais.machine.utils.Coins;
+import com.awais.machine.utils.EnumStock;
+import com.awais.machine.utils.RefillCounts;
 import com.awais.machine.utils.Stock;
 
+/**
+ * Cash manager over a stock of coins, used by a single thread. Every movement
+ * of the stock is booked in a {@link CashLedger}, which gives the value of the
+ * stock without iterating the coins. With an exact strategy every movement
+ * updates a {@link ChangeIndex} as well, so {@link #canMakeChange(long)} is a
+ * lookup.
+ * 
+ * @author Awais Iqbal
+ *
+ */
 public class CashManagerImpl implements CashManager {
 
 	/**
@@ -22,27 +37,78 @@ public class CashManagerImpl implements CashManager {
 	 */
 	private ChangeStrategy changeStrategy;
 
+	/**
+	 * Amounts which can be paid with the stock, updated with every movement of the
+	 * stock. Null unless the strategy is exact, the others plan the change.
+	 */
+	private final ChangeIndex changeIndex;
+
+	/**
+	 * Holder used to check the amounts above the maximum of the index
+	 */
+	private final Change scratch = new Change();
+
+	/**
+	 * Ring where the change dispensed is published, null when not published
+	 */
+	private EventRing events;
+
+	/**
+	 * Account of the coins moving in and out of the stock
+	 */
+	private final CashLedger ledger = new CashLedger();
+
 	public CashManagerImpl(ChangeStrategy strategy) {
+		this(strategy, new EnumStock<>(Coin.class));
+	}
+
+	/**
+	 * Create a cash manager over the given stock, which must know every coin
+	 * 
+	 * @param strategy     Strategy to obtain the change
+	 * @param coinsInStock Stock where the coins are kept
+	 */
+	public CashManagerImpl(ChangeStrategy strategy, Stock<Coin> coinsInStock) {
 		this.changeStrategy = strategy;
-		coinsInStock = new Stock<>();
-		Arrays.stream(Coin.values()).forEach(c -> coinsInStock.initializeKey(c));
+		this.coinsInStock = coinsInStock;
+		this.changeIndex = strategy.isExact() ? new ChangeIndex() : null;
+		ledger.open(coinsInStock);
+		index();
 	}
 
 	@Override
 	public void add(Coin c) {
 		if (c != null) {
 			coinsInStock.add(c);
+			ledger.received(c);
+			index(c);
 		}
 	}
 
+	@Override
+	public void add(Coin coin, int count) {
+		RefillCounts.check(count);
+		coinsInStock.addAll(coin, count);
+		ledger.refilled(coin, count);
+		index(coin);
+	}
+
 	@Override
 	public void refill(Collection<Coin> coinsToBeRefilled) {
-		coinsInStock.refill(coinsToBeRefilled);
+		for (Coin coin : coinsToBeRefilled) {
+			coinsInStock.add(coin);
+			ledger.refilled(coin, 1);
+		}
+		index();
 	}
 
 	@Override
 	public void redraw(Coin c) {
-		coinsInStock.removeItem(c);
+		if (coinsInStock.containsMoreThenOne(c)) {
+			coinsInStock.removeItem(c);
+			ledger.redrawn(c);
+			index(c);
+		}
 	}
 
 	@Override
@@ -50,29 +116,148 @@ public class CashManagerImpl implements CashManager {
 		return coinsInStock.containsMoreThenOne(c);
 	}
 
+	@Override
+	public int getCoinCount(Coin c) {
+		return coinsInStock.getCount(c);
+	}
+
+	@Override
+	public void copyCoinCounts(int[] counts) {
+		coinsInStock.copyCounts(Coins.ALL, counts);
+	}
+
 	@Override
 	public void redraw(Collection<Coin> coins) {
-		coinsInStock.removeItems(coins);
+		for (Coin coin : coins) {
+			redraw(coin);
+		}
 	}
 
 	@Override
 	public void reset() {
 		coinsInStock.reset();
+		ledger.open(coinsInStock);
+		index();
 	}
 
 	@Override
-	public long getCurrentMoney() {
-		Map<Coin, Integer> allTheStock = coinsInStock.getCurrentStockItems();
-		long sum = 0;
-		for (Map.Entry<Coin, Integer> entry : allTheStock.entrySet()) {
-			sum += (entry.getKey().getValue() * entry.getValue());
+	public void restore(int[] coinCounts) {
+		RefillCounts.checkCoins(coinCounts);
+		coinsInStock.reset();
+		for (Coin coin : Coins.ALL) {
+			coinsInStock.addAll(coin, coinCounts[coin.ordinal()]);
 		}
-		return sum;
+		ledger.open(coinsInStock);
+		index();
+	}
+
+	@Override
+	public long getCurrentMoney() {
+		return ledger.getBalance();
+	}
+
+	@Override
+	public boolean isBalanced() {
+		return ledger.isBalanced(coinsInStock);
+	}
+
+	/**
+	 * Account of the coins since the creation or the last {@link #reset()}
+	 * 
+	 * @return The ledger of this cash manager
+	 */
+	public CashLedger getLedger() {
+		return ledger;
 	}
 
 	@Override
 	public Collection<Coin> calculateChange(long moneyLeftToConvert) throws NotEnoughChangeException {
-		return changeStrategy.calculateChange(moneyLeftToConvert, coinsInStock);
+		Change change = new Change();
+		calculateChange(moneyLeftToConvert, change);
+		return change.toCollection();
+	}
+
+	@Override
+	public void calculateChange(long moneyLeftToConvert, Change change) throws NotEnoughChangeException {
+		if (!tryCalculateChange(moneyLeftToConvert, change)) {
+			throw new NotEnoughChangeException("Not enough change.");
+		}
+	}
+
+	@Override
+	public boolean tryCalculateChange(long moneyLeftToConvert, Change change) {
+		return planChange(moneyLeftToConvert, change) && commitChange(change);
+	}
+
+	@Override
+	public boolean planChange(long moneyLeftToConvert, Change plan) {
+		return changeStrategy.tryCalculateChange(moneyLeftToConvert, coinsInStock, plan);
+	}
+
+	@Override
+	public boolean commitChange(Change plan) {
+		for (Coin coin : Coins.ALL) {
+			if (coinsInStock.getCount(coin) < plan.getCount(coin)) {
+				return false;
+			}
+		}
+		for (Coin coin : Coins.ALL) {
+			int count = plan.getCount(coin);
+			if (count > 0) {
+				for (int i = count; i > 0; i--) {
+					coinsInStock.removeItem(coin);
+				}
+				index(coin);
+			}
+		}
+		ledger.dispensed(plan);
+		if (events != null && !plan.isEmpty()) {
+			events.changeDispensed(plan);
+		}
+		return true;
+	}
+
+	/**
+	 * Publish the change dispensed in the given ring, from the thread using this
+	 * cash manager
+	 * 
+	 * @param events Ring of the events, null to stop publishing
+	 */
+	public void setEvents(EventRing events) {
+		this.events = events;
+	}
+
+	/**
+	 * The index, kept up to date by the movements, answers for an exact strategy
+	 * only. A greedy one is asked to plan the change so the answer matches the
+	 * sale.
+	 */
+	@Override
+	public boolean canMakeChange(long amount) {
+		if (changeIndex == null || amount > changeIndex.getMaxAmount()) {
+			return changeStrategy.tryCalculateChange(amount, coinsInStock, scratch);
+		}
+		return changeIndex.contains(amount);
+	}
+
+	/**
+	 * Update the index with the count of the given coin
+	 * 
+	 * @param coin Coin moved
+	 */
+	private void index(Coin coin) {
+		if (changeIndex != null) {
+			changeIndex.update(coin, coinsInStock.getCount(coin));
+		}
+	}
+
+	/**
+	 * Update the index with the count of every coin
+	 */
+	private void index() {
+		if (changeIndex != null) {
+			changeIndex.update(coinsInStock);
+		}
 	}
 
 }
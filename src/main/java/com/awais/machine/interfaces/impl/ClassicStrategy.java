@@ -1,69 +1,78 @@
 package com.awais.machine.interfaces.impl;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 
 import com.awais.machine.exceptions.NotEnoughChangeException;
 import com.awais.machine.interfaces.ChangeStrategy;
+import com.awais.machine.models.Change;
 import com.awais.machine.models.Coin;
+import com.awais.machine.utils.Coins;
 import com.awais.machine.utils.Stock;
 
+/**
+ * Change strategy giving the biggest coin available first. It can fail when a
+ * smaller coin would have led to the change, see {@link OptimalStrategy}.
+ * 
+ * @author Awais Iqbal
+ *
+ */
 public class ClassicStrategy implements ChangeStrategy {
 
-	private Stock<Coin> coinsAvailable;
+	/**
+	 * All the possible coins from the biggest to the smallest value
+	 */
+	private static final Coin[] BY_VALUE = byValue();
 
 	@Override
 	public Collection<Coin> calculateChange(long moneyLeftToConvert, Stock<Coin> coinsAvailable)
 			throws NotEnoughChangeException {
-		Collection<Coin> coinsToReturn = new ArrayList<>();
-		this.coinsAvailable = coinsAvailable;
-		// while the money left is not 0, try to get a coin from the biggest to the
-		// smallest coin
-		while (moneyLeftToConvert > 0) {
-			if (checkCoinAvailabity(moneyLeftToConvert, Coin.TWO_EURO)) {
-				moneyLeftToConvert = collectReturnAndRemoveCoin(coinsToReturn, moneyLeftToConvert, Coin.TWO_EURO);
-			} else if (checkCoinAvailabity(moneyLeftToConvert, Coin.ONE_EURO)) {
-				moneyLeftToConvert = collectReturnAndRemoveCoin(coinsToReturn, moneyLeftToConvert, Coin.ONE_EURO);
-			} else if (checkCoinAvailabity(moneyLeftToConvert, Coin.FIFTY_CENTS)) {
-				moneyLeftToConvert = collectReturnAndRemoveCoin(coinsToReturn, moneyLeftToConvert, Coin.FIFTY_CENTS);
-			} else if (checkCoinAvailabity(moneyLeftToConvert, Coin.TWENTY_CENTS)) {
-				moneyLeftToConvert = collectReturnAndRemoveCoin(coinsToReturn, moneyLeftToConvert, Coin.TWENTY_CENTS);
-			} else if (checkCoinAvailabity(moneyLeftToConvert, Coin.TEN_CENTS)) {
-				moneyLeftToConvert = collectReturnAndRemoveCoin(coinsToReturn, moneyLeftToConvert, Coin.TEN_CENTS);
-			} else if (checkCoinAvailabity(moneyLeftToConvert, Coin.FIVE_CENTS)) {
-				moneyLeftToConvert = collectReturnAndRemoveCoin(coinsToReturn, moneyLeftToConvert, Coin.FIVE_CENTS);
-			} else {
-				throw new NotEnoughChangeException("Not enough change.");
-			}
+		Change coinsToReturn = new Change();
+		calculateChange(moneyLeftToConvert, coinsAvailable, coinsToReturn);
+		return coinsToReturn.toCollection();
+	}
+
+	@Override
+	public void calculateChange(long moneyLeftToConvert, Stock<Coin> coinsAvailable, Change coinsToReturn)
+			throws NotEnoughChangeException {
+		if (!tryCalculateChange(moneyLeftToConvert, coinsAvailable, coinsToReturn)) {
+			throw new NotEnoughChangeException("Not enough change.");
 		}
-		return coinsToReturn;
 	}
 
-	/**
-	 * Add the given coin in to the coins to be returned, reduce money left with the
-	 * given coin value and finally remove that coin from the stock
-	 * 
-	 * @param coinsToReturn
-	 * @param moneyLeftToConvert
-	 * @param coin
-	 * @return Money
-	 */
-	private long collectReturnAndRemoveCoin(Collection<Coin> coinsToReturn, final long moneyLeftToConvert,
-			final Coin coin) {
-		coinsToReturn.add(coin);
-		coinsAvailable.removeItem(coin);
-		return moneyLeftToConvert - coin.getValue();
+	@Override
+	public boolean tryCalculateChange(long moneyLeftToConvert, Stock<Coin> coinsAvailable, Change coinsToReturn) {
+		coinsToReturn.clear();
+		// Take as many coins as possible from the biggest to the smallest coin
+		for (int i = 0; i < BY_VALUE.length && moneyLeftToConvert > 0; i++) {
+			Coin coin = BY_VALUE[i];
+			long value = coin.getValue();
+			if (value > moneyLeftToConvert) {
+				continue;
+			}
+			int available = coinsAvailable.getCount(coin);
+			int taken = 0;
+			while (moneyLeftToConvert >= value && taken < available) {
+				moneyLeftToConvert -= value;
+				taken++;
+			}
+			if (taken > 0) {
+				coinsToReturn.add(coin, taken);
+			}
+		}
+		return moneyLeftToConvert <= 0;
 	}
 
 	/**
-	 * This method checks if the cash module contains that coin to be redraw
+	 * Sort the coins from the biggest to the smallest value
 	 * 
-	 * @param moneyLeftToConvert Money left to be returned
-	 * @param coin               Coin to check
-	 * @return True is the module has the coin available
+	 * @return Coins sorted by value
 	 */
-	private boolean checkCoinAvailabity(final long moneyLeftToConvert, final Coin coin) {
-		return moneyLeftToConvert >= coin.getValue() && coinsAvailable.containsMoreThenOne(coin);
+	private static Coin[] byValue() {
+		// Sorted in place, the shared array must not be reordered
+		Coin[] coins = Coins.ALL.clone();
+		Arrays.sort(coins, (a, b) -> Long.compare(b.getValue(), a.getValue()));
+		return coins;
 	}
 
 }
@@ -0,0 +1,631 @@
+package com.awais.machine.interfaces.impl;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.awais.machine.exceptions.InvalidProductException;
+import com.awais.machine.exceptions.NotEnoughChangeException;
+import com.awais.machine.exceptions.NotEnoughMoneyException;
+import com.awais.machine.exceptions.SoldOutException;
+import com.awais.machine.interfaces.CashManager;
+import com.awais.machine.interfaces.Session;
+import com.awais.machine.interfaces.SessionVendingMachine;
+import com.awais.machine.models.Change;
+import com.awais.machine.models.Coin;
+import com.awais.machine.models.MachineSnapshot;
+import com.awais.machine.models.Product;
+import com.awais.machine.models.SelectionResult;
+import com.awais.machine.utils.Coins;
+import com.awais.machine.utils.Pair;
+import com.awais.machine.utils.Products;
+import com.awais.machine.utils.RefillCounts;
+
+/**
+ * Thread safe implementation of the vending machine. The product stock is kept
+ * in atomic counters indexed by the ordinal of the product and the coin stock is
+ * guarded by its own lock, so the products can be reserved without waiting for
+ * a change calculation.
+ * 
+ * A selection reserves the product, takes the money inserted in the session and
+ * then reserves the change. If any step fails the previous reservations are
+ * given back, so concurrent buyers never oversell a product nor spend the same
+ * money twice. The inserted money is consumed by a successful selection.
+ * 
+ * The change is planned without taking any coin and then taken in a single
+ * step. With a thread safe cash manager, like {@link AtomicCashManager}, the
+ * coins are not guarded by any lock and the plan is computed while other
+ * threads keep using the machine.
+ * 
+ * Every change of the state counts itself in one of the {@link #versions}
+ * while it runs, picked by the session, so buyers of different sessions don't
+ * share a counter and never wait for each other there. A snapshot is retried
+ * until no change ran during the copy, like a seqlock whose writers don't
+ * exclude each other. It never waits for the buyers nor takes their locks, so
+ * under steady load it gives up after {@link #SNAPSHOT_ATTEMPTS} and keeps a
+ * best effort copy, marked as not consistent.
+ * 
+ * @author Awais Iqbal
+ *
+ */
+public class ConcurrentVendingMachineImpl implements SessionVendingMachine {
+
+	/**
+	 * One change started, counted in the high bits of a version
+	 */
+	private static final long STARTED = 1L << 32;
+
+	/**
+	 * Bits of a version counting the changes still running
+	 */
+	private static final long RUNNING_MASK = STARTED - 1;
+
+	/**
+	 * Number of versions, a power of two
+	 */
+	private static final int STRIPES = 16;
+
+	/**
+	 * Distance between two versions in {@link #versions}, so each one has its own
+	 * cache line
+	 */
+	private static final int PADDING = 16;
+
+	/**
+	 * Copies tried by a snapshot before keeping a best effort one
+	 */
+	private static final int SNAPSHOT_ATTEMPTS = 64;
+
+	/**
+	 * Module used to manage the money, guarded by {@link #cashLock} unless it is
+	 * thread safe
+	 */
+	private final CashManager cashModule;
+
+	/**
+	 * Lock guarding every access to {@link #cashModule}, null when the cash
+	 * manager is thread safe
+	 */
+	private final ReentrantLock cashLock;
+
+	/**
+	 * Stock of all the products available, indexed by the ordinal of the product
+	 */
+	private final AtomicIntegerArray productsInStock = new AtomicIntegerArray(Products.COUNT);
+
+	/**
+	 * Last identifier given to a session
+	 */
+	private final AtomicLong lastSessionId = new AtomicLong();
+
+	/**
+	 * Session used by the methods of {@link com.awais.machine.interfaces.VendingMachine}
+	 */
+	private final MachineSession defaultSession;
+
+	/**
+	 * Changes of the state started, in the high bits, and still running, in the
+	 * low bits, striped by session. A copy made while no change is running is
+	 * consistent when no version moved during it.
+	 */
+	private final AtomicLongArray versions = new AtomicLongArray(STRIPES * PADDING);
+
+	/**
+	 * Written by the snapshots after a copy, the volatile write keeps the plain
+	 * reads of a locked cash manager before the versions are checked again
+	 */
+	private volatile int copies;
+
+	public ConcurrentVendingMachineImpl(CashManager cashModule) {
+		this(cashModule, false);
+	}
+
+	/**
+	 * Create a machine over the given cash manager
+	 * 
+	 * @param cashModule     Module used to manage the money
+	 * @param threadSafeCash True when the cash manager can be used from several
+	 *                       threads by itself, so it is not guarded by a lock
+	 */
+	public ConcurrentVendingMachineImpl(CashManager cashModule, boolean threadSafeCash) {
+		this.cashModule = cashModule;
+		this.cashLock = threadSafeCash ? null : new ReentrantLock();
+		this.defaultSession = new MachineSession(this, lastSessionId.incrementAndGet());
+	}
+
+	@Override
+	public Session openSession() {
+		return new MachineSession(this, lastSessionId.incrementAndGet());
+	}
+
+	@Override
+	public void addCoin(final Coin coin) {
+		addCoin(defaultSession, coin);
+	}
+
+	@Override
+	public void addCoin(final Session session, final Coin coin) {
+		MachineSession owned = owned(session);
+		if (coin != null) {
+			int stripe = beginChange(owned);
+			try {
+				// The coin is in the stock before it can be spent
+				lockCash();
+				try {
+					cashModule.add(coin);
+				} finally {
+					unlockCash();
+				}
+				owned.credit.addAndGet(coin.getValue());
+			} finally {
+				endChange(stripe);
+			}
+		}
+	}
+
+	@Override
+	public long getCurrentMoney() {
+		return defaultSession.getCurrentMoney();
+	}
+
+	@Override
+	public long getProductPrice(final Product product) throws InvalidProductException {
+		if (product == null) {
+			throw new InvalidProductException("The selected product is invalid");
+		}
+		return product.getPrice();
+	}
+
+	@Override
+	public void refill(final Pair<Collection<Product>, Collection<Coin>> refilling) {
+		int stripe = beginChange(defaultSession);
+		try {
+			// Refill products
+			for (Product product : refilling.getFirstItem()) {
+				productsInStock.incrementAndGet(product.ordinal());
+			}
+
+			// Refill Coins
+			lockCash();
+			try {
+				cashModule.refill(refilling.getSecondItem());
+			} finally {
+				unlockCash();
+			}
+		} finally {
+			endChange(stripe);
+		}
+	}
+
+	@Override
+	public void refill(final int[] productCounts, final int[] coinCounts) {
+		RefillCounts.check(productCounts, coinCounts);
+		int stripe = beginChange(defaultSession);
+		try {
+			// Refill products
+			for (int i = 0; i < productsInStock.length(); i++) {
+				if (productCounts[i] != 0) {
+					productsInStock.addAndGet(i, productCounts[i]);
+				}
+			}
+
+			// Refill Coins
+			lockCash();
+			try {
+				for (Coin coin : Coins.ALL) {
+					cashModule.add(coin, coinCounts[coin.ordinal()]);
+				}
+			} finally {
+				unlockCash();
+			}
+		} finally {
+			endChange(stripe);
+		}
+	}
+
+	@Override
+	public Pair<Product, Collection<Coin>> selectProduct(final Product selectedProduct)
+			throws NotEnoughMoneyException, SoldOutException, NotEnoughChangeException, InvalidProductException {
+		return selectProduct(defaultSession, selectedProduct);
+	}
+
+	@Override
+	public Pair<Product, Collection<Coin>> selectProduct(final Session session, final Product selectedProduct)
+			throws NotEnoughMoneyException, SoldOutException, NotEnoughChangeException, InvalidProductException {
+		Change coinsToReturn = new Change();
+		sell(owned(session), selectedProduct, coinsToReturn);
+		return new Pair<>(selectedProduct, coinsToReturn.toCollection());
+	}
+
+	@Override
+	public Product selectProduct(final Product selectedProduct, final Change coinsToReturn)
+			throws NotEnoughMoneyException, SoldOutException, NotEnoughChangeException, InvalidProductException {
+		return sell(defaultSession, selectedProduct, coinsToReturn);
+	}
+
+	@Override
+	public SelectionResult trySelectProduct(final Product selectedProduct, final Change coinsToReturn) {
+		return trySell(defaultSession, selectedProduct, coinsToReturn);
+	}
+
+	/**
+	 * Check a selection paid with the money of the default session. Other buyers
+	 * may take the product or the coins before the selection is made.
+	 */
+	@Override
+	public SelectionResult checkProduct(final Product product) {
+		if (product == null) {
+			return SelectionResult.INVALID_PRODUCT;
+		}
+		if (productsInStock.get(product.ordinal()) < 1) {
+			return SelectionResult.SOLD_OUT;
+		}
+		long credit = defaultSession.credit.get();
+		if (product.getPrice() > credit) {
+			return SelectionResult.NOT_ENOUGH_MONEY;
+		}
+		lockCash();
+		try {
+			if (!cashModule.canMakeChange(credit - product.getPrice())) {
+				return SelectionResult.NOT_ENOUGH_CHANGE;
+			}
+		} finally {
+			unlockCash();
+		}
+		return SelectionResult.SOLD;
+	}
+
+	@Override
+	public int getProductCount(final Product product) {
+		return productsInStock.get(product.ordinal());
+	}
+
+	@Override
+	public int getCoinCount(final Coin coin) {
+		lockCash();
+		try {
+			return cashModule.getCoinCount(coin);
+		} finally {
+			unlockCash();
+		}
+	}
+
+	/**
+	 * Copy the state of the machine and the money of the default session without
+	 * taking any lock. The copy is retried until no change of the state ran
+	 * during it, so it is consistent: the coins of a sale and the product sold are
+	 * both in the copy or both out of it. After {@link #SNAPSHOT_ATTEMPTS} the
+	 * last copy is kept and marked as not consistent, so a busy machine never
+	 * makes the caller wait nor its buyers slow down.
+	 */
+	@Override
+	public void snapshot(final MachineSnapshot snapshot) {
+		for (int attempt = 1; attempt <= SNAPSHOT_ATTEMPTS; attempt++) {
+			long started = startedChanges();
+			if (started < 0) {
+				// A change is running, let the buyers finish it
+				Thread.yield();
+				continue;
+			}
+			copy(snapshot);
+			copies = attempt;
+			if (startedChanges() == started) {
+				snapshot.setConsistent(true);
+				return;
+			}
+		}
+		copy(snapshot);
+		snapshot.setConsistent(false);
+	}
+
+	/**
+	 * Reset the stocks and the money inserted through the default session. The
+	 * money inserted in other open sessions is kept.
+	 */
+	@Override
+	public void reset() {
+		int stripe = beginChange(defaultSession);
+		try {
+			lockCash();
+			try {
+				cashModule.reset();
+			} finally {
+				unlockCash();
+			}
+			for (int i = 0; i < productsInStock.length(); i++) {
+				productsInStock.set(i, 0);
+			}
+			defaultSession.credit.set(0);
+		} finally {
+			endChange(stripe);
+		}
+	}
+
+	@Override
+	public Collection<Coin> cancelRequest() throws NotEnoughChangeException {
+		return cancel(defaultSession);
+	}
+
+	@Override
+	public void cancelRequest(final Change coinsToReturn) throws NotEnoughChangeException {
+		if (!refund(defaultSession, coinsToReturn)) {
+			throw new NotEnoughChangeException("Not enough change.");
+		}
+	}
+
+	@Override
+	public boolean tryCancelRequest(final Change coinsToReturn) {
+		return refund(defaultSession, coinsToReturn);
+	}
+
+	@Override
+	public Collection<Coin> cancel(final Session session) throws NotEnoughChangeException {
+		Change coinsToReturn = new Change();
+		if (!refund(owned(session), coinsToReturn)) {
+			throw new NotEnoughChangeException("Not enough change.");
+		}
+		return coinsToReturn.toCollection();
+	}
+
+	/**
+	 * Sell the given product paying with the money of the given session
+	 * 
+	 * @param session         Session buying the product
+	 * @param selectedProduct Product selected by the user
+	 * @param coinsToReturn   Holder of the change
+	 * @return The sold product
+	 */
+	private Product sell(final MachineSession session, final Product selectedProduct, final Change coinsToReturn)
+			throws NotEnoughMoneyException, SoldOutException, NotEnoughChangeException, InvalidProductException {
+		switch (trySell(session, selectedProduct, coinsToReturn)) {
+		case INVALID_PRODUCT:
+			throw new InvalidProductException("The selected product is invalid");
+		case SOLD_OUT:
+			throw new SoldOutException("Sorry, product already sold out");
+		case NOT_ENOUGH_MONEY:
+			throw new NotEnoughMoneyException(selectedProduct, session.credit.get());
+		case NOT_ENOUGH_CHANGE:
+			throw new NotEnoughChangeException("Not enough change.");
+		default:
+			return selectedProduct;
+		}
+	}
+
+	/**
+	 * Sell the given product paying with the money of the given session. The
+	 * money is taken, then the product is reserved and finally the change is
+	 * reserved, giving back the previous reservations when a step fails. Taking
+	 * the money first keeps a buyer without enough of it from holding the last
+	 * unit, which would make the product look sold out to the others.
+	 * 
+	 * @param session         Session buying the product
+	 * @param selectedProduct Product selected by the user
+	 * @param coinsToReturn   Holder of the change
+	 * @return Outcome of the selection
+	 */
+	private SelectionResult trySell(final MachineSession session, final Product selectedProduct,
+			final Change coinsToReturn) {
+		if (selectedProduct == null) {
+			return SelectionResult.INVALID_PRODUCT;
+		}
+		if (productsInStock.get(selectedProduct.ordinal()) < 1) {
+			return SelectionResult.SOLD_OUT;
+		}
+		int stripe = beginChange(session);
+		try {
+			long credit = takeCredit(session.credit, selectedProduct);
+			if (credit < 0) {
+				return SelectionResult.NOT_ENOUGH_MONEY;
+			}
+
+			if (!reserveProduct(selectedProduct)) {
+				session.credit.addAndGet(credit);
+				return SelectionResult.SOLD_OUT;
+			}
+
+			if (!reserveChange(credit - selectedProduct.getPrice(), coinsToReturn)) {
+				session.credit.addAndGet(credit);
+				productsInStock.incrementAndGet(selectedProduct.ordinal());
+				return SelectionResult.NOT_ENOUGH_CHANGE;
+			}
+			return SelectionResult.SOLD;
+		} finally {
+			endChange(stripe);
+		}
+	}
+
+	/**
+	 * Give back all the money inserted in the given session
+	 * 
+	 * @param session       Session to be cancelled
+	 * @param coinsToReturn Holder of the coins returned
+	 * @return False when the stock don't have enough money to convert all the
+	 *         value
+	 */
+	private boolean refund(final MachineSession session, final Change coinsToReturn) {
+		int stripe = beginChange(session);
+		try {
+			long credit = session.credit.getAndSet(0);
+			if (!reserveChange(credit, coinsToReturn)) {
+				session.credit.addAndGet(credit);
+				return false;
+			}
+			return true;
+		} finally {
+			endChange(stripe);
+		}
+	}
+
+	/**
+	 * Take one unit of the given product from the stock
+	 * 
+	 * @param product Product to be reserved
+	 * @return False when the machine don't have any existence
+	 */
+	private boolean reserveProduct(final Product product) {
+		int ordinal = product.ordinal();
+		int count;
+		do {
+			count = productsInStock.get(ordinal);
+			if (count < 1) {
+				return false;
+			}
+		} while (!productsInStock.compareAndSet(ordinal, count, count - 1));
+		return true;
+	}
+
+	/**
+	 * Take all the inserted money if it is enough for the given product
+	 * 
+	 * @param insertedCoinsValue Money inserted in the session
+	 * @param product            Product to be paid
+	 * @return Money taken, or -1 when the inserted money is less than the price of
+	 *         the product
+	 */
+	private static long takeCredit(final AtomicLong insertedCoinsValue, final Product product) {
+		long credit;
+		do {
+			credit = insertedCoinsValue.get();
+			if (product.getPrice() > credit) {
+				return -1;
+			}
+		} while (!insertedCoinsValue.compareAndSet(credit, 0));
+		return credit;
+	}
+
+	/**
+	 * Calculate the change and take those coins from the stock
+	 * 
+	 * @param changeToReturn Money to be converted in coins
+	 * @param coinsToReturn  Holder of the coins representing the requested value
+	 * @return False when the stock don't have enough money to convert all the
+	 *         value
+	 */
+	private boolean reserveChange(final long changeToReturn, final Change coinsToReturn) {
+		lockCash();
+		try {
+			return cashModule.tryCalculateChange(changeToReturn, coinsToReturn);
+		} finally {
+			unlockCash();
+		}
+	}
+
+	/**
+	 * Count a change of the state as started and running in the version of the
+	 * given session
+	 * 
+	 * @param session Session making the change
+	 * @return Index of the version, to be given to {@link #endChange(int)}
+	 */
+	private int beginChange(final MachineSession session) {
+		int stripe = (int) (session.id & (STRIPES - 1)) * PADDING;
+		versions.addAndGet(stripe, STARTED + 1);
+		return stripe;
+	}
+
+	/**
+	 * Count a change of the state as finished
+	 * 
+	 * @param stripe Index of the version returned by
+	 *               {@link #beginChange(MachineSession)}
+	 */
+	private void endChange(final int stripe) {
+		versions.decrementAndGet(stripe);
+	}
+
+	/**
+	 * Changes of the state started in every version, reading each version once
+	 * 
+	 * @return Sum of the started counts, which only grows, or -1 when some change
+	 *         is running
+	 */
+	private long startedChanges() {
+		long started = 0;
+		for (int i = 0; i < STRIPES * PADDING; i += PADDING) {
+			long version = versions.get(i);
+			if ((version & RUNNING_MASK) != 0) {
+				return -1;
+			}
+			started += version >>> 32;
+		}
+		return started;
+	}
+
+	/**
+	 * Copy the state without any lock, it is validated by the caller
+	 * 
+	 * @param snapshot Holder of the state
+	 */
+	private void copy(final MachineSnapshot snapshot) {
+		for (int i = 0; i < productsInStock.length(); i++) {
+			snapshot.getProductCounts()[i] = productsInStock.get(i);
+		}
+		try {
+			cashModule.copyCoinCounts(snapshot.getCoinCounts());
+		} catch (RuntimeException e) {
+			// The coins were changed under the copy, it is not validated
+		}
+		snapshot.setCurrentMoney(defaultSession.getCurrentMoney());
+	}
+
+	private void lockCash() {
+		if (cashLock != null) {
+			cashLock.lock();
+		}
+	}
+
+	private void unlockCash() {
+		if (cashLock != null) {
+			cashLock.unlock();
+		}
+	}
+
+	/**
+	 * Check that the given session was opened by this machine
+	 * 
+	 * @param session Session to check
+	 * @return The session of this machine
+	 */
+	private MachineSession owned(final Session session) {
+		if (!(session instanceof MachineSession) || ((MachineSession) session).machine != this) {
+			throw new IllegalArgumentException("The session was not opened by this machine");
+		}
+		return (MachineSession) session;
+	}
+
+	/**
+	 * Session opened by this machine, holding its inserted money
+	 */
+	private static final class MachineSession implements Session {
+
+		/**
+		 * Machine which opened the session
+		 */
+		private final ConcurrentVendingMachineImpl machine;
+
+		private final long id;
+
+		/**
+		 * Value of the coins inserted in this session
+		 */
+		private final AtomicLong credit = new AtomicLong();
+
+		private MachineSession(ConcurrentVendingMachineImpl machine, long id) {
+			this.machine = machine;
+			this.id = id;
+		}
+
+		@Override
+		public long getId() {
+			return id;
+		}
+
+		@Override
+		public long getCurrentMoney() {
+			return credit.get();
+		}
+	}
+
+}
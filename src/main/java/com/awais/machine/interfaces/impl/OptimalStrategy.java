@@ -0,0 +1,92 @@
+package com.awais.machine.interfaces.impl;
+
+import java.util.Collection;
+
+import com.awais.machine.exceptions.NotEnoughChangeException;
+import com.awais.machine.interfaces.ChangeStrategy;
+import com.awais.machine.models.Change;
+import com.awais.machine.models.Coin;
+import com.awais.machine.utils.ChangeSolver;
+import com.awais.machine.utils.Coins;
+import com.awais.machine.utils.Stock;
+
+/**
+ * Change strategy that always finds the change with the fewest coins, using only
+ * the coins available in the stock. Unlike {@link ClassicStrategy} it never
+ * fails when the change can be given, e.g. 60 cents with three twenty cents
+ * coins and a fifty cents coin.
+ * 
+ * The problem is solved by a {@link ChangeSolver} over the coin values, see
+ * there for the cost and the tables kept between calls. An instance must not be
+ * shared between threads.
+ * 
+ * @author Awais Iqbal
+ *
+ */
+public class OptimalStrategy implements ChangeStrategy {
+
+	/**
+	 * Amount the tables are sized for at first: 10 euros
+	 */
+	private static final long DEFAULT_AMOUNT = 1000;
+
+	private final ChangeSolver solver = new ChangeSolver(valuesOf(Coins.ALL), DEFAULT_AMOUNT);
+
+	/**
+	 * Coins available of every type, indexed by the ordinal of the coin
+	 */
+	private final int[] counts = new int[Coins.COUNT];
+
+	/**
+	 * Coins of every type in the change, indexed by the ordinal of the coin
+	 */
+	private final int[] used = new int[Coins.COUNT];
+
+	@Override
+	public Collection<Coin> calculateChange(long moneyLeftToConvert, Stock<Coin> coinsAvailable)
+			throws NotEnoughChangeException {
+		Change coinsToReturn = new Change();
+		calculateChange(moneyLeftToConvert, coinsAvailable, coinsToReturn);
+		return coinsToReturn.toCollection();
+	}
+
+	@Override
+	public void calculateChange(long moneyLeftToConvert, Stock<Coin> coinsAvailable, Change coinsToReturn)
+			throws NotEnoughChangeException {
+		if (!tryCalculateChange(moneyLeftToConvert, coinsAvailable, coinsToReturn)) {
+			throw new NotEnoughChangeException("Not enough change.");
+		}
+	}
+
+	@Override
+	public boolean tryCalculateChange(long moneyLeftToConvert, Stock<Coin> coinsAvailable, Change coinsToReturn) {
+		coinsToReturn.clear();
+		if (moneyLeftToConvert <= 0) {
+			return true;
+		}
+		for (Coin coin : Coins.ALL) {
+			counts[coin.ordinal()] = coinsAvailable.getCount(coin);
+		}
+		if (!solver.solve(moneyLeftToConvert, counts, used)) {
+			return false;
+		}
+		for (Coin coin : Coins.ALL) {
+			coinsToReturn.add(coin, used[coin.ordinal()]);
+		}
+		return true;
+	}
+
+	@Override
+	public boolean isExact() {
+		return true;
+	}
+
+	private static long[] valuesOf(Coin[] coins) {
+		long[] values = new long[coins.length];
+		for (Coin coin : coins) {
+			values[coin.ordinal()] = coin.getValue();
+		}
+		return values;
+	}
+
+}
@@ -1,22 +1,35 @@
 package com.awais.machine.interfaces.impl;
 
-import java.util.Arrays;
 import java.util.Collection;
+import java.util.concurrent.locks.StampedLock;
 
+import com.awais.machine.events.EventRing;
 import com.awais.machine.exceptions.InvalidProductException;
 import com.awais.machine.exceptions.NotEnoughChangeException;
 import com.awais.machine.exceptions.NotEnoughMoneyException;
 import com.awais.machine.exceptions.SoldOutException;
 import com.awais.machine.interfaces.CashManager;
 import com.awais.machine.interfaces.VendingMachine;
+import com.awais.machine.models.Change;
 import com.awais.machine.models.Coin;
+import com.awais.machine.models.MachineSnapshot;
 import com.awais.machine.models.Product;
+import com.awais.machine.models.SelectionResult;
+import com.awais.machine.utils.Coins;
+import com.awais.machine.utils.EnumStock;
 import com.awais.machine.utils.Pair;
-import com.awais.machine.utils.Stock;
+import com.awais.machine.utils.Products;
+import com.awais.machine.utils.RefillCounts;
 
 /**
  * Implementation of the vending machine.
  * 
+ * The machine is used by a single thread, but its state can be copied by any
+ * other thread with {@link #snapshot(MachineSnapshot)}. Every change of the
+ * state is done holding the write lock of a {@link StampedLock}, which is never
+ * contended as the readers don't lock: they copy the state optimistically and
+ * retry when a change happened meanwhile, so they never slow down the sales.
+ * 
  * @author Awais Iqbal
  *
  */
@@ -30,7 +43,7 @@ public class VendingMachineImpl implements VendingMachine {
 	/**
 	 * Stock of all the products available
 	 */
-	private Stock<Product> productsInStock;
+	private EnumStock<Product> productsInStock;
 
 	/**
 	 * Currently selected product
@@ -42,6 +55,16 @@ public class VendingMachineImpl implements VendingMachine {
 	 */
 	private long insertedCoinsValue;
 
+	/**
+	 * Ring where the state transitions are published, null when not published
+	 */
+	private EventRing events;
+
+	/**
+	 * Version of the state, written while the state is being changed
+	 */
+	private final StampedLock version = new StampedLock();
+
 	/**
 	 * Default construct which initialize all the possibles values of the enums
 	 * {@link Coin} and {@link Product}
@@ -50,15 +73,22 @@ public class VendingMachineImpl implements VendingMachine {
 
 		this.cashModule = cashModule;
 
-		productsInStock = new Stock<>();
-		Arrays.stream(Product.values()).forEach(c -> productsInStock.initializeKey(c));
+		productsInStock = new EnumStock<>(Product.class);
 	}
 
 	@Override
 	public void addCoin(final Coin coin) {
 		if (coin != null) {
-			insertedCoinsValue += coin.getValue();
-			cashModule.add(coin);
+			long stamp = version.writeLock();
+			try {
+				insertedCoinsValue += coin.getValue();
+				cashModule.add(coin);
+			} finally {
+				version.unlockWrite(stamp);
+			}
+			if (events != null) {
+				events.coinInserted(coin);
+			}
 		}
 	}
 
@@ -77,17 +107,48 @@ public class VendingMachineImpl implements VendingMachine {
 
 	@Override
 	public void refill(final Pair<Collection<Product>, Collection<Coin>> refilling) {
-		// Refill products
-		refilling.getFirstItem().stream().forEach(p -> productsInStock.add(p));
-
-		// Refill Coins
-		refilling.getSecondItem().stream().forEach(c -> cashModule.add(c));
+		// Count the units of every item, then add every count at once
+		int[] productCounts = new int[Products.COUNT];
+		for (Product product : refilling.getFirstItem()) {
+			productCounts[product.ordinal()]++;
+		}
+		int[] coinCounts = new int[Coins.COUNT];
+		for (Coin coin : refilling.getSecondItem()) {
+			coinCounts[coin.ordinal()]++;
+		}
+		refill(productCounts, coinCounts);
+	}
 
+	@Override
+	public void refill(final int[] productCounts, final int[] coinCounts) {
+		RefillCounts.check(productCounts, coinCounts);
+		long stamp = version.writeLock();
+		try {
+			for (Product product : Products.ALL) {
+				productsInStock.addAll(product, productCounts[product.ordinal()]);
+			}
+			for (Coin coin : Coins.ALL) {
+				cashModule.add(coin, coinCounts[coin.ordinal()]);
+			}
+		} finally {
+			version.unlockWrite(stamp);
+		}
+		if (events != null) {
+			events.refilled(productCounts, coinCounts);
+		}
 	}
 
 	@Override
 	public Pair<Product, Collection<Coin>> selectProduct(final Product selectedProduct)
 			throws NotEnoughMoneyException, SoldOutException, NotEnoughChangeException, InvalidProductException {
+		Change coinsToReturn = new Change();
+		selectProduct(selectedProduct, coinsToReturn);
+		return new Pair<>(selectedProduct, coinsToReturn.toCollection());
+	}
+
+	@Override
+	public Product selectProduct(final Product selectedProduct, final Change coinsToReturn)
+			throws NotEnoughMoneyException, SoldOutException, NotEnoughChangeException, InvalidProductException {
 		if (selectedProduct == null) {
 			throw new InvalidProductException("The selected product is invalid");
 		}
@@ -100,31 +161,215 @@ public class VendingMachineImpl implements VendingMachine {
 		// Check enough change
 		checkEnoughMoney();
 
-		// Calculate the change
-		Collection<Coin> coinsToReturn = calculateChange(insertedCoinsValue - selectedProduct.getPrice());
+		long stamp = version.writeLock();
+		try {
+			// Calculate the change, taking those coins from the stock
+			calculateChange(insertedCoinsValue - selectedProduct.getPrice(), coinsToReturn);
 
-		// Remove that item from the stock
-		productsInStock.removeItem(this.selectedProduct);
+			// Remove that item from the stock
+			productsInStock.removeItem(this.selectedProduct);
+
+			// The inserted money has been spent
+			this.insertedCoinsValue = 0;
+		} finally {
+			version.unlockWrite(stamp);
+		}
+		if (events != null) {
+			events.productVended(selectedProduct);
+		}
 
 		this.selectedProduct = null;
-		// Remove all the coins of the change from the stock
-		coinsToReturn.stream().forEach(c -> cashModule.redraw(c));
 
-		return new Pair<>(selectedProduct, coinsToReturn);
+		return selectedProduct;
+	}
+
+	@Override
+	public SelectionResult trySelectProduct(final Product selectedProduct, final Change coinsToReturn) {
+		if (selectedProduct == null) {
+			return SelectionResult.INVALID_PRODUCT;
+		}
+		if (!productsInStock.containsMoreThenOne(selectedProduct)) {
+			return SelectionResult.SOLD_OUT;
+		}
+		if (selectedProduct.getPrice() > insertedCoinsValue) {
+			return SelectionResult.NOT_ENOUGH_MONEY;
+		}
+		long stamp = version.writeLock();
+		try {
+			if (!cashModule.tryCalculateChange(insertedCoinsValue - selectedProduct.getPrice(), coinsToReturn)) {
+				return SelectionResult.NOT_ENOUGH_CHANGE;
+			}
+			productsInStock.removeItem(selectedProduct);
+			this.insertedCoinsValue = 0;
+		} finally {
+			version.unlockWrite(stamp);
+		}
+		if (events != null) {
+			events.productVended(selectedProduct);
+		}
+		return SelectionResult.SOLD;
+	}
+
+	@Override
+	public SelectionResult checkProduct(final Product product) {
+		if (product == null) {
+			return SelectionResult.INVALID_PRODUCT;
+		}
+		if (!productsInStock.containsMoreThenOne(product)) {
+			return SelectionResult.SOLD_OUT;
+		}
+		if (product.getPrice() > insertedCoinsValue) {
+			return SelectionResult.NOT_ENOUGH_MONEY;
+		}
+		if (!cashModule.canMakeChange(insertedCoinsValue - product.getPrice())) {
+			return SelectionResult.NOT_ENOUGH_CHANGE;
+		}
+		return SelectionResult.SOLD;
 	}
 
 	@Override
 	public void reset() {
-		cashModule.reset();
-		this.productsInStock = new Stock<>();
-		this.insertedCoinsValue = 0;
+		long stamp = version.writeLock();
+		try {
+			resetState();
+		} finally {
+			version.unlockWrite(stamp);
+		}
+		if (events != null) {
+			events.reset();
+		}
 	}
 
 	@Override
 	public Collection<Coin> cancelRequest() throws NotEnoughChangeException {
-		Collection<Coin> coinsToReturn = calculateChange(insertedCoinsValue);
-		cashModule.redraw(coinsToReturn);
-		return coinsToReturn;
+		Change coinsToReturn = new Change();
+		cancelRequest(coinsToReturn);
+		return coinsToReturn.toCollection();
+	}
+
+	@Override
+	public void cancelRequest(final Change coinsToReturn) throws NotEnoughChangeException {
+		long stamp = version.writeLock();
+		try {
+			calculateChange(insertedCoinsValue, coinsToReturn);
+			cancelled();
+		} finally {
+			version.unlockWrite(stamp);
+		}
+	}
+
+	@Override
+	public boolean tryCancelRequest(final Change coinsToReturn) {
+		long stamp = version.writeLock();
+		try {
+			if (!cashModule.tryCalculateChange(insertedCoinsValue, coinsToReturn)) {
+				return false;
+			}
+			cancelled();
+			return true;
+		} finally {
+			version.unlockWrite(stamp);
+		}
+	}
+
+	@Override
+	public int getProductCount(final Product product) {
+		return productsInStock.getCount(product);
+	}
+
+	@Override
+	public int getCoinCount(final Coin coin) {
+		return cashModule.getCoinCount(coin);
+	}
+
+	/**
+	 * Copy the state without locking, any thread can call it at the same time as
+	 * the thread using the machine. The copy is retried until no change of the
+	 * state happened during it, so it is consistent: the coins of a sale and the
+	 * product sold are both in the copy or both out of it.
+	 */
+	@Override
+	public void snapshot(final MachineSnapshot snapshot) {
+		while (true) {
+			long stamp = version.tryOptimisticRead();
+			if (stamp != 0) {
+				try {
+					productsInStock.copyCounts(Products.ALL, snapshot.getProductCounts());
+					cashModule.copyCoinCounts(snapshot.getCoinCounts());
+					snapshot.setCurrentMoney(insertedCoinsValue);
+				} catch (RuntimeException e) {
+					// The state was changed under the copy, it is retried
+				}
+				if (version.validate(stamp)) {
+					snapshot.setConsistent(true);
+					return;
+				}
+			}
+			// A change is running, let the thread using the machine finish it
+			Thread.yield();
+		}
+	}
+
+	/**
+	 * Replace the whole state of the machine, used to restore a saved state.
+	 * 
+	 * @param productCounts      Units of every product, indexed by the ordinal of
+	 *                           the product
+	 * @param coinCounts         Coins of every type, indexed by the ordinal of the
+	 *                           coin
+	 * @param insertedCoinsValue Value of the inserted coins in cents
+	 * @throws IllegalArgumentException When a count is missing or negative or the
+	 *                                  money is negative, nothing is restored then
+	 */
+	public void restore(final int[] productCounts, final int[] coinCounts, final long insertedCoinsValue) {
+		RefillCounts.check(productCounts, coinCounts);
+		RefillCounts.checkCredit(insertedCoinsValue);
+		long stamp = version.writeLock();
+		try {
+			productsInStock.reset();
+			for (Product product : Products.ALL) {
+				productsInStock.setCount(product, productCounts[product.ordinal()]);
+			}
+			// The coins are the opening of the account, not a refill
+			cashModule.restore(coinCounts);
+			this.insertedCoinsValue = insertedCoinsValue;
+		} finally {
+			version.unlockWrite(stamp);
+		}
+		if (events != null) {
+			events.reset();
+			events.refilled(productCounts, coinCounts);
+		}
+	}
+
+	/**
+	 * Publish the state transitions in the given ring, from the thread using this
+	 * machine. The change dispensed is published by the cash manager, see
+	 * {@link CashManagerImpl#setEvents(EventRing)}.
+	 * 
+	 * @param events Ring of the events, null to stop publishing
+	 */
+	public void setEvents(EventRing events) {
+		this.events = events;
+	}
+
+	/**
+	 * Empty the stocks and the inserted money, holding the write lock
+	 */
+	private void resetState() {
+		cashModule.reset();
+		productsInStock.reset();
+		this.insertedCoinsValue = 0;
+	}
+
+	/**
+	 * Give back the inserted money
+	 */
+	private void cancelled() {
+		if (events != null) {
+			events.cancelled(insertedCoinsValue);
+		}
+		this.insertedCoinsValue = 0;
 	}
 
 	/**
@@ -140,20 +385,17 @@ public class VendingMachineImpl implements VendingMachine {
 	}
 
 	/**
-	 * Given the value to return, returns the list of coins to return to the machine
-	 * user
+	 * Given the value to return, collects the coins to return to the machine user
+	 * and takes them from the stock
 	 * 
 	 * @param changeToReturn Money to be converted in coins
-	 * @return List of the coins representing the requested value, otherwise return
-	 *         {@link NotEnoughChangeException}
+	 * @param coinsToReturn  Holder of the coins representing the requested value
 	 * @throws NotEnoughChangeException When the stock don't have enough money to
 	 *                                  convert all the value
 	 */
-	private Collection<Coin> calculateChange(final long changeToReturn) throws NotEnoughChangeException {
-		long moneyLeftToConvert = changeToReturn;
-		Collection<Coin> coinToReturn = cashModule.calculateChange(moneyLeftToConvert);
-		cashModule.redraw(coinToReturn);
-		return coinToReturn;
+	private void calculateChange(final long changeToReturn, final Change coinsToReturn)
+			throws NotEnoughChangeException {
+		cashModule.calculateChange(changeToReturn, coinsToReturn);
 	}
 
 	/**
@@ -163,8 +405,7 @@ public class VendingMachineImpl implements VendingMachine {
 	 */
 	private void checkEnoughMoney() throws NotEnoughMoneyException {
 		if (selectedProduct.getPrice() > insertedCoinsValue) {
-			throw new NotEnoughMoneyException(selectedProduct.getName() + " price is " + selectedProduct.getPrice()
-					+ " And inserted coins are " + insertedCoinsValue);
+			throw new NotEnoughMoneyException(selectedProduct, insertedCoinsValue);
 		}
 	}
 
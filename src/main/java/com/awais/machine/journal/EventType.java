@@ -0,0 +1,57 @@
+package com.awais.machine.journal;
+
+/**
+ * Operations of the vending machine recorded in the {@link Journal}.
+ * 
+ * @author Awais Iqbal
+ *
+ */
+public enum EventType {
+	/** A coin inserted, the payload is the ordinal of the coin */
+	ADD_COIN(1),
+	/** A product selected, the payload is the ordinal of the product */
+	SELECT_PRODUCT(2),
+	/** The request cancelled, no payload */
+	CANCEL_REQUEST(3),
+	/** A refill, the payload is the count of every product and every coin */
+	REFILL(4),
+	/** The machine reset, no payload */
+	RESET(5);
+
+	/**
+	 * All the types, indexed by code
+	 */
+	private static final EventType[] BY_CODE = new EventType[6];
+
+	static {
+		for (EventType type : values()) {
+			BY_CODE[type.code] = type;
+		}
+	}
+
+	private final byte code;
+
+	private EventType(int code) {
+		this.code = (byte) code;
+	}
+
+	/**
+	 * Code of the type written in the journal
+	 * 
+	 * @return Code of the type
+	 */
+	public byte getCode() {
+		return code;
+	}
+
+	/**
+	 * Get the type of the given code
+	 * 
+	 * @param code Code read from the journal
+	 * @return The type, or null if the code is unknown
+	 */
+	public static EventType fromCode(byte code) {
+		return code > 0 && code < BY_CODE.length ? BY_CODE[code] : null;
+	}
+
+}
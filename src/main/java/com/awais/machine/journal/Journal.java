@@ -0,0 +1,384 @@
+package com.awais.machine.journal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Append only binary log of the operations of a vending machine.
+ * 
+ * Every record is written as its payload length, sequence number, type, payload
+ * and a CRC32 of the sequence, type and payload. The records are collected in a
+ * direct buffer and written and forced to disk as a group, once the configured
+ * number of records is pending or the configured time has passed since the last
+ * sync. The time is checked on every append and by a flusher thread shared by
+ * all the journals, so the records of an idle machine are synced as well.
+ * Records appended after the last sync can be lost on a crash; a torn or
+ * corrupted tail is detected by its checksum and discarded when the journal is
+ * opened again.
+ * 
+ * The methods are synchronized with the flusher, the journal is still meant to
+ * be appended to by a single thread.
+ * 
+ * @author Awais Iqbal
+ *
+ */
+public class Journal implements Closeable {
+
+	/**
+	 * Bytes of the payload length, sequence number and type
+	 */
+	private static final int HEADER_SIZE = Integer.BYTES + Long.BYTES + Byte.BYTES;
+
+	/**
+	 * Bytes of the checksum
+	 */
+	private static final int TRAILER_SIZE = Integer.BYTES;
+
+	/**
+	 * Size of the buffer collecting the records between syncs
+	 */
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * Thread syncing the journals left with pending records
+	 */
+	private static final ScheduledExecutorService FLUSHER = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread thread = new Thread(r, "journal-flusher");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private final FileChannel channel;
+
+	/**
+	 * Records appended and not written yet
+	 */
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+	private final CRC32 checksum = new CRC32();
+
+	/**
+	 * Number of pending records that triggers a sync
+	 */
+	private final int groupCommitRecords;
+
+	/**
+	 * Time since the last sync that triggers a sync
+	 */
+	private final long groupCommitNanos;
+
+	/**
+	 * Sequence number of the next record
+	 */
+	private long nextSequence = 1;
+
+	/**
+	 * Records appended since the last sync
+	 */
+	private int pendingRecords;
+
+	private long lastSyncNanos = System.nanoTime();
+
+	/**
+	 * Periodic check of the flusher, null when every record is synced at once
+	 */
+	private final ScheduledFuture<?> flushing;
+
+	/**
+	 * Failure of the last sync of the flusher, thrown by the next operation
+	 */
+	private IOException flushFailure;
+
+	/**
+	 * Open or create a journal, discarding any invalid record at its end.
+	 * 
+	 * @param file               File of the journal
+	 * @param groupCommitRecords Sync once this number of records is pending, 1
+	 *                           syncs every record
+	 * @param groupCommitMillis  Sync once this time has passed since the last
+	 *                           sync
+	 * @throws IOException When the file can't be opened
+	 */
+	public Journal(Path file, int groupCommitRecords, long groupCommitMillis) throws IOException {
+		this.groupCommitRecords = groupCommitRecords;
+		this.groupCommitNanos = TimeUnit.MILLISECONDS.toNanos(groupCommitMillis);
+		this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		long validEnd = parse(readAll(), Long.MAX_VALUE, null);
+		if (validEnd < channel.size()) {
+			channel.truncate(validEnd);
+		}
+		channel.position(validEnd);
+		if (groupCommitRecords > 1 && groupCommitNanos > 0) {
+			flushing = FLUSHER.scheduleWithFixedDelay(this::flushIfDue, groupCommitMillis, groupCommitMillis,
+					TimeUnit.MILLISECONDS);
+		} else {
+			flushing = null;
+		}
+	}
+
+	/**
+	 * Append a record without payload
+	 * 
+	 * @param type Operation to be recorded
+	 * @return Sequence number of the record
+	 * @throws IOException When the journal can't be written
+	 */
+	public synchronized long append(EventType type) throws IOException {
+		int start = beginRecord(type, 0);
+		return endRecord(start);
+	}
+
+	/**
+	 * Append a record with a single small argument, like an ordinal
+	 * 
+	 * @param type     Operation to be recorded
+	 * @param argument Argument of the operation, between 0 and 255
+	 * @return Sequence number of the record
+	 * @throws IOException When the journal can't be written
+	 */
+	public synchronized long append(EventType type, int argument) throws IOException {
+		int start = beginRecord(type, Byte.BYTES);
+		buffer.put((byte) argument);
+		return endRecord(start);
+	}
+
+	/**
+	 * Append a record with a list of counts
+	 * 
+	 * @param type   Operation to be recorded
+	 * @param counts Arguments of the operation
+	 * @return Sequence number of the record
+	 * @throws IOException When the journal can't be written
+	 */
+	public synchronized long append(EventType type, int[] counts) throws IOException {
+		int start = beginRecord(type, counts.length * Integer.BYTES);
+		for (int count : counts) {
+			buffer.putInt(count);
+		}
+		return endRecord(start);
+	}
+
+	/**
+	 * Write all the pending records and force them to disk
+	 * 
+	 * @throws IOException When the journal can't be written
+	 */
+	public synchronized void sync() throws IOException {
+		checkFlushFailure();
+		writeBuffer();
+		channel.force(false);
+		pendingRecords = 0;
+		lastSyncNanos = System.nanoTime();
+	}
+
+	/**
+	 * Discard all the records, once their effect is saved somewhere else. The
+	 * sequence numbers keep growing.
+	 * 
+	 * @throws IOException When the journal can't be written
+	 */
+	public synchronized void truncate() throws IOException {
+		buffer.clear();
+		channel.truncate(0);
+		channel.position(0);
+		channel.force(false);
+		pendingRecords = 0;
+	}
+
+	/**
+	 * Make sure the next records are numbered after the given sequence number
+	 * 
+	 * @param sequence Sequence number already used
+	 */
+	public synchronized void skipTo(long sequence) {
+		if (nextSequence <= sequence) {
+			nextSequence = sequence + 1;
+		}
+	}
+
+	/**
+	 * Sequence number of the last record appended
+	 * 
+	 * @return Last sequence number, 0 if the journal is empty
+	 */
+	public synchronized long getLastSequence() {
+		return nextSequence - 1;
+	}
+
+	/**
+	 * Read all the valid records written after the given sequence number
+	 * 
+	 * @param afterSequence Records up to this sequence number are skipped
+	 * @param handler       Receives the records
+	 * @throws IOException When the journal can't be read
+	 */
+	public synchronized void replay(long afterSequence, RecordHandler handler) throws IOException {
+		writeBuffer();
+		parse(readAll(), afterSequence, handler);
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		if (flushing != null) {
+			flushing.cancel(false);
+		}
+		try {
+			sync();
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Sync the pending records once the group commit time has passed, run by the
+	 * flusher
+	 */
+	private synchronized void flushIfDue() {
+		if (pendingRecords == 0 || flushFailure != null || !channel.isOpen()
+				|| System.nanoTime() - lastSyncNanos < groupCommitNanos) {
+			return;
+		}
+		try {
+			sync();
+		} catch (IOException e) {
+			flushFailure = e;
+		}
+	}
+
+	/**
+	 * Throw the failure of the flusher, once
+	 * 
+	 * @throws IOException When the last sync of the flusher failed
+	 */
+	private void checkFlushFailure() throws IOException {
+		IOException failure = flushFailure;
+		if (failure != null) {
+			flushFailure = null;
+			throw failure;
+		}
+	}
+
+	/**
+	 * Write the header of a record, making room for it in the buffer
+	 * 
+	 * @param type        Operation to be recorded
+	 * @param payloadSize Bytes of the payload
+	 * @return Position of the record in the buffer
+	 * @throws IOException When the buffer can't be written
+	 */
+	private int beginRecord(EventType type, int payloadSize) throws IOException {
+		checkFlushFailure();
+		int recordSize = HEADER_SIZE + payloadSize + TRAILER_SIZE;
+		if (recordSize > buffer.capacity()) {
+			throw new IllegalArgumentException("Record of " + recordSize + " bytes is too big");
+		}
+		if (buffer.remaining() < recordSize) {
+			writeBuffer();
+		}
+		int start = buffer.position();
+		buffer.putInt(payloadSize);
+		buffer.putLong(nextSequence);
+		buffer.put(type.getCode());
+		return start;
+	}
+
+	/**
+	 * Write the checksum of the record and sync if the group is complete
+	 * 
+	 * @param start Position of the record in the buffer
+	 * @return Sequence number of the record
+	 * @throws IOException When the journal can't be written
+	 */
+	private long endRecord(int start) throws IOException {
+		int end = buffer.position();
+		buffer.limit(end).position(start + Integer.BYTES);
+		checksum.reset();
+		checksum.update(buffer);
+		buffer.limit(buffer.capacity()).position(end);
+		buffer.putInt((int) checksum.getValue());
+
+		pendingRecords++;
+		if (pendingRecords >= groupCommitRecords || System.nanoTime() - lastSyncNanos >= groupCommitNanos) {
+			sync();
+		}
+		return nextSequence++;
+	}
+
+	/**
+	 * Write the buffered records to the channel, without forcing them
+	 * 
+	 * @throws IOException When the journal can't be written
+	 */
+	private void writeBuffer() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * Read the content of the file written so far
+	 * 
+	 * @return Buffer with the content of the file
+	 * @throws IOException When the file can't be read
+	 */
+	private ByteBuffer readAll() throws IOException {
+		ByteBuffer data = ByteBuffer.allocate((int) channel.size());
+		while (data.hasRemaining()) {
+			if (channel.read(data, data.position()) < 0) {
+				break;
+			}
+		}
+		data.flip();
+		return data;
+	}
+
+	/**
+	 * Walk the records of the given data until the first invalid one
+	 * 
+	 * @param data          Content of the journal
+	 * @param afterSequence Records up to this sequence number are not handled
+	 * @param handler       Receives the records, may be null
+	 * @return Offset of the end of the last valid record
+	 */
+	private long parse(ByteBuffer data, long afterSequence, RecordHandler handler) {
+		CRC32 crc = new CRC32();
+		int limit = data.limit();
+		while (data.remaining() >= HEADER_SIZE + TRAILER_SIZE) {
+			int start = data.position();
+			int payloadSize = data.getInt(start);
+			if (payloadSize < 0 || payloadSize > data.remaining() - HEADER_SIZE - TRAILER_SIZE) {
+				break;
+			}
+			int payloadStart = start + HEADER_SIZE;
+			int end = payloadStart + payloadSize;
+			crc.reset();
+			crc.update(data.array(), data.arrayOffset() + start + Integer.BYTES, end - start - Integer.BYTES);
+			EventType type = EventType.fromCode(data.get(start + Integer.BYTES + Long.BYTES));
+			if ((int) crc.getValue() != data.getInt(end) || type == null) {
+				break;
+			}
+			long sequence = data.getLong(start + Integer.BYTES);
+			skipTo(sequence);
+			if (handler != null && sequence > afterSequence) {
+				data.limit(end).position(payloadStart);
+				handler.onRecord(sequence, type, data);
+				data.limit(limit);
+			}
+			data.position(end + TRAILER_SIZE);
+		}
+		return data.position();
+	}
+
+}
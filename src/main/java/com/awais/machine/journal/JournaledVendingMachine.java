@@ -0,0 +1,480 @@
+package com.awais.machine.journal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.zip.CRC32;
+
+import com.awais.machine.exceptions.InvalidProductException;
+import com.awais.machine.exceptions.NotEnoughChangeException;
+import com.awais.machine.exceptions.NotEnoughMoneyException;
+import com.awais.machine.exceptions.SoldOutException;
+import com.awais.machine.interfaces.VendingMachine;
+import com.awais.machine.interfaces.impl.VendingMachineImpl;
+import com.awais.machine.models.Change;
+import com.awais.machine.models.Coin;
+import com.awais.machine.models.MachineSnapshot;
+import com.awais.machine.models.Product;
+import com.awais.machine.models.SelectionResult;
+import com.awais.machine.utils.Coins;
+import com.awais.machine.utils.Pair;
+import com.awais.machine.utils.Products;
+import com.awais.machine.utils.RefillCounts;
+
+/**
+ * Vending machine which records every operation in a {@link Journal} before
+ * applying it, so its state survives a restart.
+ * 
+ * Every given number of records the whole state is saved in a snapshot file and
+ * the journal is truncated, so a recovery loads the snapshot and only replays
+ * the operations recorded after it. The operations are deterministic, so
+ * replaying them, including the ones which failed, rebuilds the same state.
+ * 
+ * A periodic snapshot which fails never replaces the outcome of the operation
+ * which triggered it: the records are still in the journal, so the snapshot is
+ * kept pending and retried after the next operation, and the failure is
+ * available from {@link #getSnapshotFailure()}.
+ * 
+ * @author Awais Iqbal
+ *
+ */
+public class JournaledVendingMachine implements VendingMachine, Closeable {
+
+	/**
+	 * First bytes of a snapshot file
+	 */
+	private static final int SNAPSHOT_MAGIC = 0x564D534E;
+
+	/**
+	 * Version of the layout of the snapshot file
+	 */
+	private static final int SNAPSHOT_VERSION = 1;
+
+	/**
+	 * Bytes of a snapshot: magic, version, sequence, credit, counts and checksum
+	 */
+	private static final int SNAPSHOT_SIZE = 2 * Integer.BYTES + 2 * Long.BYTES
+			+ (Products.COUNT + Coins.COUNT) * Integer.BYTES + Long.BYTES;
+
+	/**
+	 * Machine holding the state
+	 */
+	private final VendingMachineImpl machine;
+
+	private final Journal journal;
+
+	private final Path snapshotFile;
+
+	/**
+	 * Number of records which triggers a new snapshot
+	 */
+	private final int snapshotEveryRecords;
+
+	/**
+	 * Records appended since the last snapshot
+	 */
+	private int recordsSinceSnapshot;
+
+	/**
+	 * Failure of the last periodic snapshot, null once a snapshot succeeds
+	 */
+	private IOException snapshotFailure;
+
+	/**
+	 * Counts of a refill, products first and coins next, reused between refills
+	 */
+	private final int[] refillCounts = new int[Products.COUNT + Coins.COUNT];
+
+	/**
+	 * Holder of the change given by the replayed operations
+	 */
+	private final Change replayChange = new Change();
+
+	/**
+	 * Restore the state saved in the snapshot and the journal into the given
+	 * machine, which is reset first.
+	 * 
+	 * @param machine              Machine holding the state
+	 * @param journal              Journal of the operations
+	 * @param snapshotFile         File of the snapshots
+	 * @param snapshotEveryRecords Number of records which triggers a new snapshot
+	 * @throws IOException When the snapshot or the journal can't be read
+	 */
+	public JournaledVendingMachine(VendingMachineImpl machine, Journal journal, Path snapshotFile,
+			int snapshotEveryRecords) throws IOException {
+		this.machine = machine;
+		this.journal = journal;
+		this.snapshotFile = snapshotFile;
+		this.snapshotEveryRecords = snapshotEveryRecords;
+		recover();
+	}
+
+	@Override
+	public long getProductPrice(final Product product) throws InvalidProductException {
+		return machine.getProductPrice(product);
+	}
+
+	@Override
+	public void addCoin(final Coin coin) {
+		if (coin == null) {
+			return;
+		}
+		record(EventType.ADD_COIN, coin.ordinal());
+		try {
+			machine.addCoin(coin);
+		} finally {
+			recorded();
+		}
+	}
+
+	@Override
+	public Pair<Product, Collection<Coin>> selectProduct(final Product productSelected)
+			throws NotEnoughMoneyException, SoldOutException, NotEnoughChangeException, InvalidProductException {
+		if (productSelected == null) {
+			return machine.selectProduct(null);
+		}
+		record(EventType.SELECT_PRODUCT, productSelected.ordinal());
+		try {
+			return machine.selectProduct(productSelected);
+		} finally {
+			recorded();
+		}
+	}
+
+	@Override
+	public Product selectProduct(final Product productSelected, final Change change)
+			throws NotEnoughMoneyException, SoldOutException, NotEnoughChangeException, InvalidProductException {
+		if (productSelected == null) {
+			return machine.selectProduct(null, change);
+		}
+		record(EventType.SELECT_PRODUCT, productSelected.ordinal());
+		try {
+			return machine.selectProduct(productSelected, change);
+		} finally {
+			recorded();
+		}
+	}
+
+	@Override
+	public SelectionResult trySelectProduct(final Product productSelected, final Change change) {
+		if (productSelected == null) {
+			return machine.trySelectProduct(null, change);
+		}
+		record(EventType.SELECT_PRODUCT, productSelected.ordinal());
+		try {
+			return machine.trySelectProduct(productSelected, change);
+		} finally {
+			recorded();
+		}
+	}
+
+	@Override
+	public SelectionResult checkProduct(final Product product) {
+		// Nothing changes, so nothing is recorded
+		return machine.checkProduct(product);
+	}
+
+	@Override
+	public boolean tryCancelRequest(final Change change) {
+		record(EventType.CANCEL_REQUEST, -1);
+		try {
+			return machine.tryCancelRequest(change);
+		} finally {
+			recorded();
+		}
+	}
+
+	@Override
+	public void cancelRequest(final Change change) throws NotEnoughChangeException {
+		record(EventType.CANCEL_REQUEST, -1);
+		try {
+			machine.cancelRequest(change);
+		} finally {
+			recorded();
+		}
+	}
+
+	@Override
+	public Collection<Coin> cancelRequest() throws NotEnoughChangeException {
+		record(EventType.CANCEL_REQUEST, -1);
+		try {
+			return machine.cancelRequest();
+		} finally {
+			recorded();
+		}
+	}
+
+	@Override
+	public void refill(final Pair<Collection<Product>, Collection<Coin>> refilling) {
+		for (int i = 0; i < refillCounts.length; i++) {
+			refillCounts[i] = 0;
+		}
+		for (Product product : refilling.getFirstItem()) {
+			refillCounts[product.ordinal()]++;
+		}
+		for (Coin coin : refilling.getSecondItem()) {
+			refillCounts[Products.COUNT + coin.ordinal()]++;
+		}
+		try {
+			journal.append(EventType.REFILL, refillCounts);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		try {
+			machine.refill(refilling);
+		} finally {
+			recorded();
+		}
+	}
+
+	@Override
+	public void refill(final int[] productCounts, final int[] coinCounts) {
+		// A rejected refill must not reach the journal
+		RefillCounts.check(productCounts, coinCounts);
+		System.arraycopy(productCounts, 0, refillCounts, 0, Products.COUNT);
+		System.arraycopy(coinCounts, 0, refillCounts, Products.COUNT, Coins.COUNT);
+		try {
+			journal.append(EventType.REFILL, refillCounts);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		try {
+			machine.refill(productCounts, coinCounts);
+		} finally {
+			recorded();
+		}
+	}
+
+	@Override
+	public long getCurrentMoney() {
+		return machine.getCurrentMoney();
+	}
+
+	@Override
+	public int getProductCount(final Product product) {
+		return machine.getProductCount(product);
+	}
+
+	@Override
+	public int getCoinCount(final Coin coin) {
+		return machine.getCoinCount(coin);
+	}
+
+	@Override
+	public void snapshot(final MachineSnapshot snapshot) {
+		machine.snapshot(snapshot);
+	}
+
+	@Override
+	public void reset() {
+		record(EventType.RESET, -1);
+		try {
+			machine.reset();
+		} finally {
+			recorded();
+		}
+	}
+
+	/**
+	 * Save the whole state in the snapshot file and truncate the journal. The
+	 * snapshot is written in a temporary file and then moved, so a crash leaves
+	 * either the previous or the new snapshot.
+	 * 
+	 * @throws IOException When the snapshot can't be written
+	 */
+	public void snapshot() throws IOException {
+		journal.sync();
+		ByteBuffer data = ByteBuffer.allocate(SNAPSHOT_SIZE);
+		data.putInt(SNAPSHOT_MAGIC);
+		data.putInt(SNAPSHOT_VERSION);
+		data.putLong(journal.getLastSequence());
+		data.putLong(machine.getCurrentMoney());
+		for (Product product : Products.ALL) {
+			data.putInt(machine.getProductCount(product));
+		}
+		for (Coin coin : Coins.ALL) {
+			data.putInt(machine.getCoinCount(coin));
+		}
+		data.putLong(checksumOf(data.array(), data.position()));
+		data.flip();
+
+		Path temporary = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+		try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			while (data.hasRemaining()) {
+				channel.write(data);
+			}
+			channel.force(true);
+		}
+		Files.move(temporary, snapshotFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		// Records up to the snapshot sequence are skipped on recovery, so a crash
+		// before the truncation is harmless
+		journal.truncate();
+		recordsSinceSnapshot = 0;
+		snapshotFailure = null;
+	}
+
+	/**
+	 * Failure of the last periodic snapshot, which is retried after the next
+	 * operation
+	 * 
+	 * @return Failure of the pending snapshot, null if no snapshot is pending
+	 */
+	public IOException getSnapshotFailure() {
+		return snapshotFailure;
+	}
+
+	/**
+	 * Force the pending records to disk
+	 * 
+	 * @throws IOException When the journal can't be written
+	 */
+	public void sync() throws IOException {
+		journal.sync();
+	}
+
+	@Override
+	public void close() throws IOException {
+		journal.close();
+	}
+
+	/**
+	 * Load the last snapshot and replay the journal written after it
+	 * 
+	 * @throws IOException When the snapshot or the journal can't be read
+	 */
+	private void recover() throws IOException {
+		long snapshotSequence = loadSnapshot();
+		journal.skipTo(snapshotSequence);
+		journal.replay(snapshotSequence, (sequence, type, payload) -> {
+			apply(type, payload);
+			recordsSinceSnapshot++;
+		});
+	}
+
+	/**
+	 * Restore the machine with the content of the snapshot file
+	 * 
+	 * @return Sequence number of the last record included in the snapshot, 0 if
+	 *         there is no snapshot
+	 * @throws IOException When the snapshot can't be read or is corrupted
+	 */
+	private long loadSnapshot() throws IOException {
+		if (!Files.exists(snapshotFile)) {
+			machine.reset();
+			return 0;
+		}
+		byte[] content = Files.readAllBytes(snapshotFile);
+		ByteBuffer data = ByteBuffer.wrap(content);
+		if (content.length != SNAPSHOT_SIZE || data.getInt() != SNAPSHOT_MAGIC
+				|| data.getInt() != SNAPSHOT_VERSION
+				|| data.getLong(SNAPSHOT_SIZE - Long.BYTES) != checksumOf(content, SNAPSHOT_SIZE - Long.BYTES)) {
+			throw new IOException("Invalid snapshot " + snapshotFile);
+		}
+		long sequence = data.getLong();
+		long credit = data.getLong();
+		int[] productCounts = new int[Products.COUNT];
+		for (int i = 0; i < productCounts.length; i++) {
+			productCounts[i] = data.getInt();
+		}
+		int[] coinCounts = new int[Coins.COUNT];
+		for (int i = 0; i < coinCounts.length; i++) {
+			coinCounts[i] = data.getInt();
+		}
+		try {
+			machine.restore(productCounts, coinCounts, credit);
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Invalid snapshot " + snapshotFile, e);
+		}
+		return sequence;
+	}
+
+	/**
+	 * Apply a recorded operation to the machine. The failures of the machine also
+	 * happened when the operation was recorded, so they are ignored.
+	 * 
+	 * @param type    Operation recorded
+	 * @param payload Arguments of the operation
+	 */
+	private void apply(EventType type, ByteBuffer payload) {
+		switch (type) {
+		case ADD_COIN:
+			machine.addCoin(Coins.ALL[payload.get()]);
+			break;
+		case SELECT_PRODUCT:
+			machine.trySelectProduct(Products.ALL[payload.get()], replayChange);
+			break;
+		case CANCEL_REQUEST:
+			machine.tryCancelRequest(replayChange);
+			break;
+		case REFILL:
+			int[] productCounts = new int[Products.COUNT];
+			for (int i = 0; i < productCounts.length; i++) {
+				productCounts[i] = payload.getInt();
+			}
+			int[] coinCounts = new int[Coins.COUNT];
+			for (int i = 0; i < coinCounts.length; i++) {
+				coinCounts[i] = payload.getInt();
+			}
+			machine.refill(productCounts, coinCounts);
+			break;
+		case RESET:
+			machine.reset();
+			break;
+		}
+	}
+
+	/**
+	 * Append a record before applying the operation
+	 * 
+	 * @param type     Operation to be recorded
+	 * @param argument Argument of the operation, negative if it has none
+	 */
+	private void record(EventType type, int argument) {
+		try {
+			if (argument < 0) {
+				journal.append(type);
+			} else {
+				journal.append(type, argument);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Take a snapshot once enough records are appended. It runs in the finally
+	 * block of the operations, so a failure is kept instead of thrown and the
+	 * snapshot stays pending.
+	 */
+	private void recorded() {
+		if (++recordsSinceSnapshot >= snapshotEveryRecords) {
+			try {
+				snapshot();
+			} catch (IOException e) {
+				snapshotFailure = e;
+			}
+		}
+	}
+
+	/**
+	 * Checksum of the first bytes of the given content
+	 * 
+	 * @param content Bytes to check
+	 * @param length  Number of bytes to check
+	 * @return CRC32 of the bytes
+	 */
+	private static long checksumOf(byte[] content, int length) {
+		CRC32 crc = new CRC32();
+		crc.update(content, 0, length);
+		return crc.getValue();
+	}
+
+}
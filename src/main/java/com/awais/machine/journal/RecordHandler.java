@@ -0,0 +1,22 @@
+package com.awais.machine.journal;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Receives the records of a {@link Journal} while it is replayed.
+ * 
+ * @author Awais Iqbal
+ *
+ */
+public interface RecordHandler {
+
+	/**
+	 * Called once for every valid record, in order.
+	 * 
+	 * @param sequence Sequence number of the record
+	 * @param type     Operation recorded
+	 * @param payload  Arguments of the operation, only valid during the call
+	 */
+	public void onRecord(long sequence, EventType type, ByteBuffer payload);
+
+}
@@ -0,0 +1,23 @@
+package com.awais.machine.metrics;
+
+/**
+ * Number of times something happened.
+ * 
+ * @author Awais Iqbal
+ *
+ */
+public interface Counter {
+
+	/**
+	 * Add one to the counter
+	 */
+	public void increment();
+
+	/**
+	 * Add the given amount to the counter
+	 * 
+	 * @param amount Amount to be added
+	 */
+	public void add(long amount);
+
+}
@@ -0,0 +1,18 @@
+package com.awais.machine.metrics;
+
+/**
+ * Distribution of recorded values.
+ * 
+ * @author Awais Iqbal
+ *
+ */
+public interface Histogram {
+
+	/**
+	 * Record a value
+	 * 
+	 * @param value Value to be recorded, negative values are recorded as 0
+	 */
+	public void record(long value);
+
+}
@@ -0,0 +1,109 @@
+package com.awais.machine.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Registry keeping every metric in memory, to be read by the application or
+ * printed with {@link #toString()}.
+ * 
+ * @author Awais Iqbal
+ *
+ */
+public class InMemoryMetrics implements MetricsRegistry {
+
+	private final ConcurrentMap<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+
+	private final ConcurrentMap<String, AdderCounter> counters = new ConcurrentHashMap<>();
+
+	private final ConcurrentMap<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+
+	@Override
+	public LatencyHistogram histogram(String name) {
+		return histograms.computeIfAbsent(name, n -> new LatencyHistogram());
+	}
+
+	@Override
+	public Counter counter(String name) {
+		return counters.computeIfAbsent(name, n -> new AdderCounter());
+	}
+
+	@Override
+	public void gauge(String name, LongSupplier gauge) {
+		gauges.put(name, gauge);
+	}
+
+	/**
+	 * Histogram with the given name
+	 * 
+	 * @param name Name of the metric
+	 * @return The histogram, or null if it was never created
+	 */
+	public LatencyHistogram getHistogram(String name) {
+		return histograms.get(name);
+	}
+
+	/**
+	 * Value of the counter with the given name
+	 * 
+	 * @param name Name of the metric
+	 * @return Current count, 0 if it was never created
+	 */
+	public long getCount(String name) {
+		AdderCounter counter = counters.get(name);
+		return counter == null ? 0 : counter.adder.sum();
+	}
+
+	/**
+	 * Current value of the gauge with the given name
+	 * 
+	 * @param name Name of the metric
+	 * @return Value read from the gauge
+	 * @throws IllegalArgumentException When the gauge was never registered
+	 */
+	public long getGauge(String name) {
+		LongSupplier gauge = gauges.get(name);
+		if (gauge == null) {
+			throw new IllegalArgumentException("Unknown gauge " + name);
+		}
+		return gauge.getAsLong();
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder report = new StringBuilder();
+		for (Map.Entry<String, LatencyHistogram> entry : new TreeMap<>(histograms).entrySet()) {
+			report.append(entry.getKey()).append(' ').append(entry.getValue()).append('\n');
+		}
+		for (Map.Entry<String, AdderCounter> entry : new TreeMap<>(counters).entrySet()) {
+			report.append(entry.getKey()).append(' ').append(entry.getValue().adder.sum()).append('\n');
+		}
+		for (Map.Entry<String, LongSupplier> entry : new TreeMap<>(gauges).entrySet()) {
+			report.append(entry.getKey()).append(' ').append(entry.getValue().getAsLong()).append('\n');
+		}
+		return report.toString();
+	}
+
+	/**
+	 * Counter spreading the updates of several threads over several cells
+	 */
+	private static final class AdderCounter implements Counter {
+
+		private final LongAdder adder = new LongAdder();
+
+		@Override
+		public void increment() {
+			adder.increment();
+		}
+
+		@Override
+		public void add(long amount) {
+			adder.add(amount);
+		}
+	}
+
+}
@@ -0,0 +1,155 @@
+package com.awais.machine.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock free histogram with buckets of logarithmic width, in the style of
+ * HdrHistogram. Values below 64 get their own bucket and every power of two
+ * above is split in 32 buckets, so a value is reported with an error below
+ * 3.2% using a fixed array of counters.
+ * 
+ * @author Awais Iqbal
+ *
+ */
+public class LatencyHistogram implements Histogram {
+
+	/**
+	 * Bits of the value kept in the bucket index
+	 */
+	private static final int SUB_BUCKET_BITS = 5;
+
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	/**
+	 * Values with their own bucket
+	 */
+	private static final int LINEAR_BUCKETS = 2 * SUB_BUCKETS;
+
+	/**
+	 * Buckets needed up to {@link Long#MAX_VALUE}
+	 */
+	private static final int BUCKETS = LINEAR_BUCKETS + (Long.SIZE - 2 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+	private final LongAdder sum = new LongAdder();
+
+	private final AtomicLong max = new AtomicLong();
+
+	@Override
+	public void record(long value) {
+		if (value < 0) {
+			value = 0;
+		}
+		counts.incrementAndGet(indexOf(value));
+		sum.add(value);
+		long current;
+		while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+			// Retry until the max is updated or a bigger value is recorded
+		}
+	}
+
+	/**
+	 * Number of values recorded
+	 * 
+	 * @return Count of values
+	 */
+	public long getCount() {
+		long total = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			total += counts.get(i);
+		}
+		return total;
+	}
+
+	/**
+	 * Biggest value recorded
+	 * 
+	 * @return Exact maximum, 0 when empty
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * Mean of the values recorded
+	 * 
+	 * @return Exact mean, 0 when empty
+	 */
+	public double getMean() {
+		long n = getCount();
+		return n == 0 ? 0 : (double) sum.sum() / n;
+	}
+
+	/**
+	 * Value below which the given percentage of the values fall
+	 * 
+	 * @param percentile Percentage between 0 and 100
+	 * @return Highest value of the bucket holding the percentile, 0 when empty
+	 */
+	public long getValueAtPercentile(double percentile) {
+		long total = getCount();
+		if (total == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(Math.min(percentile, 100) / 100 * total));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts.get(i);
+			if (seen >= rank) {
+				return Math.min(highestValueOf(i), max.get());
+			}
+		}
+		return max.get();
+	}
+
+	/**
+	 * Discard all the values recorded. Values recorded at the same time may be
+	 * partially kept.
+	 */
+	public void reset() {
+		for (int i = 0; i < BUCKETS; i++) {
+			counts.set(i, 0);
+		}
+		sum.reset();
+		max.set(0);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("count=%d mean=%.1f p50=%d p99=%d p99.9=%d max=%d", getCount(), getMean(),
+				getValueAtPercentile(50), getValueAtPercentile(99), getValueAtPercentile(99.9), getMax());
+	}
+
+	/**
+	 * Bucket of the given value
+	 * 
+	 * @param value Value not negative
+	 * @return Index of the bucket
+	 */
+	static int indexOf(long value) {
+		if (value < LINEAR_BUCKETS) {
+			return (int) value;
+		}
+		int shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		return LINEAR_BUCKETS + (shift - 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+	}
+
+	/**
+	 * Highest value falling in the given bucket
+	 * 
+	 * @param index Index of the bucket
+	 * @return Highest value of the bucket
+	 */
+	static long highestValueOf(int index) {
+		if (index < LINEAR_BUCKETS) {
+			return index;
+		}
+		int shift = (index - LINEAR_BUCKETS) / SUB_BUCKETS + 1;
+		long subBucket = (index - LINEAR_BUCKETS) % SUB_BUCKETS + SUB_BUCKETS;
+		return ((subBucket + 1) << shift) - 1;
+	}
+
+}
@@ -0,0 +1,172 @@
+package com.awais.machine.metrics;
+
+import java.util.Collection;
+
+import com.awais.machine.exceptions.NotEnoughChangeException;
+import com.awais.machine.interfaces.CashManager;
+import com.awais.machine.models.Change;
+import com.awais.machine.models.Coin;
+import com.awais.machine.utils.Coins;
+
+/**
+ * Cash manager decorator recording the latency of the change calculation, the
+ * coins given as change and the failures.
+ * 
+ * @author Awais Iqbal
+ *
+ */
+public class MeteredCashManager implements CashManager {
+
+	private final CashManager cashManager;
+
+	private final boolean enabled;
+
+	private final Histogram changeLatency;
+
+	/**
+	 * Number of coins of every change given
+	 */
+	private final Histogram changeCoins;
+
+	/**
+	 * Coins of every type given as change, indexed by the ordinal of the coin
+	 */
+	private final Counter[] coinsGiven = new Counter[Coins.COUNT];
+
+	private final Counter notEnoughChange;
+
+	public MeteredCashManager(CashManager cashManager, MetricsRegistry registry) {
+		this.cashManager = cashManager;
+		this.enabled = registry.isEnabled();
+		this.changeLatency = registry.histogram("cash.calculateChange");
+		this.changeCoins = registry.histogram("cash.change.coins");
+		for (Coin coin : Coins.ALL) {
+			coinsGiven[coin.ordinal()] = registry.counter("cash.change.coin." + coin);
+		}
+		this.notEnoughChange = registry.counter("cash.error.NotEnoughChangeException");
+	}
+
+	@Override
+	public void add(Coin c) {
+		cashManager.add(c);
+	}
+
+	@Override
+	public void add(Coin coin, int count) {
+		cashManager.add(coin, count);
+	}
+
+	@Override
+	public void refill(Collection<Coin> coinsToBeRefilled) {
+		cashManager.refill(coinsToBeRefilled);
+	}
+
+	@Override
+	public void redraw(Coin coin) {
+		cashManager.redraw(coin);
+	}
+
+	@Override
+	public void redraw(Collection<Coin> coins) {
+		cashManager.redraw(coins);
+	}
+
+	@Override
+	public boolean containsMoreThenOne(Coin coin) {
+		return cashManager.containsMoreThenOne(coin);
+	}
+
+	@Override
+	public int getCoinCount(Coin coin) {
+		return cashManager.getCoinCount(coin);
+	}
+
+	@Override
+	public void copyCoinCounts(int[] counts) {
+		cashManager.copyCoinCounts(counts);
+	}
+
+	@Override
+	public void reset() {
+		cashManager.reset();
+	}
+
+	@Override
+	public void restore(int[] coinCounts) {
+		cashManager.restore(coinCounts);
+	}
+
+	@Override
+	public long getCurrentMoney() {
+		return cashManager.getCurrentMoney();
+	}
+
+	@Override
+	public boolean isBalanced() {
+		return cashManager.isBalanced();
+	}
+
+	@Override
+	public Collection<Coin> calculateChange(long moneyLeftToConvert) throws NotEnoughChangeException {
+		long start = enabled ? System.nanoTime() : 0;
+		try {
+			Collection<Coin> change = cashManager.calculateChange(moneyLeftToConvert);
+			changeCoins.record(change.size());
+			for (Coin coin : change) {
+				coinsGiven[coin.ordinal()].increment();
+			}
+			return change;
+		} catch (NotEnoughChangeException e) {
+			notEnoughChange.increment();
+			throw e;
+		} finally {
+			if (enabled) {
+				changeLatency.record(System.nanoTime() - start);
+			}
+		}
+	}
+
+	@Override
+	public void calculateChange(long moneyLeftToConvert, Change change) throws NotEnoughChangeException {
+		if (!tryCalculateChange(moneyLeftToConvert, change)) {
+			throw new NotEnoughChangeException("Not enough change.");
+		}
+	}
+
+	@Override
+	public boolean tryCalculateChange(long moneyLeftToConvert, Change change) {
+		long start = enabled ? System.nanoTime() : 0;
+		boolean given = cashManager.tryCalculateChange(moneyLeftToConvert, change);
+		if (enabled) {
+			changeLatency.record(System.nanoTime() - start);
+		}
+		if (given) {
+			changeCoins.record(change.getTotalCount());
+			for (Coin coin : Coins.ALL) {
+				int count = change.getCount(coin);
+				if (count > 0) {
+					coinsGiven[coin.ordinal()].add(count);
+				}
+			}
+		} else {
+			notEnoughChange.increment();
+		}
+		return given;
+	}
+
+	@Override
+	public boolean planChange(long moneyLeftToConvert, Change plan) {
+		return cashManager.planChange(moneyLeftToConvert, plan);
+	}
+
+	@Override
+	public boolean commitChange(Change plan) {
+		return cashManager.commitChange(plan);
+	}
+
+	@Override
+	public boolean canMakeChange(long amount) {
+		return cashManager.canMakeChange(amount);
+	}
+
+}
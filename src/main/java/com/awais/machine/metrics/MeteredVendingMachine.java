@@ -0,0 +1,261 @@
+package com.awais.machine.metrics;
+
+import java.util.Collection;
+
+import com.awais.machine.exceptions.InvalidProductException;
+import com.awais.machine.exceptions.NotEnoughChangeException;
+import com.awais.machine.exceptions.NotEnoughMoneyException;
+import com.awais.machine.exceptions.SoldOutException;
+import com.awais.machine.interfaces.VendingMachine;
+import com.awais.machine.models.Change;
+import com.awais.machine.models.Coin;
+import com.awais.machine.models.MachineSnapshot;
+import com.awais.machine.models.Product;
+import com.awais.machine.models.SelectionResult;
+import com.awais.machine.utils.Coins;
+import com.awais.machine.utils.Pair;
+import com.awais.machine.utils.Products;
+
+/**
+ * Vending machine decorator recording the latency of every operation, the
+ * sales, the failures by exception type and gauges of the stock of every coin
+ * and product. The failures of the exception free methods are counted as the
+ * exception the other methods would throw.
+ * 
+ * The metrics are looked up once, so an operation only reads the clock twice
+ * and updates a few lock free counters, and with a disabled registry it
+ * doesn't even read the clock. The gauges read the decorated machine, which
+ * must be safe to read while it is used if the metrics are reported from
+ * another thread.
+ * 
+ * @author Awais Iqbal
+ *
+ */
+public class MeteredVendingMachine implements VendingMachine {
+
+	private final VendingMachine machine;
+
+	private final boolean enabled;
+
+	private final Histogram addCoinLatency;
+
+	private final Histogram selectLatency;
+
+	private final Histogram cancelLatency;
+
+	private final Histogram refillLatency;
+
+	private final Histogram resetLatency;
+
+	private final Counter sales;
+
+	private final Counter invalidProduct;
+
+	private final Counter soldOut;
+
+	private final Counter notEnoughMoney;
+
+	private final Counter notEnoughChange;
+
+	public MeteredVendingMachine(VendingMachine machine, MetricsRegistry registry) {
+		this.machine = machine;
+		this.enabled = registry.isEnabled();
+		this.addCoinLatency = registry.histogram("vending.addCoin");
+		this.selectLatency = registry.histogram("vending.selectProduct");
+		this.cancelLatency = registry.histogram("vending.cancelRequest");
+		this.refillLatency = registry.histogram("vending.refill");
+		this.resetLatency = registry.histogram("vending.reset");
+		this.sales = registry.counter("vending.sales");
+		this.invalidProduct = registry.counter("vending.error.InvalidProductException");
+		this.soldOut = registry.counter("vending.error.SoldOutException");
+		this.notEnoughMoney = registry.counter("vending.error.NotEnoughMoneyException");
+		this.notEnoughChange = registry.counter("vending.error.NotEnoughChangeException");
+		for (Product product : Products.ALL) {
+			registry.gauge("vending.stock.product." + product, () -> machine.getProductCount(product));
+		}
+		for (Coin coin : Coins.ALL) {
+			registry.gauge("vending.stock.coin." + coin, () -> machine.getCoinCount(coin));
+		}
+		registry.gauge("vending.credit", machine::getCurrentMoney);
+	}
+
+	@Override
+	public long getProductPrice(Product product) throws InvalidProductException {
+		return machine.getProductPrice(product);
+	}
+
+	@Override
+	public void addCoin(Coin coin) {
+		long start = start();
+		machine.addCoin(coin);
+		stop(addCoinLatency, start);
+	}
+
+	@Override
+	public Pair<Product, Collection<Coin>> selectProduct(Product productSelected)
+			throws NotEnoughMoneyException, SoldOutException, NotEnoughChangeException, InvalidProductException {
+		long start = start();
+		try {
+			Pair<Product, Collection<Coin>> sold = machine.selectProduct(productSelected);
+			sales.increment();
+			return sold;
+		} catch (NotEnoughMoneyException | SoldOutException | NotEnoughChangeException | InvalidProductException e) {
+			failed(e);
+			throw e;
+		} finally {
+			stop(selectLatency, start);
+		}
+	}
+
+	@Override
+	public Product selectProduct(Product productSelected, Change change)
+			throws NotEnoughMoneyException, SoldOutException, NotEnoughChangeException, InvalidProductException {
+		long start = start();
+		try {
+			Product sold = machine.selectProduct(productSelected, change);
+			sales.increment();
+			return sold;
+		} catch (NotEnoughMoneyException | SoldOutException | NotEnoughChangeException | InvalidProductException e) {
+			failed(e);
+			throw e;
+		} finally {
+			stop(selectLatency, start);
+		}
+	}
+
+	@Override
+	public SelectionResult trySelectProduct(Product productSelected, Change change) {
+		long start = start();
+		SelectionResult result = machine.trySelectProduct(productSelected, change);
+		stop(selectLatency, start);
+		switch (result) {
+		case SOLD:
+			sales.increment();
+			break;
+		case INVALID_PRODUCT:
+			invalidProduct.increment();
+			break;
+		case SOLD_OUT:
+			soldOut.increment();
+			break;
+		case NOT_ENOUGH_MONEY:
+			notEnoughMoney.increment();
+			break;
+		case NOT_ENOUGH_CHANGE:
+			notEnoughChange.increment();
+			break;
+		}
+		return result;
+	}
+
+	@Override
+	public SelectionResult checkProduct(Product product) {
+		return machine.checkProduct(product);
+	}
+
+	@Override
+	public Collection<Coin> cancelRequest() throws NotEnoughChangeException {
+		long start = start();
+		try {
+			return machine.cancelRequest();
+		} catch (NotEnoughChangeException e) {
+			notEnoughChange.increment();
+			throw e;
+		} finally {
+			stop(cancelLatency, start);
+		}
+	}
+
+	@Override
+	public void cancelRequest(Change change) throws NotEnoughChangeException {
+		long start = start();
+		try {
+			machine.cancelRequest(change);
+		} catch (NotEnoughChangeException e) {
+			notEnoughChange.increment();
+			throw e;
+		} finally {
+			stop(cancelLatency, start);
+		}
+	}
+
+	@Override
+	public boolean tryCancelRequest(Change change) {
+		long start = start();
+		boolean returned = machine.tryCancelRequest(change);
+		stop(cancelLatency, start);
+		if (!returned) {
+			notEnoughChange.increment();
+		}
+		return returned;
+	}
+
+	@Override
+	public void refill(Pair<Collection<Product>, Collection<Coin>> refilling) {
+		long start = start();
+		machine.refill(refilling);
+		stop(refillLatency, start);
+	}
+
+	@Override
+	public void refill(int[] productCounts, int[] coinCounts) {
+		long start = start();
+		machine.refill(productCounts, coinCounts);
+		stop(refillLatency, start);
+	}
+
+	@Override
+	public long getCurrentMoney() {
+		return machine.getCurrentMoney();
+	}
+
+	@Override
+	public int getProductCount(Product product) {
+		return machine.getProductCount(product);
+	}
+
+	@Override
+	public int getCoinCount(Coin coin) {
+		return machine.getCoinCount(coin);
+	}
+
+	@Override
+	public void snapshot(MachineSnapshot snapshot) {
+		machine.snapshot(snapshot);
+	}
+
+	@Override
+	public void reset() {
+		long start = start();
+		machine.reset();
+		stop(resetLatency, start);
+	}
+
+	private long start() {
+		return enabled ? System.nanoTime() : 0;
+	}
+
+	private void stop(Histogram latency, long start) {
+		if (enabled) {
+			latency.record(System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Count the given failure by its type
+	 * 
+	 * @param e Exception thrown by the machine
+	 */
+	private void failed(Exception e) {
+		if (e instanceof SoldOutException) {
+			soldOut.increment();
+		} else if (e instanceof NotEnoughMoneyException) {
+			notEnoughMoney.increment();
+		} else if (e instanceof NotEnoughChangeException) {
+			notEnoughChange.increment();
+		} else {
+			invalidProduct.increment();
+		}
+	}
+
+}
@@ -0,0 +1,50 @@
+package com.awais.machine.metrics;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Service used by the metered components to publish their metrics. The metrics
+ * are looked up once, when the component is created, and then recorded on
+ * every operation, so the recording must be cheap and safe to use from several
+ * threads.
+ * 
+ * @author Awais Iqbal
+ *
+ */
+public interface MetricsRegistry {
+
+	/**
+	 * Get or create the histogram with the given name
+	 * 
+	 * @param name Name of the metric
+	 * @return Histogram of the values, e.g. latencies in nanoseconds
+	 */
+	public Histogram histogram(String name);
+
+	/**
+	 * Get or create the counter with the given name
+	 * 
+	 * @param name Name of the metric
+	 * @return Counter of events
+	 */
+	public Counter counter(String name);
+
+	/**
+	 * Register a value read every time the metric is reported
+	 * 
+	 * @param name  Name of the metric
+	 * @param gauge Current value of the metric
+	 */
+	public void gauge(String name, LongSupplier gauge);
+
+	/**
+	 * Check if the metrics are recorded, the metered components don't read the
+	 * clock when they aren't
+	 * 
+	 * @return False when every metric is discarded
+	 */
+	public default boolean isEnabled() {
+		return true;
+	}
+
+}
@@ -0,0 +1,57 @@
+package com.awais.machine.metrics;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Registry which discards every metric, used when the metrics are not needed.
+ * 
+ * @author Awais Iqbal
+ *
+ */
+public final class NoOpMetrics implements MetricsRegistry, Histogram, Counter {
+
+	public static final NoOpMetrics INSTANCE = new NoOpMetrics();
+
+	/**
+	 * Private constructor
+	 */
+	private NoOpMetrics() {
+
+	}
+
+	@Override
+	public Histogram histogram(String name) {
+		return this;
+	}
+
+	@Override
+	public Counter counter(String name) {
+		return this;
+	}
+
+	@Override
+	public void gauge(String name, LongSupplier gauge) {
+		// Discarded
+	}
+
+	@Override
+	public boolean isEnabled() {
+		return false;
+	}
+
+	@Override
+	public void record(long value) {
+		// Discarded
+	}
+
+	@Override
+	public void increment() {
+		// Discarded
+	}
+
+	@Override
+	public void add(long amount) {
+		// Discarded
+	}
+
+}
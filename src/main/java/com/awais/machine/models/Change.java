@@ -0,0 +1,106 @@
+package com.awais.machine.models;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+
+import com.awais.machine.utils.Coins;
+
+/**
+ * Coins given back to the user, kept as a count per {@link Coin}. A change can
+ * be reused between operations, so giving change doesn't need to allocate a
+ * collection of coins.
+ * 
+ * @author Awais Iqbal
+ *
+ */
+public class Change {
+
+	/**
+	 * Number of coins of every type, indexed by the ordinal of the coin
+	 */
+	private final int[] counts = new int[Coins.COUNT];
+
+	/**
+	 * Add coins of the given type to the change
+	 * 
+	 * @param coin  Coin to be added
+	 * @param count Number of coins to be added
+	 */
+	public void add(Coin coin, int count) {
+		counts[coin.ordinal()] += count;
+	}
+
+	/**
+	 * Count the coins of the given type
+	 * 
+	 * @param coin Coin to be checked
+	 * @return Number of coins of that type
+	 */
+	public int getCount(Coin coin) {
+		return counts[coin.ordinal()];
+	}
+
+	/**
+	 * Count all the coins
+	 * 
+	 * @return Number of coins of any type
+	 */
+	public int getTotalCount() {
+		int total = 0;
+		for (int count : counts) {
+			total += count;
+		}
+		return total;
+	}
+
+	/**
+	 * Get the total value of the coins
+	 * 
+	 * @return Value of the change in cents
+	 */
+	public long getValue() {
+		long value = 0;
+		for (Coin coin : Coins.ALL) {
+			value += coin.getValue() * counts[coin.ordinal()];
+		}
+		return value;
+	}
+
+	/**
+	 * Check if there is no coin in the change
+	 * 
+	 * @return True if the change has no coins
+	 */
+	public boolean isEmpty() {
+		for (int count : counts) {
+			if (count != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Remove all the coins, to reuse the change in another operation
+	 */
+	public void clear() {
+		Arrays.fill(counts, 0);
+	}
+
+	/**
+	 * List every coin of the change, from the biggest to the smallest one
+	 * 
+	 * @return A new collection with the coins
+	 */
+	public Collection<Coin> toCollection() {
+		Collection<Coin> coins = new ArrayList<>(getTotalCount());
+		for (Coin coin : Coins.ALL) {
+			for (int i = 0; i < counts[coin.ordinal()]; i++) {
+				coins.add(coin);
+			}
+		}
+		return coins;
+	}
+
+}
@@ -0,0 +1,76 @@
+package com.awais.machine.models;
+
+import com.awais.machine.utils.Coins;
+import com.awais.machine.utils.Products;
+/**
+ * Copy of the state of a machine taken at once: the count of every product and
+ * coin and the inserted money. It is filled by
+ * {@link com.awais.machine.interfaces.VendingMachine#snapshot(MachineSnapshot)}
+ * and meant to be reused between reads, so taking a snapshot doesn't allocate.
+ * 
+ * @author Awais Iqbal
+ *
+ */
+public class MachineSnapshot {
+
+	/**
+	 * Units of every product, indexed by the ordinal of the product
+	 */
+	private final int[] productCounts = new int[Products.COUNT];
+
+	/**
+	 * Coins of every type, indexed by the ordinal of the coin
+	 */
+	private final int[] coinCounts = new int[Coins.COUNT];
+
+	private long currentMoney;
+
+	/**
+	 * False when the machine was too busy to validate the copy, the counts are
+	 * then a best effort and may hold half an operation
+	 */
+	private boolean consistent;
+
+	public int getProductCount(Product product) {
+		return productCounts[product.ordinal()];
+	}
+
+	public int getCoinCount(Coin coin) {
+		return coinCounts[coin.ordinal()];
+	}
+
+	public long getCurrentMoney() {
+		return currentMoney;
+	}
+
+	public void setCurrentMoney(long currentMoney) {
+		this.currentMoney = currentMoney;
+	}
+
+	public boolean isConsistent() {
+		return consistent;
+	}
+
+	public void setConsistent(boolean consistent) {
+		this.consistent = consistent;
+	}
+
+	/**
+	 * Units of every product, filled by the machines
+	 * 
+	 * @return The counts of this snapshot, indexed by the ordinal of the product
+	 */
+	public int[] getProductCounts() {
+		return productCounts;
+	}
+
+	/**
+	 * Coins of every type, filled by the machines
+	 * 
+	 * @return The counts of this snapshot, indexed by the ordinal of the coin
+	 */
+	public int[] getCoinCounts() {
+		return coinCounts;
+	}
+
+}
@@ -0,0 +1,49 @@
+package com.awais.machine.models;
+
+/**
+ * This enum represents the outcome of a product selection, returned instead of
+ * throwing an exception by
+ * {@link com.awais.machine.interfaces.VendingMachine#trySelectProduct(Product, Change)}.
+ * The last two outcomes are only given to the operations of a batch, which
+ * don't always sell a product.
+ * 
+ * @author Awais Iqbal
+ *
+ */
+public enum SelectionResult {
+	/**
+	 * The product was sold and the change was returned
+	 */
+	SOLD,
+	/**
+	 * The selected product is invalid
+	 */
+	INVALID_PRODUCT,
+	/**
+	 * The selected product is sold out
+	 */
+	SOLD_OUT,
+	/**
+	 * The inserted money is less than the price of the product
+	 */
+	NOT_ENOUGH_MONEY,
+	/**
+	 * The machine don't have enough change for the operation
+	 */
+	NOT_ENOUGH_CHANGE,
+	/**
+	 * The operation doesn't sell a product and was applied, e.g. a coin inserted
+	 * or the money returned
+	 */
+	APPLIED,
+	/**
+	 * The operation is malformed, e.g. an unknown type or coin, and nothing was
+	 * applied
+	 */
+	REJECTED;
+
+	public boolean isSuccess() {
+		return this == SOLD || this == APPLIED;
+	}
+
+}
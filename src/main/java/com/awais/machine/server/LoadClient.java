@@ -0,0 +1,243 @@
+package com.awais.machine.server;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.awais.machine.batch.BatchEvents;
+import com.awais.machine.models.Coin;
+import com.awais.machine.models.Product;
+
+/**
+ * Generates load against a {@link VendingServer}, like many terminals selling
+ * at the same time.
+ *
+ * Every connection runs in its own thread, binds to a machine and repeats a
+ * purchase: one water and a ten cents coin refilled, one euro inserted and the
+ * water selected, so every response is expected to succeed. The requests are
+ * sent in groups of the pipeline depth before reading their responses. The
+ * server binds a machine to a single connection, so there can't be more
+ * connections than machines.
+ *
+ * @author Awais Iqbal
+ *
+ */
+public class LoadClient {
+
+	/**
+	 * Requests of a purchase, repeated by every connection
+	 */
+	private static final int[] PURCHASE = { BatchEvents.refillProduct(Product.WATER, 1),
+			BatchEvents.refillCoin(Coin.TEN_CENTS, 1), BatchEvents.addCoin(Coin.ONE_EURO),
+			BatchEvents.selectProduct(Product.WATER) };
+
+	private final InetSocketAddress address;
+
+	private final int connections;
+
+	private final int requestsPerConnection;
+
+	private final int pipelineDepth;
+
+	/**
+	 * Create a client, the connection with index i binding to the machine i
+	 *
+	 * @param address               Address of the server
+	 * @param machines              Machines used on the server
+	 * @param connections           Connections opened at the same time, up to
+	 *                              the machines
+	 * @param requestsPerConnection Requests sent by every connection
+	 * @param pipelineDepth         Requests sent before reading their responses
+	 */
+	public LoadClient(InetSocketAddress address, int machines, int connections, int requestsPerConnection,
+			int pipelineDepth) {
+		if (machines < 1 || connections < 1 || connections > machines || requestsPerConnection < 0
+				|| pipelineDepth < 1) {
+			throw new IllegalArgumentException("Invalid load");
+		}
+		this.address = address;
+		this.connections = connections;
+		this.requestsPerConnection = requestsPerConnection;
+		this.pipelineDepth = pipelineDepth;
+	}
+
+	/**
+	 * Run all the connections and wait for them
+	 *
+	 * @return Requests sent, failures and elapsed time
+	 * @throws IOException          When a connection fails
+	 * @throws InterruptedException When the thread is interrupted waiting for the
+	 *                              connections
+	 */
+	public Report run() throws IOException, InterruptedException {
+		ExecutorService executor = Executors.newFixedThreadPool(connections);
+		try {
+			long start = System.nanoTime();
+			List<Future<Long>> futures = new ArrayList<>();
+			for (int i = 0; i < connections; i++) {
+				int machine = i;
+				futures.add(executor.submit(() -> runConnection(machine)));
+			}
+			long failures = 0;
+			for (Future<Long> future : futures) {
+				failures += future.get();
+			}
+			return new Report((long) connections * requestsPerConnection, failures, System.nanoTime() - start);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IllegalStateException("A connection failed", e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Send the requests of one connection
+	 *
+	 * @param machine Machine bound
+	 * @return Number of responses which were not a success
+	 * @throws IOException When the connection fails
+	 */
+	private long runConnection(int machine) throws IOException {
+		try (SocketChannel channel = SocketChannel.open(address)) {
+			channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+			ByteBuffer output = ByteBuffer.allocateDirect(pipelineDepth * Protocol.REQUEST_SIZE);
+			ByteBuffer input = ByteBuffer.allocateDirect(pipelineDepth * Protocol.MAX_RESPONSE_SIZE);
+			int[] sent = new int[pipelineDepth];
+
+			sent[0] = Protocol.bind(machine);
+			if (exchange(channel, sent, 1, output, input) > 0) {
+				throw new IOException("Machine " + machine + " can't be bound");
+			}
+			long failures = 0;
+			for (int done = 0; done < requestsPerConnection;) {
+				int count = Math.min(pipelineDepth, requestsPerConnection - done);
+				for (int i = 0; i < count; i++) {
+					sent[i] = PURCHASE[(done + i) % PURCHASE.length];
+				}
+				failures += exchange(channel, sent, count, output, input);
+				done += count;
+			}
+			return failures;
+		}
+	}
+
+	/**
+	 * Send a group of requests and read all their responses
+	 *
+	 * @param channel  Connection to the server
+	 * @param requests Requests to be sent
+	 * @param count    Number of requests
+	 * @param output   Buffer of the requests
+	 * @param input    Buffer of the responses
+	 * @return Number of responses which were not a success
+	 * @throws IOException When the connection fails or is closed
+	 */
+	private static int exchange(SocketChannel channel, int[] requests, int count, ByteBuffer output, ByteBuffer input)
+			throws IOException {
+		output.clear();
+		int expected = 0;
+		for (int i = 0; i < count; i++) {
+			output.putInt(requests[i]);
+			expected += Protocol.responseSize(requests[i]);
+		}
+		output.flip();
+		while (output.hasRemaining()) {
+			channel.write(output);
+		}
+
+		input.clear();
+		input.limit(expected);
+		while (input.hasRemaining()) {
+			if (channel.read(input) < 0) {
+				throw new EOFException("The server closed the connection");
+			}
+		}
+		input.flip();
+		int failures = 0;
+		for (int i = 0; i < count; i++) {
+			int start = input.position();
+			if (!Protocol.isSuccess(input.get())) {
+				failures++;
+			}
+			input.position(start + Protocol.responseSize(requests[i]));
+		}
+		return failures;
+	}
+
+	/**
+	 * Run a client from the command line and print its report
+	 *
+	 * @param args Host, port, machines, connections, requests per connection and
+	 *             optionally the pipeline depth
+	 * @throws Exception When the load can't be run
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length < 5) {
+			System.err.println(
+					"Usage: LoadClient <host> <port> <machines> <connections> <requestsPerConnection> [pipelineDepth]");
+			System.exit(1);
+		}
+		LoadClient client = new LoadClient(new InetSocketAddress(args[0], Integer.parseInt(args[1])),
+				Integer.parseInt(args[2]), Integer.parseInt(args[3]), Integer.parseInt(args[4]),
+				args.length > 5 ? Integer.parseInt(args[5]) : 32);
+		System.out.println(client.run());
+	}
+
+	/**
+	 * Outcome of a run of the client
+	 */
+	public static final class Report {
+
+		private final long requests;
+
+		private final long failures;
+
+		private final long elapsedNanos;
+
+		private Report(long requests, long failures, long elapsedNanos) {
+			this.requests = requests;
+			this.failures = failures;
+			this.elapsedNanos = elapsedNanos;
+		}
+
+		public long getRequests() {
+			return requests;
+		}
+
+		public long getFailures() {
+			return failures;
+		}
+
+		public long getElapsedNanos() {
+			return elapsedNanos;
+		}
+
+		/**
+		 * Requests answered per second
+		 *
+		 * @return Throughput of the run
+		 */
+		public double getThroughput() {
+			return elapsedNanos == 0 ? 0 : requests * 1e9 / elapsedNanos;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%d requests, %d failures in %.1f ms: %.0f requests/s", requests, failures,
+					elapsedNanos / 1e6, getThroughput());
+		}
+	}
+
+}
@@ -0,0 +1,124 @@
+package com.awais.machine.server;
+
+import com.awais.machine.batch.BatchEvents;
+import com.awais.machine.models.Coin;
+import com.awais.machine.models.Product;
+import com.awais.machine.models.SelectionResult;
+import com.awais.machine.utils.Coins;
+
+/**
+ * Binary protocol between the remote terminals and the {@link VendingServer}.
+ *
+ * A request is a single big endian int encoded like the {@link BatchEvents},
+ * with the types of this class added to bind the connection to a machine and
+ * to read its state. A response starts with a status byte, the ordinal of the
+ * {@link SelectionResult} or {@link #ERROR}, followed by a payload whose size
+ * only depends on the type of the request. A sale is
+ * {@link SelectionResult#SOLD}, any other request which succeeded is
+ * {@link SelectionResult#APPLIED}:
+ *
+ * <ul>
+ * <li>a selection or a cancel: the coins returned, one int per coin indexed by
+ * ordinal, all zero when the operation failed;</li>
+ * <li>{@link #GET_MONEY}: the inserted money as a long;</li>
+ * <li>{@link #GET_PRODUCT_COUNT} and {@link #GET_COIN_COUNT}: the count as an
+ * int;</li>
+ * <li>any other request: nothing.</li>
+ * </ul>
+ *
+ * Requests are answered in order, so a terminal can send many of them before
+ * reading the responses.
+ *
+ * @author Awais Iqbal
+ *
+ */
+public final class Protocol {
+
+	/**
+	 * The connection bound to the machine whose id is the count, an error when
+	 * another open connection is bound to it as the machine has a single credit
+	 */
+	public static final int BIND = 7;
+
+	/** The inserted money of the machine read */
+	public static final int GET_MONEY = 8;
+
+	/** The units of a product read */
+	public static final int GET_PRODUCT_COUNT = 9;
+
+	/** The coins of a type read */
+	public static final int GET_COIN_COUNT = 10;
+
+	/**
+	 * Status of a malformed request, of a request before the connection is
+	 * bound, or of a request the machine failed to apply
+	 */
+	public static final byte ERROR = 0x7F;
+
+	/**
+	 * Bytes of a request
+	 */
+	public static final int REQUEST_SIZE = Integer.BYTES;
+
+	private static final int CHANGE_SIZE = Coins.COUNT * Integer.BYTES;
+
+	/**
+	 * Bytes of the biggest response
+	 */
+	public static final int MAX_RESPONSE_SIZE = 1 + Math.max(CHANGE_SIZE, Long.BYTES);
+
+	/**
+	 * Private constructor
+	 */
+	private Protocol() {
+
+	}
+
+	public static int bind(int machine) {
+		return BatchEvents.encode(BIND, 0, machine);
+	}
+
+	public static int getMoney() {
+		return BatchEvents.encode(GET_MONEY, 0, 0);
+	}
+
+	public static int getProductCount(Product product) {
+		return BatchEvents.encode(GET_PRODUCT_COUNT, product.ordinal(), 0);
+	}
+
+	public static int getCoinCount(Coin coin) {
+		return BatchEvents.encode(GET_COIN_COUNT, coin.ordinal(), 0);
+	}
+
+	/**
+	 * Check the status of a response
+	 *
+	 * @param status First byte of the response
+	 * @return True when the request sold a product or was applied
+	 */
+	public static boolean isSuccess(byte status) {
+		return status == SelectionResult.SOLD.ordinal() || status == SelectionResult.APPLIED.ordinal();
+	}
+
+	/**
+	 * Bytes of the response to the given request, status included
+	 *
+	 * @param request Encoded request
+	 * @return Size of the response
+	 */
+	public static int responseSize(int request) {
+		switch (BatchEvents.typeOf(request)) {
+		case BatchEvents.SELECT_PRODUCT:
+		case BatchEvents.CANCEL_REQUEST:
+			return 1 + CHANGE_SIZE;
+		case GET_MONEY:
+			return 1 + Long.BYTES;
+		case GET_PRODUCT_COUNT:
+		case GET_COIN_COUNT:
+			return 1 + Integer.BYTES;
+		default:
+			return 1;
+		}
+	}
+
+}
@@ -0,0 +1,465 @@
+package com.awais.machine.server;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import com.awais.machine.Factory;
+import com.awais.machine.batch.BatchEvents;
+import com.awais.machine.interfaces.VendingMachine;
+import com.awais.machine.models.Change;
+import com.awais.machine.models.Coin;
+import com.awais.machine.models.SelectionResult;
+import com.awais.machine.utils.Coins;
+import com.awais.machine.utils.Products;
+
+/**
+ * Network front-end of a set of machines, speaking the {@link Protocol} over
+ * TCP.
+ *
+ * All the connections are served by a single thread looping on a non-blocking
+ * selector, so the machines are only used by that thread and don't need to be
+ * thread safe. Every connection gets a direct input and output buffer, reused
+ * for all its requests. The requests read are answered in a single pass into
+ * the output buffer, which is written once for all of them. While the output
+ * can't be written, the connection is not read anymore, so a terminal that
+ * doesn't read its responses only fills its own buffers.
+ *
+ * A machine holds the credit of a single customer, so it is bound to one
+ * connection at a time and is free again when that connection closes or binds
+ * another machine. A request the machine fails to apply is answered with
+ * {@link Protocol#ERROR}, the other requests and connections are served as
+ * usual.
+ *
+ * @author Awais Iqbal
+ *
+ */
+public class VendingServer implements Closeable {
+
+	/**
+	 * Bytes of the input buffer of a connection
+	 */
+	private static final int INPUT_SIZE = 8 * 1024;
+
+	/**
+	 * Bytes of the output buffer of a connection
+	 */
+	private static final int OUTPUT_SIZE = 32 * 1024;
+
+	/**
+	 * Machines served, a connection is bound to one of them by its index
+	 */
+	private final List<? extends VendingMachine> machines;
+
+	/**
+	 * Connection bound to every machine, indexed like the machines, null when
+	 * the machine is free
+	 */
+	private final Connection[] owners;
+
+	private final Selector selector;
+
+	private final ServerSocketChannel serverChannel;
+
+	/**
+	 * Holder of the change, reused for every request
+	 */
+	private final Change change = new Change();
+
+	/**
+	 * Counts of a refill, reused for every request and cleared after use
+	 */
+	private final int[] productCounts = new int[Products.COUNT];
+
+	private final int[] coinCounts = new int[Coins.COUNT];
+
+	private volatile boolean running = true;
+
+	/**
+	 * Thread in {@link #run()}, null when the server is not serving
+	 */
+	private volatile Thread serving;
+
+	/**
+	 * Open the server, accepting connections once {@link #run()} is called
+	 *
+	 * @param machines Machines to be served
+	 * @param address  Address to listen on, port 0 for any free port
+	 * @throws IOException When the address can't be bound
+	 */
+	public VendingServer(List<? extends VendingMachine> machines, InetSocketAddress address) throws IOException {
+		this.machines = machines;
+		this.owners = new Connection[machines.size()];
+		this.selector = Selector.open();
+		this.serverChannel = ServerSocketChannel.open();
+		try {
+			serverChannel.bind(address);
+			serverChannel.configureBlocking(false);
+			serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+		} catch (IOException e) {
+			close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Address the server is listening on
+	 *
+	 * @return The bound address, with the actual port
+	 * @throws IOException When the server is closed
+	 */
+	public InetSocketAddress getAddress() throws IOException {
+		return (InetSocketAddress) serverChannel.getLocalAddress();
+	}
+
+	/**
+	 * Serve the connections in the calling thread until the server is closed
+	 *
+	 * @throws IOException When the selector fails
+	 */
+	public void run() throws IOException {
+		serving = Thread.currentThread();
+		try {
+			while (running) {
+				selector.select();
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					if (!key.isValid()) {
+						continue;
+					}
+					if (key.isAcceptable()) {
+						accept();
+					} else {
+						serve(key);
+					}
+				}
+			}
+		} finally {
+			serving = null;
+		}
+	}
+
+	/**
+	 * Start serving the connections in a new thread
+	 *
+	 * @return The thread of the server
+	 */
+	public Thread start() {
+		Thread thread = new Thread(() -> {
+			try {
+				run();
+			} catch (IOException e) {
+				throw new IllegalStateException("The server failed", e);
+			}
+		}, "vending-server");
+		thread.setDaemon(true);
+		serving = thread;
+		thread.start();
+		return thread;
+	}
+
+	/**
+	 * Stop serving and close all the connections, waiting for the serving thread
+	 * to leave {@link #run()} first
+	 */
+	@Override
+	public void close() throws IOException {
+		running = false;
+		selector.wakeup();
+		Thread thread = serving;
+		if (thread != null && thread != Thread.currentThread()) {
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		try {
+			if (selector.isOpen()) {
+				for (SelectionKey key : selector.keys()) {
+					key.channel().close();
+				}
+			}
+		} finally {
+			serverChannel.close();
+			selector.close();
+		}
+	}
+
+	private void accept() throws IOException {
+		SocketChannel channel = serverChannel.accept();
+		if (channel == null) {
+			return;
+		}
+		channel.configureBlocking(false);
+		channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+		channel.register(selector, SelectionKey.OP_READ, new Connection(channel));
+	}
+
+	/**
+	 * Read the requests of a connection and write their responses, the connection
+	 * is closed when the terminal closed it or it failed
+	 *
+	 * @param key Key of the connection
+	 */
+	private void serve(SelectionKey key) {
+		Connection connection = (Connection) key.attachment();
+		try {
+			if (key.isReadable() && connection.channel.read(connection.input) < 0) {
+				close(connection);
+				return;
+			}
+			// Answer the requests until the output can't be written or all the
+			// complete requests are answered
+			do {
+				answer(connection);
+				connection.output.flip();
+				connection.channel.write(connection.output);
+				connection.output.compact();
+			} while (connection.output.position() == 0 && connection.input.position() >= Protocol.REQUEST_SIZE);
+			key.interestOps(connection.output.position() > 0 ? SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+		} catch (IOException | RuntimeException e) {
+			// Only this connection is dropped, the others are still served
+			close(connection);
+		}
+	}
+
+	/**
+	 * Close a connection and free the machine bound to it
+	 *
+	 * @param connection Connection to be closed
+	 */
+	private void close(Connection connection) {
+		unbind(connection);
+		try {
+			connection.channel.close();
+		} catch (IOException ignored) {
+			// Already failed
+		}
+	}
+
+	/**
+	 * Free the machine bound to a connection
+	 *
+	 * @param connection Connection to be unbound
+	 */
+	private void unbind(Connection connection) {
+		if (connection.machine >= 0 && owners[connection.machine] == connection) {
+			owners[connection.machine] = null;
+		}
+		connection.machine = -1;
+	}
+
+	/**
+	 * Answer the complete requests of the input while the output has room for
+	 * any response
+	 *
+	 * @param connection Connection of the requests
+	 */
+	private void answer(Connection connection) {
+		ByteBuffer input = connection.input;
+		ByteBuffer output = connection.output;
+		input.flip();
+		while (input.remaining() >= Protocol.REQUEST_SIZE && output.remaining() >= Protocol.MAX_RESPONSE_SIZE) {
+			answer(connection, input.getInt(), output);
+		}
+		input.compact();
+	}
+
+	/**
+	 * Apply a request to the machine of the connection and write its response,
+	 * an error when the machine failed to apply it
+	 *
+	 * @param connection Connection of the request
+	 * @param request    Encoded request
+	 * @param output     Buffer of the response
+	 */
+	private void answer(Connection connection, int request, ByteBuffer output) {
+		int start = output.position();
+		try {
+			apply(connection, request, output);
+		} catch (RuntimeException e) {
+			// E.g. a journaled machine failing to write, only this request fails
+			Arrays.fill(productCounts, 0);
+			Arrays.fill(coinCounts, 0);
+			output.position(start);
+			error(request, output);
+		}
+	}
+
+	/**
+	 * Apply a request to the machine of the connection and write its response
+	 *
+	 * @param connection Connection of the request
+	 * @param request    Encoded request
+	 * @param output     Buffer of the response
+	 */
+	private void apply(Connection connection, int request, ByteBuffer output) {
+		int type = BatchEvents.typeOf(request);
+		int item = BatchEvents.itemOf(request);
+		if (type == Protocol.BIND) {
+			int machine = BatchEvents.countOf(request);
+			if (machine >= machines.size() || (owners[machine] != null && owners[machine] != connection)) {
+				error(request, output);
+				return;
+			}
+			unbind(connection);
+			owners[machine] = connection;
+			connection.machine = machine;
+			output.put((byte) SelectionResult.APPLIED.ordinal());
+			return;
+		}
+		if (connection.machine < 0 || !isValidItem(type, item)) {
+			error(request, output);
+			return;
+		}
+
+		VendingMachine machine = machines.get(connection.machine);
+		switch (type) {
+		case BatchEvents.ADD_COIN:
+			machine.addCoin(Coins.ALL[item]);
+			output.put((byte) SelectionResult.APPLIED.ordinal());
+			break;
+		case BatchEvents.SELECT_PRODUCT:
+			putChange(machine.trySelectProduct(Products.ALL[item], change), output);
+			break;
+		case BatchEvents.CANCEL_REQUEST:
+			putChange(machine.tryCancelRequest(change) ? SelectionResult.APPLIED : SelectionResult.NOT_ENOUGH_CHANGE,
+					output);
+			break;
+		case BatchEvents.REFILL_PRODUCT:
+			productCounts[item] = BatchEvents.countOf(request);
+			machine.refill(productCounts, coinCounts);
+			productCounts[item] = 0;
+			output.put((byte) SelectionResult.APPLIED.ordinal());
+			break;
+		case BatchEvents.REFILL_COIN:
+			coinCounts[item] = BatchEvents.countOf(request);
+			machine.refill(productCounts, coinCounts);
+			coinCounts[item] = 0;
+			output.put((byte) SelectionResult.APPLIED.ordinal());
+			break;
+		case BatchEvents.RESET:
+			machine.reset();
+			output.put((byte) SelectionResult.APPLIED.ordinal());
+			break;
+		case Protocol.GET_MONEY:
+			output.put((byte) SelectionResult.APPLIED.ordinal());
+			output.putLong(machine.getCurrentMoney());
+			break;
+		case Protocol.GET_PRODUCT_COUNT:
+			output.put((byte) SelectionResult.APPLIED.ordinal());
+			output.putInt(machine.getProductCount(Products.ALL[item]));
+			break;
+		case Protocol.GET_COIN_COUNT:
+			output.put((byte) SelectionResult.APPLIED.ordinal());
+			output.putInt(machine.getCoinCount(Coins.ALL[item]));
+			break;
+		default:
+			error(request, output);
+		}
+	}
+
+	/**
+	 * Check that the item of a request is a coin or a product, as its type needs
+	 * 
+	 * @param type Type of the request
+	 * @param item Ordinal of the item
+	 * @return False when the ordinal is out of range
+	 */
+	private static boolean isValidItem(int type, int item) {
+		switch (type) {
+		case BatchEvents.ADD_COIN:
+		case BatchEvents.REFILL_COIN:
+		case Protocol.GET_COIN_COUNT:
+			return item < Coins.COUNT;
+		case BatchEvents.SELECT_PRODUCT:
+		case BatchEvents.REFILL_PRODUCT:
+		case Protocol.GET_PRODUCT_COUNT:
+			return item < Products.COUNT;
+		default:
+			return true;
+		}
+	}
+
+	/**
+	 * Write the outcome of a selection or a cancel and the coins returned
+	 *
+	 * @param result Outcome of the operation
+	 * @param output Buffer of the response
+	 */
+	private void putChange(SelectionResult result, ByteBuffer output) {
+		output.put((byte) result.ordinal());
+		for (Coin coin : Coins.ALL) {
+			output.putInt(result.isSuccess() ? change.getCount(coin) : 0);
+		}
+	}
+
+	/**
+	 * Write an error response, with the payload expected for the request
+	 *
+	 * @param request Encoded request
+	 * @param output  Buffer of the response
+	 */
+	private static void error(int request, ByteBuffer output) {
+		output.put(Protocol.ERROR);
+		for (int i = 1; i < Protocol.responseSize(request); i++) {
+			output.put((byte) 0);
+		}
+	}
+
+	/**
+	 * Run a server from the command line, each machine starting empty
+	 *
+	 * @param args Port and number of machines
+	 * @throws IOException When the server can't be started
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("Usage: VendingServer <port> <machines>");
+			System.exit(1);
+		}
+		List<VendingMachine> machines = new ArrayList<>();
+		for (int i = 0; i < Integer.parseInt(args[1]); i++) {
+			machines.add(Factory.createVendingMachine());
+		}
+		try (VendingServer server = new VendingServer(machines, new InetSocketAddress(Integer.parseInt(args[0])))) {
+			System.out.println("Serving " + machines.size() + " machines on " + server.getAddress());
+			server.run();
+		}
+	}
+
+	/**
+	 * State of a connection
+	 */
+	private static final class Connection {
+
+		private final SocketChannel channel;
+
+		private final ByteBuffer input = ByteBuffer.allocateDirect(INPUT_SIZE);
+
+		private final ByteBuffer output = ByteBuffer.allocateDirect(OUTPUT_SIZE);
+
+		/**
+		 * Index of the machine bound, -1 until a {@link Protocol#BIND} request
+		 */
+		private int machine = -1;
+
+		private Connection(SocketChannel channel) {
+			this.channel = channel;
+		}
+	}
+
+}
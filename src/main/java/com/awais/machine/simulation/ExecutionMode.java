@@ -0,0 +1,14 @@
+package com.awais.machine.simulation;
+
+/**
+ * How the {@link FleetSimulator} runs the machines in parallel.
+ * 
+ * @author Awais Iqbal
+ *
+ */
+public enum ExecutionMode {
+	/** The machines are split among the workers of a fork-join pool */
+	FORK_JOIN,
+	/** Every machine runs in its own virtual thread, needs a Java 21 runtime */
+	VIRTUAL_THREADS
+}
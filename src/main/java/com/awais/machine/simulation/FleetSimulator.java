@@ -0,0 +1,215 @@
+package com.awais.machine.simulation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+
+import com.awais.machine.Factory;
+import com.awais.machine.interfaces.VendingMachine;
+import com.awais.machine.models.Change;
+import com.awais.machine.models.Product;
+import com.awais.machine.models.SelectionResult;
+import com.awais.machine.utils.Coins;
+import com.awais.machine.utils.Products;
+
+/**
+ * Simulates the demand of a fleet of machines, each one created with
+ * {@link Factory#createVendingMachine()} and visited by its own synthetic
+ * customers. A customer picks a product, inserts coins until the price is
+ * reached and selects the product, cancelling the request when the product is
+ * sold out or the change can't be given.
+ * 
+ * The machines are independent, so they run in parallel without sharing any
+ * state. Every machine gets its own random generator, split from the seed in
+ * the order of the machines before any of them runs, so the outcomes don't
+ * depend on the scheduling.
+ * 
+ * @author Awais Iqbal
+ *
+ */
+public class FleetSimulator {
+
+	/**
+	 * Machines simulated by a fork-join task without splitting it
+	 */
+	private static final int MACHINES_PER_TASK = 4;
+
+	private final SimulationConfig config;
+
+	public FleetSimulator(SimulationConfig config) {
+		this.config = config;
+	}
+
+	/**
+	 * Run the whole simulation
+	 * 
+	 * @return Outcomes of every machine and of the fleet
+	 * @throws InterruptedException When the thread is interrupted waiting for the
+	 *                              machines
+	 */
+	public SimulationReport run() throws InterruptedException {
+		SplittableRandom root = new SplittableRandom(config.getSeed());
+		SplittableRandom[] randoms = new SplittableRandom[config.getMachines()];
+		MachineReport[] reports = new MachineReport[config.getMachines()];
+		for (int i = 0; i < randoms.length; i++) {
+			randoms[i] = root.split();
+			reports[i] = new MachineReport(i);
+		}
+
+		long start = System.nanoTime();
+		switch (config.getMode()) {
+		case VIRTUAL_THREADS:
+			runInVirtualThreads(randoms, reports);
+			break;
+		default:
+			runInForkJoinPool(randoms, reports);
+		}
+		return new SimulationReport(Arrays.asList(reports), System.nanoTime() - start);
+	}
+
+	/**
+	 * Simulate all the customers of one machine
+	 * 
+	 * @param random Random generator of the machine
+	 * @param report Report of the machine
+	 */
+	private void simulateMachine(SplittableRandom random, MachineReport report) {
+		VendingMachine machine = Factory.createVendingMachine();
+		int[] productCounts = new int[Products.COUNT];
+		Arrays.fill(productCounts, config.getInitialProducts());
+		int[] coinCounts = new int[Coins.COUNT];
+		Arrays.fill(coinCounts, config.getInitialCoins());
+		machine.refill(productCounts, coinCounts);
+
+		Change change = new Change();
+		for (int c = 0; c < config.getCustomersPerMachine(); c++) {
+			report.customer();
+			Product product = config.getProductMix().next(random);
+			while (machine.getCurrentMoney() < product.getPrice()) {
+				machine.addCoin(config.getCoinMix().next(random));
+			}
+
+			SelectionResult result = machine.trySelectProduct(product, change);
+			switch (result) {
+			case SOLD:
+				report.sale(product.getPrice());
+				continue;
+			case SOLD_OUT:
+				report.soldOut();
+				break;
+			default:
+				report.notEnoughChange();
+			}
+			if (!machine.tryCancelRequest(change)) {
+				// The money stays in the machine for the next customer
+				report.failedRefund();
+			}
+		}
+	}
+
+	private void runInForkJoinPool(SplittableRandom[] randoms, MachineReport[] reports) {
+		ForkJoinPool pool = new ForkJoinPool(config.getParallelism());
+		try {
+			pool.invoke(new MachinesTask(randoms, reports, 0, randoms.length));
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	private void runInVirtualThreads(SplittableRandom[] randoms, MachineReport[] reports)
+			throws InterruptedException {
+		ExecutorService executor = newVirtualThreadPerTaskExecutor();
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int i = 0; i < randoms.length; i++) {
+				SplittableRandom random = randoms[i];
+				MachineReport report = reports[i];
+				futures.add(executor.submit(() -> simulateMachine(random, report)));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("A machine failed", e.getCause());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Look up the virtual thread executor, which is not available in the Java 8
+	 * API this library is compiled against
+	 * 
+	 * @return An executor starting a virtual thread for every task
+	 */
+	private static ExecutorService newVirtualThreadPerTaskExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			throw new UnsupportedOperationException("Virtual threads need a Java 21 runtime", e);
+		}
+	}
+
+	/**
+	 * Simulates a range of machines, splitting it among the workers of the pool
+	 */
+	private final class MachinesTask extends RecursiveAction {
+
+		private static final long serialVersionUID = -3620594406312830128L;
+
+		private final SplittableRandom[] randoms;
+
+		private final MachineReport[] reports;
+
+		private final int from;
+
+		private final int to;
+
+		private MachinesTask(SplittableRandom[] randoms, MachineReport[] reports, int from, int to) {
+			this.randoms = randoms;
+			this.reports = reports;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= MACHINES_PER_TASK) {
+				for (int i = from; i < to; i++) {
+					simulateMachine(randoms[i], reports[i]);
+				}
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			invokeAll(new MachinesTask(randoms, reports, from, middle), new MachinesTask(randoms, reports, middle, to));
+		}
+	}
+
+	/**
+	 * Run a simulation from the command line and print its report
+	 * 
+	 * @param args Machines, customers per machine, seed and optionally the
+	 *             execution mode
+	 * @throws InterruptedException When the thread is interrupted
+	 */
+	public static void main(String[] args) throws InterruptedException {
+		if (args.length < 3) {
+			System.err.println("Usage: FleetSimulator <machines> <customersPerMachine> <seed> [FORK_JOIN|VIRTUAL_THREADS]");
+			System.exit(1);
+		}
+		SimulationConfig config = new SimulationConfig(Integer.parseInt(args[0]), Integer.parseInt(args[1]),
+				Long.parseLong(args[2]));
+		if (args.length > 3) {
+			config.setMode(ExecutionMode.valueOf(args[3]));
+		}
+		System.out.println(new FleetSimulator(config).run());
+	}
+
+}
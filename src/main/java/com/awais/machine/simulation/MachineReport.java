@@ -0,0 +1,84 @@
+package com.awais.machine.simulation;
+
+/**
+ * Outcomes of the customers of one simulated machine.
+ * 
+ * @author Awais Iqbal
+ *
+ */
+public class MachineReport {
+
+	private final int machine;
+
+	private long customers;
+
+	private long sales;
+
+	private long soldOut;
+
+	private long notEnoughChange;
+
+	/**
+	 * Cancels which couldn't return the money
+	 */
+	private long failedRefunds;
+
+	/**
+	 * Value of the products sold, in cents
+	 */
+	private long revenue;
+
+	public MachineReport(int machine) {
+		this.machine = machine;
+	}
+
+	public int getMachine() {
+		return machine;
+	}
+
+	public long getCustomers() {
+		return customers;
+	}
+
+	public long getSales() {
+		return sales;
+	}
+
+	public long getSoldOut() {
+		return soldOut;
+	}
+
+	public long getNotEnoughChange() {
+		return notEnoughChange;
+	}
+
+	public long getFailedRefunds() {
+		return failedRefunds;
+	}
+
+	public long getRevenue() {
+		return revenue;
+	}
+
+	void customer() {
+		customers++;
+	}
+
+	void sale(long price) {
+		sales++;
+		revenue += price;
+	}
+
+	void soldOut() {
+		soldOut++;
+	}
+
+	void notEnoughChange() {
+		notEnoughChange++;
+	}
+
+	void failedRefund() {
+		failedRefunds++;
+	}
+
+}
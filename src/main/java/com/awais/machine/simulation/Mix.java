@@ -0,0 +1,80 @@
+package com.awais.machine.simulation;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Weighted choice among the constants of an enum, e.g. the products wanted by
+ * the customers or the coins they carry.
+ * 
+ * @author Awais Iqbal
+ *
+ * @param <T> Type of the items
+ */
+public class Mix<T extends Enum<T>> {
+
+	private final T[] items;
+
+	/**
+	 * Sum of the weights up to every item, indexed by the ordinal of the item
+	 */
+	private final int[] cumulativeWeights;
+
+	/**
+	 * Create a mix with the given weight for every item, the missing items are
+	 * never chosen
+	 * 
+	 * @param type    Enum of the items
+	 * @param weights Weight of every item
+	 */
+	public Mix(Class<T> type, Map<T, Integer> weights) {
+		this.items = type.getEnumConstants();
+		this.cumulativeWeights = new int[items.length];
+		int total = 0;
+		for (T item : items) {
+			Integer weight = weights.get(item);
+			if (weight != null) {
+				if (weight < 0) {
+					throw new IllegalArgumentException("The weight of " + item + " is negative");
+				}
+				total += weight;
+			}
+			cumulativeWeights[item.ordinal()] = total;
+		}
+		if (total == 0) {
+			throw new IllegalArgumentException("At least one item must have weight");
+		}
+	}
+
+	/**
+	 * Create a mix where every item has the same weight
+	 * 
+	 * @param type Enum of the items
+	 * @return A new uniform mix
+	 */
+	public static <T extends Enum<T>> Mix<T> uniform(Class<T> type) {
+		Map<T, Integer> weights = new EnumMap<>(type);
+		for (T item : type.getEnumConstants()) {
+			weights.put(item, 1);
+		}
+		return new Mix<>(type, weights);
+	}
+
+	/**
+	 * Choose an item
+	 * 
+	 * @param random Source of randomness
+	 * @return An item, with a probability proportional to its weight
+	 */
+	public T next(SplittableRandom random) {
+		int ticket = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+		for (int i = 0; i < cumulativeWeights.length; i++) {
+			if (ticket < cumulativeWeights[i]) {
+				return items[i];
+			}
+		}
+		throw new IllegalStateException("Ticket out of the weights");
+	}
+
+}
@@ -0,0 +1,118 @@
+package com.awais.machine.simulation;
+
+import com.awais.machine.models.Coin;
+import com.awais.machine.models.Product;
+
+/**
+ * Parameters of a fleet simulation. The same configuration, seed included,
+ * always gives the same outcomes whatever the execution mode or the number of
+ * cores.
+ * 
+ * @author Awais Iqbal
+ *
+ */
+public class SimulationConfig {
+
+	private final int machines;
+
+	private final int customersPerMachine;
+
+	private final long seed;
+
+	/**
+	 * Products wanted by the customers
+	 */
+	private Mix<Product> productMix = Mix.uniform(Product.class);
+
+	/**
+	 * Coins carried by the customers
+	 */
+	private Mix<Coin> coinMix = Mix.uniform(Coin.class);
+
+	/**
+	 * Units of every product loaded in every machine before the first customer
+	 */
+	private int initialProducts = 100;
+
+	/**
+	 * Coins of every type loaded in every machine before the first customer
+	 */
+	private int initialCoins = 20;
+
+	private ExecutionMode mode = ExecutionMode.FORK_JOIN;
+
+	/**
+	 * Workers of the fork-join pool
+	 */
+	private int parallelism = Runtime.getRuntime().availableProcessors();
+
+	public SimulationConfig(int machines, int customersPerMachine, long seed) {
+		if (machines < 1 || customersPerMachine < 0) {
+			throw new IllegalArgumentException("At least one machine and no negative customers are needed");
+		}
+		this.machines = machines;
+		this.customersPerMachine = customersPerMachine;
+		this.seed = seed;
+	}
+
+	public int getMachines() {
+		return machines;
+	}
+
+	public int getCustomersPerMachine() {
+		return customersPerMachine;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	public Mix<Product> getProductMix() {
+		return productMix;
+	}
+
+	public void setProductMix(Mix<Product> productMix) {
+		this.productMix = productMix;
+	}
+
+	public Mix<Coin> getCoinMix() {
+		return coinMix;
+	}
+
+	public void setCoinMix(Mix<Coin> coinMix) {
+		this.coinMix = coinMix;
+	}
+
+	public int getInitialProducts() {
+		return initialProducts;
+	}
+
+	public void setInitialProducts(int initialProducts) {
+		this.initialProducts = initialProducts;
+	}
+
+	public int getInitialCoins() {
+		return initialCoins;
+	}
+
+	public void setInitialCoins(int initialCoins) {
+		this.initialCoins = initialCoins;
+	}
+
+	public ExecutionMode getMode() {
+		return mode;
+	}
+
+	public void setMode(ExecutionMode mode) {
+		this.mode = mode;
+	}
+
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	public void setParallelism(int parallelism) {
+		this.parallelism = parallelism;
+	}
+
+}
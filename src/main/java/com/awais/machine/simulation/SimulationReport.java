@@ -0,0 +1,118 @@
+package com.awais.machine.simulation;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcomes of a whole fleet simulation.
+ * 
+ * @author Awais Iqbal
+ *
+ */
+public class SimulationReport {
+
+	/**
+	 * Report of every machine, indexed by the machine
+	 */
+	private final List<MachineReport> machines;
+
+	private final long elapsedNanos;
+
+	private long customers;
+
+	private long sales;
+
+	private long soldOut;
+
+	private long notEnoughChange;
+
+	private long failedRefunds;
+
+	private long revenue;
+
+	public SimulationReport(List<MachineReport> machines, long elapsedNanos) {
+		this.machines = Collections.unmodifiableList(machines);
+		this.elapsedNanos = elapsedNanos;
+		for (MachineReport machine : machines) {
+			customers += machine.getCustomers();
+			sales += machine.getSales();
+			soldOut += machine.getSoldOut();
+			notEnoughChange += machine.getNotEnoughChange();
+			failedRefunds += machine.getFailedRefunds();
+			revenue += machine.getRevenue();
+		}
+	}
+
+	public List<MachineReport> getMachines() {
+		return machines;
+	}
+
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+
+	public long getCustomers() {
+		return customers;
+	}
+
+	public long getSales() {
+		return sales;
+	}
+
+	public long getSoldOut() {
+		return soldOut;
+	}
+
+	public long getNotEnoughChange() {
+		return notEnoughChange;
+	}
+
+	public long getFailedRefunds() {
+		return failedRefunds;
+	}
+
+	public long getRevenue() {
+		return revenue;
+	}
+
+	/**
+	 * Share of the customers who found their product sold out
+	 * 
+	 * @return Rate between 0 and 1
+	 */
+	public double getSoldOutRate() {
+		return rate(soldOut);
+	}
+
+	/**
+	 * Share of the customers who couldn't get the change
+	 * 
+	 * @return Rate between 0 and 1
+	 */
+	public double getNotEnoughChangeRate() {
+		return rate(notEnoughChange);
+	}
+
+	/**
+	 * Customers served per second of wall clock
+	 * 
+	 * @return Throughput of the simulation
+	 */
+	public double getCustomersPerSecond() {
+		return elapsedNanos == 0 ? 0 : customers * 1e9 / elapsedNanos;
+	}
+
+	@Override
+	public String toString() {
+		return String.format(
+				"machines=%d customers=%d sales=%d revenue=%.2f soldOut=%.2f%% notEnoughChange=%.2f%% "
+						+ "failedRefunds=%d elapsed=%.1fms throughput=%.0f customers/s",
+				machines.size(), customers, sales, revenue / 100.0, getSoldOutRate() * 100,
+				getNotEnoughChangeRate() * 100, failedRefunds, elapsedNanos / 1e6, getCustomersPerSecond());
+	}
+
+	private double rate(long count) {
+		return customers == 0 ? 0 : (double) count / customers;
+	}
+
+}
@@ -0,0 +1,355 @@
+package com.awais.machine.snapshot;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import com.awais.machine.interfaces.CashManager;
+import com.awais.machine.interfaces.impl.VendingMachineImpl;
+import com.awais.machine.models.Coin;
+import com.awais.machine.models.MachineSnapshot;
+import com.awais.machine.utils.Coins;
+import com.awais.machine.utils.EnumStock;
+import com.awais.machine.utils.Products;
+import com.awais.machine.utils.Stock;
+
+/**
+ * Binary snapshot of the state of vending machines: the inserted money and the
+ * count of every coin and product.
+ *
+ * A snapshot is a header of {@value #HEADER_SIZE} bytes followed by one fixed
+ * width record per machine, so the records are written straight into a heap or
+ * direct buffer and the n-th machine is at a known offset. The header holds
+ * the magic, the version, the number of coins, products and machines, the
+ * size of a record and the CRC32 of all the records, checked before any
+ * machine is restored. A record holds the inserted money and the coin counts
+ * followed by the product counts, indexed by ordinal. Everything is little
+ * endian, the buffers given are switched to that order.
+ *
+ * A snapshot file is written in a temporary file, forced and then moved over
+ * the previous one, so a crash leaves either the previous or the new snapshot.
+ *
+ * A codec keeps the arrays used to save and restore a machine, so neither
+ * allocates. It must not be shared between threads.
+ *
+ * @author Awais Iqbal
+ *
+ */
+public class SnapshotCodec {
+
+	/**
+	 * First bytes of a snapshot
+	 */
+	public static final int MAGIC = 0x564D5353;
+
+	/**
+	 * Version of the layout written
+	 */
+	public static final int VERSION = 2;
+
+	/**
+	 * Bytes before the first record
+	 */
+	public static final int HEADER_SIZE = 24;
+
+	/**
+	 * Offset of the checksum of the records in the header
+	 */
+	private static final int CHECKSUM_OFFSET = 20;
+
+	/**
+	 * Bytes of a record, rounded up to a multiple of 8
+	 */
+	public static final int RECORD_SIZE = (Long.BYTES + (Coins.COUNT + Products.COUNT) * Integer.BYTES + 7) & ~7;
+
+	/**
+	 * Units of every product read from a record
+	 */
+	private final int[] productCounts = new int[Products.COUNT];
+
+	/**
+	 * Coins of every type read from a record
+	 */
+	private final int[] coinCounts = new int[Coins.COUNT];
+
+	/**
+	 * State of the machine being saved, copied at once so a record is never torn
+	 */
+	private final MachineSnapshot snapshot = new MachineSnapshot();
+
+	/**
+	 * Bytes needed by a snapshot of the given number of machines
+	 *
+	 * @param machineCount Number of machines
+	 * @return Size of the snapshot
+	 */
+	public static long sizeOf(int machineCount) {
+		return HEADER_SIZE + (long) machineCount * RECORD_SIZE;
+	}
+
+	/**
+	 * Write the header of a snapshot, without the checksum of the records, see
+	 * {@link #writeChecksum(ByteBuffer, int)}
+	 *
+	 * @param target       Buffer written from its position
+	 * @param machineCount Number of records following the header
+	 */
+	public void writeHeader(ByteBuffer target, int machineCount) {
+		target.order(ByteOrder.LITTLE_ENDIAN);
+		target.putInt(MAGIC);
+		target.putInt(VERSION);
+		target.putShort((short) Coins.COUNT);
+		target.putShort((short) Products.COUNT);
+		target.putInt(machineCount);
+		target.putInt(RECORD_SIZE);
+		target.putInt(0);
+	}
+
+	/**
+	 * Write the checksum of the records in the header of a snapshot, once all its
+	 * records are written
+	 *
+	 * @param target Buffer of the snapshot, its position after the last record
+	 * @param start  Position of the header
+	 */
+	public void writeChecksum(ByteBuffer target, int start) {
+		target.order(ByteOrder.LITTLE_ENDIAN);
+		target.putInt(start + CHECKSUM_OFFSET, checksumOf(target, start + HEADER_SIZE, target.position()));
+	}
+
+	/**
+	 * Read and check the header of a snapshot
+	 *
+	 * @param source Buffer read from its position
+	 * @return Number of records following the header
+	 * @throws IOException When the header is not of a snapshot of these coins and
+	 *                     products
+	 */
+	public int readHeader(ByteBuffer source) throws IOException {
+		source.order(ByteOrder.LITTLE_ENDIAN);
+		if (source.remaining() < HEADER_SIZE || source.getInt() != MAGIC) {
+			throw new IOException("Not a snapshot");
+		}
+		int version = source.getInt();
+		if (version != VERSION) {
+			throw new IOException("Unsupported snapshot version " + version);
+		}
+		if (source.getShort() != Coins.COUNT || source.getShort() != Products.COUNT) {
+			throw new IOException("Snapshot of other coins or products");
+		}
+		int machineCount = source.getInt();
+		int recordSize = source.getInt();
+		source.getInt();
+		if (recordSize != RECORD_SIZE || source.remaining() < (long) machineCount * RECORD_SIZE) {
+			throw new IOException("Truncated snapshot of " + machineCount + " machines");
+		}
+		return machineCount;
+	}
+
+	/**
+	 * Write the record of a machine, from a snapshot of its whole state
+	 *
+	 * @param machine Machine to be saved
+	 * @param target  Buffer written from its position
+	 */
+	public void write(VendingMachineImpl machine, ByteBuffer target) {
+		machine.snapshot(snapshot);
+		target.order(ByteOrder.LITTLE_ENDIAN);
+		int start = target.position();
+		target.putLong(snapshot.getCurrentMoney());
+		for (int count : snapshot.getCoinCounts()) {
+			target.putInt(count);
+		}
+		for (int count : snapshot.getProductCounts()) {
+			target.putInt(count);
+		}
+		target.position(start + RECORD_SIZE);
+	}
+
+	/**
+	 * Replace the state of a machine with a record
+	 *
+	 * @param source  Buffer read from its position
+	 * @param machine Machine to be restored
+	 * @throws IllegalArgumentException When the record holds a negative count or
+	 *                                  money, the machine is unchanged then
+	 */
+	public void read(ByteBuffer source, VendingMachineImpl machine) {
+		source.order(ByteOrder.LITTLE_ENDIAN);
+		int start = source.position();
+		long credit = source.getLong();
+		for (int i = 0; i < coinCounts.length; i++) {
+			coinCounts[i] = source.getInt();
+		}
+		for (int i = 0; i < productCounts.length; i++) {
+			productCounts[i] = source.getInt();
+		}
+		source.position(start + RECORD_SIZE);
+		machine.restore(productCounts, coinCounts, credit);
+	}
+
+	/**
+	 * Write a snapshot of the given machines
+	 *
+	 * @param machines Machines to be saved
+	 * @param target   Buffer written from its position, with at least
+	 *                 {@link #sizeOf(int)} bytes remaining
+	 */
+	public void writeAll(List<VendingMachineImpl> machines, ByteBuffer target) {
+		int start = target.position();
+		writeHeader(target, machines.size());
+		for (int i = 0; i < machines.size(); i++) {
+			write(machines.get(i), target);
+		}
+		writeChecksum(target, start);
+	}
+
+	/**
+	 * Restore the given machines from a snapshot, the machine at every index from
+	 * the record at the same index
+	 *
+	 * @param source   Buffer read from its position
+	 * @param machines Machines to be restored, as many as records
+	 * @throws IOException When the snapshot is invalid, corrupted or has another
+	 *                     number of machines, no machine is restored
+	 */
+	public void readAll(ByteBuffer source, List<VendingMachineImpl> machines) throws IOException {
+		int start = source.position();
+		int machineCount = readHeader(source);
+		if (machineCount != machines.size()) {
+			throw new IOException("Snapshot of " + machineCount + " machines for " + machines.size());
+		}
+		int end = source.position() + machineCount * RECORD_SIZE;
+		if (source.getInt(start + CHECKSUM_OFFSET) != checksumOf(source, source.position(), end)) {
+			throw new IOException("Corrupted snapshot");
+		}
+		// A record with a valid checksum can still hold bad counts, e.g. written by
+		// another tool, and no machine must be restored then
+		for (int i = 0; i < machineCount; i++) {
+			if (!isValidRecord(source, source.position() + i * RECORD_SIZE)) {
+				throw new IOException("Invalid record of machine " + i);
+			}
+		}
+		for (int i = 0; i < machineCount; i++) {
+			read(source, machines.get(i));
+		}
+	}
+
+	/**
+	 * Save a snapshot of the given machines in a file. The snapshot is written in
+	 * a temporary file and then moved, so a crash leaves either the previous or
+	 * the new snapshot.
+	 *
+	 * @param file     File to be written, replaced if it exists
+	 * @param machines Machines to be saved
+	 * @throws IOException When the file can't be written
+	 */
+	public void save(Path file, List<VendingMachineImpl> machines) throws IOException {
+		Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+		try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			MappedByteBuffer buffer = channel.map(MapMode.READ_WRITE, 0, sizeOf(machines.size()));
+			writeAll(machines, buffer);
+			buffer.force();
+		}
+		Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/**
+	 * Restore the given machines from a file
+	 *
+	 * @param file     File of the snapshot
+	 * @param machines Machines to be restored, as many as records
+	 * @throws IOException When the file can't be read or is invalid
+	 */
+	public void load(Path file, List<VendingMachineImpl> machines) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			readAll(channel.map(MapMode.READ_ONLY, 0, channel.size()), machines);
+		}
+	}
+
+	/**
+	 * Write the count of every key of a stock
+	 *
+	 * @param stock  Stock to be saved
+	 * @param keys   Keys in the order they are written
+	 * @param target Buffer written from its position
+	 */
+	public static <T> void writeCounts(Stock<T> stock, T[] keys, ByteBuffer target) {
+		target.order(ByteOrder.LITTLE_ENDIAN);
+		for (T key : keys) {
+			target.putInt(stock.getCount(key));
+		}
+	}
+
+	/**
+	 * Replace the count of every key of a stock
+	 *
+	 * @param source Buffer read from its position
+	 * @param stock  Stock to be restored
+	 * @param keys   Keys in the order they were written
+	 */
+	public static <T extends Enum<T>> void readCounts(ByteBuffer source, EnumStock<T> stock, T[] keys) {
+		source.order(ByteOrder.LITTLE_ENDIAN);
+		for (T key : keys) {
+			stock.setCount(key, source.getInt());
+		}
+	}
+
+	/**
+	 * Write the count of every coin of a cash manager, by ordinal
+	 *
+	 * @param cashManager Cash manager to be saved
+	 * @param target      Buffer written from its position
+	 */
+	public static void writeCoins(CashManager cashManager, ByteBuffer target) {
+		target.order(ByteOrder.LITTLE_ENDIAN);
+		for (Coin coin : Coins.ALL) {
+			target.putInt(cashManager.getCoinCount(coin));
+		}
+	}
+
+	/**
+	 * Check that the money and the counts of a record are not negative
+	 *
+	 * @param source Buffer of the snapshot, in little endian order
+	 * @param offset Position of the record
+	 * @return False when a value can't be restored
+	 */
+	private static boolean isValidRecord(ByteBuffer source, int offset) {
+		if (source.getLong(offset) < 0) {
+			return false;
+		}
+		for (int i = 0; i < Coins.COUNT + Products.COUNT; i++) {
+			if (source.getInt(offset + Long.BYTES + i * Integer.BYTES) < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * CRC32 of a range of a buffer, its position is unchanged
+	 *
+	 * @param buffer Buffer to be read
+	 * @param from   Position of the first byte
+	 * @param to     Position after the last byte
+	 * @return The checksum, truncated to an int as stored in the header
+	 */
+	private static int checksumOf(ByteBuffer buffer, int from, int to) {
+		ByteBuffer range = (ByteBuffer) buffer.duplicate().limit(to).position(from);
+		CRC32 crc = new CRC32();
+		crc.update(range);
+		return (int) crc.getValue();
+	}
+
+}
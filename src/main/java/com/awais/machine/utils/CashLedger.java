@@ -0,0 +1,184 @@
+package com.awais.machine.utils;
+
+import java.util.Arrays;
+
+import com.awais.machine.models.Change;
+import com.awais.machine.models.Coin;
+
+/**
+ * Running account of the coins moving in and out of a cash stock. Every
+ * movement is booked in its own entry, counted per coin, next to the balance
+ * they add up to, so the balance and every total are read without iterating
+ * the coins.
+ *
+ * The balance of a coin is the opening count plus the coins received and
+ * refilled minus the coins dispensed and redrawn. The stock is expected to
+ * hold exactly that balance, which {@link #isBalanced(Stock)} checks in a
+ * single pass over the coins. The ledger is not thread safe, it is used by the
+ * thread changing the stock.
+ *
+ * @author Awais Iqbal
+ *
+ */
+public class CashLedger {
+
+	/**
+	 * Kind of movement booked in the ledger
+	 */
+	public enum Entry {
+		/** Coins in the stock when the ledger was opened */
+		OPENING,
+		/** Coins inserted by the customers */
+		RECEIVED,
+		/** Coins refilled by a technician */
+		REFILLED,
+		/** Coins given as change */
+		DISPENSED,
+		/** Coins taken out of the stock by hand */
+		REDRAWN;
+
+		/**
+		 * True when the movement takes the coins out of the stock
+		 */
+		public boolean isOutgoing() {
+			return this == DISPENSED || this == REDRAWN;
+		}
+	}
+
+	private static final Entry[] ENTRIES = Entry.values();
+
+	/**
+	 * Coins booked in every entry, indexed by the ordinal of the entry and of the
+	 * coin
+	 */
+	private final long[][] counts = new long[ENTRIES.length][Coins.COUNT];
+
+	/**
+	 * Value booked in every entry, indexed by the ordinal of the entry
+	 */
+	private final long[] values = new long[ENTRIES.length];
+
+	/**
+	 * Coins expected in the stock, indexed by the ordinal of the coin
+	 */
+	private final long[] balanceCounts = new long[Coins.COUNT];
+
+	/**
+	 * Value expected in the stock
+	 */
+	private long balance;
+
+	/**
+	 * Start a new account of the given stock, forgetting every movement booked
+	 *
+	 * @param stock Coins in the stock at the opening
+	 */
+	public void open(Stock<Coin> stock) {
+		for (long[] entry : counts) {
+			Arrays.fill(entry, 0);
+		}
+		Arrays.fill(values, 0);
+		Arrays.fill(balanceCounts, 0);
+		balance = 0;
+		for (Coin coin : Coins.ALL) {
+			book(Entry.OPENING, coin, stock.getCount(coin));
+		}
+	}
+
+	public void received(Coin coin) {
+		book(Entry.RECEIVED, coin, 1);
+	}
+
+	public void refilled(Coin coin, int count) {
+		book(Entry.REFILLED, coin, count);
+	}
+
+	public void redrawn(Coin coin) {
+		book(Entry.REDRAWN, coin, 1);
+	}
+
+	/**
+	 * Book the coins of a change given to a customer
+	 *
+	 * @param change Coins dispensed
+	 */
+	public void dispensed(Change change) {
+		for (Coin coin : Coins.ALL) {
+			book(Entry.DISPENSED, coin, change.getCount(coin));
+		}
+	}
+
+	/**
+	 * Value expected in the stock
+	 *
+	 * @return Balance of all the entries
+	 */
+	public long getBalance() {
+		return balance;
+	}
+
+	/**
+	 * Coins of one type expected in the stock
+	 *
+	 * @param coin Coin to be checked
+	 * @return Balance of all the entries for that coin
+	 */
+	public long getBalance(Coin coin) {
+		return balanceCounts[coin.ordinal()];
+	}
+
+	/**
+	 * Value booked in an entry
+	 *
+	 * @param entry Entry to be read
+	 * @return Value of all the coins of the entry, positive for outgoing entries
+	 *         as well
+	 */
+	public long getValue(Entry entry) {
+		return values[entry.ordinal()];
+	}
+
+	/**
+	 * Coins of one type booked in an entry
+	 *
+	 * @param entry Entry to be read
+	 * @param coin  Coin to be counted
+	 * @return Coins of the entry
+	 */
+	public long getCount(Entry entry, Coin coin) {
+		return counts[entry.ordinal()][coin.ordinal()];
+	}
+
+	/**
+	 * Check that the stock holds exactly the balance of every coin, so its value
+	 * equals the balance as well
+	 *
+	 * @param stock Stock kept by this ledger
+	 * @return False when some coin moved without being booked
+	 */
+	public boolean isBalanced(Stock<Coin> stock) {
+		for (Coin coin : Coins.ALL) {
+			if (stock.getCount(coin) != balanceCounts[coin.ordinal()]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void book(Entry entry, Coin coin, int count) {
+		if (count == 0) {
+			return;
+		}
+		long value = count * coin.getValue();
+		counts[entry.ordinal()][coin.ordinal()] += count;
+		values[entry.ordinal()] += value;
+		if (entry.isOutgoing()) {
+			balanceCounts[coin.ordinal()] -= count;
+			balance -= value;
+		} else {
+			balanceCounts[coin.ordinal()] += count;
+			balance += value;
+		}
+	}
+
+}
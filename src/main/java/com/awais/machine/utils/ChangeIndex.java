@@ -0,0 +1,165 @@
+package com.awais.machine.utils;
+
+import com.awais.machine.models.Coin;
+
+/**
+ * Set of the amounts which can be paid with the coins of a stock, so asking if
+ * the change for an amount can be given is a single lookup. An amount can be
+ * paid when some combination of the coins adds up to it exactly.
+ *
+ * For every amount the index keeps the number of combinations of the coins
+ * paying it, which can be updated both ways: the combinations of k coins of a
+ * type are 1 + x^v + ... + x^kv, so changing the count to k' divides the
+ * counts by (1 - x^(k+1)v) and multiplies them by (1 - x^(k'+1)v), two passes
+ * over the amounts whatever the number of coins added or removed. The counts
+ * are kept modulo a prime of 61 bits, an amount is only reported as unpaid if
+ * its number of combinations is a multiple of that prime. Only amounts up to
+ * the maximum given on creation are kept.
+ *
+ * @author Awais Iqbal
+ *
+ */
+public class ChangeIndex {
+
+	/**
+	 * Maximum amount indexed by default, in cents
+	 */
+	public static final long DEFAULT_MAX_AMOUNT = 10000;
+
+	/**
+	 * Greatest common divisor of the coin values, every amount which can be paid
+	 * is a multiple of it so one count stands for this many cents
+	 */
+	private static final long UNIT = unit();
+
+	/**
+	 * Modulo of the counts, 2^61 - 1, so the sum of two counts fits in a long
+	 */
+	private static final long PRIME = (1L << 61) - 1;
+
+	private final long maxAmount;
+
+	/**
+	 * Combinations paying every amount, modulo {@link #PRIME}, indexed by the
+	 * amount divided by {@link #UNIT}
+	 */
+	private final long[] ways;
+
+	/**
+	 * Coins of every type in the index, indexed by the ordinal of the coin
+	 */
+	private final int[] counts = new int[Coins.COUNT];
+
+	public ChangeIndex() {
+		this(DEFAULT_MAX_AMOUNT);
+	}
+
+	/**
+	 * Create the index of an empty stock
+	 *
+	 * @param maxAmount Maximum amount indexed, in cents
+	 */
+	public ChangeIndex(long maxAmount) {
+		if (maxAmount < 0) {
+			throw new IllegalArgumentException("The maximum amount can't be negative");
+		}
+		this.maxAmount = maxAmount;
+		this.ways = new long[(int) (maxAmount / UNIT) + 1];
+		this.ways[0] = 1;
+	}
+
+	public long getMaxAmount() {
+		return maxAmount;
+	}
+
+	/**
+	 * Set the count of every coin to the count in the given stock, only the coins
+	 * whose count changed are updated
+	 *
+	 * @param stock Stock of coins
+	 */
+	public void update(Stock<Coin> stock) {
+		for (Coin coin : Coins.ALL) {
+			update(coin, stock.getCount(coin));
+		}
+	}
+
+	/**
+	 * Set the count of the given coin, in two passes over the amounts
+	 *
+	 * @param coin  Coin to be updated
+	 * @param count Coins of that type in the stock
+	 */
+	public void update(Coin coin, int count) {
+		int ordinal = coin.ordinal();
+		int indexed = counts[ordinal];
+		if (count == indexed) {
+			return;
+		}
+		counts[ordinal] = count;
+		long step = coin.getValue() / UNIT;
+		divide((indexed + 1L) * step);
+		multiply((count + 1L) * step);
+	}
+
+	/**
+	 * Check if some combination of the coins adds up to the given amount
+	 *
+	 * @param amount Amount in cents, not above {@link #getMaxAmount()}
+	 * @return True when the coins can pay exactly that amount
+	 */
+	public boolean contains(long amount) {
+		if (amount < 0 || amount > maxAmount || amount % UNIT != 0) {
+			return false;
+		}
+		return ways[(int) (amount / UNIT)] != 0;
+	}
+
+	/**
+	 * Divide the counts by 1 - x^shift, every count adds the count shift units
+	 * below once that one is divided
+	 *
+	 * @param shift Exponent, in units, nothing changes above the maximum amount
+	 */
+	private void divide(long shift) {
+		if (shift >= ways.length) {
+			return;
+		}
+		for (int a = (int) shift, below = 0; a < ways.length; a++, below++) {
+			long sum = ways[a] + ways[below];
+			ways[a] = sum >= PRIME ? sum - PRIME : sum;
+		}
+	}
+
+	/**
+	 * Multiply the counts by 1 - x^shift, from the highest amount so every count
+	 * is read before being updated
+	 *
+	 * @param shift Exponent, in units, nothing changes above the maximum amount
+	 */
+	private void multiply(long shift) {
+		if (shift >= ways.length) {
+			return;
+		}
+		for (int a = ways.length - 1, below = a - (int) shift; below >= 0; a--, below--) {
+			long difference = ways[a] - ways[below];
+			ways[a] = difference < 0 ? difference + PRIME : difference;
+		}
+	}
+
+	private static long unit() {
+		long gcd = 0;
+		for (Coin coin : Coins.ALL) {
+			long a = coin.getValue();
+			long b = gcd;
+			while (b != 0) {
+				long t = a % b;
+				a = b;
+				b = t;
+			}
+			gcd = a;
+		}
+		return gcd;
+	}
+
+}
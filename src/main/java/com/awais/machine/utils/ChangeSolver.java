@@ -0,0 +1,289 @@
+package com.awais.machine.utils;
+
+import java.util.Arrays;
+
+/**
+ * Finds the change with the fewest coins for a set of coin values, using only
+ * the coins available. Coins are referred to by their index in the values, so
+ * the solver serves the {@link com.awais.machine.models.Coin} enum as well as
+ * the denominations of any catalog.
+ *
+ * The problem is solved with dynamic programming over the amounts, in units of
+ * the greatest common divisor of the coin values. Every coin type is added in a
+ * single pass over the amounts, keeping the best smaller amounts of each
+ * residue in a sliding window, so a call costs the amount times the coin types
+ * whatever the stock holds. Coin types of which only a couple of coins fit are
+ * added trying every count instead. Amounts above the value of the stock are
+ * rejected at once. The tables are kept between calls and only grow when a
+ * bigger amount is requested, up to {@link #MAX_KEPT_CAPACITY}, bigger amounts
+ * are solved in tables dropped after the call. An instance must not be shared
+ * between threads.
+ *
+ * @author Awais Iqbal
+ *
+ */
+public class ChangeSolver {
+
+	/**
+	 * Marks an amount that can't be reached with the available coins
+	 */
+	private static final int UNREACHABLE = Integer.MAX_VALUE;
+
+	/**
+	 * Coin types with up to this many usable coins are added trying every count,
+	 * which is cheaper than the window for so few coins
+	 */
+	private static final int DIRECT_LIMIT = 2;
+
+	/**
+	 * Biggest capacity of the tables kept between calls, in units
+	 */
+	public static final int MAX_KEPT_CAPACITY = 20001;
+
+	/**
+	 * Value of every coin
+	 */
+	private final long[] values;
+
+	/**
+	 * Greatest common divisor of all the coin values, amounts are handled in units
+	 * of this value to keep the tables small
+	 */
+	private final long unit;
+
+	/**
+	 * Fewest coins needed for every amount with the coins processed so far
+	 */
+	private int[] fewestCoins;
+
+	/**
+	 * Coins of each type used in the best solution of every amount, indexed by the
+	 * index of the coin and the amount
+	 */
+	private int[][] coinsUsed;
+
+	/**
+	 * Fewest coins of every amount before the current coin type was added
+	 */
+	private int[] previous;
+
+	/**
+	 * Sliding window of the candidate amounts of a residue, as quotients of the
+	 * coin value
+	 */
+	private int[] window;
+
+	/**
+	 * Create a solver with tables for amounts up to the given one
+	 *
+	 * @param values Coin values, positive and in any order
+	 * @param amount Biggest amount expected, the tables grow for bigger ones
+	 */
+	public ChangeSolver(long[] values, long amount) {
+		this.values = values.clone();
+		long gcd = 0;
+		for (long value : values) {
+			if (value <= 0) {
+				throw new IllegalArgumentException("Coin values must be positive");
+			}
+			gcd = gcd(gcd, value);
+		}
+		if (gcd == 0) {
+			throw new IllegalArgumentException("At least one coin is needed");
+		}
+		this.unit = gcd;
+		allocateTables((int) Math.min(amount / unit + 1, MAX_KEPT_CAPACITY));
+	}
+
+	/**
+	 * Solver sharing the values of another one, with tables of the given capacity
+	 */
+	private ChangeSolver(ChangeSolver solver, int capacity) {
+		this.values = solver.values;
+		this.unit = solver.unit;
+		allocateTables(capacity);
+	}
+
+	/**
+	 * Find the change with the fewest coins
+	 *
+	 * @param moneyLeftToConvert Money to be converted in coins
+	 * @param counts             Coins available of every type, indexed like the
+	 *                           values
+	 * @param used               Holder of the coins of every type in the change,
+	 *                           indexed like the values and cleared before use
+	 * @return False when the amount can't be paid with the available coins
+	 */
+	public boolean solve(long moneyLeftToConvert, int[] counts, int[] used) {
+		Arrays.fill(used, 0);
+		if (moneyLeftToConvert <= 0) {
+			return true;
+		}
+		if (moneyLeftToConvert % unit != 0 || moneyLeftToConvert > valueOf(counts)
+				|| moneyLeftToConvert / unit > Integer.MAX_VALUE - 1) {
+			return false;
+		}
+		int amount = (int) (moneyLeftToConvert / unit);
+		if (amount >= MAX_KEPT_CAPACITY) {
+			// Solve in tables of the size of the amount, the kept ones stay as they are
+			return new ChangeSolver(this, amount + 1).solve(amount, counts, used);
+		}
+		if (amount >= fewestCoins.length) {
+			allocateTables(Math.min(Math.max(amount + 1, 2 * fewestCoins.length), MAX_KEPT_CAPACITY));
+		}
+		return solve(amount, counts, used);
+	}
+
+	/**
+	 * Solve an amount which fits in the tables and walk back its coins
+	 *
+	 * @param amount Amount to be solved, in units
+	 * @param counts Coins available of every type
+	 * @param used   Holder of the coins of every type, already cleared
+	 * @return False when the amount can't be reached with the available coins
+	 */
+	private boolean solve(int amount, int[] counts, int[] used) {
+		fill(amount, counts);
+		if (fewestCoins[amount] == UNREACHABLE) {
+			return false;
+		}
+
+		// Walk back from the last coin processed to the first one
+		int amountLeft = amount;
+		for (int i = values.length - 1; i >= 0; i--) {
+			used[i] = coinsUsed[i][amountLeft];
+			amountLeft -= used[i] * (int) (values[i] / unit);
+		}
+		return true;
+	}
+
+	/**
+	 * Fill the tables for all the amounts up to the given one, one coin type at a
+	 * time. With k coins of value v, the best of an amount a is the best of
+	 * a - j * v plus j for j up to k. Along the amounts of a residue modulo v,
+	 * numbered by their quotient q, that is q plus the minimum of best(p) - p for
+	 * p from q - k to q, kept in a window whose front is the minimum.
+	 *
+	 * @param amount Amount to be solved, in units
+	 * @param counts Coins available of every type
+	 */
+	private void fill(int amount, int[] counts) {
+		Arrays.fill(fewestCoins, 0, amount + 1, UNREACHABLE);
+		fewestCoins[0] = 0;
+		for (int i = 0; i < values.length; i++) {
+			long unitsOfCoin = values[i] / unit;
+			int[] used = coinsUsed[i];
+			if (unitsOfCoin > amount) {
+				Arrays.fill(used, 0, amount + 1, 0);
+				continue;
+			}
+			int value = (int) unitsOfCoin;
+			int available = Math.min(counts[i], amount / value);
+			if (available <= DIRECT_LIMIT) {
+				fillDirect(amount, value, available, used);
+				continue;
+			}
+			System.arraycopy(fewestCoins, 0, previous, 0, amount + 1);
+			for (int residue = 0; residue < value && residue <= amount; residue++) {
+				int head = 0;
+				int tail = 0;
+				for (int q = 0, a = residue; a <= amount; q++, a += value) {
+					if (previous[a] != UNREACHABLE) {
+						// Drop the candidates not better than this one, the newest wins
+						// ties as it uses fewer coins of this type
+						while (tail > head && key(window[tail - 1], residue, value) >= previous[a] - q) {
+							tail--;
+						}
+						window[tail++] = q;
+					}
+					while (tail > head && window[head] < q - available) {
+						head++;
+					}
+					if (tail > head) {
+						int p = window[head];
+						fewestCoins[a] = key(p, residue, value) + q;
+						used[a] = q - p;
+					} else {
+						fewestCoins[a] = UNREACHABLE;
+						used[a] = 0;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Add a coin type trying every number of its coins, from the biggest amount to
+	 * the smallest so the smaller amounts still hold the solution without it
+	 *
+	 * @param amount    Amount to be solved, in units
+	 * @param value     Value of the coin, in units
+	 * @param available Coins of this type which can be used
+	 * @param used      Coins of this type used by the best solution of every amount
+	 */
+	private void fillDirect(int amount, int value, int available, int[] used) {
+		for (int a = amount; a >= 0; a--) {
+			int best = fewestCoins[a];
+			int bestUsed = 0;
+			for (int k = 1, rest = a - value; k <= available && rest >= 0; k++, rest -= value) {
+				if (fewestCoins[rest] != UNREACHABLE && fewestCoins[rest] + k < best) {
+					best = fewestCoins[rest] + k;
+					bestUsed = k;
+				}
+			}
+			fewestCoins[a] = best;
+			used[a] = bestUsed;
+		}
+	}
+
+	/**
+	 * Fewest coins of an amount before the current coin type, minus its quotient
+	 *
+	 * @param q       Quotient of the amount by the coin value
+	 * @param residue Residue of the amount by the coin value
+	 * @param value   Value of the current coin, in units
+	 * @return Key of the amount in the window
+	 */
+	private int key(int q, int residue, int value) {
+		return previous[residue + q * value] - q;
+	}
+
+	/**
+	 * Allocate the tables for amounts up to the given capacity
+	 *
+	 * @param capacity Number of amounts, in units, the tables can hold
+	 */
+	private void allocateTables(int capacity) {
+		fewestCoins = new int[capacity];
+		previous = new int[capacity];
+		window = new int[capacity];
+		coinsUsed = new int[values.length][capacity];
+	}
+
+	/**
+	 * Value of all the available coins
+	 *
+	 * @param counts Coins available of every type
+	 * @return Value of the coins, saturated at {@link Long#MAX_VALUE}
+	 */
+	private long valueOf(int[] counts) {
+		long value = 0;
+		for (int i = 0; i < values.length; i++) {
+			if (counts[i] > 0 && values[i] > (Long.MAX_VALUE - value) / counts[i]) {
+				return Long.MAX_VALUE;
+			}
+			value += values[i] * counts[i];
+		}
+		return value;
+	}
+
+	private static long gcd(long a, long b) {
+		while (b != 0) {
+			long t = a % b;
+			a = b;
+			b = t;
+		}
+		return a;
+	}
+
+}
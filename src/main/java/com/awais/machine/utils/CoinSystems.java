@@ -0,0 +1,122 @@
+package com.awais.machine.utils;
+
+import java.util.Arrays;
+
+/**
+ * Analysis of a set of coin values, telling for which amounts the greedy walk
+ * from the biggest to the smallest coin gives the change with the fewest coins
+ * when every coin is available without limit.
+ *
+ * A set is canonical when the greedy walk is optimal for every amount, like the
+ * euro coins. Otherwise some amounts, the counterexamples, need fewer coins
+ * than the greedy walk takes, or can be paid while the greedy walk gets stuck,
+ * e.g. 6 with the coins 4, 3 and 1. When the smallest coin is the greatest
+ * common divisor of the values, the smallest counterexample is below the sum of
+ * the two biggest coins (Kozen and Zaks), so only those amounts are checked.
+ *
+ * @author Awais Iqbal
+ *
+ */
+public final class CoinSystems {
+
+	/**
+	 * Returned when the greedy walk is optimal for every amount
+	 */
+	public static final long CANONICAL = Long.MAX_VALUE;
+
+	/**
+	 * Private constructor
+	 */
+	private CoinSystems() {
+
+	}
+
+	/**
+	 * Check if the greedy walk is optimal for every amount
+	 *
+	 * @param values Coin values, positive and in any order
+	 * @return True when the set of coins is canonical
+	 */
+	public static boolean isCanonical(long... values) {
+		return greedyLimit(values) == CANONICAL;
+	}
+
+	/**
+	 * Find the smallest amount for which the greedy walk may not be optimal, every
+	 * amount below it is paid by the greedy walk with the fewest coins or can't be
+	 * paid at all. Without that bound on the smallest counterexample the amounts
+	 * above the checked ones are not proved, so the limit is never above them.
+	 *
+	 * @param values Coin values, positive and in any order
+	 * @return The smallest counterexample, or {@link #CANONICAL}
+	 */
+	public static long greedyLimit(long... values) {
+		if (values.length == 0) {
+			throw new IllegalArgumentException("At least one coin is needed");
+		}
+		long[] sorted = values.clone();
+		Arrays.sort(sorted);
+		if (sorted[0] <= 0) {
+			throw new IllegalArgumentException("Coin values must be positive");
+		}
+		if (sorted.length == 1) {
+			return CANONICAL;
+		}
+
+		// Amounts are handled in units of the greatest common divisor, the only
+		// amounts any set of these coins can pay
+		long unit = 0;
+		for (long value : sorted) {
+			unit = gcd(unit, value);
+		}
+		long bound = sorted[sorted.length - 1] + sorted[sorted.length - 2];
+		if (bound / unit > Integer.MAX_VALUE - 1) {
+			throw new IllegalArgumentException("Coin values are too big to be analysed");
+		}
+
+		int units = (int) (bound / unit);
+		int[] fewestCoins = new int[units];
+		for (int a = 1; a < units; a++) {
+			fewestCoins[a] = Integer.MAX_VALUE;
+			for (long value : sorted) {
+				int rest = a - (int) (value / unit);
+				if (rest < 0) {
+					break;
+				}
+				if (fewestCoins[rest] != Integer.MAX_VALUE && fewestCoins[rest] + 1 < fewestCoins[a]) {
+					fewestCoins[a] = fewestCoins[rest] + 1;
+				}
+			}
+			if (fewestCoins[a] != Integer.MAX_VALUE && greedyCoins(a * unit, sorted) != fewestCoins[a]) {
+				return a * unit;
+			}
+		}
+		return sorted[0] == unit ? CANONICAL : bound;
+	}
+
+	private static long gcd(long a, long b) {
+		while (b != 0) {
+			long t = a % b;
+			a = b;
+			b = t;
+		}
+		return a;
+	}
+
+	/**
+	 * Count the coins taken by the greedy walk with unlimited coins
+	 *
+	 * @param amount Amount to be paid
+	 * @param sorted Coin values from the smallest to the biggest
+	 * @return Number of coins, or -1 when the walk gets stuck
+	 */
+	private static int greedyCoins(long amount, long[] sorted) {
+		int coins = 0;
+		for (int i = sorted.length - 1; i >= 0 && amount > 0; i--) {
+			coins += amount / sorted[i];
+			amount %= sorted[i];
+		}
+		return amount == 0 ? coins : -1;
+	}
+
+}
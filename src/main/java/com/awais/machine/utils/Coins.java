@@ -0,0 +1,31 @@
+package com.awais.machine.utils;
+
+import com.awais.machine.models.Coin;
+
+/**
+ * All the coins, copied once from {@link Coin#values()} which returns a new
+ * array on every call. The array is shared by the whole machine and must
+ * never be modified.
+ *
+ * @author Awais Iqbal
+ *
+ */
+public final class Coins {
+
+	/**
+	 * Every coin, indexed by its ordinal
+	 */
+	public static final Coin[] ALL = Coin.values();
+
+	/**
+	 * Number of coin types
+	 */
+	public static final int COUNT = ALL.length;
+
+	/**
+	 * Private constructor
+	 */
+	private Coins() {
+	}
+
+}
@@ -0,0 +1,113 @@
+package com.awais.machine.utils;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Inventory specialized for enum keys. The counts are kept in an array indexed
+ * by the ordinal of the key, so adding, removing and counting items neither
+ * boxes the count nor hashes the key.
+ * 
+ * @author Awais Iqbal
+ *
+ * @param <T> Enum used as key of the stock
+ */
+public class EnumStock<T extends Enum<T>> extends Stock<T> {
+
+	/**
+	 * Type of the keys, used to build the map views
+	 */
+	private final Class<T> keyType;
+
+	/**
+	 * Count of every key, indexed by the ordinal of the key
+	 */
+	private final int[] counts;
+
+	public EnumStock(Class<T> keyType) {
+		this.keyType = keyType;
+		this.counts = new int[keyType.getEnumConstants().length];
+	}
+
+	@Override
+	public void add(T item) {
+		counts[item.ordinal()]++;
+	}
+
+	@Override
+	public void addAll(T item, int count) {
+		counts[item.ordinal()] += count;
+	}
+
+	@Override
+	public void removeItem(T item) {
+		int ordinal = item.ordinal();
+		if (counts[ordinal] != 0) {
+			counts[ordinal]--;
+		}
+	}
+
+	@Override
+	public void removeItems(Collection<T> items) {
+		for (T item : items) {
+			removeItem(item);
+		}
+	}
+
+	@Override
+	public int getCount(T key) {
+		return key == null ? 0 : counts[key.ordinal()];
+	}
+
+	/**
+	 * Replace the count of the given item
+	 * 
+	 * @param item  Item to be updated
+	 * @param count New count of the item
+	 */
+	public void setCount(T item, int count) {
+		counts[item.ordinal()] = count;
+	}
+
+	@Override
+	public void initializeKey(T item) {
+		counts[item.ordinal()] = 0;
+	}
+
+	@Override
+	public void refill(Collection<T> collection) {
+		for (T item : collection) {
+			add(item);
+		}
+	}
+
+	@Override
+	public void reset() {
+		Arrays.fill(counts, 0);
+	}
+
+	@Override
+	public void copyCounts(T[] keys, int[] counts) {
+		for (int i = 0; i < keys.length; i++) {
+			counts[i] = this.counts[keys[i].ordinal()];
+		}
+	}
+
+	/**
+	 * Get all the items in the stock. As the counts are not stored in a map, the
+	 * returned map is a copy and changes on it are not reflected in the stock.
+	 * 
+	 * @return All the items in stock
+	 */
+	@Override
+	public Map<T, Integer> getCurrentStockItems() {
+		Map<T, Integer> items = new EnumMap<>(keyType);
+		for (T key : keyType.getEnumConstants()) {
+			items.put(key, counts[key.ordinal()]);
+		}
+		return items;
+	}
+
+}
@@ -0,0 +1,31 @@
+package com.awais.machine.utils;
+
+import com.awais.machine.models.Product;
+
+/**
+ * All the products, copied once from {@link Product#values()} which returns a
+ * new array on every call. The array is shared by the whole machine and must
+ * never be modified.
+ *
+ * @author Awais Iqbal
+ *
+ */
+public final class Products {
+
+	/**
+	 * Every product, indexed by its ordinal
+	 */
+	public static final Product[] ALL = Product.values();
+
+	/**
+	 * Number of products
+	 */
+	public static final int COUNT = ALL.length;
+
+	/**
+	 * Private constructor
+	 */
+	private Products() {
+	}
+
+}
@@ -0,0 +1,82 @@
+package com.awais.machine.utils;
+
+/**
+ * Checks of the counts given to a refill or a restore, made before anything is
+ * changed so a rejected refill or restore leaves the machine as it was.
+ *
+ * @author Awais Iqbal
+ *
+ */
+public final class RefillCounts {
+
+	/**
+	 * Private constructor
+	 */
+	private RefillCounts() {
+
+	}
+
+	/**
+	 * Check the counts of a refill of products and coins
+	 *
+	 * @param productCounts Units of every product, indexed by the ordinal of the
+	 *                      product
+	 * @param coinCounts    Coins of every type, indexed by the ordinal of the coin
+	 * @throws IllegalArgumentException When a count is missing or negative
+	 */
+	public static void check(int[] productCounts, int[] coinCounts) {
+		if (productCounts.length < Products.COUNT || coinCounts.length < Coins.COUNT) {
+			throw new IllegalArgumentException("A count is needed for every product and every coin");
+		}
+		for (int i = 0; i < Products.COUNT; i++) {
+			check(productCounts[i]);
+		}
+		for (int i = 0; i < Coins.COUNT; i++) {
+			check(coinCounts[i]);
+		}
+	}
+
+	/**
+	 * Check the counts of a restore of the coins
+	 *
+	 * @param coinCounts Coins of every type, indexed by the ordinal of the coin
+	 * @throws IllegalArgumentException When a count is missing or negative
+	 */
+	public static void checkCoins(int[] coinCounts) {
+		if (coinCounts.length < Coins.COUNT) {
+			throw new IllegalArgumentException("A count is needed for every coin");
+		}
+		for (int i = 0; i < Coins.COUNT; i++) {
+			check(coinCounts[i]);
+		}
+	}
+
+	/**
+	 * Check the inserted money of a restore
+	 *
+	 * @param credit Value of the inserted coins in cents
+	 * @return The credit
+	 * @throws IllegalArgumentException When the credit is negative
+	 */
+	public static long checkCredit(long credit) {
+		if (credit < 0) {
+			throw new IllegalArgumentException("The inserted money can't be negative");
+		}
+		return credit;
+	}
+
+	/**
+	 * Check a refilled count
+	 *
+	 * @param count Units or coins refilled
+	 * @return The count
+	 * @throws IllegalArgumentException When the count is negative
+	 */
+	public static int check(int count) {
+		if (count < 0) {
+			throw new IllegalArgumentException("Refilled counts can't be negative");
+		}
+		return count;
+	}
+
+}
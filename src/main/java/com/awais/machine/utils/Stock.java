@@ -25,6 +25,18 @@ public class Stock<T> {
 		currentStock.put(item, count + 1);
 	}
 
+	/**
+	 * Add the given number of instances of the item at once
+	 * 
+	 * @param item  Item to be added
+	 * @param count Instances to be added
+	 */
+	public void addAll(T item, int count) {
+		if (count != 0) {
+			currentStock.put(item, currentStock.get(item) + count);
+		}
+	}
+
 	/**
 	 * Reduce the number of item by -1, of the given item
 	 * 
@@ -43,7 +55,9 @@ public class Stock<T> {
 	 * @param items Items to be removed
 	 */
 	public void removeItems(Collection<T> items) {
-		items.stream().forEach(this::removeItem);
+		for (T item : items) {
+			removeItem(item);
+		}
 	}
 
 	/**
@@ -82,7 +96,9 @@ public class Stock<T> {
 	 * @param collection Items to be added
 	 */
 	public void refill(Collection<T> collection) {
-		collection.stream().forEach(this::add);
+		for (T item : collection) {
+			add(item);
+		}
 	}
 
 	/**
@@ -95,12 +111,25 @@ public class Stock<T> {
 	}
 
 	/**
-	 * Get all the items in the stock
+	 * Copy the count of the given keys
+	 * 
+	 * @param keys   Keys to be read
+	 * @param counts Holder of the counts, at the index of their key
+	 */
+	public void copyCounts(T[] keys, int[] counts) {
+		for (int i = 0; i < keys.length; i++) {
+			counts[i] = getCount(keys[i]);
+		}
+	}
+
+	/**
+	 * Get all the items in the stock. The returned map is a copy and changes on it
+	 * are not reflected in the stock.
 	 * 
 	 * @return All the items in stock
 	 */
 	public Map<T, Integer> getCurrentStockItems() {
-		return currentStock;
+		return new HashMap<>(currentStock);
 	}
 
 }
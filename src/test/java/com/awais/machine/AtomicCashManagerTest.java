@@ -0,0 +1,85 @@
+package com.awais.machine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import com.awais.machine.interfaces.CashManager;
+import com.awais.machine.models.Change;
+import com.awais.machine.models.Coin;
+
+public class AtomicCashManagerTest {
+
+	/**
+	 * A failed withdrawal must leave every coin in the stock
+	 */
+	@Test
+	public void failedChangeLeavesStockUntouched() {
+		CashManager cashManager = Factory.createAtomicCashManager();
+		cashManager.add(Coin.FIFTY_CENTS);
+		cashManager.add(Coin.TWENTY_CENTS);
+
+		Change change = new Change();
+		assertFalse(cashManager.tryCalculateChange(60, change));
+		assertEquals(1, cashManager.getCoinCount(Coin.FIFTY_CENTS));
+		assertEquals(1, cashManager.getCoinCount(Coin.TWENTY_CENTS));
+		assertEquals(70, cashManager.getCurrentMoney());
+
+		assertTrue(cashManager.tryCalculateChange(70, change));
+		assertEquals(0, cashManager.getCurrentMoney());
+	}
+
+	/**
+	 * Threads inserting coins and taking change at the same time never take more
+	 * coins than available and keep the total equal to the counts
+	 */
+	@Test
+	public void concurrentWithdrawalsKeepTheTotal() throws Exception {
+		CashManager cashManager = Factory.createAtomicCashManager();
+		cashManager.refill(Collections.nCopies(1000, Coin.TEN_CENTS));
+		int threads = 8;
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Callable<Long>> tasks = new ArrayList<>();
+			for (int t = 0; t < threads; t++) {
+				tasks.add(() -> {
+					Change change = new Change();
+					long withdrawn = 0;
+					for (int i = 0; i < 10_000; i++) {
+						cashManager.add(Coin.FIFTY_CENTS);
+						if (cashManager.tryCalculateChange(70, change)) {
+							withdrawn += change.getValue();
+						}
+					}
+					return withdrawn;
+				});
+			}
+			long withdrawn = 0;
+			for (Future<Long> future : executor.invokeAll(tasks)) {
+				withdrawn += future.get();
+			}
+
+			long inserted = 1000 * Coin.TEN_CENTS.getValue() + threads * 10_000 * Coin.FIFTY_CENTS.getValue();
+			long counted = 0;
+			for (Coin coin : Coin.values()) {
+				assertTrue(cashManager.getCoinCount(coin) >= 0);
+				counted += cashManager.getCoinCount(coin) * coin.getValue();
+			}
+			assertEquals(inserted - withdrawn, cashManager.getCurrentMoney());
+			assertEquals(counted, cashManager.getCurrentMoney());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+}
@@ -0,0 +1,131 @@
+package com.awais.machine;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.IntBuffer;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.awais.machine.batch.BatchEngine;
+import com.awais.machine.batch.BatchEvents;
+import com.awais.machine.batch.BatchResult;
+import com.awais.machine.interfaces.VendingMachine;
+import com.awais.machine.models.Change;
+import com.awais.machine.models.Coin;
+import com.awais.machine.models.Product;
+import com.awais.machine.models.SelectionResult;
+import com.awais.machine.utils.Pair;
+
+public class BatchEngineTest {
+
+	/**
+	 * Apply random events in a batch and one at a time, both machines must give
+	 * the same outcomes and end in the same state
+	 */
+	@Test
+	public void sameOutcomesAsOneCallAtATime() {
+		Random random = new Random(42);
+		int[] events = new int[20_000];
+		for (int i = 0; i < events.length; i++) {
+			int kind = random.nextInt(100);
+			if (kind < 60) {
+				events[i] = BatchEvents.addCoin(Coin.values()[random.nextInt(Coin.values().length)]);
+			} else if (kind < 85) {
+				events[i] = BatchEvents.selectProduct(Product.values()[random.nextInt(Product.values().length)]);
+			} else if (kind < 95) {
+				events[i] = BatchEvents.cancelRequest();
+			} else if (kind < 97) {
+				events[i] = BatchEvents.refillProduct(Product.values()[random.nextInt(Product.values().length)],
+						random.nextInt(5));
+			} else if (kind < 99) {
+				events[i] = BatchEvents.refillCoin(Coin.values()[random.nextInt(Coin.values().length)],
+						random.nextInt(5));
+			} else {
+				events[i] = BatchEvents.reset();
+			}
+		}
+
+		BatchEngine engine = Factory.createBatchEngine();
+		BatchResult result = new BatchResult(16);
+		engine.apply(events, 0, events.length / 2, result);
+		engine.apply(IntBuffer.wrap(events, events.length / 2, events.length - events.length / 2), result);
+		assertEquals(events.length, result.size());
+
+		VendingMachine machine = Factory.createVendingMachine();
+		Change change = new Change();
+		for (int i = 0; i < events.length; i++) {
+			int event = events[i];
+			SelectionResult expected = SelectionResult.APPLIED;
+			change.clear();
+			switch (BatchEvents.typeOf(event)) {
+			case BatchEvents.ADD_COIN:
+				machine.addCoin(Coin.values()[BatchEvents.itemOf(event)]);
+				break;
+			case BatchEvents.SELECT_PRODUCT:
+				expected = machine.trySelectProduct(Product.values()[BatchEvents.itemOf(event)], change);
+				break;
+			case BatchEvents.CANCEL_REQUEST:
+				if (!machine.tryCancelRequest(change)) {
+					expected = SelectionResult.NOT_ENOUGH_CHANGE;
+				}
+				break;
+			case BatchEvents.REFILL_PRODUCT:
+				machine.refill(new Pair<Collection<Product>, Collection<Coin>>(
+						Collections.nCopies(BatchEvents.countOf(event), Product.values()[BatchEvents.itemOf(event)]),
+						Collections.<Coin>emptyList()));
+				break;
+			case BatchEvents.REFILL_COIN:
+				machine.refill(new Pair<Collection<Product>, Collection<Coin>>(Collections.<Product>emptyList(),
+						Collections.nCopies(BatchEvents.countOf(event), Coin.values()[BatchEvents.itemOf(event)])));
+				break;
+			case BatchEvents.RESET:
+				machine.reset();
+				break;
+			}
+			assertEquals("Event " + i, expected, result.getResult(i));
+			if (expected.isSuccess()) {
+				assertEquals("Event " + i, change.getValue(), result.getChangeValue(i));
+			}
+		}
+
+		assertEquals(machine.getCurrentMoney(), engine.getMachine().getCurrentMoney());
+		for (Product product : Product.values()) {
+			assertEquals(machine.getProductCount(product), engine.getMachine().getProductCount(product));
+		}
+		for (Coin coin : Coin.values()) {
+			assertEquals(machine.getCoinCount(coin), engine.getMachine().getCoinCount(coin));
+		}
+	}
+
+	/**
+	 * A malformed event is rejected on its own, the events around it are applied
+	 */
+	@Test
+	public void malformedEventsAreRejected() {
+		int[] events = { BatchEvents.addCoin(Coin.ONE_EURO), BatchEvents.encode(BatchEvents.ADD_COIN, 15, 0),
+				BatchEvents.encode(BatchEvents.SELECT_PRODUCT, Product.values().length, 0),
+				BatchEvents.encode(0, 0, 0), BatchEvents.encode(14, 0, 0), BatchEvents.addCoin(Coin.FIFTY_CENTS) };
+		BatchEngine engine = Factory.createBatchEngine();
+		BatchResult result = new BatchResult(events.length);
+		engine.apply(events, 0, events.length, result);
+		assertEquals(events.length, result.size());
+		assertEquals(SelectionResult.APPLIED, result.getResult(0));
+		for (int i = 1; i < events.length - 1; i++) {
+			assertEquals("Event " + i, SelectionResult.REJECTED, result.getResult(i));
+		}
+		assertEquals(SelectionResult.APPLIED, result.getResult(events.length - 1));
+		assertEquals(150, engine.getMachine().getCurrentMoney());
+	}
+
+	@Test
+	public void eventEncoding() {
+		int event = BatchEvents.refillCoin(Coin.FIVE_CENTS, BatchEvents.MAX_COUNT);
+		assertEquals(BatchEvents.REFILL_COIN, BatchEvents.typeOf(event));
+		assertEquals(Coin.FIVE_CENTS.ordinal(), BatchEvents.itemOf(event));
+		assertEquals(BatchEvents.MAX_COUNT, BatchEvents.countOf(event));
+	}
+
+}
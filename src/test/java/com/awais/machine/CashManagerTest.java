@@ -1,15 +1,29 @@
 package com.awais.machine;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.junit.Before;
 import org.junit.Test;
 
+import com.awais.machine.exceptions.NotEnoughChangeException;
 import com.awais.machine.interfaces.CashManager;
+import com.awais.machine.interfaces.impl.AtomicCashManager;
+import com.awais.machine.interfaces.impl.CashManagerImpl;
+import com.awais.machine.interfaces.impl.ClassicStrategy;
+import com.awais.machine.models.Change;
 import com.awais.machine.models.Coin;
+import com.awais.machine.utils.CashLedger;
+import com.awais.machine.utils.CashLedger.Entry;
+import com.awais.machine.utils.EnumStock;
 
 public class CashManagerTest {
 
@@ -75,4 +89,146 @@ public class CashManagerTest {
 		cashManager.refill(coins);
 		assertEquals(385, cashManager.getCurrentMoney(), 0);
 	}
+
+	/**
+	 * The classic strategy fails on 60 cents with a fifty and three twenty cents
+	 * coins, the failure must not take any coin
+	 */
+	@Test
+	public void failedChangeTakesNoCoin() {
+		List<Coin> coins = new ArrayList<>();
+		coins.add(Coin.FIFTY_CENTS);
+		coins.add(Coin.TWENTY_CENTS);
+		coins.add(Coin.TWENTY_CENTS);
+		coins.add(Coin.TWENTY_CENTS);
+		cashManager.refill(coins);
+		try {
+			cashManager.calculateChange(60);
+			fail("Change should not be possible");
+		} catch (NotEnoughChangeException e) {
+			assertEquals(110, cashManager.getCurrentMoney());
+			assertEquals(1, cashManager.getCoinCount(Coin.FIFTY_CENTS));
+		}
+	}
+
+	@Test
+	public void commitOfStalePlanTakesNoCoin() {
+		cashManager.add(Coin.FIFTY_CENTS);
+		cashManager.add(Coin.TWENTY_CENTS);
+		Change plan = new Change();
+		assertTrue(cashManager.planChange(70, plan));
+		assertEquals(70, cashManager.getCurrentMoney());
+		cashManager.redraw(Coin.TWENTY_CENTS);
+		assertFalse(cashManager.commitChange(plan));
+		assertEquals(50, cashManager.getCurrentMoney());
+	}
+
+	@Test
+	public void ledgerBooksEveryMovement() {
+		CashManagerImpl cashManager = new CashManagerImpl(new ClassicStrategy());
+		cashManager.refill(Arrays.asList(Coin.TEN_CENTS, Coin.TEN_CENTS));
+		cashManager.add(Coin.FIFTY_CENTS, 2);
+		cashManager.add(Coin.ONE_EURO);
+		cashManager.redraw(Coin.FIFTY_CENTS);
+		cashManager.redraw(Coin.TWO_EURO);
+		Change change = new Change();
+		assertTrue(cashManager.tryCalculateChange(10, change));
+
+		CashLedger ledger = cashManager.getLedger();
+		assertEquals(120, ledger.getValue(Entry.REFILLED));
+		assertEquals(100, ledger.getValue(Entry.RECEIVED));
+		assertEquals(50, ledger.getValue(Entry.REDRAWN));
+		assertEquals(10, ledger.getValue(Entry.DISPENSED));
+		assertEquals(1, ledger.getCount(Entry.DISPENSED, Coin.TEN_CENTS));
+		assertEquals(0, ledger.getCount(Entry.REDRAWN, Coin.TWO_EURO));
+		assertEquals(160, cashManager.getCurrentMoney());
+		assertTrue(cashManager.isBalanced());
+
+		cashManager.reset();
+		assertEquals(0, cashManager.getCurrentMoney());
+		assertEquals(0, ledger.getValue(Entry.RECEIVED));
+		assertTrue(cashManager.isBalanced());
+	}
+
+	@Test
+	public void ledgerOpensWithTheCoinsOfTheStock() {
+		EnumStock<Coin> stock = new EnumStock<>(Coin.class);
+		stock.addAll(Coin.TWENTY_CENTS, 3);
+		CashManagerImpl cashManager = new CashManagerImpl(new ClassicStrategy(), stock);
+		assertEquals(60, cashManager.getLedger().getValue(Entry.OPENING));
+		assertEquals(60, cashManager.getCurrentMoney());
+		assertTrue(cashManager.isBalanced());
+
+		// A coin taken out of the stock behind the cash manager is not accounted
+		stock.removeItem(Coin.TWENTY_CENTS);
+		assertFalse(cashManager.isBalanced());
+	}
+
+	@Test
+	public void restoreOpensTheLedger() {
+		int[] coinCounts = new int[Coin.values().length];
+		coinCounts[Coin.FIFTY_CENTS.ordinal()] = 2;
+		coinCounts[Coin.TEN_CENTS.ordinal()] = 3;
+		CashManagerImpl cashManager = new CashManagerImpl(new ClassicStrategy());
+		AtomicCashManager atomic = (AtomicCashManager) Factory.createAtomicCashManager();
+		cashManager.add(Coin.ONE_EURO, 4);
+		atomic.add(Coin.ONE_EURO, 4);
+		cashManager.restore(coinCounts);
+		atomic.restore(coinCounts);
+
+		assertEquals(130, cashManager.getLedger().getValue(Entry.OPENING));
+		assertEquals(0, cashManager.getLedger().getValue(Entry.REFILLED));
+		assertEquals(130, cashManager.getCurrentMoney());
+		assertTrue(cashManager.isBalanced());
+		// The atomic account is never cleared, the coins replaced are redrawn
+		assertEquals(130, atomic.getValue(Entry.OPENING));
+		assertEquals(400, atomic.getValue(Entry.REFILLED));
+		assertEquals(400, atomic.getValue(Entry.REDRAWN));
+		assertEquals(130, atomic.getCurrentMoney());
+		assertTrue(atomic.isBalanced());
+	}
+
+	@Test
+	public void atomicLedgerStaysBalancedWhileSelling() throws Exception {
+		AtomicCashManager cashManager = (AtomicCashManager) Factory.createAtomicCashManager();
+		cashManager.add(Coin.TEN_CENTS, 1000);
+		AtomicBoolean selling = new AtomicBoolean(true);
+		AtomicLong checks = new AtomicLong();
+		Thread[] buyers = new Thread[2];
+		for (int t = 0; t < buyers.length; t++) {
+			buyers[t] = new Thread(() -> {
+				Change change = new Change();
+				for (int i = 0; i < 400; i++) {
+					cashManager.add(Coin.ONE_EURO);
+					assertTrue(cashManager.tryCalculateChange(10, change));
+				}
+			});
+			buyers[t].start();
+		}
+		Thread checker = new Thread(() -> {
+			// The check is best effort while selling, it must never hold the buyers
+			do {
+				cashManager.isBalanced();
+				checks.incrementAndGet();
+			} while (selling.get());
+		});
+		checker.start();
+		for (Thread buyer : buyers) {
+			buyer.join();
+		}
+		selling.set(false);
+		checker.join();
+
+		assertTrue(checks.get() > 0);
+		assertEquals(10000, cashManager.getValue(Entry.REFILLED));
+		assertEquals(800, cashManager.getCount(Entry.RECEIVED, Coin.ONE_EURO));
+		assertEquals(800, cashManager.getCount(Entry.DISPENSED, Coin.TEN_CENTS));
+		assertEquals(10000 + 800 * 90, cashManager.getCurrentMoney());
+		assertTrue(cashManager.isBalanced());
+
+		cashManager.reset();
+		assertEquals(0, cashManager.getCurrentMoney());
+		assertEquals(10000 + 800 * 90, cashManager.getValue(Entry.REDRAWN));
+		assertTrue(cashManager.isBalanced());
+	}
 }
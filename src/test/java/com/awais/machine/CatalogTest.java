@@ -0,0 +1,121 @@
+package com.awais.machine;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.junit.Test;
+
+import com.awais.machine.catalog.Catalog;
+import com.awais.machine.catalog.CatalogMachine;
+import com.awais.machine.models.Coin;
+import com.awais.machine.models.Product;
+import com.awais.machine.models.SelectionResult;
+
+public class CatalogTest {
+
+	private static final String DOLLARS = "# Forty slots machine\n" + "currency USD\n" + "coins 1 5 25 10\n"
+			+ "\n" + "product 40 125 Cola\n" + "product 7 95 Still water\n";
+
+	@Test
+	public void readCatalog() throws IOException {
+		Catalog catalog = Catalog.read(new StringReader(DOLLARS));
+		assertEquals("USD", catalog.getCurrency());
+		assertEquals(4, catalog.getDenominationCount());
+		assertEquals(25, catalog.getDenomination(0));
+		assertEquals(1, catalog.getDenomination(3));
+
+		assertEquals(2, catalog.getProductCount());
+		assertEquals(0, catalog.getProductAtSlot(40));
+		assertEquals("Still water", catalog.getProductName(catalog.getProductAtSlot(7)));
+		assertEquals(95, catalog.getProductPrice(1));
+		assertEquals(Catalog.NO_PRODUCT, catalog.getProductAtSlot(8));
+		assertEquals(Catalog.NO_PRODUCT, catalog.getProductAtSlot(41));
+	}
+
+	@Test
+	public void malformedCatalogIsRejected() {
+		String[] malformed = { "currency USD\nproduct 1 100 Cola\n", "currency USD\ncoins 5 5\n",
+				"currency USD\ncoins 5\nproduct 1 Cola\n", "currency USD\ncoins 5\nproduct 1 10 A\nproduct 1 10 B\n",
+				"currency USD\ncoins 5\nslot 1\n" };
+		for (String text : malformed) {
+			try {
+				Catalog.read(new StringReader(text));
+				fail("Catalog should be rejected: " + text);
+			} catch (IOException e) {
+				// Expected
+			}
+		}
+	}
+
+	@Test
+	public void defaultsMatchTheEnums() {
+		Catalog catalog = Catalog.defaults();
+		for (Product product : Product.values()) {
+			assertEquals(product.getPrice(), catalog.getProductPrice(catalog.getProductAtSlot(product.ordinal())));
+		}
+		for (Coin coin : Coin.values()) {
+			assertEquals(coin.getValue(), catalog.getDenomination(coin.ordinal()));
+		}
+	}
+
+	@Test
+	public void sellWithOtherCurrency() throws IOException {
+		CatalogMachine machine = new CatalogMachine(Catalog.read(new StringReader(DOLLARS)));
+		int[] change = new int[machine.getCatalog().getDenominationCount()];
+		machine.refillProduct(1, 1);
+		machine.refillCoins(1, 1);
+
+		assertEquals(SelectionResult.INVALID_PRODUCT, machine.trySelectSlot(3, change));
+		assertEquals(SelectionResult.SOLD_OUT, machine.trySelectSlot(40, change));
+		machine.addCoin(0);
+		assertEquals(SelectionResult.NOT_ENOUGH_MONEY, machine.trySelectSlot(7, change));
+		for (int i = 0; i < 3; i++) {
+			machine.addCoin(0);
+		}
+		// 5 cents of change with quarters and a dime
+		assertEquals(SelectionResult.NOT_ENOUGH_CHANGE, machine.trySelectSlot(7, change));
+		assertEquals(4, machine.getCoinCount(0));
+		machine.addCoin(2);
+		// 10 cents: the dime
+		assertEquals(SelectionResult.SOLD, machine.trySelectSlot(7, change));
+		assertArrayEquals(new int[] { 0, 1, 0, 0 }, change);
+		assertEquals(0, machine.getCurrentMoney());
+		assertEquals(0, machine.getProductCount(1));
+		assertEquals(0, machine.getCoinCount(1));
+
+		assertTrue(machine.tryCancel(change));
+		machine.addCoin(3);
+		assertFalse(machine.trySelectSlot(7, change).isSuccess());
+	}
+
+	@Test
+	public void changeWithNonCanonicalCoins() throws IOException {
+		CatalogMachine machine = new CatalogMachine(
+				Catalog.read(new StringReader("currency XTS\ncoins 4 3 1\nproduct 1 4 Gum\n")));
+		int[] change = new int[machine.getCatalog().getDenominationCount()];
+		machine.refillProduct(0, 2);
+		machine.refillCoins(1, 2);
+		machine.addCoin(0);
+		machine.addCoin(0);
+		machine.addCoin(2);
+		machine.addCoin(2);
+
+		// 6 of change: the greedy walk takes 4, 1 and 1, the fewest coins are two 3
+		assertEquals(SelectionResult.SOLD, machine.trySelectSlot(1, change));
+		assertArrayEquals(new int[] { 0, 2, 0 }, change);
+		assertEquals(0, machine.getCoinCount(1));
+
+		// 1 below the greedy limit is still walked
+		machine.addCoin(0);
+		machine.addCoin(2);
+		assertEquals(SelectionResult.SOLD, machine.trySelectSlot(1, change));
+		assertArrayEquals(new int[] { 0, 0, 1 }, change);
+	}
+
+}
@@ -0,0 +1,77 @@
+package com.awais.machine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.awais.machine.models.Coin;
+import com.awais.machine.utils.ChangeIndex;
+
+public class ChangeIndexTest {
+
+	private static final Coin[] COINS = Coin.values();
+
+	@Test
+	public void emptyStockOnlyPaysZero() {
+		ChangeIndex index = new ChangeIndex();
+		assertTrue(index.contains(0));
+		assertFalse(index.contains(5));
+		assertFalse(index.contains(-5));
+	}
+
+	@Test
+	public void greedyFailureIsStillReachable() {
+		ChangeIndex index = new ChangeIndex();
+		index.update(Coin.FIFTY_CENTS, 1);
+		index.update(Coin.TWENTY_CENTS, 3);
+		assertTrue(index.contains(60));
+		assertTrue(index.contains(110));
+		assertFalse(index.contains(30));
+		assertFalse(index.contains(120));
+
+		// Taking a coin removes the combinations using it
+		index.update(Coin.TWENTY_CENTS, 2);
+		assertFalse(index.contains(60));
+		assertTrue(index.contains(90));
+	}
+
+	/**
+	 * Random counts going up and down must give the same amounts as searching
+	 * every combination of the coins
+	 */
+	@Test
+	public void matchesEveryCombination() {
+		Random random = new Random(16);
+		long maxAmount = 1000;
+		ChangeIndex index = new ChangeIndex(maxAmount);
+		int[] counts = new int[COINS.length];
+		for (int round = 0; round < 50; round++) {
+			Coin coin = COINS[random.nextInt(COINS.length)];
+			counts[coin.ordinal()] = random.nextInt(6);
+			index.update(coin, counts[coin.ordinal()]);
+			for (long amount = 0; amount <= maxAmount; amount += 5) {
+				assertEquals("Amount " + amount, reachable(amount, counts, 0), index.contains(amount));
+			}
+		}
+	}
+
+	private static boolean reachable(long amount, int[] counts, int from) {
+		if (amount == 0) {
+			return true;
+		}
+		if (from == COINS.length) {
+			return false;
+		}
+		for (int i = 0; i <= counts[from] && i * COINS[from].getValue() <= amount; i++) {
+			if (reachable(amount - i * COINS[from].getValue(), counts, from + 1)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+}
@@ -0,0 +1,247 @@
+package com.awais.machine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.awais.machine.exceptions.NotEnoughChangeException;
+import com.awais.machine.interfaces.ChangeStrategy;
+import com.awais.machine.interfaces.impl.AdaptiveStrategy;
+import com.awais.machine.interfaces.impl.CachingStrategy;
+import com.awais.machine.interfaces.impl.ClassicStrategy;
+import com.awais.machine.models.Change;
+import com.awais.machine.models.Coin;
+import com.awais.machine.utils.CoinSystems;
+import com.awais.machine.utils.EnumStock;
+import com.awais.machine.utils.Stock;
+
+public class ChangeStrategyTest {
+
+	private ChangeStrategy optimal;
+
+	private Stock<Coin> coins;
+
+	@Before
+	public void setUp() {
+		optimal = Factory.createOptimalStrategy();
+		coins = new EnumStock<>(Coin.class);
+	}
+
+	@Test(expected = NotEnoughChangeException.class)
+	public void classicFailsWhenGreedyChoiceIsWrong() throws NotEnoughChangeException {
+		coins.refill(Arrays.asList(Coin.FIFTY_CENTS, Coin.TWENTY_CENTS, Coin.TWENTY_CENTS, Coin.TWENTY_CENTS));
+		new ClassicStrategy().calculateChange(60, coins);
+	}
+
+	@Test
+	public void optimalFindsChangeWhenGreedyChoiceIsWrong() throws NotEnoughChangeException {
+		coins.refill(Arrays.asList(Coin.FIFTY_CENTS, Coin.TWENTY_CENTS, Coin.TWENTY_CENTS, Coin.TWENTY_CENTS));
+		Collection<Coin> change = optimal.calculateChange(60, coins);
+		assertEquals(Collections.nCopies(3, Coin.TWENTY_CENTS), new ArrayList<>(change));
+		// The strategy only plans, the stock is untouched
+		assertEquals(1, coins.getCount(Coin.FIFTY_CENTS));
+		assertEquals(3, coins.getCount(Coin.TWENTY_CENTS));
+	}
+
+	@Test
+	public void optimalUsesFewestCoins() throws NotEnoughChangeException {
+		List<Coin> refill = new ArrayList<>();
+		refill.addAll(Collections.nCopies(20, Coin.FIVE_CENTS));
+		refill.addAll(Collections.nCopies(5, Coin.TWENTY_CENTS));
+		refill.add(Coin.FIFTY_CENTS);
+		refill.add(Coin.ONE_EURO);
+		coins.refill(refill);
+		Collection<Coin> change = optimal.calculateChange(175, coins);
+		assertEquals(Arrays.asList(Coin.ONE_EURO, Coin.FIFTY_CENTS, Coin.TWENTY_CENTS, Coin.FIVE_CENTS),
+				new ArrayList<>(change));
+	}
+
+	@Test
+	public void optimalLeavesStockUntouchedWhenImpossible() {
+		coins.refill(Arrays.asList(Coin.FIFTY_CENTS, Coin.TWENTY_CENTS));
+		try {
+			optimal.calculateChange(30, coins);
+		} catch (NotEnoughChangeException e) {
+			assertEquals(1, coins.getCount(Coin.FIFTY_CENTS));
+			assertEquals(1, coins.getCount(Coin.TWENTY_CENTS));
+			return;
+		}
+		throw new AssertionError("Change should not be possible");
+	}
+
+	@Test
+	public void optimalGrowsForBigAmounts() throws NotEnoughChangeException {
+		coins.refill(Collections.nCopies(10, Coin.TWO_EURO));
+		coins.add(Coin.FIVE_CENTS);
+		Collection<Coin> change = optimal.calculateChange(2005, coins);
+		assertEquals(11, change.size());
+		assertEquals(10, coins.getCount(Coin.TWO_EURO));
+	}
+
+	@Test
+	public void cachedPlanIsReusedForSameRelevantStock() throws NotEnoughChangeException {
+		CachingStrategy cache = Factory.createCachingStrategy(new ClassicStrategy());
+		coins.refill(Collections.nCopies(10, Coin.TWENTY_CENTS));
+		cache.calculateChange(40, coins);
+		// Eight twenty cents coins left, still more than the two that fit in 40
+		coins.removeItems(Collections.nCopies(2, Coin.TWENTY_CENTS));
+		Collection<Coin> change = cache.calculateChange(40, coins);
+		assertEquals(Collections.nCopies(2, Coin.TWENTY_CENTS), new ArrayList<>(change));
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getMisses());
+		assertEquals(8, coins.getCount(Coin.TWENTY_CENTS));
+	}
+
+	@Test
+	public void cachedPlanIsNotReusedWhenStockChanges() throws NotEnoughChangeException {
+		CachingStrategy cache = Factory.createCachingStrategy(optimal);
+		coins.refill(Arrays.asList(Coin.FIFTY_CENTS, Coin.TWENTY_CENTS, Coin.TWENTY_CENTS, Coin.TWENTY_CENTS));
+		assertEquals(3, cache.calculateChange(60, coins).size());
+		coins.refill(Arrays.asList(Coin.FIFTY_CENTS, Coin.TEN_CENTS));
+		Collection<Coin> change = cache.calculateChange(60, coins);
+		assertEquals(Arrays.asList(Coin.FIFTY_CENTS, Coin.TEN_CENTS), new ArrayList<>(change));
+		assertEquals(0, cache.getHits());
+		assertEquals(2, cache.getMisses());
+	}
+
+	@Test
+	public void cachedFailureIsThrownAgain() {
+		CachingStrategy cache = Factory.createCachingStrategy(optimal);
+		coins.add(Coin.FIFTY_CENTS);
+		for (int i = 0; i < 2; i++) {
+			try {
+				cache.calculateChange(30, coins);
+				throw new AssertionError("Change should not be possible");
+			} catch (NotEnoughChangeException e) {
+				assertEquals(1, coins.getCount(Coin.FIFTY_CENTS));
+			}
+		}
+		assertEquals(1, cache.getHits());
+	}
+
+	@Test
+	public void leastRecentlyUsedPlanIsEvicted() throws NotEnoughChangeException {
+		CachingStrategy cache = new CachingStrategy(optimal, 2);
+		coins.refill(Collections.nCopies(100, Coin.FIVE_CENTS));
+		cache.calculateChange(5, coins);
+		cache.calculateChange(10, coins);
+		cache.calculateChange(15, coins);
+		assertEquals(2, cache.size());
+		cache.calculateChange(5, coins);
+		assertEquals(0, cache.getHits());
+	}
+
+	@Test
+	public void greedyLimitFindsSmallestCounterexample() {
+		assertTrue(CoinSystems.isCanonical(200, 100, 50, 20, 10, 5));
+		assertEquals(6, CoinSystems.greedyLimit(4, 3, 1));
+		// Greedy gets stuck on 8 with a six, while two fours pay it
+		assertEquals(8, CoinSystems.greedyLimit(6, 4));
+	}
+
+	@Test
+	public void adaptiveTakesGreedyPathOnlyWhenStockIsEnough() throws NotEnoughChangeException {
+		AdaptiveStrategy adaptive = Factory.createAdaptiveStrategy();
+		coins.refill(Arrays.asList(Coin.FIFTY_CENTS, Coin.TWENTY_CENTS, Coin.TWENTY_CENTS, Coin.TWENTY_CENTS));
+		assertEquals(Arrays.asList(Coin.FIFTY_CENTS, Coin.TWENTY_CENTS), adaptive.calculateChange(70, coins));
+		assertEquals(1, adaptive.getGreedyCalls());
+
+		// Greedy would need a ten cents coin after the fifty cents coin
+		assertEquals(Arrays.asList(Coin.TWENTY_CENTS, Coin.TWENTY_CENTS, Coin.TWENTY_CENTS),
+				adaptive.calculateChange(60, coins));
+		assertEquals(1, adaptive.getExactCalls());
+	}
+
+	@Test
+	public void adaptiveMatchesOptimal() {
+		AdaptiveStrategy adaptive = Factory.createAdaptiveStrategy();
+		Change expected = new Change();
+		Change actual = new Change();
+		Random random = new Random(21);
+		for (int i = 0; i < 2000; i++) {
+			coins.reset();
+			for (Coin coin : Coin.values()) {
+				coins.addAll(coin, random.nextInt(4));
+			}
+			long amount = 5 * random.nextInt(120);
+			boolean given = optimal.tryCalculateChange(amount, coins, expected);
+			assertEquals(given, adaptive.tryCalculateChange(amount, coins, actual));
+			assertEquals(expected.toCollection().size(), actual.toCollection().size());
+		}
+		assertTrue(adaptive.getGreedyCalls() > 0 && adaptive.getExactCalls() > 0);
+	}
+
+
+	@Test
+	public void optimalMatchesEveryCombination() {
+		Change change = new Change();
+		Random random = new Random(3);
+		Coin[] types = Coin.values();
+		for (int i = 0; i < 200; i++) {
+			coins.reset();
+			for (Coin coin : types) {
+				coins.addAll(coin, random.nextInt(4));
+			}
+			// Fewest coins of every amount, trying every combination of the stock
+			int[] fewest = new int[2 * 4 * 385];
+			Arrays.fill(fewest, Integer.MAX_VALUE);
+			int[] taken = new int[types.length];
+			while (true) {
+				int value = 0;
+				int count = 0;
+				for (int c = 0; c < types.length; c++) {
+					value += taken[c] * types[c].getValue();
+					count += taken[c];
+				}
+				fewest[value] = Math.min(fewest[value], count);
+				int c = 0;
+				while (c < types.length && ++taken[c] > coins.getCount(types[c])) {
+					taken[c++] = 0;
+				}
+				if (c == types.length) {
+					break;
+				}
+			}
+			for (int amount = 5; amount < fewest.length; amount += 5) {
+				boolean given = optimal.tryCalculateChange(amount, coins, change);
+				assertEquals(fewest[amount] != Integer.MAX_VALUE, given);
+				if (given) {
+					assertEquals(amount, change.getValue());
+					assertEquals(fewest[amount], change.toCollection().size());
+				}
+			}
+		}
+	}
+
+	@Test
+	public void optimalRejectsAmountsAboveTheStock() {
+		Change change = new Change();
+		coins.addAll(Coin.TWO_EURO, 3);
+		assertFalse(optimal.tryCalculateChange(800, coins, change));
+		assertFalse(optimal.tryCalculateChange(Integer.MAX_VALUE * 5L, coins, change));
+	}
+
+	@Test
+	public void optimalSolvesAmountsAboveTheKeptTables() {
+		Change change = new Change();
+		coins.addAll(Coin.TWO_EURO, 3);
+		coins.addAll(Coin.FIVE_CENTS, 100000);
+		assertTrue(optimal.tryCalculateChange(200600, coins, change));
+		assertEquals(3, change.getCount(Coin.TWO_EURO));
+		assertEquals(40000, change.getCount(Coin.FIVE_CENTS));
+		// The kept tables still solve the small amounts
+		assertTrue(optimal.tryCalculateChange(205, coins, change));
+		assertEquals(2, change.toCollection().size());
+	}
+
+}
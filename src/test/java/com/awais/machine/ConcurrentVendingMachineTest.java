@@ -0,0 +1,249 @@
+package com.awais.machine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.awais.machine.exceptions.NotEnoughChangeException;
+import com.awais.machine.exceptions.NotEnoughMoneyException;
+import com.awais.machine.exceptions.SoldOutException;
+import com.awais.machine.interfaces.CashManager;
+import com.awais.machine.interfaces.Session;
+import com.awais.machine.interfaces.SessionVendingMachine;
+import com.awais.machine.interfaces.VendingMachine;
+import com.awais.machine.interfaces.impl.ConcurrentVendingMachineImpl;
+import com.awais.machine.models.Coin;
+import com.awais.machine.models.Product;
+import com.awais.machine.utils.Pair;
+
+public class ConcurrentVendingMachineTest {
+
+	private static final int THREADS = 8;
+
+	private static final int PURCHASES_PER_THREAD = 300;
+
+	private static final int PRODUCTS_PER_TYPE = 150;
+
+	private static final int COINS_PER_TYPE = 1000;
+
+	private CashManager cashManager;
+
+	private VendingMachine machine;
+
+	@Before
+	public void setUp() {
+		cashManager = Factory.createCashManager(Factory.createOptimalStrategy());
+		machine = new ConcurrentVendingMachineImpl(cashManager);
+		List<Product> products = new ArrayList<>();
+		for (Product product : Product.values()) {
+			products.addAll(Collections.nCopies(PRODUCTS_PER_TYPE, product));
+		}
+		List<Coin> coins = new ArrayList<>();
+		for (Coin coin : Coin.values()) {
+			coins.addAll(Collections.nCopies(COINS_PER_TYPE, coin));
+		}
+		machine.refill(new Pair<Collection<Product>, Collection<Coin>>(products, coins));
+	}
+
+	/**
+	 * Several buyers insert coins and select products at the same time. No product
+	 * can be sold more times than refilled and every cent inserted must end up in
+	 * a sale, in the change or in the final refund.
+	 */
+	@Test
+	public void concurrentBuyersNeverOversellNorDoubleSpend() throws Exception {
+		long initialMoney = cashManager.getCurrentMoney();
+		AtomicIntegerArray sold = new AtomicIntegerArray(Product.values().length);
+		AtomicLong inserted = new AtomicLong();
+		AtomicLong returned = new AtomicLong();
+		CountDownLatch start = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		List<Future<?>> buyers = new ArrayList<>();
+		for (int t = 0; t < THREADS; t++) {
+			buyers.add(executor.submit(() -> {
+				start.await();
+				ThreadLocalRandom random = ThreadLocalRandom.current();
+				for (int i = 0; i < PURCHASES_PER_THREAD; i++) {
+					Coin coin = random.nextBoolean() ? Coin.TWO_EURO : Coin.ONE_EURO;
+					machine.addCoin(coin);
+					inserted.addAndGet(coin.getValue());
+					Product product = Product.values()[random.nextInt(Product.values().length)];
+					try {
+						Pair<Product, Collection<Coin>> sale = machine.selectProduct(product);
+						sold.incrementAndGet(sale.getFirstItem().ordinal());
+						returned.addAndGet(valueOf(sale.getSecondItem()));
+					} catch (NotEnoughMoneyException | SoldOutException e) {
+						// Another buyer took the money or the last unit
+					}
+				}
+				return null;
+			}));
+		}
+		start.countDown();
+		for (Future<?> buyer : buyers) {
+			buyer.get(1, TimeUnit.MINUTES);
+		}
+		executor.shutdown();
+		returned.addAndGet(valueOf(machine.cancelRequest()));
+
+		long sales = 0;
+		for (Product product : Product.values()) {
+			int count = sold.get(product.ordinal());
+			assertTrue(count <= PRODUCTS_PER_TYPE);
+			sales += count * product.getPrice();
+		}
+		assertEquals(0, machine.getCurrentMoney());
+		assertEquals(inserted.get(), sales + returned.get());
+		assertEquals(initialMoney + inserted.get() - returned.get(), cashManager.getCurrentMoney());
+	}
+
+	/**
+	 * Once every unit is sold the machine reports the product as sold out and
+	 * gives the money back untouched.
+	 */
+	@Test
+	public void concurrentBuyersSellEveryUnitOnce() throws Exception {
+		machine.reset();
+		machine.refill(new Pair<Collection<Product>, Collection<Coin>>(
+				Collections.nCopies(THREADS * 10, Product.WATER), new ArrayList<Coin>()));
+		AtomicLong soldOut = new AtomicLong();
+		AtomicLong sold = new AtomicLong();
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		List<Future<?>> buyers = new ArrayList<>();
+		for (int t = 0; t < THREADS; t++) {
+			buyers.add(executor.submit(() -> {
+				for (int i = 0; i < 20; i++) {
+					try {
+						machine.selectProduct(Product.WATER);
+						sold.incrementAndGet();
+					} catch (NotEnoughMoneyException e) {
+						machine.addCoin(Coin.FIFTY_CENTS);
+						machine.addCoin(Coin.TWENTY_CENTS);
+						machine.addCoin(Coin.TWENTY_CENTS);
+						i--;
+					} catch (SoldOutException e) {
+						soldOut.incrementAndGet();
+					} catch (NotEnoughChangeException e) {
+						throw new AssertionError(e);
+					}
+				}
+				return null;
+			}));
+		}
+		for (Future<?> buyer : buyers) {
+			buyer.get(1, TimeUnit.MINUTES);
+		}
+		executor.shutdown();
+		assertEquals(THREADS * 10, sold.get());
+		assertEquals(THREADS * 10, soldOut.get());
+	}
+
+	/**
+	 * Every buyer pays in its own session, so no buyer can take the money of
+	 * another one and every purchase succeeds until the product is sold out.
+	 */
+	@Test
+	public void sessionsKeepTheirOwnMoney() throws Exception {
+		SessionVendingMachine sessions = Factory.createConcurrentVendingMachine(Factory.createOptimalStrategy());
+		sessions.refill(new Pair<Collection<Product>, Collection<Coin>>(
+				Collections.nCopies(THREADS * PURCHASES_PER_THREAD, Product.COKE),
+				Collections.nCopies(THREADS * PURCHASES_PER_THREAD, Coin.FIFTY_CENTS)));
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		List<Future<Long>> buyers = new ArrayList<>();
+		for (int t = 0; t < THREADS; t++) {
+			buyers.add(executor.submit(() -> {
+				long change = 0;
+				for (int i = 0; i < PURCHASES_PER_THREAD; i++) {
+					Session session = sessions.openSession();
+					sessions.addCoin(session, Coin.TWO_EURO);
+					change += valueOf(sessions.selectProduct(session, Product.COKE).getSecondItem());
+					assertEquals(0, session.getCurrentMoney());
+				}
+				return change;
+			}));
+		}
+		for (Future<Long> buyer : buyers) {
+			assertEquals(PURCHASES_PER_THREAD * 50L, (long) buyer.get(1, TimeUnit.MINUTES));
+		}
+		executor.shutdown();
+	}
+
+	/**
+	 * A buyer without enough money never holds the product, so the last unit is
+	 * never reported as sold out to a buyer who can pay for it.
+	 */
+	@Test
+	public void buyerWithoutMoneyNeverSellsOut() throws Exception {
+		SessionVendingMachine sessions = Factory.createConcurrentVendingMachine();
+		Session poor = sessions.openSession();
+		AtomicBoolean done = new AtomicBoolean();
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		Future<?> window = executor.submit(() -> {
+			while (!done.get()) {
+				try {
+					sessions.selectProduct(poor, Product.COKE);
+				} catch (NotEnoughMoneyException | SoldOutException e) {
+					// Expected, the session has no money
+				}
+			}
+			return null;
+		});
+		try {
+			for (int i = 0; i < 2000; i++) {
+				sessions.refill(new Pair<Collection<Product>, Collection<Coin>>(
+						Collections.singletonList(Product.COKE), new ArrayList<Coin>()));
+				Session buyer = sessions.openSession();
+				sessions.addCoin(buyer, Coin.ONE_EURO);
+				sessions.addCoin(buyer, Coin.FIFTY_CENTS);
+				sessions.selectProduct(buyer, Product.COKE);
+			}
+		} finally {
+			done.set(true);
+			window.get(1, TimeUnit.MINUTES);
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void cancelReturnsOnlyTheSessionMoney() throws NotEnoughChangeException {
+		SessionVendingMachine sessions = Factory.createConcurrentVendingMachine();
+		Session first = sessions.openSession();
+		Session second = sessions.openSession();
+		sessions.addCoin(first, Coin.ONE_EURO);
+		sessions.addCoin(second, Coin.FIFTY_CENTS);
+		assertEquals(Collections.singletonList(Coin.FIFTY_CENTS), new ArrayList<>(sessions.cancel(second)));
+		assertEquals(100, first.getCurrentMoney());
+		assertEquals(0, sessions.getCurrentMoney());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void sessionOfAnotherMachineIsRejected() {
+		Session foreign = Factory.createConcurrentVendingMachine().openSession();
+		Factory.createConcurrentVendingMachine().addCoin(foreign, Coin.ONE_EURO);
+	}
+
+	private static long valueOf(Collection<Coin> coins) {
+		long value = 0;
+		for (Coin coin : coins) {
+			value += coin.getValue();
+		}
+		return value;
+	}
+
+}
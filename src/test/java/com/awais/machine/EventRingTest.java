@@ -0,0 +1,135 @@
+package com.awais.machine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import com.awais.machine.events.EventProcessor;
+import com.awais.machine.events.EventRing;
+import com.awais.machine.events.MachineEvent;
+import com.awais.machine.events.MachineEventType;
+import com.awais.machine.events.StockLevels;
+import com.awais.machine.interfaces.VendingMachine;
+import com.awais.machine.models.Change;
+import com.awais.machine.models.Coin;
+import com.awais.machine.models.MachineSnapshot;
+import com.awais.machine.models.Product;
+import com.awais.machine.utils.Pair;
+
+public class EventRingTest {
+
+	@Test
+	public void stockLevelsFollowTheMachine() throws Exception {
+		EventRing ring = new EventRing(64);
+		VendingMachine machine = Factory.createVendingMachine(ring);
+		List<MachineEventType> types = new ArrayList<>();
+		EventProcessor typeProcessor = ring.subscribe(event -> types.add(event.getType()));
+		StockLevels levels = new StockLevels();
+		EventProcessor levelsProcessor = ring.subscribe(levels);
+
+		machine.refill(new Pair<Collection<Product>, Collection<Coin>>(Collections.nCopies(2, Product.WATER),
+				Collections.nCopies(3, Coin.TEN_CENTS)));
+		machine.addCoin(Coin.ONE_EURO);
+		machine.selectProduct(Product.WATER, new Change());
+		machine.addCoin(Coin.FIFTY_CENTS);
+		machine.cancelRequest(new Change());
+
+		typeProcessor.drain();
+		assertEquals(Arrays.asList(MachineEventType.REFILLED, MachineEventType.COIN_INSERTED,
+				MachineEventType.CHANGE_DISPENSED, MachineEventType.PRODUCT_VENDED, MachineEventType.COIN_INSERTED,
+				MachineEventType.CHANGE_DISPENSED, MachineEventType.CANCELLED), types);
+
+		Thread thread = new Thread(levelsProcessor);
+		thread.start();
+		levelsProcessor.halt();
+		thread.join();
+		for (Product product : Product.values()) {
+			assertEquals(machine.getProductCount(product), levels.getProductCount(product));
+		}
+		for (Coin coin : Coin.values()) {
+			assertEquals(machine.getCoinCount(coin), levels.getCoinCount(coin));
+		}
+		assertEquals(Product.WATER.getPrice(), levels.getSales());
+		assertEquals(0, ring.getDropped());
+	}
+
+	@Test
+	public void fullRingDropsInsteadOfWaiting() {
+		EventRing ring = new EventRing(4);
+		VendingMachine machine = Factory.createVendingMachine(ring);
+		StockLevels levels = new StockLevels();
+		EventProcessor processor = ring.subscribe(levels);
+
+		for (int i = 0; i < 6; i++) {
+			machine.addCoin(Coin.FIVE_CENTS);
+		}
+		assertEquals(4, ring.getPublished());
+		assertEquals(2, ring.getDropped());
+		assertEquals(4, processor.drain());
+		assertEquals(4, levels.getCoinCount(Coin.FIVE_CENTS));
+		assertFalse(levels.isStale());
+
+		// Once read the slots are reused, the next event tells the drops
+		machine.addCoin(Coin.FIVE_CENTS);
+		assertEquals(1, processor.drain());
+		assertEquals(5, levels.getCoinCount(Coin.FIVE_CENTS));
+		assertTrue(levels.isStale());
+		assertEquals(2, levels.getMissed());
+
+		// Drained, so the snapshot matches the events delivered
+		MachineSnapshot snapshot = new MachineSnapshot();
+		machine.snapshot(snapshot);
+		levels.resync(snapshot);
+		assertFalse(levels.isStale());
+		assertEquals(7, levels.getCoinCount(Coin.FIVE_CENTS));
+
+		// Without processors nothing is dropped
+		ring.unsubscribe(processor);
+		for (int i = 0; i < 10; i++) {
+			machine.addCoin(Coin.FIVE_CENTS);
+		}
+		assertEquals(2, ring.getDropped());
+	}
+
+	@Test
+	public void processorSubscribedWhilePublishingSeesEveryEventInOrder() throws Exception {
+		EventRing ring = new EventRing(8);
+		AtomicBoolean publishing = new AtomicBoolean(true);
+		Thread writer = new Thread(() -> {
+			for (int i = 0; i < 200000; i++) {
+				ring.coinInserted(Coin.FIVE_CENTS);
+			}
+			publishing.set(false);
+		});
+		writer.start();
+
+		// A slot overwritten before it was read shows up as a gap in the sequences
+		AtomicBoolean ordered = new AtomicBoolean(true);
+		while (publishing.get()) {
+			AtomicLong expected = new AtomicLong(-1);
+			EventProcessor processor = ring.subscribe((MachineEvent event) -> {
+				if (expected.get() >= 0 && event.getSequence() != expected.get()) {
+					ordered.set(false);
+				}
+				expected.set(event.getSequence() + 1);
+			});
+			for (int i = 0; i < 100 && publishing.get(); i++) {
+				processor.drain();
+			}
+			ring.unsubscribe(processor);
+		}
+		writer.join();
+		assertEquals(true, ordered.get());
+	}
+
+}
@@ -0,0 +1,53 @@
+package com.awais.machine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.awais.machine.models.Product;
+import com.awais.machine.simulation.FleetSimulator;
+import com.awais.machine.simulation.MachineReport;
+import com.awais.machine.simulation.Mix;
+import com.awais.machine.simulation.SimulationConfig;
+import com.awais.machine.simulation.SimulationReport;
+
+public class FleetSimulatorTest {
+
+	/**
+	 * The same seed must give the same outcomes whatever the parallelism
+	 */
+	@Test
+	public void reproducibleWithSameSeed() throws InterruptedException {
+		SimulationReport sequential = run(1);
+		SimulationReport parallel = run(4);
+
+		assertEquals(20 * 500, sequential.getCustomers());
+		assertEquals(sequential.getCustomers(), sequential.getSales() + sequential.getSoldOut()
+				+ sequential.getNotEnoughChange());
+		assertTrue(sequential.getSales() > 0);
+		for (int i = 0; i < sequential.getMachines().size(); i++) {
+			MachineReport expected = sequential.getMachines().get(i);
+			MachineReport actual = parallel.getMachines().get(i);
+			assertEquals(expected.getSales(), actual.getSales());
+			assertEquals(expected.getSoldOut(), actual.getSoldOut());
+			assertEquals(expected.getNotEnoughChange(), actual.getNotEnoughChange());
+			assertEquals(expected.getRevenue(), actual.getRevenue());
+		}
+	}
+
+	private static SimulationReport run(int parallelism) throws InterruptedException {
+		Map<Product, Integer> weights = new EnumMap<>(Product.class);
+		weights.put(Product.COKE, 5);
+		weights.put(Product.WATER, 3);
+		weights.put(Product.SPRITE, 2);
+		SimulationConfig config = new SimulationConfig(20, 500, 1234);
+		config.setProductMix(new Mix<>(Product.class, weights));
+		config.setParallelism(parallelism);
+		return new FleetSimulator(config).run();
+	}
+
+}
@@ -0,0 +1,119 @@
+package com.awais.machine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.awais.machine.exceptions.SoldOutException;
+import com.awais.machine.fleet.FleetStore;
+import com.awais.machine.fleet.MappedCashManager;
+import com.awais.machine.interfaces.VendingMachine;
+import com.awais.machine.models.Coin;
+import com.awais.machine.models.MachineSnapshot;
+import com.awais.machine.models.Product;
+import com.awais.machine.utils.CashLedger.Entry;
+import com.awais.machine.utils.Pair;
+
+public class FleetStoreTest {
+
+	private static final int MACHINES = 100_000;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Path file;
+
+	@Before
+	public void setUp() throws IOException {
+		file = folder.newFile().toPath();
+	}
+
+	@Test
+	public void machinesAreIndependent() throws Exception {
+		try (FleetStore store = FleetStore.create(file, MACHINES, Factory::createOptimalStrategy)) {
+			VendingMachine first = store.machine(0);
+			VendingMachine last = store.machine(MACHINES - 1);
+			first.refill(new Pair<Collection<Product>, Collection<Coin>>(Collections.singletonList(Product.WATER),
+					Collections.singletonList(Coin.TEN_CENTS)));
+			first.addCoin(Coin.ONE_EURO);
+			assertEquals(Product.WATER, first.selectProduct(Product.WATER).getFirstItem());
+
+			assertEquals(0, last.getProductCount(Product.WATER));
+			assertEquals(0, last.getCoinCount(Coin.ONE_EURO));
+			assertEquals(0, last.getCurrentMoney());
+			assertEquals(1, first.getCoinCount(Coin.ONE_EURO));
+			assertEquals(0, first.getCoinCount(Coin.TEN_CENTS));
+		}
+	}
+
+	@Test(expected = SoldOutException.class)
+	public void viewsOfSameMachineShareState() throws Exception {
+		try (FleetStore store = FleetStore.create(file, MACHINES, Factory::createOptimalStrategy)) {
+			store.machine(42).refill(new Pair<Collection<Product>, Collection<Coin>>(
+					Collections.singletonList(Product.COKE), Collections.<Coin>emptyList()));
+			store.machine(42).addCoin(Coin.ONE_EURO);
+			store.machine(42).addCoin(Coin.FIFTY_CENTS);
+			store.machine(42).selectProduct(Product.COKE);
+			store.machine(42).selectProduct(Product.COKE);
+		}
+	}
+
+	@Test
+	public void accountSurvivesReopen() throws Exception {
+		try (FleetStore store = FleetStore.create(file, MACHINES, Factory::createOptimalStrategy)) {
+			VendingMachine machine = store.machine(7);
+			machine.refill(new Pair<Collection<Product>, Collection<Coin>>(Collections.singletonList(Product.WATER),
+					Collections.nCopies(2, Coin.TEN_CENTS)));
+			machine.addCoin(Coin.ONE_EURO);
+			store.machine(7).selectProduct(Product.WATER);
+
+			// A snapshot through another view sees the sale
+			MachineSnapshot snapshot = new MachineSnapshot();
+			store.machine(7).snapshot(snapshot);
+			assertEquals(0, snapshot.getProductCount(Product.WATER));
+			assertEquals(1, snapshot.getCoinCount(Coin.ONE_EURO));
+		}
+		try (FleetStore store = FleetStore.open(file, Factory::createOptimalStrategy)) {
+			MappedCashManager cash = store.cashManager(7);
+			assertEquals(20, cash.getValue(Entry.REFILLED));
+			assertEquals(100, cash.getValue(Entry.RECEIVED));
+			assertEquals(10, cash.getValue(Entry.DISPENSED));
+			assertEquals(110, cash.getCurrentMoney());
+			assertTrue(cash.isBalanced());
+		}
+	}
+
+	@Test
+	public void stateSurvivesReopen() throws Exception {
+		try (FleetStore store = FleetStore.create(file, MACHINES, Factory::createOptimalStrategy)) {
+			VendingMachine machine = store.machine(12_345);
+			machine.refill(new Pair<Collection<Product>, Collection<Coin>>(Collections.nCopies(3, Product.SPRITE),
+					Collections.nCopies(5, Coin.TWENTY_CENTS)));
+			machine.addCoin(Coin.FIFTY_CENTS);
+		}
+		try (FleetStore store = FleetStore.open(file, Factory::createOptimalStrategy)) {
+			assertEquals(MACHINES, store.getMachineCount());
+			VendingMachine machine = store.machine(12_345);
+			assertEquals(3, machine.getProductCount(Product.SPRITE));
+			assertEquals(5, machine.getCoinCount(Coin.TWENTY_CENTS));
+			assertEquals(50, machine.getCurrentMoney());
+		}
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void unknownMachineIsRejected() throws Exception {
+		try (FleetStore store = FleetStore.create(file, 10, Factory::createOptimalStrategy)) {
+			store.machine(10);
+		}
+	}
+
+}
@@ -0,0 +1,167 @@
+package com.awais.machine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.awais.machine.exceptions.InvalidProductException;
+import com.awais.machine.exceptions.NotEnoughChangeException;
+import com.awais.machine.exceptions.NotEnoughMoneyException;
+import com.awais.machine.exceptions.SoldOutException;
+import com.awais.machine.interfaces.VendingMachine;
+import com.awais.machine.interfaces.impl.VendingMachineImpl;
+import com.awais.machine.journal.EventType;
+import com.awais.machine.journal.Journal;
+import com.awais.machine.journal.JournaledVendingMachine;
+import com.awais.machine.models.Coin;
+import com.awais.machine.models.Product;
+import com.awais.machine.utils.Pair;
+
+public class JournalTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Path directory;
+
+	@Before
+	public void setUp() throws IOException {
+		directory = folder.newFolder().toPath();
+	}
+
+	@Test
+	public void stateSurvivesRestart() throws Exception {
+		try (JournaledVendingMachine machine = Factory.createJournaledVendingMachine(directory)) {
+			sellSomeProducts(machine);
+		}
+		try (JournaledVendingMachine machine = Factory.createJournaledVendingMachine(directory)) {
+			assertSameState(expectedState(), machine);
+		}
+	}
+
+	@Test
+	public void recoveryReplaysOnlyAfterSnapshot() throws Exception {
+		try (JournaledVendingMachine machine = open(3)) {
+			sellSomeProducts(machine);
+		}
+		try (JournaledVendingMachine machine = open(3)) {
+			assertSameState(expectedState(), machine);
+			machine.addCoin(Coin.FIVE_CENTS);
+		}
+		try (JournaledVendingMachine machine = open(3)) {
+			assertEquals(expectedState().getCurrentMoney() + 5, machine.getCurrentMoney());
+		}
+	}
+
+	@Test
+	public void tornTailIsDiscarded() throws Exception {
+		try (JournaledVendingMachine machine = open(1000)) {
+			sellSomeProducts(machine);
+		}
+		Files.write(directory.resolve("journal.log"), new byte[] { 0, 0, 0, 1, 0, 0, 0 },
+				StandardOpenOption.APPEND);
+		try (JournaledVendingMachine machine = open(1000)) {
+			assertSameState(expectedState(), machine);
+			machine.addCoin(Coin.TEN_CENTS);
+		}
+		try (JournaledVendingMachine machine = open(1000)) {
+			assertEquals(expectedState().getCurrentMoney() + 10, machine.getCurrentMoney());
+		}
+	}
+
+	@Test
+	public void failedSnapshotKeepsTheOperation() throws Exception {
+		// A directory in the way of the temporary file makes the snapshot fail
+		Path blocker = Files.createDirectory(directory.resolve("snapshot.bin.tmp"));
+		try (JournaledVendingMachine machine = open(2)) {
+			machine.addCoin(Coin.ONE_EURO);
+			machine.addCoin(Coin.FIFTY_CENTS);
+			assertNotNull(machine.getSnapshotFailure());
+			assertEquals(150, machine.getCurrentMoney());
+			Files.delete(blocker);
+			machine.addCoin(Coin.TEN_CENTS);
+			assertNull(machine.getSnapshotFailure());
+			assertTrue(Files.exists(directory.resolve("snapshot.bin")));
+		}
+		try (JournaledVendingMachine machine = open(2)) {
+			assertEquals(160, machine.getCurrentMoney());
+		}
+	}
+
+	@Test
+	public void idleJournalIsSyncedAfterGroupCommitTime() throws Exception {
+		Path file = directory.resolve("idle.log");
+		try (Journal journal = new Journal(file, 64, 10)) {
+			journal.append(EventType.ADD_COIN, Coin.ONE_EURO.ordinal());
+			journal.append(EventType.CANCEL_REQUEST);
+			// No more appends, the flusher writes both records
+			long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+			while (Files.size(file) == 0 && System.nanoTime() < deadline) {
+				Thread.sleep(5);
+			}
+			assertTrue(Files.size(file) > 0);
+		}
+		List<EventType> replayed = new ArrayList<>();
+		try (Journal journal = new Journal(file, 1, 0)) {
+			journal.replay(0, (sequence, type, payload) -> replayed.add(type));
+		}
+		assertEquals(Arrays.asList(EventType.ADD_COIN, EventType.CANCEL_REQUEST), replayed);
+	}
+
+	private JournaledVendingMachine open(int snapshotEveryRecords) throws IOException {
+		Journal journal = new Journal(directory.resolve("journal.log"), 1, 0);
+		return new JournaledVendingMachine(new VendingMachineImpl(Factory.createCashManager()), journal,
+				directory.resolve("snapshot.bin"), snapshotEveryRecords);
+	}
+
+	private static VendingMachine expectedState() throws Exception {
+		VendingMachine machine = Factory.createVendingMachine();
+		sellSomeProducts(machine);
+		return machine;
+	}
+
+	private static void sellSomeProducts(VendingMachine machine)
+			throws NotEnoughMoneyException, SoldOutException, NotEnoughChangeException, InvalidProductException {
+		machine.refill(new Pair<Collection<Product>, Collection<Coin>>(Collections.nCopies(2, Product.COKE),
+				Collections.nCopies(4, Coin.FIFTY_CENTS)));
+		machine.addCoin(Coin.TWO_EURO);
+		machine.selectProduct(Product.COKE);
+		try {
+			machine.selectProduct(Product.WATER);
+		} catch (SoldOutException e) {
+			// Recorded and replayed as well
+		}
+		machine.addCoin(Coin.ONE_EURO);
+		machine.refill(new Pair<Collection<Product>, Collection<Coin>>(Collections.singletonList(Product.WATER),
+				new ArrayList<Coin>()));
+		machine.addCoin(Coin.TWENTY_CENTS);
+	}
+
+	private static void assertSameState(VendingMachine expected, VendingMachine actual) {
+		assertEquals(expected.getCurrentMoney(), actual.getCurrentMoney());
+		for (Product product : Product.values()) {
+			assertEquals(expected.getProductCount(product), actual.getProductCount(product));
+		}
+		for (Coin coin : Coin.values()) {
+			assertEquals(expected.getCoinCount(coin), actual.getCoinCount(coin));
+		}
+	}
+
+}
@@ -0,0 +1,122 @@
+package com.awais.machine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.awais.machine.actor.MachineExecutor;
+import com.awais.machine.exceptions.SoldOutException;
+import com.awais.machine.models.Coin;
+import com.awais.machine.models.Product;
+import com.awais.machine.utils.Pair;
+
+public class MachineExecutorTest {
+
+	private static final int MACHINES = 8;
+
+	private MachineExecutor executor;
+
+	@Before
+	public void setUp() {
+		executor = Factory.createMachineExecutor(MACHINES, 3);
+	}
+
+	@After
+	public void tearDown() {
+		executor.close();
+	}
+
+	@Test
+	public void commandsFromManyThreadsAreAllApplied() throws Exception {
+		int perThread = 5000;
+		List<Thread> producers = new ArrayList<>();
+		for (int t = 0; t < 4; t++) {
+			Thread producer = new Thread(() -> {
+				for (int i = 0; i < perThread; i++) {
+					executor.addCoin(i % MACHINES, Coin.FIVE_CENTS);
+				}
+			});
+			producers.add(producer);
+			producer.start();
+		}
+		for (Thread producer : producers) {
+			producer.join();
+		}
+		long total = 0;
+		for (int machine = 0; machine < MACHINES; machine++) {
+			total += executor.submit(machine, m -> m.getCurrentMoney()).get();
+		}
+		assertEquals(4 * perThread * Coin.FIVE_CENTS.getValue(), total);
+	}
+
+	@Test
+	public void commandsOfAMachineRunInOrder() throws Exception {
+		int[] products = new int[Product.values().length];
+		products[Product.WATER.ordinal()] = 1;
+		int[] coins = new int[Coin.values().length];
+		coins[Coin.TEN_CENTS.ordinal()] = 1;
+		executor.refill(3, products, coins);
+		executor.addCoin(3, Coin.ONE_EURO);
+		CompletableFuture<Pair<Product, Collection<Coin>>> sold = executor.selectProduct(3, Product.WATER);
+		CompletableFuture<?> soldOut = executor.selectProduct(3, Product.WATER);
+
+		assertEquals(Arrays.asList(Coin.TEN_CENTS), sold.get().getSecondItem());
+		assertEquals(1, executor.submit(3, m -> m.getCoinCount(Coin.ONE_EURO)).get().intValue());
+		try {
+			soldOut.get();
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof SoldOutException);
+			return;
+		}
+		throw new AssertionError("The second water was sold");
+	}
+
+	/**
+	 * Commands submitted while closing either run or are rejected, none is left
+	 * pending
+	 */
+	@Test
+	public void commandsRacingTheCloseAreCompleted() throws Exception {
+		for (int round = 0; round < 50; round++) {
+			MachineExecutor closing = Factory.createMachineExecutor(MACHINES, 3);
+			List<CompletableFuture<Integer>> futures = Collections.synchronizedList(new ArrayList<>());
+			CountDownLatch started = new CountDownLatch(1);
+			Thread submitter = new Thread(() -> {
+				for (int i = 0; i < 100_000; i++) {
+					CompletableFuture<Integer> future = closing.submit(i % MACHINES, m -> 1);
+					futures.add(future);
+					started.countDown();
+					if (future.isCompletedExceptionally()) {
+						return;
+					}
+				}
+			});
+			submitter.start();
+			started.await();
+			closing.close();
+			submitter.join();
+			for (CompletableFuture<Integer> future : futures) {
+				try {
+					assertEquals(1, future.get(10, TimeUnit.SECONDS).intValue());
+				} catch (ExecutionException e) {
+					assertTrue(e.getCause() instanceof RejectedExecutionException);
+				}
+			}
+		}
+	}
+
+}
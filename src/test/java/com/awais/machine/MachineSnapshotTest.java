@@ -0,0 +1,99 @@
+package com.awais.machine;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+import com.awais.machine.interfaces.VendingMachine;
+import com.awais.machine.models.Change;
+import com.awais.machine.models.Coin;
+import com.awais.machine.models.MachineSnapshot;
+import com.awais.machine.models.Product;
+import com.awais.machine.models.SelectionResult;
+
+public class MachineSnapshotTest {
+
+	private static final int WATERS = 20000;
+
+	private static final int TEN_CENTS = 20000;
+
+	@Test
+	public void snapshotCopiesTheState() {
+		VendingMachine machine = refilled(Factory.createVendingMachine());
+		machine.addCoin(Coin.TWO_EURO);
+
+		MachineSnapshot snapshot = new MachineSnapshot();
+		machine.snapshot(snapshot);
+
+		assertEquals(WATERS, snapshot.getProductCount(Product.WATER));
+		assertEquals(0, snapshot.getProductCount(Product.COKE));
+		assertEquals(TEN_CENTS, snapshot.getCoinCount(Coin.TEN_CENTS));
+		assertEquals(1, snapshot.getCoinCount(Coin.TWO_EURO));
+		assertEquals(Coin.TWO_EURO.getValue(), snapshot.getCurrentMoney());
+	}
+
+	@Test
+	public void snapshotsAreConsistentWhileSelling() throws Exception {
+		assertConsistentWhileSelling(refilled(Factory.createVendingMachine()));
+	}
+
+	@Test
+	public void concurrentSnapshotsAreConsistentWhileSelling() throws Exception {
+		assertConsistentWhileSelling(refilled(Factory.createConcurrentVendingMachine()));
+		assertConsistentWhileSelling(refilled(Factory.createConcurrentVendingMachine(Factory.createOptimalStrategy())));
+	}
+
+	private static void assertConsistentWhileSelling(VendingMachine machine) throws Exception {
+		AtomicBoolean selling = new AtomicBoolean(true);
+		Thread seller = new Thread(() -> {
+			Change change = new Change();
+			try {
+				for (int i = 0; i < WATERS; i++) {
+					machine.addCoin(Coin.ONE_EURO);
+					assertEquals(SelectionResult.SOLD, machine.trySelectProduct(Product.WATER, change));
+				}
+			} finally {
+				selling.set(false);
+			}
+		});
+		seller.start();
+
+		// The coins hold the refill, the inserted money and the price of every
+		// water sold, whatever the moment of the copy
+		MachineSnapshot snapshot = new MachineSnapshot();
+		long reads = 0;
+		do {
+			machine.snapshot(snapshot);
+			reads++;
+			if (!snapshot.isConsistent()) {
+				continue;
+			}
+			long coinsValue = 0;
+			for (Coin coin : Coin.values()) {
+				coinsValue += coin.getValue() * snapshot.getCoinCount(coin);
+			}
+			long sold = WATERS - snapshot.getProductCount(Product.WATER);
+			assertEquals(TEN_CENTS * Coin.TEN_CENTS.getValue() + sold * Product.WATER.getPrice()
+					+ snapshot.getCurrentMoney(), coinsValue);
+		} while (selling.get());
+		seller.join();
+
+		machine.snapshot(snapshot);
+		assertEquals(true, snapshot.isConsistent());
+		assertEquals(0, snapshot.getProductCount(Product.WATER));
+		assertEquals(0, snapshot.getCurrentMoney());
+		assertEquals(true, reads > 0);
+	}
+
+	private static VendingMachine refilled(VendingMachine machine) {
+		int[] productCounts = new int[Product.values().length];
+		productCounts[Product.WATER.ordinal()] = WATERS;
+		int[] coinCounts = new int[Coin.values().length];
+		coinCounts[Coin.TEN_CENTS.ordinal()] = TEN_CENTS;
+		machine.refill(productCounts, coinCounts);
+		return machine;
+	}
+
+}
@@ -0,0 +1,69 @@
+package com.awais.machine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+
+import org.junit.Test;
+
+import com.awais.machine.exceptions.SoldOutException;
+import com.awais.machine.interfaces.VendingMachine;
+import com.awais.machine.metrics.InMemoryMetrics;
+import com.awais.machine.metrics.LatencyHistogram;
+import com.awais.machine.models.Change;
+import com.awais.machine.models.Coin;
+import com.awais.machine.models.Product;
+import com.awais.machine.models.SelectionResult;
+import com.awais.machine.utils.Pair;
+
+public class MetricsTest {
+
+	@Test
+	public void meteredMachine() throws Exception {
+		InMemoryMetrics metrics = new InMemoryMetrics();
+		VendingMachine machine = Factory.createMeteredVendingMachine(metrics);
+		machine.refill(new Pair<Collection<Product>, Collection<Coin>>(Collections.singletonList(Product.COKE),
+				Arrays.asList(Coin.FIFTY_CENTS, Coin.TWENTY_CENTS)));
+		assertEquals(1, metrics.getGauge("vending.stock.product.COKE"));
+
+		machine.addCoin(Coin.TWO_EURO);
+		machine.selectProduct(Product.COKE);
+		try {
+			machine.selectProduct(Product.COKE);
+		} catch (SoldOutException e) {
+			// Counted
+		}
+		assertEquals(SelectionResult.SOLD_OUT, machine.trySelectProduct(Product.WATER, new Change()));
+
+		assertEquals(1, metrics.getCount("vending.sales"));
+		assertEquals(2, metrics.getCount("vending.error.SoldOutException"));
+		assertEquals(1, metrics.getCount("cash.change.coin.FIFTY_CENTS"));
+		assertEquals(0, metrics.getGauge("vending.stock.product.COKE"));
+		assertEquals(1, metrics.getGauge("vending.stock.coin.TWO_EURO"));
+		assertEquals(3, metrics.getHistogram("vending.selectProduct").getCount());
+		assertEquals(1, metrics.getHistogram("cash.change.coins").getMax());
+	}
+
+	@Test
+	public void histogramPercentiles() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (long value = 1; value <= 100_000; value++) {
+			histogram.record(value);
+		}
+		assertEquals(100_000, histogram.getCount());
+		assertEquals(100_000, histogram.getMax());
+		assertEquals(50_000.5, histogram.getMean(), 0.001);
+		assertWithin(50_000, histogram.getValueAtPercentile(50));
+		assertWithin(99_000, histogram.getValueAtPercentile(99));
+		assertEquals(100_000, histogram.getValueAtPercentile(100));
+		assertEquals(1, histogram.getValueAtPercentile(0));
+	}
+
+	private static void assertWithin(long expected, long actual) {
+		assertTrue(actual + " is not close to " + expected, Math.abs(actual - expected) <= expected * 0.032);
+	}
+
+}
@@ -0,0 +1,77 @@
+package com.awais.machine;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import com.awais.machine.fleet.RefillPlan;
+import com.awais.machine.interfaces.VendingMachine;
+import com.awais.machine.models.Coin;
+import com.awais.machine.models.Product;
+import com.awais.machine.utils.Pair;
+
+public class RefillPlanTest {
+
+	@Test
+	public void countRefillMatchesCollectionRefill() {
+		VendingMachine byCollection = Factory.createVendingMachine();
+		VendingMachine byCount = Factory.createVendingMachine();
+		byCollection.refill(new Pair<Collection<Product>, Collection<Coin>>(
+				Arrays.asList(Product.COKE, Product.WATER, Product.COKE),
+				Arrays.asList(Coin.TEN_CENTS, Coin.TWO_EURO, Coin.TEN_CENTS, Coin.TEN_CENTS)));
+		int[] productCounts = new int[Product.values().length];
+		productCounts[Product.COKE.ordinal()] = 2;
+		productCounts[Product.WATER.ordinal()] = 1;
+		int[] coinCounts = new int[Coin.values().length];
+		coinCounts[Coin.TEN_CENTS.ordinal()] = 3;
+		coinCounts[Coin.TWO_EURO.ordinal()] = 1;
+		byCount.refill(productCounts, coinCounts);
+
+		for (Product product : Product.values()) {
+			assertEquals(byCollection.getProductCount(product), byCount.getProductCount(product));
+		}
+		for (Coin coin : Coin.values()) {
+			assertEquals(byCollection.getCoinCount(coin), byCount.getCoinCount(coin));
+		}
+	}
+
+	@Test
+	public void planRefillsEveryMachineOnce() {
+		List<VendingMachine> machines = new ArrayList<>();
+		RefillPlan plan = new RefillPlan();
+		for (int i = 0; i < 50; i++) {
+			VendingMachine machine = Factory.createVendingMachine();
+			machines.add(machine);
+			plan.addProducts(machine, Product.SPRITE, i);
+			plan.addCoins(machine, Coin.FIFTY_CENTS, 2);
+		}
+		// Counts planned twice for a machine are added
+		int[] coinCounts = new int[Coin.values().length];
+		coinCounts[Coin.FIFTY_CENTS.ordinal()] = 3;
+		plan.add(machines.get(7), new int[Product.values().length], coinCounts);
+		assertEquals(50, plan.size());
+
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			plan.apply(pool);
+		} finally {
+			pool.shutdown();
+		}
+		for (int i = 0; i < machines.size(); i++) {
+			assertEquals(i, machines.get(i).getProductCount(Product.SPRITE));
+			assertEquals(i == 7 ? 5 : 2, machines.get(i).getCoinCount(Coin.FIFTY_CENTS));
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void negativeCountsAreRejected() {
+		new RefillPlan().addCoins(Factory.createVendingMachine(), Coin.TEN_CENTS, -1);
+	}
+
+}
@@ -0,0 +1,167 @@
+package com.awais.machine;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.awais.machine.batch.BatchEvents;
+import com.awais.machine.interfaces.VendingMachine;
+import com.awais.machine.models.Coin;
+import com.awais.machine.models.Product;
+import com.awais.machine.models.SelectionResult;
+import com.awais.machine.server.LoadClient;
+import com.awais.machine.server.Protocol;
+import com.awais.machine.server.VendingServer;
+
+public class ServerTest {
+
+	private final List<VendingMachine> machines = new ArrayList<>();
+
+	private VendingServer server;
+
+	@Before
+	public void setUp() throws IOException {
+		for (int i = 0; i < 4; i++) {
+			machines.add(Factory.createVendingMachine());
+		}
+		server = new VendingServer(machines, new InetSocketAddress("localhost", 0));
+		server.start();
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		server.close();
+	}
+
+	@Test
+	public void pipelinedRequestsAreAnsweredInOrder() throws IOException {
+		int[] requests = { BatchEvents.addCoin(Coin.ONE_EURO), Protocol.bind(1), Protocol.getMoney(),
+				BatchEvents.refillProduct(Product.WATER, 2), BatchEvents.refillCoin(Coin.TEN_CENTS, 1),
+				BatchEvents.addCoin(Coin.ONE_EURO), Protocol.getMoney(), BatchEvents.selectProduct(Product.WATER),
+				Protocol.getProductCount(Product.WATER), BatchEvents.selectProduct(Product.COKE) };
+		try (SocketChannel channel = SocketChannel.open(server.getAddress())) {
+			ByteBuffer output = ByteBuffer.allocate(requests.length * Protocol.REQUEST_SIZE);
+			int expected = 0;
+			for (int request : requests) {
+				output.putInt(request);
+				expected += Protocol.responseSize(request);
+			}
+			output.flip();
+			channel.write(output);
+			ByteBuffer input = ByteBuffer.allocate(expected);
+			while (input.hasRemaining()) {
+				channel.read(input);
+			}
+			input.flip();
+
+			// Not bound yet
+			assertEquals(Protocol.ERROR, input.get());
+			assertEquals(SelectionResult.APPLIED.ordinal(), input.get());
+			assertEquals(SelectionResult.APPLIED.ordinal(), input.get());
+			assertEquals(0, input.getLong());
+			for (int i = 0; i < 3; i++) {
+				assertEquals(SelectionResult.APPLIED.ordinal(), input.get());
+			}
+			assertEquals(SelectionResult.APPLIED.ordinal(), input.get());
+			assertEquals(100, input.getLong());
+			assertEquals(SelectionResult.SOLD.ordinal(), input.get());
+			for (Coin coin : Coin.values()) {
+				assertEquals(coin == Coin.TEN_CENTS ? 1 : 0, input.getInt());
+			}
+			assertEquals(SelectionResult.APPLIED.ordinal(), input.get());
+			assertEquals(1, input.getInt());
+			assertEquals(SelectionResult.SOLD_OUT.ordinal(), input.get());
+			for (Coin coin : Coin.values()) {
+				assertEquals(0, input.getInt());
+			}
+		}
+		assertEquals(1, machines.get(1).getProductCount(Product.WATER));
+		assertEquals(0, machines.get(0).getCurrentMoney());
+	}
+
+	@Test
+	public void loadClientSellsOnEveryMachine() throws Exception {
+		LoadClient client = new LoadClient(server.getAddress(), machines.size(), machines.size(), 4000, 64);
+		LoadClient.Report report = client.run();
+		assertEquals(16000, report.getRequests());
+		assertEquals(0, report.getFailures());
+		for (VendingMachine machine : machines) {
+			assertEquals(1000, machine.getCoinCount(Coin.ONE_EURO));
+			assertEquals(0, machine.getCoinCount(Coin.TEN_CENTS));
+			assertEquals(0, machine.getProductCount(Product.WATER));
+		}
+	}
+
+
+	@Test
+	public void machineIsBoundToOneConnection() throws IOException {
+		try (SocketChannel first = SocketChannel.open(server.getAddress());
+				SocketChannel second = SocketChannel.open(server.getAddress())) {
+			assertEquals(SelectionResult.APPLIED.ordinal(), exchange(first, Protocol.bind(2)).get());
+			assertEquals(Protocol.ERROR, exchange(second, Protocol.bind(2)).get());
+			assertEquals(SelectionResult.APPLIED.ordinal(), exchange(first, Protocol.bind(3)).get());
+			// Free again once the first connection bound another machine
+			assertEquals(SelectionResult.APPLIED.ordinal(), exchange(second, Protocol.bind(2)).get());
+		}
+	}
+
+	@Test
+	public void failingRequestIsAnsweredWithError() throws IOException {
+		VendingMachine machine = machines.get(0);
+		// The second machine fails to take coins, like a journal that can't be written
+		VendingMachine failing = (VendingMachine) Proxy.newProxyInstance(VendingMachine.class.getClassLoader(),
+				new Class<?>[] { VendingMachine.class }, (proxy, method, args) -> {
+					if (method.getName().equals("addCoin")) {
+						throw new UncheckedIOException(new IOException("Disk full"));
+					}
+					try {
+						return method.invoke(machine, args);
+					} catch (InvocationTargetException e) {
+						throw e.getCause();
+					}
+				});
+		List<VendingMachine> served = new ArrayList<>();
+		served.add(machine);
+		served.add(failing);
+		try (VendingServer failingServer = new VendingServer(served, new InetSocketAddress("localhost", 0))) {
+			failingServer.start();
+			try (SocketChannel channel = SocketChannel.open(failingServer.getAddress())) {
+				assertEquals(SelectionResult.APPLIED.ordinal(), exchange(channel, Protocol.bind(1)).get());
+				assertEquals(Protocol.ERROR, exchange(channel, BatchEvents.addCoin(Coin.ONE_EURO)).get());
+				ByteBuffer money = exchange(channel, Protocol.getMoney());
+				assertEquals(SelectionResult.APPLIED.ordinal(), money.get());
+				assertEquals(0, money.getLong());
+			}
+		}
+	}
+
+	/**
+	 * Send one request and read its whole response
+	 */
+	private static ByteBuffer exchange(SocketChannel channel, int request) throws IOException {
+		ByteBuffer output = ByteBuffer.allocate(Protocol.REQUEST_SIZE);
+		output.putInt(request);
+		output.flip();
+		channel.write(output);
+		ByteBuffer input = ByteBuffer.allocate(Protocol.responseSize(request));
+		while (input.hasRemaining()) {
+			if (channel.read(input) < 0) {
+				throw new IOException("Connection closed");
+			}
+		}
+		input.flip();
+		return input;
+	}
+}
@@ -0,0 +1,159 @@
+package com.awais.machine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.awais.machine.interfaces.impl.VendingMachineImpl;
+import com.awais.machine.models.Coin;
+import com.awais.machine.models.Product;
+import com.awais.machine.snapshot.SnapshotCodec;
+import com.awais.machine.utils.Pair;
+
+public class SnapshotTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final SnapshotCodec codec = new SnapshotCodec();
+
+	@Test
+	public void restoreFromHeapAndDirectBuffers() throws IOException {
+		List<VendingMachineImpl> machines = machines(3, true);
+		for (ByteBuffer buffer : new ByteBuffer[] { ByteBuffer.allocate((int) SnapshotCodec.sizeOf(3)),
+				ByteBuffer.allocateDirect((int) SnapshotCodec.sizeOf(3)) }) {
+			codec.writeAll(machines, buffer);
+			assertEquals(0, buffer.remaining());
+			buffer.flip();
+
+			List<VendingMachineImpl> restored = machines(3, false);
+			codec.readAll(buffer, restored);
+			assertSameState(machines, restored);
+		}
+	}
+
+	@Test
+	public void restoreFromFile() throws IOException {
+		Path file = folder.getRoot().toPath().resolve("fleet.snapshot");
+		List<VendingMachineImpl> machines = machines(50, true);
+		codec.save(file, machines);
+		assertEquals(SnapshotCodec.sizeOf(50), file.toFile().length());
+
+		List<VendingMachineImpl> restored = machines(50, false);
+		codec.load(file, restored);
+		assertSameState(machines, restored);
+	}
+
+	@Test
+	public void invalidSnapshotIsRejected() {
+		ByteBuffer buffer = ByteBuffer.allocate((int) SnapshotCodec.sizeOf(2));
+		codec.writeAll(machines(2, true), buffer);
+		buffer.flip();
+		assertRejected(buffer, machines(3, false));
+
+		ByteBuffer truncated = (ByteBuffer) buffer.duplicate().limit(buffer.limit() - 1);
+		assertRejected(truncated, machines(2, false));
+
+		// A coin count changed behind the checksum
+		ByteBuffer corrupted = ByteBuffer.allocate(buffer.limit());
+		corrupted.put(buffer.duplicate()).flip();
+		corrupted.putInt(SnapshotCodec.HEADER_SIZE + SnapshotCodec.RECORD_SIZE + Long.BYTES, 1000);
+		assertRejected(corrupted, machines(2, false));
+
+		buffer.putInt(4, SnapshotCodec.VERSION + 1);
+		assertRejected(buffer, machines(2, false));
+	}
+
+	/**
+	 * A negative count behind a valid checksum is rejected before any machine is
+	 * restored
+	 */
+	@Test
+	public void negativeCountIsRejected() {
+		ByteBuffer buffer = ByteBuffer.allocate((int) SnapshotCodec.sizeOf(2));
+		codec.writeAll(machines(2, true), buffer);
+		buffer.putInt(SnapshotCodec.HEADER_SIZE + SnapshotCodec.RECORD_SIZE + Long.BYTES, -1);
+		codec.writeChecksum(buffer, 0);
+		buffer.flip();
+		List<VendingMachineImpl> restored = machines(2, false);
+		restored.get(0).addCoin(Coin.ONE_EURO);
+		assertRejected(buffer, restored);
+		assertEquals(100, restored.get(0).getCurrentMoney());
+	}
+
+	@Test
+	public void invalidRestoreLeavesTheMachine() {
+		VendingMachineImpl machine = machines(1, true).get(0);
+		int[] productCounts = new int[Product.values().length];
+		int[] coinCounts = new int[Coin.values().length];
+		coinCounts[Coin.TEN_CENTS.ordinal()] = -1;
+		try {
+			machine.restore(productCounts, coinCounts, 0);
+			fail("The restore should be rejected");
+		} catch (IllegalArgumentException e) {
+			// Expected
+		}
+		try {
+			machine.restore(productCounts, new int[Coin.values().length], -5);
+			fail("The restore should be rejected");
+		} catch (IllegalArgumentException e) {
+			// Expected
+		}
+		assertEquals(Coin.TWO_EURO.getValue(), machine.getCurrentMoney());
+		assertEquals(Coin.TEN_CENTS.ordinal(), machine.getCoinCount(Coin.TEN_CENTS));
+	}
+
+	private void assertRejected(ByteBuffer buffer, List<VendingMachineImpl> machines) {
+		try {
+			codec.readAll(buffer.duplicate(), machines);
+			fail("The snapshot should be rejected");
+		} catch (IOException e) {
+			// Expected
+		}
+	}
+
+	private static List<VendingMachineImpl> machines(int count, boolean filled) {
+		List<VendingMachineImpl> machines = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			VendingMachineImpl machine = new VendingMachineImpl(Factory.createCashManager());
+			if (filled) {
+				Collection<Product> products = new ArrayList<>();
+				Collection<Coin> coins = new ArrayList<>();
+				for (Product product : Product.values()) {
+					products.addAll(Collections.nCopies(i + product.ordinal(), product));
+				}
+				for (Coin coin : Coin.values()) {
+					coins.addAll(Collections.nCopies(2 * i + coin.ordinal(), coin));
+				}
+				machine.refill(new Pair<>(products, coins));
+				machine.addCoin(Coin.values()[i % Coin.values().length]);
+			}
+			machines.add(machine);
+		}
+		return machines;
+	}
+
+	private static void assertSameState(List<VendingMachineImpl> expected, List<VendingMachineImpl> actual) {
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.get(i).getCurrentMoney(), actual.get(i).getCurrentMoney());
+			for (Coin coin : Coin.values()) {
+				assertEquals(expected.get(i).getCoinCount(coin), actual.get(i).getCoinCount(coin));
+			}
+			for (Product product : Product.values()) {
+				assertEquals(expected.get(i).getProductCount(product), actual.get(i).getProductCount(product));
+			}
+		}
+	}
+
+}
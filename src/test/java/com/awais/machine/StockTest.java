@@ -0,0 +1,84 @@
+package com.awais.machine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.awais.machine.models.Coin;
+import com.awais.machine.models.Product;
+import com.awais.machine.utils.EnumStock;
+import com.awais.machine.utils.Stock;
+
+public class StockTest {
+
+	@Test
+	public void enumStockStartsEmpty() {
+		Stock<Coin> stock = new EnumStock<>(Coin.class);
+		for (Coin coin : Coin.values()) {
+			assertEquals(0, stock.getCount(coin));
+			assertFalse(stock.containsMoreThenOne(coin));
+		}
+	}
+
+	@Test
+	public void enumStockAddAndRemove() {
+		Stock<Coin> stock = new EnumStock<>(Coin.class);
+		stock.refill(Arrays.asList(Coin.TEN_CENTS, Coin.TEN_CENTS, Coin.TWO_EURO));
+		stock.removeItem(Coin.TEN_CENTS);
+		assertEquals(1, stock.getCount(Coin.TEN_CENTS));
+		assertEquals(1, stock.getCount(Coin.TWO_EURO));
+		assertTrue(stock.containsMoreThenOne(Coin.TWO_EURO));
+	}
+
+	@Test
+	public void enumStockNeverGoesNegative() {
+		Stock<Product> stock = new EnumStock<>(Product.class);
+		stock.removeItem(Product.COKE);
+		stock.removeItems(Arrays.asList(Product.COKE, Product.WATER));
+		assertEquals(0, stock.getCount(Product.COKE));
+		assertEquals(0, stock.getCount(Product.WATER));
+	}
+
+	@Test
+	public void enumStockResetKeepsKeys() {
+		Stock<Product> stock = new EnumStock<>(Product.class);
+		stock.add(Product.SPRITE);
+		stock.reset();
+		assertEquals(0, stock.getCount(Product.SPRITE));
+		stock.add(Product.SPRITE);
+		assertEquals(1, stock.getCount(Product.SPRITE));
+	}
+
+	@Test
+	public void enumStockItemsMatchGenericStock() {
+		Stock<Coin> generic = new Stock<>();
+		Stock<Coin> specialized = new EnumStock<>(Coin.class);
+		for (Coin coin : Coin.values()) {
+			generic.initializeKey(coin);
+		}
+		generic.refill(Arrays.asList(Coin.FIVE_CENTS, Coin.FIFTY_CENTS, Coin.FIFTY_CENTS));
+		specialized.refill(Arrays.asList(Coin.FIVE_CENTS, Coin.FIFTY_CENTS, Coin.FIFTY_CENTS));
+		Map<Coin, Integer> items = specialized.getCurrentStockItems();
+		assertEquals(generic.getCurrentStockItems(), items);
+	}
+
+	@Test
+	public void addAllMatchesAddingOneByOne() {
+		Stock<Coin> generic = new Stock<>();
+		Stock<Coin> specialized = new EnumStock<>(Coin.class);
+		for (Coin coin : Coin.values()) {
+			generic.initializeKey(coin);
+		}
+		generic.addAll(Coin.TWENTY_CENTS, 250);
+		specialized.addAll(Coin.TWENTY_CENTS, 250);
+		specialized.addAll(Coin.ONE_EURO, 0);
+		assertEquals(250, generic.getCount(Coin.TWENTY_CENTS));
+		assertEquals(generic.getCurrentStockItems(), specialized.getCurrentStockItems());
+	}
+
+}
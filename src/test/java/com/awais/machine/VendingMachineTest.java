@@ -2,9 +2,12 @@ package com.awais.machine;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 import org.junit.Before;
@@ -15,8 +18,10 @@ import com.awais.machine.exceptions.NotEnoughChangeException;
 import com.awais.machine.exceptions.NotEnoughMoneyException;
 import com.awais.machine.exceptions.SoldOutException;
 import com.awais.machine.interfaces.VendingMachine;
+import com.awais.machine.models.Change;
 import com.awais.machine.models.Coin;
 import com.awais.machine.models.Product;
+import com.awais.machine.models.SelectionResult;
 import com.awais.machine.utils.Pair;
 
 public class VendingMachineTest {
@@ -192,6 +197,28 @@ public class VendingMachineTest {
 		assertEquals(0, machine.getCurrentMoney(), 0);
 	}
 
+	/**
+	 * Check that the machine can be refilled and used after a reset
+	 * 
+	 * @throws NotEnoughMoneyException
+	 * @throws SoldOutException
+	 * @throws NotEnoughChangeException
+	 * @throws InvalidProductException
+	 */
+	@Test
+	public void checkRefillAfterReset()
+			throws NotEnoughMoneyException, SoldOutException, NotEnoughChangeException, InvalidProductException {
+		machine.reset();
+		List<Product> listProduct = new ArrayList<>();
+		listProduct.add(Product.WATER);
+		machine.refill(new Pair<Collection<Product>, Collection<Coin>>(listProduct, new ArrayList<>()));
+
+		machine.addCoin(Coin.FIFTY_CENTS);
+		machine.addCoin(Coin.TWENTY_CENTS);
+		machine.addCoin(Coin.TWENTY_CENTS);
+		assertEquals(Product.WATER, machine.selectProduct(Product.WATER).getFirstItem());
+	}
+
 	/**
 	 * Check the price of a given product
 	 * 
@@ -331,6 +358,122 @@ public class VendingMachineTest {
 		assertTrue(ret.getSecondItem().contains(Coin.FIVE_CENTS));
 	}
 
+	/**
+	 * This method test the change returned in a reused holder
+	 * 
+	 * @throws NotEnoughMoneyException
+	 * @throws SoldOutException
+	 * @throws NotEnoughChangeException
+	 * @throws InvalidProductException
+	 */
+	@Test
+	public void testChangeHolderReturn()
+			throws NotEnoughMoneyException, SoldOutException, NotEnoughChangeException, InvalidProductException {
+		Collection<Product> listProduct = new ArrayList<>();
+		listProduct.add(Product.COKE);
+		listProduct.add(Product.COKE);
+		Collection<Coin> listCoin = new ArrayList<>();
+		listCoin.add(Coin.FIFTY_CENTS);
+		listCoin.add(Coin.TWENTY_CENTS);
+		machine.refill(new Pair<Collection<Product>, Collection<Coin>>(listProduct, listCoin));
+
+		Change change = new Change();
+		machine.addCoin(Coin.TWO_EURO);
+		assertEquals(Product.COKE, machine.selectProduct(Product.COKE, change));
+		assertEquals(1, change.getCount(Coin.FIFTY_CENTS));
+		assertEquals(1, change.getTotalCount());
+		assertEquals(0, machine.getCurrentMoney());
+
+		machine.addCoin(Coin.ONE_EURO);
+		machine.addCoin(Coin.FIFTY_CENTS);
+		machine.addCoin(Coin.TWENTY_CENTS);
+		machine.selectProduct(Product.COKE, change);
+		assertEquals(1, change.getCount(Coin.TWENTY_CENTS));
+		assertEquals(Coin.TWENTY_CENTS.getValue(), change.getValue());
+	}
+
+	/**
+	 * This method test the outcomes of a selection without exceptions
+	 */
+	@Test
+	public void testTrySelectProduct() {
+		Collection<Product> listProduct = new ArrayList<>();
+		listProduct.add(Product.COKE);
+		Collection<Coin> listCoin = new ArrayList<>();
+		listCoin.add(Coin.TWENTY_CENTS);
+		machine.refill(new Pair<Collection<Product>, Collection<Coin>>(listProduct, listCoin));
+
+		Change change = new Change();
+		assertEquals(SelectionResult.INVALID_PRODUCT, machine.trySelectProduct(null, change));
+		assertEquals(SelectionResult.SOLD_OUT, machine.trySelectProduct(Product.WATER, change));
+		machine.addCoin(Coin.ONE_EURO);
+		assertEquals(SelectionResult.NOT_ENOUGH_MONEY, machine.trySelectProduct(Product.COKE, change));
+		machine.addCoin(Coin.ONE_EURO);
+		assertEquals(SelectionResult.NOT_ENOUGH_CHANGE, machine.trySelectProduct(Product.COKE, change));
+		assertEquals(200, machine.getCurrentMoney());
+		assertEquals(1, machine.getProductCount(Product.COKE));
+
+		assertTrue(machine.tryCancelRequest(change));
+		assertEquals(2, change.getCount(Coin.ONE_EURO));
+		machine.addCoin(Coin.ONE_EURO);
+		machine.addCoin(Coin.FIFTY_CENTS);
+		machine.addCoin(Coin.TWENTY_CENTS);
+		assertEquals(SelectionResult.SOLD, machine.trySelectProduct(Product.COKE, change));
+		assertEquals(1, change.getCount(Coin.TWENTY_CENTS));
+		assertEquals(0, machine.getCurrentMoney());
+	}
+
+	@Test
+	public void testCheckProduct() {
+		Collection<Product> listProduct = new ArrayList<>();
+		listProduct.add(Product.COKE);
+		Collection<Coin> listCoin = new ArrayList<>(Collections.nCopies(3, Coin.TWENTY_CENTS));
+		machine.refill(new Pair<Collection<Product>, Collection<Coin>>(listProduct, listCoin));
+
+		assertEquals(SelectionResult.INVALID_PRODUCT, machine.checkProduct(null));
+		assertEquals(SelectionResult.SOLD_OUT, machine.checkProduct(Product.WATER));
+		assertEquals(SelectionResult.NOT_ENOUGH_MONEY, machine.checkProduct(Product.COKE));
+		machine.addCoin(Coin.TWO_EURO);
+		// 50 cents can't be paid with twenty cents coins
+		assertEquals(SelectionResult.NOT_ENOUGH_CHANGE, machine.checkProduct(Product.COKE));
+		machine.addCoin(Coin.TEN_CENTS);
+		assertEquals(SelectionResult.SOLD, machine.checkProduct(Product.COKE));
+		// Nothing was sold
+		assertEquals(1, machine.getProductCount(Product.COKE));
+		assertEquals(210, machine.getCurrentMoney());
+		assertEquals(SelectionResult.SOLD, machine.trySelectProduct(Product.COKE, new Change()));
+	}
+
+	/**
+	 * The check answers like the strategy of the machine: greedy change can't pay
+	 * 60 cents with a fifty cents coin first, the exact one takes three twenty
+	 * cents coins
+	 */
+	@Test
+	public void checkProductMatchesTheStrategy() {
+		Collection<Product> listProduct = Collections.singletonList(Product.WATER);
+		Collection<Coin> listCoin = new ArrayList<>(Collections.nCopies(3, Coin.TWENTY_CENTS));
+		listCoin.add(Coin.FIFTY_CENTS);
+		VendingMachine exact = Factory.createVendingMachine(Factory.createOptimalStrategy());
+		for (VendingMachine vendingMachine : Arrays.asList(machine, exact)) {
+			vendingMachine.refill(new Pair<Collection<Product>, Collection<Coin>>(listProduct, listCoin));
+			vendingMachine.addCoin(Coin.ONE_EURO);
+			vendingMachine.addCoin(Coin.FIFTY_CENTS);
+		}
+
+		assertEquals(SelectionResult.NOT_ENOUGH_CHANGE, machine.checkProduct(Product.WATER));
+		assertEquals(SelectionResult.NOT_ENOUGH_CHANGE, machine.trySelectProduct(Product.WATER, new Change()));
+		assertEquals(SelectionResult.SOLD, exact.checkProduct(Product.WATER));
+		assertEquals(SelectionResult.SOLD, exact.trySelectProduct(Product.WATER, new Change()));
+	}
+
+	@Test
+	public void testNotEnoughMoneyMessage() {
+		NotEnoughMoneyException e = new NotEnoughMoneyException(Product.COKE, 100);
+		assertEquals(Product.COKE.getName() + " price is 150 And inserted coins are 100", e.getMessage());
+		assertEquals(0, e.getStackTrace().length);
+	}
+
 	@Test(expected = InvalidProductException.class)
 	public void testNullSelectedProduct()
 			throws NotEnoughMoneyException, SoldOutException, NotEnoughChangeException, InvalidProductException {
@@ -342,4 +485,22 @@ public class VendingMachineTest {
 		machine.getProductPrice(null);
 	}
 
+
+	@Test
+	public void refillRejectsNegativeCounts() {
+		int[] productCounts = new int[Product.values().length];
+		productCounts[Product.WATER.ordinal()] = 3;
+		int[] coinCounts = new int[Coin.values().length];
+		coinCounts[Coin.TEN_CENTS.ordinal()] = -1;
+		for (VendingMachine refilled : Arrays.asList(machine, Factory.createConcurrentVendingMachine())) {
+			try {
+				refilled.refill(productCounts, coinCounts);
+				fail("A negative count must be rejected");
+			} catch (IllegalArgumentException e) {
+				// Nothing is refilled
+			}
+			assertEquals(0, refilled.getProductCount(Product.WATER));
+			assertEquals(0, refilled.getCoinCount(Coin.TEN_CENTS));
+		}
+	}
 }